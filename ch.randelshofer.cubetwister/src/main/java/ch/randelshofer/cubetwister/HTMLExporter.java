@@ -406,10 +406,12 @@ public class HTMLExporter implements Exporter {
         data.put("script.permutation", Cubes.toPermutationString(cube, m.getNotationModel()));
         data.put("script.order", Cubes.getOrder(cube));
         data.put("script.visibleOrder", Cubes.getVisibleOrder(cube));
-        data.put("script.faceTurnCount", MoveMetrics.getFaceTurnCount(parsedScript));
-        data.put("script.layerTurnCount", MoveMetrics.getLayerTurnCount(parsedScript));
-        data.put("script.blockTurnCount", MoveMetrics.getBlockTurnCount(parsedScript));
-        data.put("script.quarterTurnCount", MoveMetrics.getQuarterTurnCount(parsedScript));
+        MoveMetrics metrics = new MoveMetrics();
+        metrics.accept(parsedScript);
+        data.put("script.faceTurnCount", metrics.getFaceTurnCount());
+        data.put("script.layerTurnCount", metrics.getLayerTurnCount());
+        data.put("script.blockTurnCount", metrics.getBlockTurnCount());
+        data.put("script.quarterTurnCount", metrics.getQuarterTurnCount());
         data.put("script.scriptType", m.isGenerator() ? "generator" : "solver");
 
         putNotationData(m.getNotationModel(), "script.");
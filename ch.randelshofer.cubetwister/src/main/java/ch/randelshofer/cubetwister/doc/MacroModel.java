@@ -43,7 +43,7 @@ public class MacroModel extends InfoModel {
             new UndoableObjectEdit(this, "Identifier", oldValue, value) {
     private final static long serialVersionUID = 1L;
                 public void revert(Object a, Object b) {
-                    identifier = (String) b;
+                    basicSetIdentifier((String) b);
                     firePropertyChange(PROP_IDENTIFIER, a, b);
                 }
             }
@@ -51,6 +51,7 @@ public class MacroModel extends InfoModel {
     }
     public void basicSetIdentifier(String value) {
         identifier = value;
+        invalidateNotation();
     }
 
     public String getScript() {
@@ -75,7 +76,7 @@ public class MacroModel extends InfoModel {
             new UndoableObjectEdit(this, "Script", oldValue, value) {
     private final static long serialVersionUID = 1L;
                 public void revert(Object a, Object b) {
-                    script = (String) b;
+                    basicSetScript((String) b);
                     firePropertyChange(PROP_SCRIPT, a, b);
                 }
             }
@@ -83,6 +84,17 @@ public class MacroModel extends InfoModel {
     }
     public void basicSetScript(String value) {
         script = value;
+        invalidateNotation();
+    }
+
+    /**
+     * Invalidates the notation, if this macro belongs to a notation.
+     */
+    private void invalidateNotation() {
+        EntityModel macros = getParent();
+        if (macros != null && macros.getParent() instanceof NotationModel) {
+            ((NotationModel) macros.getParent()).invalidateMacros();
+        }
     }
 
     public String toString() {
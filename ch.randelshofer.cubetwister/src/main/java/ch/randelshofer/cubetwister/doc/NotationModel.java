@@ -16,6 +16,7 @@ import ch.randelshofer.undo.UndoableObjectEdit;
 import org.jhotdraw.annotation.Nonnull;
 import org.jhotdraw.annotation.Nullable;
 
+import javax.swing.tree.MutableTreeNode;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Serial;
@@ -80,6 +81,11 @@ public class NotationModel extends InfoModel implements ScriptNotation {
      */
     @Nullable
     private SequencedMap<String, Move> tokenToTwistMap = null;
+    /**
+     * Is incremented whenever the tokens, the syntaxes, the supported
+     * symbols or the macros of the notation change.
+     */
+    private long modificationCount;
     /**
      * A map with symbol syntaxes.
      * Key = Symbol
@@ -175,7 +181,7 @@ public class NotationModel extends InfoModel implements ScriptNotation {
 
         setSyntax(Symbol.GROUPING, Syntax.CIRCUMFIX);
 
-        add(new EntityModel("Macros", true)); // Macros
+        add(new MacrosModel()); // Macros
     }
 
     /**
@@ -229,6 +235,7 @@ public class NotationModel extends InfoModel implements ScriptNotation {
     }
 
     public void basicSetMoveSupported(Move key, boolean newValue) {
+        modificationCount++;
         if (newValue) {
             supportedTwists.add(key);
         } else {
@@ -246,6 +253,7 @@ public class NotationModel extends InfoModel implements ScriptNotation {
     }
 
     public void basicSetSupported(Symbol key, boolean newValue) {
+        modificationCount++;
         if (newValue) {
             supportedSymbols.add(key);
         } else {
@@ -304,7 +312,7 @@ public class NotationModel extends InfoModel implements ScriptNotation {
                         private final static long serialVersionUID = 1L;
 
                         public void revert(Object a, Object b) {
-                            moveToTokenMap.put(key, (String) b);
+                            basicSetMoveToken(key, (String) b);
                             firePropertyChange(PROP_TWIST_TOKEN, a, b);
                         }
                     });
@@ -423,6 +431,7 @@ public class NotationModel extends InfoModel implements ScriptNotation {
     }
 
     public void basicSetSyntax(Symbol s, Syntax newValue) {
+        modificationCount++;
         symbolToSyntaxMap.put(s, newValue);
     }
 
@@ -470,6 +479,11 @@ public class NotationModel extends InfoModel implements ScriptNotation {
         return getTokenToTwistMap().get(moveToken);
     }
 
+    @Override
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
     @Nonnull
     @Override
     public Collection<String> getTokens() {
@@ -505,7 +519,7 @@ public class NotationModel extends InfoModel implements ScriptNotation {
     public NotationModel clone() {
         NotationModel that = (NotationModel) super.clone();
 
-        EntityModel macros = new EntityModel("Macros", true);
+        EntityModel macros = new MacrosModel();
         for (EntityModel child : this.getChildAt(MACRO_INDEX).getChildren()) {
             macros.add((MacroModel) child.clone());
         }
@@ -533,7 +547,15 @@ public class NotationModel extends InfoModel implements ScriptNotation {
         return tokenToSymbolMap;
     }
 
+    /**
+     * Is called when a macro of the notation changes.
+     */
+    void invalidateMacros() {
+        modificationCount++;
+    }
+
     private void invalidateTokenMaps() {
+        modificationCount++;
         tokenToSymbolMap = null;
         tokenToTwistMap = null;
     }
@@ -584,5 +606,36 @@ public class NotationModel extends InfoModel implements ScriptNotation {
     public boolean isDefaultNotation() {
         return getDocument().getDefaultNotation(getLayerCount()) == this;
     }
+
+    /**
+     * Holds the macros of a notation, and invalidates the notation when a
+     * macro is inserted or removed.
+     */
+    private static class MacrosModel extends EntityModel {
+        @Serial
+        private final static long serialVersionUID = 1L;
+
+        MacrosModel() {
+            super("Macros", true);
+        }
+
+        @Override
+        public void insert(MutableTreeNode newChild, int childIndex) {
+            super.insert(newChild, childIndex);
+            invalidateNotation();
+        }
+
+        @Override
+        public void remove(int childIndex) {
+            super.remove(childIndex);
+            invalidateNotation();
+        }
+
+        private void invalidateNotation() {
+            if (getParent() instanceof NotationModel) {
+                ((NotationModel) getParent()).invalidateMacros();
+            }
+        }
+    }
 }
 
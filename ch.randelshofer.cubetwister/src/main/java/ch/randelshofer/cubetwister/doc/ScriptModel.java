@@ -10,12 +10,16 @@ import ch.randelshofer.io.ParseException;
 import ch.randelshofer.rubik.Cube3DAdapter;
 import ch.randelshofer.rubik.CubeKind;
 import ch.randelshofer.rubik.cube.Cube;
+import ch.randelshofer.rubik.cube.CubePermutation;
 import ch.randelshofer.rubik.cube.Cubes;
 import ch.randelshofer.rubik.cube3d.Cube3D;
 import ch.randelshofer.rubik.cube3d.Cube3DEvent;
 import ch.randelshofer.rubik.cube3d.Cube3DListener;
 import ch.randelshofer.rubik.notation.Symbol;
+import ch.randelshofer.rubik.parser.IncrementalScriptParser;
 import ch.randelshofer.rubik.parser.MoveMetrics;
+import ch.randelshofer.rubik.parser.NotationTranslator;
+import ch.randelshofer.rubik.parser.ParsedScriptCache;
 import ch.randelshofer.rubik.parser.ScriptParser;
 import ch.randelshofer.rubik.parser.ast.MacroNode;
 import ch.randelshofer.rubik.parser.ast.Node;
@@ -36,9 +40,11 @@ import java.awt.Toolkit;
 import java.io.IOException;
 import java.text.Normalizer;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import java.util.StringTokenizer;
 
 /**
@@ -75,6 +81,12 @@ public class ScriptModel
     private transient boolean isGenerator = true;
     // Non-persistent attributes
     private Node parsedScript;
+    /**
+     * Parses the script after an edit, and reuses the unchanged statements
+     * of {@link #parsedScript}.
+     */
+    @Nullable
+    private transient IncrementalScriptParser incrementalParser;
     private transient boolean isChecked;
     private transient String stateInfo;
     @Nullable
@@ -237,22 +249,29 @@ public class ScriptModel
             throws ParseException {
 
         // Normalize text to Unicode NFC.
-        String normalizedScript = Normalizer.normalize(script.getText(), Normalizer.Form.NFC);
-        if (!normalizedScript.equals(script.getText())) {
+        String text = script.getText();
+        String normalizedScript = text;
+        if (text != null && !Normalizer.isNormalized(text, Normalizer.Form.NFC)) {
+            normalizedScript = Normalizer.normalize(text, Normalizer.Form.NFC);
             script.setText(normalizedScript);
         }
 
         parseException = null;
-        if (!isChecked && getNotationModel() != null && getScript() != null) {
+        if (!isChecked && getNotationModel() != null && normalizedScript != null) {
             ScriptParser p = getParser();
             try {
-                parsedScript = p.parse(normalizedScript);
+                if (incrementalParser == null) {
+                    incrementalParser = new IncrementalScriptParser();
+                    incrementalParser.setCache(ParsedScriptCache.getDefault());
+                }
+                parsedScript = incrementalParser.parse(p, normalizedScript);
+                MoveMetrics metrics = incrementalParser.getMetrics();
                 isChecked = true;
                 setStateInfo("Twists:\n" +
-                        MoveMetrics.getBlockTurnCount(parsedScript) + " btm, " +
-                        MoveMetrics.getLayerTurnCount(parsedScript) + " ltm, " +
-                        MoveMetrics.getFaceTurnCount(parsedScript) + " ftm, " +
-                        MoveMetrics.getQuarterTurnCount(parsedScript) + " qtm");
+                        metrics.getBlockTurnCount() + " btm, " +
+                        metrics.getLayerTurnCount() + " ltm, " +
+                        metrics.getFaceTurnCount() + " ftm, " +
+                        metrics.getQuarterTurnCount() + " qtm");
                 firePropertyChange(CHECKED_PROPERTY, false, true);
                 getPlayer().setScript(parsedScript);
                 if (isGenerator()) {
@@ -260,7 +279,12 @@ public class ScriptModel
                 } else {
                     Cube resetCube = (Cube) getCube().clone();
                     resetCube.reset();
-                    parsedScript.applyTo(resetCube, true);
+                    CubePermutation permutation = incrementalParser.getPermutation();
+                    if (permutation.getLayerCount() == resetCube.getLayerCount()) {
+                        resetCube.transform(permutation.inverse());
+                    } else {
+                        parsedScript.applyTo(resetCube, true);
+                    }
                     getPlayer().setResetCube(resetCube);
                 }
             } catch (ParseException e) {
@@ -381,6 +405,11 @@ public class ScriptModel
             NotationModel oldNotation = getNotationModel();
             NotationModel newNotation = n;
             ScriptParser oldParser = getNotationModel().getParser(oldLocalMacros);
+            NotationTranslator translator = NotationTranslator.getInstance(newNotation);
+            Set<String> localMacroIdentifiers = new HashSet<>();
+            for (MacroNode macroNode : oldLocalMacros) {
+                localMacroIdentifiers.add(macroNode.getIdentifier());
+            }
 
             // Parse the script
             Node oldParsedScript = oldParser.parse(getScript());
@@ -397,9 +426,7 @@ public class ScriptModel
                 oldParsedScript.applyTo(cube, false);
                 setScript(Cubes.toPermutationString(cube, newNotation));
             } else {
-                System.err.println("Warning: ScriptModel parsing with pre-parsed macros not yet supported!");
-                //setScript(oldParser.parse(getScript(), parsedMacros).toString(newNotation));
-                setScript(oldParsedScript.toString(newNotation, oldLocalMacros));
+                setScript(translator.toString(oldParsedScript, localMacroIdentifiers));
             }
             setNotationModel(n);
 
@@ -408,7 +435,9 @@ public class ScriptModel
                 MacroModel mm = (MacroModel) macros.getChildAt(i);
                 MacroNode newMacro = new MacroNode(mm.getIdentifier(), mm.getScript(), 0, 0);
                 newMacro.expand(oldParser);
-                mm.setScript(newMacro.toString(newNotation, oldLocalMacros));
+                // Translate the body, so that the macro is not written by
+                // its own identifier
+                mm.setScript(translator.toString(newMacro.getChildAt(0), localMacroIdentifiers));
             }
         } catch (IOException e) {
             System.out.println(getName() + " Translation was not successful");
@@ -427,6 +456,9 @@ public class ScriptModel
         that.script = (StyledDocumentProxy) this.script.clone();
         // The progress view must not be cloned
         that.progressView = null;
+        // The parsed script is shared with the clone, the incremental
+        // parser is not
+        that.incrementalParser = null;
 
         that.script.addUndoableEditListener(that);
         that.scriptHandler = new ScriptHandler(that);
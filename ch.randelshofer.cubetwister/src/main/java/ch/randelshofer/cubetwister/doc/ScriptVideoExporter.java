@@ -9,6 +9,8 @@ import ch.randelshofer.rubik.cube.Cube;
 import ch.randelshofer.rubik.cube3d.Cube3D;
 import ch.randelshofer.rubik.parser.ast.Node;
 import ch.randelshofer.rubik.player.ScriptPlayer;
+import idx3d.idx3d_Camera;
+import idx3d.idx3d_Node;
 import idx3d.idx3d_RenderPipeline;
 import idx3d.idx3d_Scene;
 import org.monte.media.av.Buffer;
@@ -21,12 +23,26 @@ import org.monte.media.player.SynchronousAnimator;
 import org.monte.media.quicktime.QuickTimeWriter;
 
 import javax.swing.BoundedRangeModel;
-import javax.swing.JPanel;
 import java.awt.Dimension;
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.monte.media.av.codec.video.VideoFormatKeys.DataClassKey;
 import static org.monte.media.av.codec.video.VideoFormatKeys.DepthKey;
@@ -82,6 +98,10 @@ public class ScriptVideoExporter {
     private String cameraName;
     private int firstFrame;
     private int lastFrame;
+    /**
+     * If true, the simplified moves of the script are exported.
+     */
+    private boolean simplified;
     private MovieWriter w;
     private Rational duration;
     /**
@@ -89,9 +109,9 @@ public class ScriptVideoExporter {
      */
     private idx3d_Scene scene;
     /**
-     * The 3d Render Pipeline.
+     * The number of frames which are rendered concurrently.
      */
-    private idx3d_RenderPipeline renderPipeline;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
 
     public ScriptVideoExporter(ScriptModel model, File file, ProgressObserver progress) {
         this.progress = progress;
@@ -161,6 +181,34 @@ public class ScriptVideoExporter {
         lastFrame = newValue;
     }
 
+    /**
+     * If set to true, the video shows the simplified moves of the script.
+     * This shortens the video of scripts with moves that cancel each other
+     * out.
+     *
+     * @see ch.randelshofer.rubik.parser.MoveSimplifier
+     */
+    public void setSimplified(boolean newValue) {
+        simplified = newValue;
+    }
+
+    public boolean isSimplified() {
+        return simplified;
+    }
+
+    /**
+     * Sets the number of frames which are rendered concurrently. Each frame
+     * is rendered on a separate copy of the scene. The default value is the
+     * number of available processors.
+     */
+    public void setParallelism(int newValue) {
+        parallelism = newValue;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
     public void start() throws IOException {
         progress.setNote("Processing...");
         switch (format.type) {
@@ -182,18 +230,7 @@ public class ScriptVideoExporter {
             Node script = model.getParsedScript();
             ScriptPlayer player = new ScriptPlayer();
 
-            Cube3D cube3D = null;
-            try {
-                cube3D = (Cube3D) model.getCubeModel().getCube3DClass().newInstance();
-            } catch (InstantiationException ex) {
-                throw new IOException("Couldn't instantiate cube 3D");
-            } catch (IllegalAccessException ex) {
-                throw new IOException("Couldn't instantiate cube 3D");
-            }
-            if (cube3D == null) {
-                return;
-            }
-
+            Cube3D cube3D = createCube3D();
             cube3D.setAttributes(model.getCubeModel());
             player.setCube3D(cube3D);
             player.setCube(cube3D.getCube());
@@ -205,6 +242,7 @@ public class ScriptVideoExporter {
                 script.applyTo(resetCube, true);
                 player.setResetCube(resetCube);
             }
+            player.setSimplified(simplified);
             player.setScript(script);
             player.reset();
 
@@ -214,40 +252,64 @@ public class ScriptVideoExporter {
             cube3D.setAnimated(true);
 
             BoundedRangeModel playerTime = player.getTimeModel();
-
-            JPanel repaintDiscarder = new JPanel();
             scene = (idx3d_Scene) cube3D.getScene();
-            Object lock = cube3D.getLock();
-            renderPipeline = new idx3d_RenderPipeline(scene, size.width, size.height);
-            renderPipeline.useIdBuffer(false);
-            renderPipeline.setAntialias(true);
-
-            int count = 0;
-            long time = 0;
-            double doubleTime = 0d;
-            playerTime.setValue(0);
-            BufferedImage buf = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
-            Graphics2D g = buf.createGraphics();
-            renderPipeline.render((cameraName != null) ? scene.camera(cameraName) : scene.getDefaultCamera());
-            g.drawImage(renderPipeline.getImage(), x, y, repaintDiscarder);
-            writeFrame(buf, count++);
-            while (playerTime.getValue() < playerTime.getMaximum() && !progress.isCanceled()) {
-                playerTime.setValue(playerTime.getValue() + 1);
-                progress.setProgress(playerTime.getValue());
-
-                while (animator.isActive() && !progress.isCanceled()) {
-                    doubleTime += 1000d / fps;
-                    time = (long) doubleTime;
-                    animator.setTime(time);
-                    animator.animateStep();
-
-                    if (count >= firstFrame && count <= lastFrame) {
-                        progress.setNote("Writing frame " + (count));
-                        renderPipeline.render((cameraName != null) ? scene.camera(cameraName) : scene.getDefaultCamera());
-                        g.drawImage(renderPipeline.getImage(), x, y, repaintDiscarder);
-                        writeFrame(buf, count);
+            scene.validate();
+            List<idx3d_Node> nodes = getNodes(scene);
+            Map<idx3d_Node, Integer> nodeIndices = new IdentityHashMap<>();
+            for (int i = 0, n = nodes.size(); i < n; i++) {
+                nodeIndices.put(nodes.get(i), i);
+            }
+
+            // The animation is performed on this thread, which captures the
+            // transforms of each frame. The frames are rendered by the frame
+            // renderers on copies of the scene, and are written in order on
+            // this thread, while the frame renderers render the next frames.
+            int renderers = Math.max(1, parallelism);
+            int pipelineParallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / renderers);
+            BlockingQueue<FrameRenderer> idle = new ArrayBlockingQueue<>(renderers);
+            List<FrameRenderer> all = new ArrayList<>();
+            ExecutorService executor = Executors.newFixedThreadPool(renderers);
+            Deque<Future<BufferedImage>> window = new ArrayDeque<>();
+            Deque<Integer> windowFrames = new ArrayDeque<>();
+            try {
+                for (int i = 0; i < renderers; i++) {
+                    FrameRenderer r = new FrameRenderer(nodes.size(), pipelineParallelism);
+                    all.add(r);
+                    idle.add(r);
+                }
+
+                int count = 0;
+                long time = 0;
+                double doubleTime = 0d;
+                playerTime.setValue(0);
+                submitFrame(executor, idle, new FrameState(nodes, nodeIndices, scene.getDynamicNodes()), count++, window, windowFrames);
+                while (playerTime.getValue() < playerTime.getMaximum() && !progress.isCanceled()) {
+                    playerTime.setValue(playerTime.getValue() + 1);
+                    progress.setProgress(playerTime.getValue());
+
+                    while (animator.isActive() && !progress.isCanceled()) {
+                        doubleTime += 1000d / fps;
+                        time = (long) doubleTime;
+                        animator.setTime(time);
+                        animator.animateStep();
+
+                        if (count >= firstFrame && count <= lastFrame) {
+                            FrameState state = new FrameState(nodes, nodeIndices, scene.getDynamicNodes());
+                            while (window.size() >= renderers * 2) {
+                                writeNextFrame(window, windowFrames);
+                            }
+                            submitFrame(executor, idle, state, count, window, windowFrames);
+                        }
+                        count++;
                     }
-                    count++;
+                }
+                while (!window.isEmpty() && !progress.isCanceled()) {
+                    writeNextFrame(window, windowFrames);
+                }
+            } finally {
+                executor.shutdownNow();
+                for (FrameRenderer r : all) {
+                    r.dispose();
                 }
             }
         } catch (Error t) {
@@ -260,6 +322,138 @@ public class ScriptVideoExporter {
         }
     }
 
+    private Cube3D createCube3D() throws IOException {
+        try {
+            return (Cube3D) model.getCubeModel().getCube3DClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IOException("Couldn't instantiate cube 3D", ex);
+        }
+    }
+
+    /**
+     * Returns the nodes of a scene in preorder. Scenes of the same cube
+     * with the same attributes have corresponding nodes at the same index.
+     */
+    private static List<idx3d_Node> getNodes(idx3d_Scene scene) {
+        List<idx3d_Node> nodes = new ArrayList<>();
+        for (idx3d_Node node : scene.preorderIterator()) {
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    private void submitFrame(ExecutorService executor, final BlockingQueue<FrameRenderer> idle, final FrameState state, int count,
+                             Deque<Future<BufferedImage>> window, Deque<Integer> windowFrames) {
+        window.addLast(executor.submit(() -> {
+            FrameRenderer r = idle.take();
+            try {
+                return r.render(state);
+            } finally {
+                idle.add(r);
+            }
+        }));
+        windowFrames.addLast(count);
+    }
+
+    private void writeNextFrame(Deque<Future<BufferedImage>> window, Deque<Integer> windowFrames) throws IOException {
+        int count = windowFrames.removeFirst();
+        BufferedImage image;
+        try {
+            image = window.removeFirst().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while rendering frame " + count);
+        } catch (ExecutionException ex) {
+            throw new IOException("Couldn't render frame " + count, ex.getCause());
+        }
+        progress.setNote("Writing frame " + count);
+        writeFrame(image, count);
+    }
+
+    /**
+     * The transforms of all nodes of the scene in a frame of the animation.
+     */
+    private static class FrameState {
+        /**
+         * The matrix and the normal matrix of each node.
+         */
+        final float[] transforms;
+        /**
+         * The indices of the nodes which are twisted in this frame.
+         */
+        final int[] dynamicNodes;
+
+        FrameState(List<idx3d_Node> nodes, Map<idx3d_Node, Integer> nodeIndices, Set<idx3d_Node> dynamic) {
+            transforms = new float[nodes.size() * 32];
+            for (int i = 0, n = nodes.size(); i < n; i++) {
+                idx3d_Node node = nodes.get(i);
+                node.matrix.exportToArray(transforms, i * 32);
+                node.normalmatrix.exportToArray(transforms, i * 32 + 16);
+            }
+            dynamicNodes = new int[dynamic.size()];
+            int j = 0;
+            for (idx3d_Node node : dynamic) {
+                Integer index = nodeIndices.get(node);
+                if (index != null) {
+                    dynamicNodes[j++] = index;
+                }
+            }
+        }
+    }
+
+    /**
+     * Renders frames on its own copy of the scene.
+     */
+    private class FrameRenderer {
+        private final Cube3D cube3D;
+        private final idx3d_Scene scene;
+        private final List<idx3d_Node> nodes;
+        private final idx3d_RenderPipeline pipeline;
+        private final idx3d_Camera camera;
+
+        FrameRenderer(int nodeCount, int pipelineParallelism) throws IOException {
+            cube3D = createCube3D();
+            cube3D.setAttributes(model.getCubeModel());
+            scene = (idx3d_Scene) cube3D.getScene();
+            scene.validate();
+            nodes = getNodes(scene);
+            if (nodes.size() != nodeCount) {
+                throw new IOException("Couldn't copy the scene of cube 3D");
+            }
+            pipeline = new idx3d_RenderPipeline(scene, size.width, size.height);
+            pipeline.useIdBuffer(false);
+            pipeline.setAntialias(true);
+            pipeline.setParallelism(pipelineParallelism);
+            pipeline.setLayered(true);
+            camera = (cameraName != null) ? scene.camera(cameraName) : scene.getDefaultCamera();
+        }
+
+        BufferedImage render(FrameState state) {
+            for (int i = 0, n = nodes.size(); i < n; i++) {
+                idx3d_Node node = nodes.get(i);
+                node.matrix.importFromArray(state.transforms, i * 32);
+                node.normalmatrix.importFromArray(state.transforms, i * 32 + 16);
+            }
+            Set<idx3d_Node> dynamic = new HashSet<>();
+            for (int index : state.dynamicNodes) {
+                dynamic.add(nodes.get(index));
+            }
+            scene.setDynamicNodes(dynamic);
+            pipeline.render(camera);
+
+            BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+            int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            pipeline.getScreen().getPixels(data, 0, size.width);
+            return image;
+        }
+
+        void dispose() {
+            pipeline.dispose();
+            cube3D.setAttributes(null);
+            cube3D.dispose();
+        }
+    }
+
     private void openExportStream() throws IOException {
         duration =  Rational.valueOf(fps).inverse();
         switch(format.type) {
@@ -0,0 +1,135 @@
+/*
+ * @(#)ThumbnailExporter.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.cubetwister.doc;
+
+import ch.randelshofer.io.ParseException;
+import ch.randelshofer.rubik.ThumbnailBatchRenderer;
+import ch.randelshofer.rubik.cube.Cube;
+import ch.randelshofer.rubik.cube3d.Cube3D;
+import ch.randelshofer.rubik.notation.DefaultScriptNotation;
+import ch.randelshofer.rubik.parser.BulkScriptParser;
+import ch.randelshofer.rubik.parser.ast.Node;
+import org.jhotdraw.annotation.Nonnull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adds thumbnails of the scripts of a document, or of a list of patterns,
+ * to a {@link ThumbnailBatchRenderer}.
+ * <p>
+ * The thumbnail of a script shows the cube after the script has been
+ * performed. Optionally, a second thumbnail shows the cube before the
+ * script is performed. The name of the thumbnail is the name of the script,
+ * followed by {@code -end} or {@code -start}.
+ * <p>
+ * For a generator script, the start state is the solved cube, and the end
+ * state is the cube after the script has been applied. For a solver script,
+ * the start state is the cube after the inverse of the script has been
+ * applied, and the end state is the solved cube.
+ *
+ * @author Werner Randelshofer
+ */
+public class ThumbnailExporter {
+    @Nonnull
+    private final ThumbnailBatchRenderer renderer;
+    @Nonnull
+    private final List<String> errors = new ArrayList<>();
+
+    public ThumbnailExporter(@Nonnull ThumbnailBatchRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    /**
+     * Returns the scripts which could not be added, with the reason.
+     */
+    @Nonnull
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Adds the thumbnails of all scripts of a document.
+     *
+     * @param doc               the document
+     * @param includeStartState whether a thumbnail of the start state is
+     *                          added as well
+     */
+    public void addDocument(@Nonnull DocumentModel doc, boolean includeStartState) {
+        EntityModel scripts = doc.getScripts();
+        for (int i = 0, n = scripts.getChildCount(); i < n; i++) {
+            ScriptModel script = (ScriptModel) scripts.getChildAt(i);
+            String name = toFileName(script.getName(), i);
+            try {
+                script.check();
+            } catch (ParseException e) {
+                errors.add(name + ": " + e.getMessage());
+                continue;
+            }
+            add(name, script.getCubeModel(), script.getParsedScript(), script.isGenerator(), includeStartState);
+        }
+    }
+
+    /**
+     * Adds the thumbnails of a list of patterns, for example of the
+     * patterns of a pattern database. The patterns are generator scripts
+     * in the default notation.
+     *
+     * @param cubeModel         the cube on which the patterns are shown
+     * @param names             the names of the patterns
+     * @param scripts           the scripts of the patterns
+     * @param includeStartState whether a thumbnail of the start state is
+     *                          added as well
+     */
+    public void addPatterns(@Nonnull CubeModel cubeModel, @Nonnull List<String> names,
+                            @Nonnull List<String> scripts, boolean includeStartState) {
+        if (names.size() != scripts.size()) {
+            throw new IllegalArgumentException("names.size=" + names.size() + ", scripts.size=" + scripts.size());
+        }
+        BulkScriptParser parser = new BulkScriptParser(new DefaultScriptNotation(cubeModel.getLayerCount()));
+        for (BulkScriptParser.Result result : parser.parse(scripts)) {
+            String name = toFileName(names.get(result.getIndex()), result.getIndex());
+            if (result.getException() != null) {
+                errors.add(name + ": " + result.getException().getMessage());
+                continue;
+            }
+            add(name, cubeModel, result.getNode(), true, includeStartState);
+        }
+    }
+
+    private void add(@Nonnull String name, @Nonnull CubeModel cubeModel, @Nonnull Node script,
+                     boolean isGenerator, boolean includeStartState) {
+        Class<? extends Cube3D> cube3DClass = cubeModel.getCube3DClass().asSubclass(Cube3D.class);
+        Cube cube = cubeModel.createCube();
+        if (cube == null) {
+            errors.add(name + ": unsupported cube " + cubeModel.getKind());
+            return;
+        }
+        if (!isGenerator) {
+            script.applyTo(cube, true);
+        }
+        if (includeStartState) {
+            renderer.add(name + "-start", cube3DClass, cube, cubeModel);
+        }
+        if (isGenerator) {
+            script.applyTo(cube, false);
+        } else {
+            cube.reset();
+        }
+        renderer.add(name + "-end", cube3DClass, cube, cubeModel);
+    }
+
+    /**
+     * Replaces all characters which are not safe in file names and in
+     * ZIP entries.
+     */
+    @Nonnull
+    private static String toFileName(String name, int index) {
+        if (name == null || name.isBlank()) {
+            return String.format("script%04d", index);
+        }
+        return name.trim().replaceAll("[^A-Za-z0-9._-]+", "_");
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * @(#)PNGWriter.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.io;
+
+import org.jhotdraw.annotation.Nonnull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes RGB pixels as a PNG image.
+ * <p>
+ * This class does not use AWT, and can thus be used on a server which runs
+ * with {@code java.awt.headless=true}, without copying the pixels into a
+ * {@code BufferedImage}.
+ * <p>
+ * The image is written with 8 bits per color channel and without alpha
+ * channel. Each row is encoded with the "Sub" filter, which compresses the
+ * large areas of uniform color in rendered images well.
+ *
+ * @author Werner Randelshofer
+ */
+public class PNGWriter {
+    @Nonnull
+    private final static byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private final static int FILTER_SUB = 1;
+
+    private final int compressionLevel;
+
+    /**
+     * Creates a new instance which uses the default compression level.
+     */
+    public PNGWriter() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param compressionLevel the compression level from 0 to 9, or
+     *                         {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public PNGWriter(int compressionLevel) {
+        if ((compressionLevel < 0 || compressionLevel > 9) && compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("compressionLevel=" + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Writes an image.
+     *
+     * @param out            the output stream, is not closed by this method
+     * @param pixels         the pixels as RGB values, the alpha channel is
+     *                       ignored
+     * @param offset         the index of the top left pixel in the array
+     * @param scanlineStride the distance between two rows in the array
+     * @param width          the width of the image
+     * @param height         the height of the image
+     * @throws IOException if writing fails
+     */
+    public void write(@Nonnull OutputStream out, @Nonnull int[] pixels, int offset, int scanlineStride,
+                      int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width=" + width + ", height=" + height);
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(SIGNATURE);
+
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(13);
+        DataOutputStream header = new DataOutputStream(chunk);
+        header.writeInt(width);
+        header.writeInt(height);
+        header.writeByte(8);// bit depth
+        header.writeByte(2);// color type: RGB
+        header.writeByte(0);// compression method: deflate
+        header.writeByte(0);// filter method: adaptive
+        header.writeByte(0);// interlace method: none
+        writeChunk(data, "IHDR", chunk.toByteArray(), chunk.size());
+
+        chunk = new ByteArrayOutputStream(width * height + height);
+        Deflater deflater = new Deflater(compressionLevel);
+        try (DeflaterOutputStream z = new DeflaterOutputStream(chunk, deflater, 8192)) {
+            byte[] row = new byte[1 + width * 3];
+            row[0] = FILTER_SUB;
+            for (int y = 0; y < height; y++) {
+                int prev = 0;
+                for (int x = 0, i = offset + y * scanlineStride, j = 1; x < width; x++, i++, j += 3) {
+                    int rgb = pixels[i];
+                    row[j] = (byte) ((rgb >>> 16) - (prev >>> 16));
+                    row[j + 1] = (byte) ((rgb >>> 8) - (prev >>> 8));
+                    row[j + 2] = (byte) (rgb - prev);
+                    prev = rgb;
+                }
+                z.write(row);
+            }
+        } finally {
+            deflater.end();
+        }
+        writeChunk(data, "IDAT", chunk.toByteArray(), chunk.size());
+        writeChunk(data, "IEND", new byte[0], 0);
+        data.flush();
+    }
+
+    private static void writeChunk(@Nonnull DataOutputStream out, @Nonnull String type, @Nonnull byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+}
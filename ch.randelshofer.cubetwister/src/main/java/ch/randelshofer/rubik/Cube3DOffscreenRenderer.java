@@ -0,0 +1,293 @@
+/*
+ * @(#)Cube3DOffscreenRenderer.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik;
+
+import ch.randelshofer.io.PNGWriter;
+import ch.randelshofer.rubik.cube.Cube;
+import ch.randelshofer.rubik.cube3d.Cube3D;
+import idx3d.idx3d_Antialiasing;
+import idx3d.idx3d_Camera;
+import idx3d.idx3d_RenderPipeline;
+import idx3d.idx3d_Scene;
+import idx3d.idx3d_Screen;
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Renders images of cubes without AWT components.
+ * <p>
+ * The renderer takes the state of a cube, its attributes and a camera, and
+ * writes the image into an array or a buffer owned by the caller, or
+ * encodes it as a PNG image. It neither creates components nor images, and
+ * can thus be used on a server which runs with
+ * {@code java.awt.headless=true}.
+ * <p>
+ * The renderer holds a pool of render pipelines. Each pipeline holds one
+ * {@link Cube3D} instance per class of cube. Concurrent requests are
+ * rendered on different pipelines, and wait if all pipelines are busy.
+ * <p>
+ * This class is thread-safe. The cube and the attributes of a request must
+ * not be changed while the request is rendered.
+ *
+ * @author Werner Randelshofer
+ */
+public class Cube3DOffscreenRenderer {
+    /**
+     * The idle pipelines.
+     */
+    @Nonnull
+    private final BlockingQueue<Slot> idle;
+    /**
+     * All pipelines, for disposal. Access must be synchronized on the list.
+     */
+    @Nonnull
+    private final List<Slot> slots = new ArrayList<>();
+    private final int poolSize;
+    @Nonnull
+    private volatile idx3d_Antialiasing antialiasing = idx3d_Antialiasing.SUPERSAMPLING;
+
+    /**
+     * A render pipeline, and the cubes which it has rendered.
+     */
+    private static class Slot {
+        @Nullable
+        idx3d_RenderPipeline pipeline;
+        @Nonnull
+        final Map<Class<? extends Cube3D>, Cube3D> cubes = new HashMap<>();
+        /**
+         * The attributes which the cubes had when they were created.
+         */
+        @Nonnull
+        final Map<Class<? extends Cube3D>, CubeAttributes> defaultAttributes = new HashMap<>();
+    }
+
+    /**
+     * Creates a renderer with one pipeline per available processor.
+     */
+    public Cube3DOffscreenRenderer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a renderer.
+     *
+     * @param poolSize the maximal number of requests which are rendered
+     *                 concurrently
+     */
+    public Cube3DOffscreenRenderer(int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize=" + poolSize);
+        }
+        this.poolSize = poolSize;
+        idle = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            Slot slot = new Slot();
+            idle.add(slot);
+            slots.add(slot);
+        }
+    }
+
+    /**
+     * Returns the maximal number of requests which are rendered
+     * concurrently.
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Sets the antialiasing strategy for subsequent requests. The default
+     * value is {@link idx3d_Antialiasing#SUPERSAMPLING}.
+     */
+    public void setAntialiasing(@Nonnull idx3d_Antialiasing newValue) {
+        antialiasing = newValue;
+    }
+
+    @Nonnull
+    public idx3d_Antialiasing getAntialiasing() {
+        return antialiasing;
+    }
+
+    /**
+     * Renders a cube into an array of opaque ARGB pixels.
+     *
+     * @param cube3DClass    the class of the geometry, for example the value
+     *                       of {@code CubeModel.getCube3DClass()}. The class
+     *                       must use the idx3d engine, and must have a public
+     *                       no-argument constructor.
+     * @param cube           the state of the cube
+     * @param attributes     the attributes of the cube, or null for the
+     *                       default attributes of the class
+     * @param camera         the name of a camera of the scene, or null for
+     *                       the default camera
+     * @param width          the width of the image
+     * @param height         the height of the image
+     * @param pixels         the destination array
+     * @param offset         the index of the top left pixel in the array
+     * @param scanlineStride the distance between two rows in the array
+     * @throws InterruptedException if the thread is interrupted while it
+     *                              waits for a pipeline
+     */
+    public void render(@Nonnull Class<? extends Cube3D> cube3DClass, @Nonnull Cube cube,
+                       @Nullable CubeAttributes attributes, @Nullable String camera, int width, int height,
+                       @Nonnull int[] pixels, int offset, int scanlineStride) throws InterruptedException {
+        Slot slot = acquire();
+        try {
+            render(slot, cube3DClass, cube, attributes, camera, width, height,
+                    screen -> screen.getPixels(pixels, offset, scanlineStride));
+        } finally {
+            idle.add(slot);
+        }
+    }
+
+    /**
+     * Renders a cube into a buffer of opaque ARGB pixels. The pixels are
+     * put row by row, starting at the current position of the buffer.
+     *
+     * @param cube3DClass the class of the geometry
+     * @param cube        the state of the cube
+     * @param attributes  the attributes of the cube, or null for the
+     *                    default attributes of the class
+     * @param camera      the name of a camera of the scene, or null for the
+     *                    default camera
+     * @param width       the width of the image
+     * @param height      the height of the image
+     * @param pixels      the destination buffer
+     * @throws InterruptedException if the thread is interrupted while it
+     *                              waits for a pipeline
+     * @see #render(Class, Cube, CubeAttributes, String, int, int, int[], int, int)
+     */
+    public void render(@Nonnull Class<? extends Cube3D> cube3DClass, @Nonnull Cube cube,
+                       @Nullable CubeAttributes attributes, @Nullable String camera, int width, int height,
+                       @Nonnull IntBuffer pixels) throws InterruptedException {
+        Slot slot = acquire();
+        try {
+            render(slot, cube3DClass, cube, attributes, camera, width, height,
+                    screen -> screen.getPixels(pixels));
+        } finally {
+            idle.add(slot);
+        }
+    }
+
+    /**
+     * Renders a cube and writes it as a PNG image.
+     * <p>
+     * The image is encoded after the pipeline has been returned to the pool,
+     * so that encoding does not block other requests.
+     *
+     * @param cube3DClass the class of the geometry
+     * @param cube        the state of the cube
+     * @param attributes  the attributes of the cube, or null for the
+     *                    default attributes of the class
+     * @param camera      the name of a camera of the scene, or null for the
+     *                    default camera
+     * @param width       the width of the image
+     * @param height      the height of the image
+     * @param out         the output stream, is not closed by this method
+     * @throws IOException          if writing fails
+     * @throws InterruptedException if the thread is interrupted while it
+     *                              waits for a pipeline
+     * @see #render(Class, Cube, CubeAttributes, String, int, int, int[], int, int)
+     */
+    public void writePNG(@Nonnull Class<? extends Cube3D> cube3DClass, @Nonnull Cube cube,
+                         @Nullable CubeAttributes attributes, @Nullable String camera, int width, int height,
+                         @Nonnull OutputStream out) throws IOException, InterruptedException {
+        int[] pixels = new int[width * height];
+        render(cube3DClass, cube, attributes, camera, width, height, pixels, 0, width);
+        new PNGWriter().write(out, pixels, 0, width, width, height);
+    }
+
+    /**
+     * Disposes of all pipelines and cubes. Requests which are rendered
+     * while this method is called, are completed.
+     */
+    public void dispose() {
+        synchronized (slots) {
+            for (Slot slot : slots) {
+                synchronized (slot) {
+                    for (Cube3D cube3D : slot.cubes.values()) {
+                        cube3D.dispose();
+                    }
+                    slot.cubes.clear();
+                    slot.defaultAttributes.clear();
+                    if (slot.pipeline != null) {
+                        slot.pipeline.dispose();
+                        slot.pipeline = null;
+                    }
+                }
+            }
+        }
+    }
+
+    @Nonnull
+    private Slot acquire() throws InterruptedException {
+        return idle.take();
+    }
+
+    /**
+     * Renders a request on the pipeline of a slot.
+     *
+     * @param output receives the screen which holds the rendered image
+     */
+    private void render(@Nonnull Slot slot, @Nonnull Class<? extends Cube3D> cube3DClass,
+                        @Nonnull Cube cube, @Nullable CubeAttributes attributes,
+                        @Nullable String camera, int width, int height, @Nonnull Consumer<idx3d_Screen> output) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width=" + width + ", height=" + height);
+        }
+        synchronized (slot) {
+            Cube3D cube3D = slot.cubes.get(cube3DClass);
+            if (cube3D == null) {
+                try {
+                    cube3D = cube3DClass.getConstructor().newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalArgumentException("Couldn't instantiate " + cube3DClass, e);
+                }
+                if (!(cube3D.getScene() instanceof idx3d_Scene)) {
+                    throw new IllegalArgumentException(cube3DClass + " does not use the idx3d engine");
+                }
+                slot.cubes.put(cube3DClass, cube3D);
+                slot.defaultAttributes.put(cube3DClass, cube3D.getAttributes());
+            }
+
+            // The renderer works on a copy of the cube, so that the cube of
+            // the caller does not hold a listener.
+            cube3D.setCube((Cube) cube.clone());
+            cube3D.setAttributes((attributes == null) ? slot.defaultAttributes.get(cube3DClass) : attributes);
+            try {
+                idx3d_Scene scene = (idx3d_Scene) cube3D.getScene();
+                idx3d_RenderPipeline pipeline = slot.pipeline;
+                if (pipeline == null) {
+                    pipeline = slot.pipeline = new idx3d_RenderPipeline(scene, width, height);
+                    pipeline.useIdBuffer(false);
+                } else {
+                    pipeline.setScene(scene);
+                    if (pipeline.getWidth() != width || pipeline.getHeight() != height) {
+                        pipeline.resize(width, height);
+                    }
+                }
+                pipeline.setAntialiasing(antialiasing);
+                idx3d_Camera cam = (camera == null) ? null : scene.camera(camera);
+                synchronized (cube3D.getLock()) {
+                    pipeline.render((cam == null) ? scene.getDefaultCamera() : cam);
+                }
+                output.accept(pipeline.getScreen());
+            } finally {
+                cube3D.setAttributes(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * @(#)DirectoryThumbnailOutput.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik;
+
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes each image into a PNG file of a directory. The name of the file
+ * is the name of the image followed by {@code .png}.
+ *
+ * @author Werner Randelshofer
+ */
+public class DirectoryThumbnailOutput implements ThumbnailOutput {
+    @Nonnull
+    private final Path directory;
+
+    public DirectoryThumbnailOutput(@Nonnull Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    @Override
+    public void write(@Nonnull String name, @Nonnull byte[] png, @Nullable int[] pixels, int width, int height) throws IOException {
+        Files.write(directory.resolve(name + ".png"), png);
+    }
+
+    @Override
+    public void close() {
+    }
+}
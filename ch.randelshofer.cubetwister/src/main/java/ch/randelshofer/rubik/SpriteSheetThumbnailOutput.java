@@ -0,0 +1,136 @@
+/*
+ * @(#)SpriteSheetThumbnailOutput.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik;
+
+import ch.randelshofer.io.PNGWriter;
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Packs the images into sprite sheets.
+ * <p>
+ * Each sheet is a PNG file with a grid of {@code columns} × {@code rows}
+ * images, named {@code prefix-0000.png}, {@code prefix-0001.png}, and so on.
+ * The last sheet only holds as many rows as needed. The tab separated index
+ * file {@code prefix.tsv} holds a line for each image with its name, the
+ * name of its sheet, and its x, y, width and height in the sheet.
+ * <p>
+ * All images must have the same size.
+ *
+ * @author Werner Randelshofer
+ */
+public class SpriteSheetThumbnailOutput implements ThumbnailOutput {
+    @Nonnull
+    private final Path directory;
+    @Nonnull
+    private final String prefix;
+    private final int columns;
+    private final int rows;
+    @Nonnull
+    private final Writer index;
+    private int tileWidth = -1;
+    private int tileHeight = -1;
+    /**
+     * The pixels of the current sheet, null until the first image is
+     * written.
+     */
+    @Nullable
+    private int[] sheet;
+    private int sheetCount;
+    private int tileCount;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param directory the directory of the sheets and of the index file
+     * @param prefix    the prefix of the file names
+     * @param columns   the number of images in a row of a sheet
+     * @param rows      the maximal number of rows of a sheet
+     * @throws IOException if the index file can not be created
+     */
+    public SpriteSheetThumbnailOutput(@Nonnull Path directory, @Nonnull String prefix, int columns, int rows) throws IOException {
+        if (columns < 1 || rows < 1) {
+            throw new IllegalArgumentException("columns=" + columns + ", rows=" + rows);
+        }
+        this.directory = directory;
+        this.prefix = prefix;
+        this.columns = columns;
+        this.rows = rows;
+        Files.createDirectories(directory);
+        index = Files.newBufferedWriter(directory.resolve(prefix + ".tsv"), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void write(@Nonnull String name, @Nonnull byte[] png, @Nullable int[] pixels, int width, int height) throws IOException {
+        if (tileWidth == -1) {
+            tileWidth = width;
+            tileHeight = height;
+        } else if (width != tileWidth || height != tileHeight) {
+            throw new IOException("Image " + name + " has size " + width + "x" + height
+                    + ", expected " + tileWidth + "x" + tileHeight);
+        }
+        if (pixels == null) {
+            BufferedImage img = ImageIO.read(new ByteArrayInputStream(png));
+            if (img == null) {
+                throw new IOException("Image " + name + " can not be decoded");
+            }
+            pixels = img.getRGB(0, 0, width, height, null, 0, width);
+        }
+        if (sheet == null) {
+            sheet = new int[columns * tileWidth * rows * tileHeight];
+        }
+
+        int sheetWidth = columns * tileWidth;
+        int x = (tileCount % columns) * tileWidth;
+        int y = (tileCount / columns) * tileHeight;
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(pixels, row * width, sheet, (y + row) * sheetWidth + x, width);
+        }
+        index.write(name + '\t' + getSheetName(sheetCount) + '\t' + x + '\t' + y + '\t' + width + '\t' + height + '\n');
+
+        if (++tileCount == columns * rows) {
+            flushSheet();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushSheet();
+        } finally {
+            index.close();
+        }
+    }
+
+    private void flushSheet() throws IOException {
+        if (sheet == null || tileCount == 0) {
+            return;
+        }
+        int sheetWidth = columns * tileWidth;
+        int usedRows = (tileCount + columns - 1) / columns;
+        try (OutputStream out = Files.newOutputStream(directory.resolve(getSheetName(sheetCount)))) {
+            new PNGWriter().write(out, sheet, 0, sheetWidth, sheetWidth, usedRows * tileHeight);
+        }
+        Arrays.fill(sheet, 0);
+        sheetCount++;
+        tileCount = 0;
+    }
+
+    @Nonnull
+    private String getSheetName(int sheetIndex) {
+        return String.format("%s-%04d.png", prefix, sheetIndex);
+    }
+}
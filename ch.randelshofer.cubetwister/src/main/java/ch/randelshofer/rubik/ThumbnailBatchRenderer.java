@@ -0,0 +1,389 @@
+/*
+ * @(#)ThumbnailBatchRenderer.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik;
+
+import ch.randelshofer.io.PNGWriter;
+import ch.randelshofer.rubik.cube.Cube;
+import ch.randelshofer.rubik.cube3d.Cube3D;
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.image.PixelGrabber;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Renders still images of many cubes in parallel, for example thumbnails of
+ * all scripts of a document, or of all patterns of a pattern database.
+ * <p>
+ * The cubes are added with {@link #add}, and are rendered with
+ * {@link #render} by the pipelines of a {@link Cube3DOffscreenRenderer}.
+ * The images are written to a {@link ThumbnailOutput} in the order in
+ * which they were added.
+ * <p>
+ * Each image has a content hash, which covers the class of the geometry,
+ * the state of the cube, its attributes, the camera, the size of the image
+ * and the antialiasing strategy. Images with the same hash are only
+ * rendered once in a batch, and are taken from a {@link ThumbnailCache} if
+ * one is set.
+ *
+ * @author Werner Randelshofer
+ */
+public class ThumbnailBatchRenderer {
+    /**
+     * The version of the content hash. Must be incremented when the
+     * renderer produces different images for the same input.
+     */
+    private final static int VERSION = 1;
+    /**
+     * The number of recently rendered images, which are held in memory
+     * for images with the same hash.
+     */
+    private final static int RECENT_CAPACITY = 256;
+
+    @Nonnull
+    private final Cube3DOffscreenRenderer renderer;
+    private final int width;
+    private final int height;
+    @Nullable
+    private String camera;
+    @Nullable
+    private ThumbnailCache cache;
+    @Nonnull
+    private final List<Job> jobs = new ArrayList<>();
+    /**
+     * The digests of the attributes of the jobs.
+     */
+    @Nonnull
+    private final Map<CubeAttributes, byte[]> attributeDigests = new IdentityHashMap<>();
+
+    /**
+     * An image which has been added.
+     */
+    private static class Job {
+        @Nonnull
+        final String name;
+        @Nonnull
+        final Class<? extends Cube3D> cube3DClass;
+        @Nonnull
+        final Cube cube;
+        @Nullable
+        final CubeAttributes attributes;
+        @Nullable
+        final String camera;
+        @Nonnull
+        final String key;
+
+        Job(@Nonnull String name, @Nonnull Class<? extends Cube3D> cube3DClass, @Nonnull Cube cube,
+            @Nullable CubeAttributes attributes, @Nullable String camera, @Nonnull String key) {
+            this.name = name;
+            this.cube3DClass = cube3DClass;
+            this.cube = cube;
+            this.attributes = attributes;
+            this.camera = camera;
+            this.key = key;
+        }
+    }
+
+    /**
+     * A rendered image.
+     */
+    private static class Result {
+        @Nonnull
+        final byte[] png;
+        @Nullable
+        final int[] pixels;
+
+        Result(@Nonnull byte[] png, @Nullable int[] pixels) {
+            this.png = png;
+            this.pixels = pixels;
+        }
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param renderer the renderer, its pool size determines the number of
+     *                 images which are rendered in parallel
+     * @param width    the width of the images
+     * @param height   the height of the images
+     */
+    public ThumbnailBatchRenderer(@Nonnull Cube3DOffscreenRenderer renderer, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width=" + width + ", height=" + height);
+        }
+        this.renderer = renderer;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Sets the name of the camera for subsequently added images, null
+     * selects the default camera of the scene.
+     */
+    public void setCamera(@Nullable String camera) {
+        this.camera = camera;
+    }
+
+    @Nullable
+    public String getCamera() {
+        return camera;
+    }
+
+    /**
+     * Sets the cache, null renders every image.
+     */
+    public void setCache(@Nullable ThumbnailCache cache) {
+        this.cache = cache;
+    }
+
+    @Nullable
+    public ThumbnailCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the number of images which have been added and not yet
+     * rendered.
+     */
+    public int size() {
+        return jobs.size();
+    }
+
+    /**
+     * Adds an image.
+     * <p>
+     * The state of the cube is copied. The attributes must not be changed
+     * until the batch has been rendered.
+     *
+     * @param name        the name of the image
+     * @param cube3DClass the class of the geometry
+     * @param cube        the state of the cube
+     * @param attributes  the attributes of the cube, or null for the default
+     *                    attributes of the class
+     * @return the content hash of the image
+     */
+    @Nonnull
+    public String add(@Nonnull String name, @Nonnull Class<? extends Cube3D> cube3DClass,
+                      @Nonnull Cube cube, @Nullable CubeAttributes attributes) {
+        Cube copy = (Cube) cube.clone();
+        String key = getKey(cube3DClass, copy, attributes);
+        jobs.add(new Job(name, cube3DClass, copy, attributes, camera, key));
+        return key;
+    }
+
+    /**
+     * Renders all added images, and writes them to the output. The added
+     * images are removed, even if rendering fails. The output is not closed.
+     *
+     * @param out the output
+     * @return the number of images which have been rendered, the others
+     * were taken from the cache or were duplicates
+     * @throws IOException if rendering or writing fails
+     */
+    public int render(@Nonnull ThumbnailOutput out) throws IOException {
+        List<Job> batch = new ArrayList<>(jobs);
+        jobs.clear();
+        attributeDigests.clear();
+
+        int poolSize = renderer.getPoolSize();
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        int[] renderedCount = new int[1];
+        // Access-ordered, so that a frequent image, such as the solved
+        // cube, stays in memory.
+        Map<String, Future<Result>> recent = new LinkedHashMap<String, Future<Result>>(16, 0.75f, true) {
+            private final static long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Future<Result>> eldest) {
+                return size() > RECENT_CAPACITY;
+            }
+        };
+        Deque<Future<Result>> window = new ArrayDeque<>();
+        try {
+            // Keep a bounded number of images in flight, so that the
+            // memory does not grow with the size of the batch.
+            int submitted = 0;
+            for (Job job : batch) {
+                while (window.size() >= poolSize * 4) {
+                    write(out, batch.get(submitted - window.size()), window.removeFirst());
+                }
+                Future<Result> future = recent.get(job.key);
+                if (future == null) {
+                    future = executor.submit(createTask(job, renderedCount));
+                    recent.put(job.key, future);
+                }
+                window.addLast(future);
+                submitted++;
+            }
+            while (!window.isEmpty()) {
+                write(out, batch.get(submitted - window.size()), window.removeFirst());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        synchronized (renderedCount) {
+            return renderedCount[0];
+        }
+    }
+
+    @Nonnull
+    private Callable<Result> createTask(@Nonnull Job job, @Nonnull int[] renderedCount) {
+        return () -> {
+            ThumbnailCache c = cache;
+            byte[] png = (c == null) ? null : c.get(job.key);
+            if (png != null) {
+                return new Result(png, null);
+            }
+            int[] pixels = new int[width * height];
+            renderer.render(job.cube3DClass, job.cube, job.attributes, job.camera, width, height, pixels, 0, width);
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            new PNGWriter().write(buf, pixels, 0, width, width, height);
+            png = buf.toByteArray();
+            if (c != null) {
+                c.put(job.key, png);
+            }
+            synchronized (renderedCount) {
+                renderedCount[0]++;
+            }
+            return new Result(png, pixels);
+        };
+    }
+
+    private void write(@Nonnull ThumbnailOutput out, @Nonnull Job job, @Nonnull Future<Result> future) throws IOException {
+        Result result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while rendering " + job.name);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Couldn't render " + job.name, cause);
+        }
+        out.write(job.name, result.png, result.pixels, width, height);
+    }
+
+    /**
+     * Computes the content hash of an image.
+     */
+    @Nonnull
+    private String getKey(@Nonnull Class<? extends Cube3D> cube3DClass, @Nonnull Cube cube,
+                          @Nullable CubeAttributes attributes) {
+        MessageDigest md = newMessageDigest();
+        update(md, "v" + VERSION);
+        update(md, cube3DClass.getName());
+        update(md, width + "x" + height + " " + renderer.getAntialiasing() + " " + camera);
+        md.update(attributes == null ? new byte[0] : attributeDigests.computeIfAbsent(attributes, ThumbnailBatchRenderer::getDigest));
+        StringBuilder state = new StringBuilder();
+        for (int i = 0, n = cube.getPartCount(); i < n; i++) {
+            int part = cube.getPartAt(i);
+            state.append(part).append(':').append(cube.getPartOrientation(part)).append(',');
+        }
+        update(md, state.toString());
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /**
+     * Computes a digest of all attributes which affect the image.
+     */
+    @Nonnull
+    private static byte[] getDigest(@Nonnull CubeAttributes a) {
+        MessageDigest md = newMessageDigest();
+        update(md, a.getAlpha() + " " + a.getBeta() + " " + a.getExplosionFactor() + " " + a.getScaleFactor());
+        for (int i = 0, n = a.getPartCount(); i < n; i++) {
+            update(md, a.isPartVisible(i) + " " + a.getPartExplosion(i)
+                    + " " + rgb(a.getPartFillColor(i)) + " " + rgb(a.getPartOutlineColor(i)));
+        }
+        for (int i = 0, n = a.getStickerCount(); i < n; i++) {
+            update(md, a.isStickerVisible(i) + " " + a.getStickerExplosion(i)
+                    + " " + rgb(a.getStickerFillColor(i)) + " " + rgb(a.getStickerOutlineColor(i)));
+        }
+        update(md, rgb(a.getFrontBgColor()) + " " + rgb(a.getRearBgColor()));
+        update(md, "stickers " + a.isStickersImageVisible());
+        if (a.isStickersImageVisible()) {
+            update(md, a.getStickersImage());
+        }
+        update(md, "front " + a.isFrontBgImageVisible());
+        if (a.isFrontBgImageVisible()) {
+            update(md, a.getFrontBgImage());
+        }
+        update(md, "rear " + a.isRearBgImageVisible());
+        if (a.isRearBgImageVisible()) {
+            update(md, a.getRearBgImage());
+        }
+        return md.digest();
+    }
+
+    @Nonnull
+    private static String rgb(@Nullable Color c) {
+        return (c == null) ? "null" : Integer.toHexString(c.getRGB());
+    }
+
+    /**
+     * Updates the message digest with the pixels of an image.
+     */
+    private static void update(@Nonnull MessageDigest md, @Nullable Image image) {
+        if (image == null) {
+            update(md, "null");
+            return;
+        }
+        PixelGrabber grabber = new PixelGrabber(image, 0, 0, -1, -1, true);
+        try {
+            if (!grabber.grabPixels()) {
+                throw new IllegalArgumentException("Couldn't grab pixels of " + image);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while grabbing pixels of " + image, e);
+        }
+        update(md, grabber.getWidth() + "x" + grabber.getHeight());
+        for (int argb : (int[]) grabber.getPixels()) {
+            md.update((byte) (argb >>> 24));
+            md.update((byte) (argb >>> 16));
+            md.update((byte) (argb >>> 8));
+            md.update((byte) argb);
+        }
+    }
+
+    @Nonnull
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalError("SHA-256 is not supported", e);
+        }
+    }
+
+    /**
+     * Updates the message digest with a string, followed by a separator.
+     */
+    private static void update(@Nonnull MessageDigest md, @Nonnull String value) {
+        md.update(value.getBytes(StandardCharsets.UTF_8));
+        md.update((byte) 0);
+    }
+}
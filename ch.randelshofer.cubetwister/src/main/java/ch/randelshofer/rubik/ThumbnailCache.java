@@ -0,0 +1,93 @@
+/*
+ * @(#)ThumbnailCache.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik;
+
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A cache on disk for the images rendered by a {@link ThumbnailBatchRenderer}.
+ * <p>
+ * Each entry is a PNG file, whose name is the content hash computed by the
+ * renderer. The hash covers everything which affects the image, so an
+ * entry never needs to be invalidated. Entries are not evicted; the
+ * directory can be deleted to clear the cache.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Werner Randelshofer
+ */
+public class ThumbnailCache {
+    @Nonnull
+    private final static String EXTENSION = ".png";
+    @Nonnull
+    private final Path directory;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param directory the directory which holds the entries. The directory
+     *                  is created when the first entry is written.
+     */
+    public ThumbnailCache(@Nonnull Path directory) {
+        this.directory = directory;
+    }
+
+    @Nonnull
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the PNG image of the specified entry.
+     *
+     * @param key the key of the entry
+     * @return the image, or null if the cache does not hold the entry
+     */
+    @Nullable
+    public byte[] get(@Nonnull String key) {
+        try {
+            return Files.readAllBytes(directory.resolve(key + EXTENSION));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the PNG image of the specified entry. Errors are ignored,
+     * because the image can always be rendered again.
+     *
+     * @param key the key of the entry
+     * @param png the image
+     */
+    public void put(@Nonnull String key, @Nonnull byte[] png) {
+        Path tmp = null;
+        try {
+            Files.createDirectories(directory);
+            tmp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(tmp, png);
+            Files.move(tmp, directory.resolve(key + EXTENSION),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch (IOException | UnsupportedOperationException e) {
+            // The image will be rendered again.
+        } finally {
+            if (tmp != null) {
+                tmp.toFile().delete();
+            }
+        }
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return "ThumbnailCache{" + directory + '}';
+    }
+}
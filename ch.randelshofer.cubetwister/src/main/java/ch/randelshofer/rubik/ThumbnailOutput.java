@@ -0,0 +1,34 @@
+/*
+ * @(#)ThumbnailOutput.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik;
+
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives the images which are rendered by a {@link ThumbnailBatchRenderer}.
+ * <p>
+ * The images are written in the order in which they were added to the
+ * renderer, from a single thread.
+ *
+ * @author Werner Randelshofer
+ */
+public interface ThumbnailOutput extends Closeable {
+    /**
+     * Writes an image.
+     *
+     * @param name   the name of the image
+     * @param png    the image encoded as PNG
+     * @param pixels the pixels of the image as opaque ARGB values, or null
+     *               if the image was taken from the cache
+     * @param width  the width of the image
+     * @param height the height of the image
+     * @throws IOException if writing fails
+     */
+    void write(@Nonnull String name, @Nonnull byte[] png, @Nullable int[] pixels, int width, int height) throws IOException;
+}
@@ -0,0 +1,57 @@
+/*
+ * @(#)ZipThumbnailOutput.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik;
+
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes each image as a PNG entry into a ZIP file. The name of the entry
+ * is the name of the image followed by {@code .png}.
+ * <p>
+ * The entries are stored without compression, because PNG images are
+ * already compressed.
+ *
+ * @author Werner Randelshofer
+ */
+public class ZipThumbnailOutput implements ThumbnailOutput {
+    @Nonnull
+    private final ZipOutputStream out;
+    @Nonnull
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param out the output stream, is closed by {@link #close()}
+     */
+    public ZipThumbnailOutput(@Nonnull OutputStream out) {
+        this.out = new ZipOutputStream(out);
+    }
+
+    @Override
+    public void write(@Nonnull String name, @Nonnull byte[] png, @Nullable int[] pixels, int width, int height) throws IOException {
+        ZipEntry entry = new ZipEntry(name + ".png");
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(png.length);
+        crc.reset();
+        crc.update(png);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(png);
+        out.closeEntry();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
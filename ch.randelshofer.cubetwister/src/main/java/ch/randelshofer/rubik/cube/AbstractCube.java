@@ -1315,35 +1315,12 @@ public abstract class AbstractCube implements Cube, Cloneable {
 
                 if (tmask == 0) {
                     transformType = TransformType.UNKNOWN;
-                    int[] tempLoc;
-                    int[] tempOrient;
-
-                    tempLoc = cornerLoc.clone();
-                    tempOrient = cornerOrient.clone();
-                    int[] txLoc = tx.getCornerLocations();
-                    int[] txOrient = tx.getCornerOrientations();
-                    for (int i = 0; i < txLoc.length; i++) {
-                        cornerLoc[i] = tempLoc[txLoc[i]];
-                        cornerOrient[i] = (tempOrient[txLoc[i]] + txOrient[i]) % 3;
-                    }
-
-                    tempLoc = edgeLoc.clone();
-                    tempOrient = edgeOrient.clone();
-                    txLoc = tx.getEdgeLocations();
-                    txOrient = tx.getEdgeOrientations();
-                    for (int i = 0; i < txLoc.length; i++) {
-                        edgeLoc[i] = tempLoc[txLoc[i]];
-                        edgeOrient[i] = (tempOrient[txLoc[i]] + txOrient[i]) % 2;
-                    }
-
-                    tempLoc = sideLoc.clone();
-                    tempOrient = sideOrient.clone();
-                    txLoc = tx.getSideLocations();
-                    txOrient = tx.getSideOrientations();
-                    for (int i = 0; i < txLoc.length; i++) {
-                        sideLoc[i] = tempLoc[txLoc[i]];
-                        sideOrient[i] = (tempOrient[txLoc[i]] + txOrient[i]) % 4;
-                    }
+                    CubePermutation.compose(cornerLoc.clone(), cornerOrient.clone(),
+                            tx.getCornerLocations(), tx.getCornerOrientations(), cornerLoc, cornerOrient, 3);
+                    CubePermutation.compose(edgeLoc.clone(), edgeOrient.clone(),
+                            tx.getEdgeLocations(), tx.getEdgeOrientations(), edgeLoc, edgeOrient, 2);
+                    CubePermutation.compose(sideLoc.clone(), sideOrient.clone(),
+                            tx.getSideLocations(), tx.getSideOrientations(), sideLoc, sideOrient, 4);
                 }
             }
         }
@@ -1354,6 +1331,31 @@ public abstract class AbstractCube implements Cube, Cloneable {
         }
     }
 
+    /**
+     * Applies the specified permutation to this cube in a single pass and
+     * fires a cubeChanged event.
+     *
+     * @param tx The permutation to be applied to this cube object.
+     * @throws IllegalArgumentException if the permutation has not the same
+     *                                  layer count like this cube.
+     */
+    @Override
+    public void transform(@Nonnull CubePermutation tx) {
+        if (tx.getLayerCount() != this.getLayerCount()) {
+            throw new IllegalArgumentException("tx.layers=" + tx.getLayerCount() + " must match this.layers=" + this.getLayerCount());
+        }
+        synchronized (this) {
+            transformType = TransformType.UNKNOWN;
+            CubePermutation.compose(cornerLoc.clone(), cornerOrient.clone(),
+                    tx.cornerLoc, tx.cornerOrient, cornerLoc, cornerOrient, 3);
+            CubePermutation.compose(edgeLoc.clone(), edgeOrient.clone(),
+                    tx.edgeLoc, tx.edgeOrient, edgeLoc, edgeOrient, 2);
+            CubePermutation.compose(sideLoc.clone(), sideOrient.clone(),
+                    tx.sideLoc, tx.sideOrient, sideLoc, sideOrient, 4);
+        }
+        fireCubeChanged(new CubeEvent(this, 0, 0, 0));
+    }
+
     /**
      * Performs a two cycle permutation and orientation change.
      */
@@ -0,0 +1,428 @@
+/*
+ * @(#)BatchCube.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.cube;
+
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import java.util.Optional;
+
+/**
+ * Simulates a batch of cubes with the same layer count in lockstep.
+ * <p>
+ * The state of the cubes is stored in a structure of arrays: the corner
+ * locations of all cubes are stored in one contiguous primitive array, the
+ * corner orientations in another one, and so on. The parts of cube
+ * {@code c} are stored at the indices {@code c * partCount} through
+ * {@code (c + 1) * partCount - 1} of the respective array. The values have
+ * the same meaning as in {@link AbstractCube}.
+ * <p>
+ * Each cube of the batch can receive a different move. The permutations
+ * of all moves are precomputed once per layer count and shared by all
+ * batches.
+ * <p>
+ * If the vector kernel has been compiled, and the
+ * {@code jdk.incubator.vector} module is present in the boot layer, a move
+ * is applied to the parts of a cube with vector shuffles. Otherwise, or if
+ * the parts of a kind do not fit into a single vector, the move is applied
+ * with a scalar loop. To enable the vector API, build with the
+ * {@code vector} profile, and start the virtual machine with
+ * {@code --add-modules jdk.incubator.vector}.
+ * <p>
+ * Unlike {@link AbstractCube}, this class does not fire events.
+ * This class is not thread safe.
+ *
+ * @author Werner Randelshofer
+ */
+public class BatchCube {
+    /**
+     * Holds the move tables for layer counts 2 through 7.
+     * The table of a layer count is indexed by {@link #getMoveIndex}.
+     */
+    private static final CubePermutation[][] moveTables = new CubePermutation[8][];
+    private static final String VECTOR_KERNEL_CLASS = "ch.randelshofer.rubik.cube.BatchCubeVectorKernel";
+    private static final boolean VECTOR_API_AVAILABLE = isVectorKernelPresent();
+
+    private final int layerCount;
+    private final int size;
+    private final int cornerCount;
+    private final int edgeCount;
+    private final int sideCount;
+    @Nonnull
+    final byte[] cornerLoc;
+    @Nonnull
+    final byte[] cornerOrient;
+    @Nonnull
+    final byte[] edgeLoc;
+    @Nonnull
+    final byte[] edgeOrient;
+    @Nonnull
+    final byte[] sideLoc;
+    @Nonnull
+    final byte[] sideOrient;
+    /**
+     * Scratch buffers for the scalar transform.
+     */
+    @Nonnull
+    final byte[] tmpLoc;
+    @Nonnull
+    final byte[] tmpOrient;
+    /**
+     * Whether this batch applies moves with the vector kernel.
+     */
+    private final boolean useVectors;
+    /**
+     * The vector kernel, created on the first move, or null if the vector
+     * API is not used.
+     */
+    @Nullable
+    private BatchCubeKernel vectorKernel;
+    /**
+     * The shared move table for the layer count of this batch.
+     */
+    @Nonnull
+    private final CubePermutation[] moves;
+
+    /**
+     * Creates a batch of solved cubes. Uses the vector API if it is
+     * available.
+     *
+     * @param layerCount the layer count of the cubes, a value in the range [2,7]
+     * @param size       the number of cubes in the batch
+     */
+    public BatchCube(int layerCount, int size) {
+        this(layerCount, size, VECTOR_API_AVAILABLE);
+    }
+
+    /**
+     * Creates a batch of solved cubes.
+     *
+     * @param layerCount the layer count of the cubes, a value in the range [2,7]
+     * @param size       the number of cubes in the batch
+     * @param useVectors whether the vector API shall be used, ignored if
+     *                   the vector API is not available
+     */
+    BatchCube(int layerCount, int size, boolean useVectors) {
+        if (layerCount < 2 || layerCount > 7) {
+            throw new IllegalArgumentException("Unsupported layer count " + layerCount);
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("size=" + size + " must be >= 0");
+        }
+        this.layerCount = layerCount;
+        this.size = size;
+        this.moves = getMoveTable(layerCount);
+        CubePermutation identity = CubePermutation.identity(layerCount);
+        cornerCount = identity.cornerLoc.length;
+        edgeCount = identity.edgeLoc.length;
+        sideCount = identity.sideLoc.length;
+        cornerLoc = new byte[size * cornerCount];
+        cornerOrient = new byte[size * cornerCount];
+        edgeLoc = new byte[size * edgeCount];
+        edgeOrient = new byte[size * edgeCount];
+        sideLoc = new byte[size * sideCount];
+        sideOrient = new byte[size * sideCount];
+        int maxCount = Math.max(cornerCount, Math.max(edgeCount, sideCount));
+        tmpLoc = new byte[maxCount];
+        tmpOrient = new byte[maxCount];
+        this.useVectors = useVectors && VECTOR_API_AVAILABLE;
+        for (int c = 0; c < size; c++) {
+            reset(c);
+        }
+    }
+
+    /**
+     * Returns true if the vector API is available.
+     */
+    public static boolean isVectorApiAvailable() {
+        return VECTOR_API_AVAILABLE;
+    }
+
+    private static boolean isVectorKernelPresent() {
+        Optional<Module> vectorModule = ModuleLayer.boot().findModule("jdk.incubator.vector");
+        if (vectorModule.isEmpty()
+                || BatchCube.class.getClassLoader().getResource(VECTOR_KERNEL_CLASS.replace('.', '/') + ".class") == null) {
+            return false;
+        }
+        // This module does not require the incubator module, because
+        // compiling against it always produces a warning.
+        BatchCube.class.getModule().addReads(vectorModule.get());
+        return true;
+    }
+
+    /**
+     * Creates the vector kernel.
+     */
+    @Nonnull
+    private BatchCubeKernel createVectorKernel() {
+        try {
+            return Class.forName(VECTOR_KERNEL_CLASS).asSubclass(BatchCubeKernel.class)
+                    .getDeclaredConstructor(BatchCube.class).newInstance(this);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can not create the vector kernel.", e);
+        }
+    }
+
+    /**
+     * Returns true if this batch applies moves with the vector API.
+     */
+    public boolean isUsingVectors() {
+        return useVectors;
+    }
+
+    public int getLayerCount() {
+        return layerCount;
+    }
+
+    /**
+     * Returns the number of cubes in the batch.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public int getCornerCount() {
+        return cornerCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public int getSideCount() {
+        return sideCount;
+    }
+
+    /**
+     * Resets all cubes to their solved state.
+     */
+    public final void reset() {
+        for (int c = 0; c < size; c++) {
+            reset(c);
+        }
+    }
+
+    /**
+     * Resets the specified cube to its solved state.
+     *
+     * @param cube the index of the cube in the batch
+     */
+    public final void reset(int cube) {
+        reset(cornerLoc, cornerOrient, cube * cornerCount, cornerCount);
+        reset(edgeLoc, edgeOrient, cube * edgeCount, edgeCount);
+        reset(sideLoc, sideOrient, cube * sideCount, sideCount);
+    }
+
+    private static void reset(@Nonnull byte[] loc, @Nonnull byte[] orient, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            loc[offset + i] = (byte) i;
+            orient[offset + i] = 0;
+        }
+    }
+
+    /**
+     * Returns true if the specified cube is in its solved state.
+     *
+     * @param cube the index of the cube in the batch
+     */
+    public boolean isSolved(int cube) {
+        return isSolved(cornerLoc, cornerOrient, cube * cornerCount, cornerCount)
+                && isSolved(edgeLoc, edgeOrient, cube * edgeCount, edgeCount)
+                && isSolved(sideLoc, sideOrient, cube * sideCount, sideCount);
+    }
+
+    private static boolean isSolved(@Nonnull byte[] loc, @Nonnull byte[] orient, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            if ((loc[offset + i] & 0xff) != i || orient[offset + i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies a move to the specified cube.
+     *
+     * @param cube      the index of the cube in the batch
+     * @param axis      0=x, 1=y, 2=z axis
+     * @param layerMask a bitmask specifying the layers to be transformed
+     * @param angle     positive values=clockwise rotation, negative
+     *                  values=counterclockwise rotation
+     * @see Cube#transform(int, int, int)
+     */
+    public void transform(int cube, int axis, int layerMask, int angle) {
+        int moveIndex = getMoveIndex(axis, layerMask, angle);
+        if (moveIndex != -1) {
+            transform(cube, getMove(moveIndex), moveIndex);
+        }
+    }
+
+    /**
+     * Applies one move to each cube of the batch.
+     * <p>
+     * Cube {@code c} receives the move {@code axes[c], layerMasks[c],
+     * angles[c]}. A move with layer mask 0 or angle 0 leaves the cube
+     * unchanged.
+     *
+     * @param axes       the axes of the moves
+     * @param layerMasks the layer masks of the moves
+     * @param angles     the angles of the moves
+     */
+    public void transform(@Nonnull int[] axes, @Nonnull int[] layerMasks, @Nonnull int[] angles) {
+        if (axes.length < size || layerMasks.length < size || angles.length < size) {
+            throw new IllegalArgumentException("arrays must have at least " + size + " elements");
+        }
+        for (int c = 0; c < size; c++) {
+            transform(c, axes[c], layerMasks[c], angles[c]);
+        }
+    }
+
+    /**
+     * Applies the specified permutation to the specified cube.
+     *
+     * @param cube the index of the cube in the batch
+     * @param tx   the permutation
+     * @throws IllegalArgumentException if the permutation has not the same
+     *                                  layer count like this batch.
+     */
+    public void transform(int cube, @Nonnull CubePermutation tx) {
+        if (tx.getLayerCount() != layerCount) {
+            throw new IllegalArgumentException("tx.layers=" + tx.getLayerCount() + " must match this.layers=" + layerCount);
+        }
+        transform(cube, tx, -1);
+    }
+
+    private void transform(int cube, @Nonnull CubePermutation tx, int moveIndex) {
+        if (cube < 0 || cube >= size) {
+            throw new IndexOutOfBoundsException("cube=" + cube + " must be in [0," + size + ")");
+        }
+        if (useVectors) {
+            if (vectorKernel == null) {
+                vectorKernel = createVectorKernel();
+            }
+            vectorKernel.transform(cube, tx, moveIndex);
+        } else {
+            compose(cornerLoc, cornerOrient, cube * cornerCount, tx.cornerLoc, tx.cornerOrient, 3, tmpLoc, tmpOrient);
+            compose(edgeLoc, edgeOrient, cube * edgeCount, tx.edgeLoc, tx.edgeOrient, 2, tmpLoc, tmpOrient);
+            compose(sideLoc, sideOrient, cube * sideCount, tx.sideLoc, tx.sideOrient, 4, tmpLoc, tmpOrient);
+        }
+    }
+
+    /**
+     * Composes the parts of a cube in the batch with a permutation.
+     *
+     * @param loc       the locations of the batch
+     * @param orient    the orientations of the batch
+     * @param offset    the offset of the cube in the arrays
+     * @param txLoc     the locations of the permutation
+     * @param txOrient  the orientations of the permutation
+     * @param modulo    the number of orientations of a part
+     * @param tmpLoc    a scratch buffer
+     * @param tmpOrient a scratch buffer
+     */
+    static void compose(@Nonnull byte[] loc, @Nonnull byte[] orient, int offset,
+                        @Nonnull int[] txLoc, @Nonnull int[] txOrient, int modulo,
+                        @Nonnull byte[] tmpLoc, @Nonnull byte[] tmpOrient) {
+        int count = txLoc.length;
+        System.arraycopy(loc, offset, tmpLoc, 0, count);
+        System.arraycopy(orient, offset, tmpOrient, 0, count);
+        for (int i = 0; i < count; i++) {
+            int j = txLoc[i];
+            loc[offset + i] = tmpLoc[j];
+            orient[offset + i] = (byte) ((tmpOrient[j] + txOrient[i]) % modulo);
+        }
+    }
+
+    /**
+     * Sets the specified cube to the state of the specified permutation.
+     *
+     * @param cube the index of the cube in the batch
+     * @param p    the permutation
+     * @throws IllegalArgumentException if the permutation has not the same
+     *                                  layer count like this batch.
+     */
+    public void setTo(int cube, @Nonnull CubePermutation p) {
+        reset(cube);
+        transform(cube, p);
+    }
+
+    /**
+     * Returns the state of the specified cube as a permutation.
+     * The permutation can be applied to a solved {@link Cube} with
+     * {@link Cube#transform(CubePermutation)}.
+     *
+     * @param cube the index of the cube in the batch
+     * @return the permutation
+     */
+    @Nonnull
+    public CubePermutation toPermutation(int cube) {
+        return new CubePermutation(layerCount,
+                toIntArray(cornerLoc, cube * cornerCount, cornerCount),
+                toIntArray(cornerOrient, cube * cornerCount, cornerCount),
+                toIntArray(edgeLoc, cube * edgeCount, edgeCount),
+                toIntArray(edgeOrient, cube * edgeCount, edgeCount),
+                toIntArray(sideLoc, cube * sideCount, sideCount),
+                toIntArray(sideOrient, cube * sideCount, sideCount));
+    }
+
+    @Nonnull
+    private static int[] toIntArray(@Nonnull byte[] a, int offset, int count) {
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = a[offset + i] & 0xff;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of a move in the move table of this batch, or -1
+     * if the move leaves the cube unchanged.
+     */
+    int getMoveIndex(int axis, int layerMask, int angle) {
+        if (axis < 0 || axis > 2) {
+            throw new IllegalArgumentException("axis=" + axis + " must be in [0,2]");
+        }
+        layerMask &= (1 << layerCount) - 1;
+        angle = ((angle % 4) + 4) % 4;
+        if (layerMask == 0 || angle == 0) {
+            return -1;
+        }
+        return (((axis << layerCount) | layerMask) << 2) | angle;
+    }
+
+    /**
+     * Returns the move table for the specified layer count.
+     */
+    @Nonnull
+    private static CubePermutation[] getMoveTable(int layerCount) {
+        synchronized (moveTables) {
+            CubePermutation[] table = moveTables[layerCount];
+            if (table == null) {
+                table = new CubePermutation[(3 << layerCount) << 2];
+                moveTables[layerCount] = table;
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Returns the move table entry with the specified index.
+     */
+    @Nonnull
+    CubePermutation getMove(int moveIndex) {
+        // The permutations are immutable, a race only computes an entry twice.
+        CubePermutation move = moves[moveIndex];
+        if (move == null) {
+            int angle = moveIndex & 3;
+            int layerMask = (moveIndex >>> 2) & ((1 << layerCount) - 1);
+            int axis = moveIndex >>> (2 + layerCount);
+            Cube cube = CubeFactory.create(layerCount);
+            cube.transform(axis, layerMask, angle == 3 ? -1 : angle);
+            move = new CubePermutation(cube);
+            moves[moveIndex] = move;
+        }
+        return move;
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * @(#)BatchCubeKernel.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.cube;
+
+import org.jhotdraw.annotation.Nonnull;
+
+/**
+ * Applies moves to the cubes of a {@link BatchCube}.
+ * <p>
+ * The vector kernel, which implements this interface, is in a separate
+ * source set. It is loaded by name, so that this module can be compiled
+ * and run without the {@code jdk.incubator.vector} module.
+ *
+ * @author Werner Randelshofer
+ */
+interface BatchCubeKernel {
+    /**
+     * Applies a permutation to a cube of the batch.
+     *
+     * @param cube      the index of the cube in the batch
+     * @param tx        the permutation
+     * @param moveIndex the index of the permutation in the move table,
+     *                  or -1 if the permutation is not in the move table
+     */
+    void transform(int cube, @Nonnull CubePermutation tx, int moveIndex);
+}
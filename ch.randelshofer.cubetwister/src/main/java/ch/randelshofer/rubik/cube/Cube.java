@@ -85,6 +85,17 @@ public interface Cube extends Cloneable {
      */
     void transform(Cube that);
 
+    /**
+     * Applies the specified permutation to this cube in a single pass and
+     * fires a cubeChanged event.
+     *
+     * @param tx The permutation to be applied to this cube object.
+     * @throws IllegalArgumentException if the permutation has not the same
+     *                                  layer count like this cube.
+     * @see CubePermutation
+     */
+    void transform(CubePermutation tx);
+
     /**
      * Compares the Cube with another Cube for equality.<p>
      * Two Cubes are equal, if they have the same number of layers, and if
@@ -2147,11 +2147,11 @@ public class Cube7 extends AbstractCube {
 
     @Nonnull
     public int[][] toStickers() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return StickerCubes.toStickers(this);
     }
 
     public void setToStickers(int[][] stickers) {
-        throw new UnsupportedOperationException("Not supported yet.");
+        StickerCubes.setToStickers(this, stickers);
     }
 
     public int getPartSwipeAxis(int part, int orientation, int swipeDirection) {
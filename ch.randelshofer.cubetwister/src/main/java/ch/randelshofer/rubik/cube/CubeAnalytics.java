@@ -0,0 +1,329 @@
+/*
+ * @(#)CubeAnalytics.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.cube;
+
+import ch.randelshofer.io.ParseException;
+import ch.randelshofer.rubik.notation.ScriptNotation;
+import ch.randelshofer.rubik.parser.MoveMetrics;
+import ch.randelshofer.rubik.parser.ScriptParser;
+import ch.randelshofer.rubik.parser.ast.Node;
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Computes order, visible order, permutation string and move metrics for
+ * a large number of scripts in parallel.
+ * <p>
+ * Each script is applied to a solved cube. The cube is not created anew
+ * for each script: every worker thread keeps its own cube and its own
+ * {@link ScriptParser}, and resets the cube before it applies the next
+ * script.
+ * <p>
+ * The results are stored in columnar arrays. Element {@code i} of each
+ * array holds the value computed for the {@code i}-th element of the input
+ * stream.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * CubeAnalytics analytics = new CubeAnalytics(new DefaultScriptNotation(3));
+ * CubeAnalytics.Result r = analytics.analyzeScripts(Files.lines(path));
+ * for (int i = 0; i < r.size(); i++) {
+ *     System.out.println(r.getOrder(i) + " " + r.getPermutation(i));
+ * }
+ * }</pre>
+ * <p>
+ * This class is thread-safe, provided that the notation is not changed
+ * while an analysis is running.
+ *
+ * @author Werner Randelshofer
+ */
+public class CubeAnalytics {
+    @Nonnull
+    private final ScriptNotation notation;
+    private final int layerCount;
+    /**
+     * True if subsequent moves over the same axis are coalesced when
+     * computing the move metrics.
+     */
+    private final boolean coalesce;
+    /**
+     * Each thread gets its own cube.
+     */
+    @Nonnull
+    private final ThreadLocal<Cube> cubes;
+    /**
+     * Each thread gets its own parser.
+     */
+    @Nonnull
+    private final ThreadLocal<ScriptParser> parsers;
+    /**
+     * Each thread gets its own permutation string writer.
+     */
+    @Nonnull
+    private final ThreadLocal<PermutationStringWriter> writers;
+
+    /**
+     * Creates a new instance which does not coalesce moves when it
+     * computes the move metrics.
+     *
+     * @param notation the notation that is used for parsing scripts and for
+     *                 writing permutation strings
+     */
+    public CubeAnalytics(@Nonnull ScriptNotation notation) {
+        this(notation, false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param notation the notation that is used for parsing scripts and for
+     *                 writing permutation strings
+     * @param coalesce whether subsequent moves over the same axis are
+     *                 coalesced when computing the move metrics
+     */
+    public CubeAnalytics(@Nonnull ScriptNotation notation, boolean coalesce) {
+        this.notation = notation;
+        this.layerCount = notation.getLayerCount();
+        this.coalesce = coalesce;
+        this.cubes = ThreadLocal.withInitial(() -> {
+            Cube cube = CubeFactory.create(layerCount);
+            cube.setQuiet(true);
+            return cube;
+        });
+        this.parsers = ThreadLocal.withInitial(() -> new ScriptParser(notation));
+        this.writers = ThreadLocal.withInitial(() -> new PermutationStringWriter(notation));
+    }
+
+    @Nonnull
+    public ScriptNotation getNotation() {
+        return notation;
+    }
+
+    /**
+     * Parses the scripts in the stream and analyzes them in parallel.
+     * <p>
+     * If a script can not be parsed, the parse exception is stored in the
+     * result, and all other values of the script are set to 0 or null.
+     *
+     * @param scripts a stream of scripts
+     * @return the result
+     */
+    @Nonnull
+    public Result analyzeScripts(@Nonnull Stream<String> scripts) {
+        List<String> list = scripts.collect(Collectors.toList());
+        Result result = new Result(list.size());
+        IntStream.range(0, list.size()).parallel().forEach(i -> {
+            Node node;
+            try {
+                node = parsers.get().parse(list.get(i));
+            } catch (ParseException e) {
+                result.errors[i] = e;
+                return;
+            }
+            analyze(node, i, result);
+        });
+        return result;
+    }
+
+    /**
+     * Analyzes the parsed scripts in the stream in parallel.
+     * <p>
+     * The nodes must not be modified while the analysis is running.
+     *
+     * @param nodes a stream of parsed scripts
+     * @return the result
+     */
+    @Nonnull
+    public Result analyzeNodes(@Nonnull Stream<Node> nodes) {
+        List<Node> list = nodes.collect(Collectors.toList());
+        Result result = new Result(list.size());
+        IntStream.range(0, list.size()).parallel().forEach(i -> analyze(list.get(i), i, result));
+        return result;
+    }
+
+    private void analyze(@Nonnull Node node, int i, @Nonnull Result result) {
+        Cube cube = cubes.get();
+        cube.reset();
+        node.applyTo(cube, false);
+
+        MoveMetrics metrics = new MoveMetrics(coalesce);
+        metrics.accept(node);
+
+        result.order[i] = Cubes.getOrder(cube);
+        result.visibleOrder[i] = Cubes.getVisibleOrder(cube);
+        result.permutation[i] = writers.get().toPermutationString(cube);
+        result.btm[i] = metrics.getBlockTurnCount();
+        result.ltm[i] = metrics.getLayerTurnCount();
+        result.ftm[i] = metrics.getFaceTurnCount();
+        result.qtm[i] = metrics.getQuarterTurnCount();
+        result.moveCount[i] = metrics.getMoveCount();
+    }
+
+    /**
+     * Holds the results of an analysis in columnar arrays.
+     */
+    public static class Result {
+        private final int[] order;
+        private final int[] visibleOrder;
+        @Nonnull
+        private final String[] permutation;
+        private final int[] btm;
+        private final int[] ltm;
+        private final int[] ftm;
+        private final int[] qtm;
+        private final int[] moveCount;
+        @Nonnull
+        private final ParseException[] errors;
+
+        private Result(int size) {
+            order = new int[size];
+            visibleOrder = new int[size];
+            permutation = new String[size];
+            btm = new int[size];
+            ltm = new int[size];
+            ftm = new int[size];
+            qtm = new int[size];
+            moveCount = new int[size];
+            errors = new ParseException[size];
+        }
+
+        /**
+         * Returns the number of analyzed scripts.
+         */
+        public int size() {
+            return order.length;
+        }
+
+        /**
+         * Returns the order of the permutation of each script.
+         * This array must be treated as read only.
+         *
+         * @see Cubes#getOrder(Cube)
+         */
+        public int[] getOrders() {
+            return order;
+        }
+
+        public int getOrder(int i) {
+            return order[i];
+        }
+
+        /**
+         * Returns the visible order of the permutation of each script.
+         * This array must be treated as read only.
+         *
+         * @see Cubes#getVisibleOrder(Cube)
+         */
+        public int[] getVisibleOrders() {
+            return visibleOrder;
+        }
+
+        public int getVisibleOrder(int i) {
+            return visibleOrder[i];
+        }
+
+        /**
+         * Returns the permutation string of each script.
+         * This array must be treated as read only.
+         *
+         * @see Cubes#toPermutationString(Cube, ScriptNotation)
+         */
+        @Nonnull
+        public String[] getPermutations() {
+            return permutation;
+        }
+
+        @Nullable
+        public String getPermutation(int i) {
+            return permutation[i];
+        }
+
+        /**
+         * Returns the block turn count of each script.
+         * This array must be treated as read only.
+         */
+        public int[] getBlockTurnCounts() {
+            return btm;
+        }
+
+        public int getBlockTurnCount(int i) {
+            return btm[i];
+        }
+
+        /**
+         * Returns the layer turn count of each script.
+         * This array must be treated as read only.
+         */
+        public int[] getLayerTurnCounts() {
+            return ltm;
+        }
+
+        public int getLayerTurnCount(int i) {
+            return ltm[i];
+        }
+
+        /**
+         * Returns the face turn count of each script.
+         * This array must be treated as read only.
+         */
+        public int[] getFaceTurnCounts() {
+            return ftm;
+        }
+
+        public int getFaceTurnCount(int i) {
+            return ftm[i];
+        }
+
+        /**
+         * Returns the quarter turn count of each script.
+         * This array must be treated as read only.
+         */
+        public int[] getQuarterTurnCounts() {
+            return qtm;
+        }
+
+        public int getQuarterTurnCount(int i) {
+            return qtm[i];
+        }
+
+        /**
+         * Returns the move count of each script.
+         * This array must be treated as read only.
+         */
+        public int[] getMoveCounts() {
+            return moveCount;
+        }
+
+        public int getMoveCount(int i) {
+            return moveCount[i];
+        }
+
+        /**
+         * Returns the parse exception of the specified script, or null
+         * if the script could be parsed.
+         */
+        @Nullable
+        public ParseException getError(int i) {
+            return errors[i];
+        }
+
+        /**
+         * Returns true if at least one script could not be parsed.
+         */
+        public boolean hasErrors() {
+            for (ParseException e : errors) {
+                if (e != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * @(#)CubePermutation.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.cube;
+
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * An immutable permutation of the parts of a cube.
+ * <p>
+ * A cube permutation holds the composite effect of a sequence of moves.
+ * It can be applied to a cube in a single pass with
+ * {@link Cube#transform(CubePermutation)}, regardless of the number of moves
+ * that it represents.
+ * <p>
+ * The locations and orientations are stored in the same way as in
+ * {@link AbstractCube}: they describe the state of a solved cube after the
+ * permutation has been applied to it.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * CubePermutation p = parser.parse("R U R' U'").compile(3).power(1000);
+ * cube.transform(p);
+ * }</pre>
+ *
+ * @author Werner Randelshofer
+ */
+public final class CubePermutation {
+    private final int layerCount;
+    @Nonnull
+    final int[] cornerLoc;
+    @Nonnull
+    final int[] cornerOrient;
+    @Nonnull
+    final int[] edgeLoc;
+    @Nonnull
+    final int[] edgeOrient;
+    @Nonnull
+    final int[] sideLoc;
+    @Nonnull
+    final int[] sideOrient;
+
+    /**
+     * Creates a permutation which holds the current state of the specified
+     * cube.
+     *
+     * @param cube a cube
+     */
+    public CubePermutation(@Nonnull Cube cube) {
+        this(cube.getLayerCount(),
+                cube.getCornerLocations(), cube.getCornerOrientations(),
+                cube.getEdgeLocations(), cube.getEdgeOrientations(),
+                cube.getSideLocations(), cube.getSideOrientations());
+    }
+
+    /**
+     * Creates a new instance. The arrays are not copied.
+     */
+    CubePermutation(int layerCount,
+                    @Nonnull int[] cornerLoc, @Nonnull int[] cornerOrient,
+                    @Nonnull int[] edgeLoc, @Nonnull int[] edgeOrient,
+                    @Nonnull int[] sideLoc, @Nonnull int[] sideOrient) {
+        this.layerCount = layerCount;
+        this.cornerLoc = cornerLoc;
+        this.cornerOrient = cornerOrient;
+        this.edgeLoc = edgeLoc;
+        this.edgeOrient = edgeOrient;
+        this.sideLoc = sideLoc;
+        this.sideOrient = sideOrient;
+    }
+
+    /**
+     * Returns the identity permutation for the specified layer count.
+     *
+     * @param layerCount the layer count
+     * @return the identity permutation
+     */
+    @Nonnull
+    public static CubePermutation identity(int layerCount) {
+        return new CubePermutation(CubeFactory.create(layerCount));
+    }
+
+    public int getLayerCount() {
+        return layerCount;
+    }
+
+    @Nonnull
+    public int[] getCornerLocations() {
+        return cornerLoc.clone();
+    }
+
+    @Nonnull
+    public int[] getCornerOrientations() {
+        return cornerOrient.clone();
+    }
+
+    @Nonnull
+    public int[] getEdgeLocations() {
+        return edgeLoc.clone();
+    }
+
+    @Nonnull
+    public int[] getEdgeOrientations() {
+        return edgeOrient.clone();
+    }
+
+    @Nonnull
+    public int[] getSideLocations() {
+        return sideLoc.clone();
+    }
+
+    @Nonnull
+    public int[] getSideOrientations() {
+        return sideOrient.clone();
+    }
+
+    /**
+     * Returns true if this is the identity permutation.
+     */
+    public boolean isIdentity() {
+        return isIdentity(cornerLoc, cornerOrient)
+                && isIdentity(edgeLoc, edgeOrient)
+                && isIdentity(sideLoc, sideOrient);
+    }
+
+    private static boolean isIdentity(@Nonnull int[] loc, @Nonnull int[] orient) {
+        for (int i = 0; i < loc.length; i++) {
+            if (loc[i] != i || orient[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the permutation which first applies this permutation and
+     * then the specified permutation.
+     *
+     * @param next the permutation that is applied after this one
+     * @return the composite permutation
+     * @throws IllegalArgumentException if the layer counts do not match
+     */
+    @Nonnull
+    public CubePermutation then(@Nonnull CubePermutation next) {
+        if (next.layerCount != layerCount) {
+            throw new IllegalArgumentException("next.layers=" + next.layerCount + " must match this.layers=" + layerCount);
+        }
+        int[] cl = new int[cornerLoc.length], co = new int[cornerLoc.length];
+        int[] el = new int[edgeLoc.length], eo = new int[edgeLoc.length];
+        int[] sl = new int[sideLoc.length], so = new int[sideLoc.length];
+        compose(cornerLoc, cornerOrient, next.cornerLoc, next.cornerOrient, cl, co, 3);
+        compose(edgeLoc, edgeOrient, next.edgeLoc, next.edgeOrient, el, eo, 2);
+        compose(sideLoc, sideOrient, next.sideLoc, next.sideOrient, sl, so, 4);
+        return new CubePermutation(layerCount, cl, co, el, eo, sl, so);
+    }
+
+    /**
+     * Composes the parts of a state with a permutation.
+     *
+     * @param loc       the locations of the state
+     * @param orient    the orientations of the state
+     * @param txLoc     the locations of the permutation
+     * @param txOrient  the orientations of the permutation
+     * @param outLoc    the locations of the result, must not be the same
+     *                  array as {@code loc}
+     * @param outOrient the orientations of the result, must not be the same
+     *                  array as {@code orient}
+     * @param modulo    the number of orientations of a part
+     */
+    static void compose(@Nonnull int[] loc, @Nonnull int[] orient,
+                        @Nonnull int[] txLoc, @Nonnull int[] txOrient,
+                        @Nonnull int[] outLoc, @Nonnull int[] outOrient, int modulo) {
+        for (int i = 0; i < txLoc.length; i++) {
+            outLoc[i] = loc[txLoc[i]];
+            outOrient[i] = (orient[txLoc[i]] + txOrient[i]) % modulo;
+        }
+    }
+
+    /**
+     * Returns the inverse of this permutation.
+     */
+    @Nonnull
+    public CubePermutation inverse() {
+        int[] cl = new int[cornerLoc.length], co = new int[cornerLoc.length];
+        int[] el = new int[edgeLoc.length], eo = new int[edgeLoc.length];
+        int[] sl = new int[sideLoc.length], so = new int[sideLoc.length];
+        invert(cornerLoc, cornerOrient, cl, co, 3);
+        invert(edgeLoc, edgeOrient, el, eo, 2);
+        invert(sideLoc, sideOrient, sl, so, 4);
+        return new CubePermutation(layerCount, cl, co, el, eo, sl, so);
+    }
+
+    private static void invert(@Nonnull int[] loc, @Nonnull int[] orient,
+                               @Nonnull int[] outLoc, @Nonnull int[] outOrient, int modulo) {
+        for (int i = 0; i < loc.length; i++) {
+            outLoc[loc[i]] = i;
+        }
+        for (int i = 0; i < loc.length; i++) {
+            outOrient[i] = (modulo - orient[outLoc[i]]) % modulo;
+        }
+    }
+
+    /**
+     * Returns this permutation applied {@code exponent} times.
+     * <p>
+     * Uses exponentiation by squaring, and thus needs at most
+     * 2 log<sub>2</sub>(exponent) compositions.
+     *
+     * @param exponent the number of times this permutation is applied.
+     *                 A negative value applies the inverse permutation.
+     * @return the resulting permutation
+     */
+    @Nonnull
+    public CubePermutation power(long exponent) {
+        CubePermutation base = this;
+        if (exponent < 0) {
+            base = inverse();
+            exponent = -exponent;
+        }
+        CubePermutation result = null;
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) {
+                result = result == null ? base : result.then(base);
+            }
+            exponent >>>= 1;
+            if (exponent > 0) {
+                base = base.then(base);
+            }
+        }
+        return result == null ? identity(layerCount) : result;
+    }
+
+    /**
+     * Applies this permutation to the specified cube.
+     *
+     * @param cube a cube
+     * @see Cube#transform(CubePermutation)
+     */
+    public void applyTo(@Nonnull Cube cube) {
+        cube.transform(this);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CubePermutation that = (CubePermutation) o;
+        return layerCount == that.layerCount
+                && Arrays.equals(cornerLoc, that.cornerLoc)
+                && Arrays.equals(cornerOrient, that.cornerOrient)
+                && Arrays.equals(edgeLoc, that.edgeLoc)
+                && Arrays.equals(edgeOrient, that.edgeOrient)
+                && Arrays.equals(sideLoc, that.sideLoc)
+                && Arrays.equals(sideOrient, that.sideOrient);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = layerCount;
+        result = 31 * result + Arrays.hashCode(cornerLoc);
+        result = 31 * result + Arrays.hashCode(cornerOrient);
+        result = 31 * result + Arrays.hashCode(edgeLoc);
+        result = 31 * result + Arrays.hashCode(edgeOrient);
+        result = 31 * result + Arrays.hashCode(sideLoc);
+        result = 31 * result + Arrays.hashCode(sideOrient);
+        return result;
+    }
+}
@@ -12,7 +12,6 @@ import ch.randelshofer.rubik.notation.Syntax;
 import org.jhotdraw.annotation.Nonnull;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -82,42 +81,15 @@ public class Cubes {
     }
 
     @Nonnull
-    private static String toVisualPermutationString(@Nonnull Cube cube,
-                                                    Syntax syntax,
+    private static String toVisualPermutationString(@Nonnull Cube cube, Syntax syntax,
                                                     String tR, String tU, String tF,
                                                     String tL, String tD, String tB,
                                                     String tPlus, String tPlusPlus, String tMinus,
                                                     String tBegin, String tEnd, String tDelimiter) {
-
-        StringBuilder buf = new StringBuilder();
-
-        String corners = toCornerPermutationString(cube, syntax,
-                tR, tU, tF, tL, tD, tB,
-                tPlus, tPlusPlus, tMinus,
-                tBegin, tEnd, tDelimiter);
-        String edges = toEdgePermutationString(cube, syntax,
-                tR, tU, tF, tL, tD, tB,
-                tPlus, tPlusPlus, tMinus,
-                tBegin, tEnd, tDelimiter);
-        String sides = toVisualSidePermutationString(cube, syntax,
+        return new PermutationStringWriter(syntax,
                 tR, tU, tF, tL, tD, tB,
                 tPlus, tPlusPlus, tMinus,
-                tBegin, tEnd, tDelimiter);
-
-        buf.append(corners);
-        if (buf.length() > 0 && edges.length() > 0) {
-            buf.append('\n');
-        }
-        buf.append(edges);
-        if (buf.length() > 0 && sides.length() > 0) {
-            buf.append('\n');
-        }
-        buf.append(sides);
-        if (buf.length() == 0) {
-            buf.append(tBegin);
-            buf.append(tEnd);
-        }
-        return buf.toString();
+                tBegin, tEnd, tDelimiter).toVisualPermutationString(cube);
     }
 
     /**
@@ -458,30 +430,56 @@ public class Cubes {
     @Nonnull
     public static String toNormalizedStickersString(@Nonnull Cube cube) {
         char[] faces = new char[]{'R', 'U', 'F', 'L', 'D', 'B'};
-        int[][] stickers = StickerCubes.rubiksCubeToStickers(((RubiksCube) cube));
+        int n = cube.getLayerCount();
+        int[] stickers = StickerMapper.getInstance(n).toStickers(cube);
 
         // This map is used to normalize the
         // possibly rotated cube.
-        int[] faceMap = new int[6];
-        for (int i = 0; i < 6; i++) {
-            faceMap[stickers[i][4]] = i;
-        }
+        int[] faceMap = getFaceMap(stickers, n);
 
         StringBuilder buf = new StringBuilder();
 
-        for (int i = 0; i < stickers.length; i++) {
+        for (int i = 0; i < 6; i++) {
             if (i != 0) {
                 buf.append('\n');
             }
-            buf.append(faces[faceMap[stickers[i][4]]]);
+            buf.append(faces[getFaceOfCenter(stickers, n, i, faceMap)]);
             buf.append(':');
-            for (int j = 0; j < stickers[i].length; j++) {
-                buf.append(faces[faceMap[stickers[i][j]]]);
+            for (int j = i * n * n, end = j + n * n; j < end; j++) {
+                buf.append(faces[faceMap[stickers[j]]]);
             }
         }
         return buf.toString();
     }
 
+    /**
+     * Returns a map from the faces of the stickers to the faces on which
+     * they are located. The map is determined by the center stickers.
+     * If the cube has an even layer count, the map is the identity map.
+     */
+    @Nonnull
+    private static int[] getFaceMap(@Nonnull int[] stickers, int n) {
+        int[] faceMap = {0, 1, 2, 3, 4, 5};
+        if (n % 2 == 1) {
+            int center = n * n / 2;
+            for (int i = 0; i < 6; i++) {
+                if (stickers[i * n * n + center] >= 0) {
+                    faceMap[stickers[i * n * n + center]] = i;
+                }
+            }
+        }
+        return faceMap;
+    }
+
+    /**
+     * Returns the mapped face of the center sticker of the specified face.
+     * If the cube has an even layer count, returns the specified face.
+     */
+    private static int getFaceOfCenter(@Nonnull int[] stickers, int n, int face, @Nonnull int[] faceMap) {
+        int center = stickers[face * n * n + n * n / 2];
+        return n % 2 == 1 && center >= 0 ? faceMap[center] : face;
+    }
+
     /**
      * Returns a String that describes the current
      * location of the stickers. Ignores the rotation
@@ -491,28 +489,26 @@ public class Cubes {
     public static String toMappedStickersString(@Nonnull Cube cube, int[] mappings) {
         //char[] faces = new char[]{'F', 'R', 'D', 'B', 'L', 'U'};
         char[] faces = new char[]{'R', 'U', 'F', 'L', 'D', 'B'};
-        int[][] stickers = getMappedStickers(cube, mappings);
+        int n = cube.getLayerCount();
+        int[] stickers = getMappedFlatStickers(cube, mappings);
 
         // This map is used to normalize the
         // possibly rotated cube.
-        int[] faceMap = new int[6];
-        for (int i = 0; i < 6; i++) {
-            faceMap[stickers[i][4]] = i;
-        }
+        int[] faceMap = getFaceMap(stickers, n);
 
         StringBuilder buf = new StringBuilder();
 
-        for (int i = 0; i < stickers.length; i++) {
+        for (int i = 0; i < 6; i++) {
             if (i != 0) {
                 buf.append('\n');
             }
-            buf.append(faces[faceMap[stickers[i][4]]]);
+            buf.append(faces[getFaceOfCenter(stickers, n, i, faceMap)]);
             buf.append(':');
-            for (int j = 0; j < stickers[i].length; j++) {
-                if (stickers[i][j] == -1) {
+            for (int j = i * n * n, end = j + n * n; j < end; j++) {
+                if (stickers[j] == -1) {
                     buf.append('.');
                 } else {
-                    buf.append(faces[faceMap[stickers[i][j]]]);
+                    buf.append(faces[faceMap[stickers[j]]]);
                 }
             }
         }
@@ -524,17 +520,16 @@ public class Cubes {
      *
      * @param mappings An array with sticker mappings. It must have the
      *                 same structure as described for method setStickers().
-     * @return Array of stickers: int[6][9]. Same structure as in method setStickers().
+     * @return Array of stickers: int[6][n*n]. Same structure as in method setStickers().
      */
     public static int[][] getMappedStickers(@Nonnull Cube cube, int[] mappings) {
-        int[][] perFaceMappings = new int[6][cube.getLayerCount() * cube.getLayerCount()];
-        int index = 0;
-        for (int face = 0; face < perFaceMappings.length; face++) {
-            for (int sticker = 0; sticker < perFaceMappings[face].length; sticker++) {
-                perFaceMappings[face][sticker] = mappings[index++];
-            }
+        int n = cube.getLayerCount();
+        int[] stickers = getMappedFlatStickers(cube, mappings);
+        int[][] mappedStickers = new int[6][n * n];
+        for (int face = 0; face < mappedStickers.length; face++) {
+            System.arraycopy(stickers, face * n * n, mappedStickers[face], 0, n * n);
         }
-        return getMappedStickers(cube, perFaceMappings);
+        return mappedStickers;
     }
 
     /**
@@ -542,13 +537,14 @@ public class Cubes {
      *
      * @param mappings An array with sticker mappings. It must have the
      *                 same structure as described for method setStickers().
-     * @return Array of stickers: int[6][9]. Same structure as in method setStickers().
+     * @return Array of stickers: int[6][n*n]. Same structure as in method setStickers().
      */
     public static int[][] getMappedStickers(@Nonnull Cube cube, int[][] mappings) {
-        int[][] stickers = StickerCubes.rubiksCubeToStickers(((RubiksCube) cube));
-        int[][] mappedStickers = stickers.clone();
+        int[][] stickers = StickerCubes.toStickers(cube);
+        int[][] mappedStickers = new int[stickers.length][];
 
         for (int face = 0; face < stickers.length; face++) {
+            mappedStickers[face] = new int[stickers[face].length];
             for (int sticker = 0; sticker < stickers[face].length; sticker++) {
                 mappedStickers[face][sticker] = mappings[stickers[face][sticker]][sticker];
             }
@@ -556,6 +552,23 @@ public class Cubes {
         return mappedStickers;
     }
 
+    /**
+     * Returns the stickers reflecting the current permutation of the cube
+     * in a flat array.
+     *
+     * @param mappings A flat array with 6*n*n sticker mappings.
+     * @return A flat array with 6*n*n stickers.
+     */
+    @Nonnull
+    private static int[] getMappedFlatStickers(@Nonnull Cube cube, int[] mappings) {
+        int n = cube.getLayerCount();
+        int[] stickers = StickerMapper.getInstance(n).toStickers(cube);
+        for (int i = 0; i < stickers.length; i++) {
+            stickers[i] = mappings[stickers[i] * n * n + i % (n * n)];
+        }
+        return stickers;
+    }
+
     public static int getFaceOfSticker(@Nonnull CubeAttributes attr, int stickerIndex) {
         int face;
         for (face = 0; face < attr.getFaceCount(); face++) {
@@ -717,81 +730,22 @@ public class Cubes {
 
     /**
      * Returns a String describing the permutation cycles of the parts in a cube.
-     *
-     * @param cube
-     * @param syntax
-     * @param tR
-     * @param tU
-     * @param tF
-     * @param tL
-     * @param tD
-     * @param tB
-     * @param tPlus
-     * @param tPlusPlus
-     * @param tMinus
-     * @param tBegin
-     * @param tEnd
-     * @param tDelimiter
-     * @return
      */
     @Nonnull
-    private static String toPermutationString(@Nonnull Cube cube,
-                                              Syntax syntax,
+    private static String toPermutationString(@Nonnull Cube cube, Syntax syntax,
                                               String tR, String tU, String tF,
                                               String tL, String tD, String tB,
                                               String tPlus, String tPlusPlus, String tMinus,
                                               String tBegin, String tEnd, String tDelimiter) {
-
-        StringBuilder buf = new StringBuilder();
-
-        String corners = toCornerPermutationString(cube, syntax,
-                tR, tU, tF, tL, tD, tB,
-                tPlus, tPlusPlus, tMinus,
-                tBegin, tEnd, tDelimiter);
-        String edges = toEdgePermutationString(cube, syntax,
-                tR, tU, tF, tL, tD, tB,
-                tPlus, tPlusPlus, tMinus,
-                tBegin, tEnd, tDelimiter);
-        String sides = toSidePermutationString(cube, syntax,
+        return new PermutationStringWriter(syntax,
                 tR, tU, tF, tL, tD, tB,
                 tPlus, tPlusPlus, tMinus,
-                tBegin, tEnd, tDelimiter);
-
-        buf.append(corners);
-        if (buf.length() > 0 && edges.length() > 0) {
-            buf.append('\n');
-        }
-        buf.append(edges);
-        if (buf.length() > 0 && sides.length() > 0) {
-            buf.append('\n');
-        }
-        buf.append(sides);
-        if (buf.length() == 0) {
-            buf.append(tBegin);
-            buf.append(tEnd);
-        }
-        return buf.toString();
+                tBegin, tEnd, tDelimiter).toPermutationString(cube);
     }
 
     /**
      * Returns a String describing the permutation cycles of the corner
      * parts in a cube.
-     *
-     * @param cube
-     * @param syntax
-     * @param tR
-     * @param tU
-     * @param tF
-     * @param tL
-     * @param tD
-     * @param tB
-     * @param tPlus
-     * @param tPlusPlus
-     * @param tMinus
-     * @param tBegin
-     * @param tEnd
-     * @param tDelimiter
-     * @return
      */
     @Nonnull
     private static String toCornerPermutationString(@Nonnull Cube cube, Syntax syntax,
@@ -799,119 +753,10 @@ public class Cubes {
                                                     String tL, String tD, String tB,
                                                     String tPlus, String tPlusPlus, String tMinus,
                                                     String tBegin, String tEnd, String tDelimiter) {
-
-        int[] cornerLoc = cube.getCornerLocations();
-        int[] cornerOrient = cube.getCornerOrientations();
-        int[] cycle = new int[Math.max(Math.max(cube.getCornerCount(), cube.getEdgeCount()), cube.getSideCount())];
-
-        StringBuilder buf = new StringBuilder();
-        boolean[] visitedLocs;
-
-        int i, j, k, p, n;
-
-        int prevOrient;
-        boolean isFirst;
-
-        // describe the state changes of the corner parts
-        String[][] corners = {
-                {tU, tR, tF},// urf
-                {tD, tF, tR},// dfr
-                {tU, tB, tR},// ubr
-                {tD, tR, tB},// drb
-                {tU, tL, tB},// ulb
-                {tD, tB, tL},// dbl
-                {tU, tF, tL},// ufl
-                {tD, tL, tF}// dlf
-        };
-
-        visitedLocs = new boolean[cube.getCornerCount()];
-        isFirst = true;
-        for (i = 0, n
-                = cube.getCornerCount(); i < n; i++) {
-            if (!visitedLocs[i]) {
-                if (cornerLoc[i] == i && cornerOrient[i] == 0) {
-                    continue;
-                }
-
-                // gather a permutation cycle
-                int cycleLength = 0;
-                int cycleStart = 0;
-                j = i;
-                while (!visitedLocs[j]) {
-                    visitedLocs[j] = true;
-                    cycle[cycleLength++] = j;
-                    if (cornerLoc[j] < cornerLoc[cycle[cycleStart]]) {
-                        cycleStart = cycleLength - 1;
-                    }
-                    for (k = 0; cornerLoc[k] != j; k++) {
-                    }
-                    j = k;
-                }
-
-                // print the permutation cycle
-                if (isFirst) {
-                    isFirst = false;
-                } else {
-                    buf.append(' ');
-                }
-                if (syntax == Syntax.PREFIX) {
-                    // the sign of the cycle will be inserted before the opening bracket
-                    p = buf.length();
-                    buf.append(tBegin);
-                } else if (syntax == Syntax.PRECIRCUMFIX) {
-                    // the sign of the cycle will be inserted after the opening bracket
-                    buf.append(tBegin);
-                    p = buf.length();
-                } else {
-                    buf.append(tBegin);
-                    p = -1;
-                }
-
-                prevOrient = 0;
-                for (k = 0; k < cycleLength; k++) {
-                    j = cycle[(cycleStart + k) % cycleLength];
-                    if (k != 0) {
-                        buf.append(tDelimiter);
-                        prevOrient = (prevOrient + cornerOrient[j]) % 3;
-                    }
-                    switch (prevOrient) {
-                    case 0:
-                        buf.append(corners[j][0]);
-                        buf.append(corners[j][1]);
-                        buf.append(corners[j][2]);
-                        break;
-                    case 2:
-                        buf.append(corners[j][1]);
-                        buf.append(corners[j][2]);
-                        buf.append(corners[j][0]);
-                        break;
-                    case 1:
-                        buf.append(corners[j][2]);
-                        buf.append(corners[j][0]);
-                        buf.append(corners[j][1]);
-                        break;
-                    }
-                }
-                j = cycle[cycleStart];
-                prevOrient = (prevOrient + cornerOrient[j]) % 3;
-                if (syntax == Syntax.POSTCIRCUMFIX) {
-                    // the sign of the cycle will be inserted before the closing bracket
-                    p = buf.length();
-                    buf.append(tEnd);
-                } else if (syntax == Syntax.SUFFIX) {
-                    // the sign of the cycle will be inserted after the closing bracket
-                    buf.append(tEnd);
-                    p = buf.length();
-                } else {
-                    buf.append(tEnd);
-                }
-                // insert cycle sign
-                if (prevOrient != 0) {
-                    buf.insert(p, (prevOrient == 1) ? tMinus : tPlus);
-                }
-            }
-        }
-        return buf.toString();
+        return new PermutationStringWriter(syntax,
+                tR, tU, tF, tL, tD, tB,
+                tPlus, tPlusPlus, tMinus,
+                tBegin, tEnd, tDelimiter).toCornerPermutationString(cube);
     }
 
     /**
@@ -924,125 +769,10 @@ public class Cubes {
                                                   String tL, String tD, String tB,
                                                   String tPlus, String tPlusPlus, String tMinus,
                                                   String tBegin, String tEnd, String tDelimiter) {
-
-        int[] edgeLoc = cube.getEdgeLocations();
-        int[] edgeOrient = cube.getEdgeOrientations();
-        int[] cycle = new int[Math.max(Math.max(cube.getCornerCount(), cube.getEdgeCount()), cube.getSideCount())];
-        int layerCount = cube.getLayerCount();
-        boolean hasEvenLayerCount = layerCount % 2 == 0;
-
-        StringBuilder buf = new StringBuilder();
-        boolean[] visitedLocs;
-
-        int i, j, k, l, p, n;
-        int prevOrient;
-        boolean isFirst;
-
-        // describe the state changes of the edge parts
-        if (edgeLoc.length > 0) {
-            String[][] edges = {
-                    {tU, tR}, //"ur"
-                    {tR, tF}, //"rf"
-                    {tD, tR}, //"dr"
-                    {tB, tU}, //"bu"
-                    {tR, tB}, //"rb"
-                    {tB, tD}, //"bd"
-                    {tU, tL}, //"ul"
-                    {tL, tB}, //"lb"
-                    {tD, tL}, //"dl"
-                    {tF, tU}, //"fu"
-                    {tL, tF}, //"lf"
-                    {tF, tD} //"fd"
-            };
-            visitedLocs = new boolean[cube.getEdgeCount()];
-            isFirst = true;
-            int previousCycleStartEdge = -1;
-            for (i = 0, n
-                    = cube.getEdgeCount(); i < n; i++) {
-                if (!visitedLocs[i]) {
-                    if (edgeLoc[i] == i && edgeOrient[i] == 0) {
-                        continue;
-                    }
-
-                    // gather a permutation cycle
-                    int cycleLength = 0;
-                    int cycleStart = 0;
-                    j = i;
-                    while (!visitedLocs[j]) {
-                        visitedLocs[j] = true;
-                        cycle[cycleLength++] = j;
-                        if (previousCycleStartEdge == j % 12) {
-                            cycleStart = cycleLength - 1;
-                        }
-                        for (k = 0; edgeLoc[k] != j; k++) {
-                        }
-                        j = k;
-                    }
-                    previousCycleStartEdge = cycle[cycleStart] % 12;
-
-                    // print the permutation cycle
-                    if (isFirst) {
-                        isFirst = false;
-                    } else {
-                        buf.append(' ');
-                    }
-
-                    if (syntax == Syntax.PREFIX) {
-                        // the sign of the cycle will be inserted before the opening bracket
-                        p = buf.length();
-                        buf.append(tBegin);
-                    } else if (syntax == Syntax.PRECIRCUMFIX) {
-                        // the sign of the cycle will be inserted after the opening bracket
-                        buf.append(tBegin);
-                        p = buf.length();
-                    } else {
-                        buf.append(tBegin);
-                        p = -1;
-                    }
-
-                    prevOrient = 0;
-                    for (k = 0; k < cycleLength; k++) {
-                        j = cycle[(cycleStart + k) % cycleLength];
-                        if (k != 0) {
-                            buf.append(tDelimiter);
-                            prevOrient ^= edgeOrient[j];
-                        }
-                        if (prevOrient == 1) {
-                            buf.append(edges[j % 12][1]);
-                            buf.append(edges[j % 12][0]);
-                        } else {
-                            buf.append(edges[j % 12][0]);
-                            buf.append(edges[j % 12][1]);
-                        }
-                        if (hasEvenLayerCount) {
-                            buf.append(j / 12 + 1);
-                        } else {
-                            if (j >= 12) {
-                                buf.append(j / 12);
-                            }
-                        }
-                    }
-                    j = cycle[cycleStart];
-                    if (syntax == Syntax.POSTCIRCUMFIX) {
-                        // the sign of the cycle will be inserted before the closing bracket
-                        p = buf.length();
-                        buf.append(tEnd);
-                    } else if (syntax == Syntax.SUFFIX) {
-                        // the sign of the cycle will be inserted after the closing bracket
-                        buf.append(tEnd);
-                        p = buf.length();
-                    } else {
-                        buf.append(tEnd);
-                    }
-                    // insert cycle sign
-                    if ((prevOrient ^ edgeOrient[j]) == 1) {
-                        buf.insert(p, tPlus);
-                    }
-                }
-            }
-        }
-
-        return buf.toString();
+        return new PermutationStringWriter(syntax,
+                tR, tU, tF, tL, tD, tB,
+                tPlus, tPlusPlus, tMinus,
+                tBegin, tEnd, tDelimiter).toEdgePermutationString(cube);
     }
 
     /**
@@ -1055,132 +785,10 @@ public class Cubes {
                                                   String tL, String tD, String tB,
                                                   String tPlus, String tPlusPlus, String tMinus,
                                                   String tBegin, String tEnd, String tDelimiter) {
-
-        int[] sideLoc = cube.getSideLocations();
-        int[] sideOrient = cube.getSideOrientations();
-        int[] cycle = new int[Math.max(Math.max(cube.getCornerCount(), cube.getEdgeCount()), cube.getSideCount())];
-        int layerCount = cube.getLayerCount();
-        boolean hasEvenLayerCount = layerCount % 2 == 0;
-
-        StringBuilder buf = new StringBuilder();
-        boolean[] visitedLocs;
-
-        int i, j, k, l, p, n;
-        int prevOrient;
-        boolean isFirst;
-
-        if (sideLoc.length > 0) { // describe the state changes of the side parts
-            String[] sides = new String[]{
-                    tR, tU, tF, tL, tD, tB // r u f l d b
-            };
-            String[] sideOrients = new String[]{
-                    "", tMinus, tPlusPlus, tPlus
-            };
-            visitedLocs = new boolean[cube.getSideCount()];
-            isFirst = true;
-
-            // First Pass: Only print permutation cycles which lie on a single
-            // face of the cube.
-            // Second pass: Only print permutation cycles which don't lie on
-            // a singe fass of the cube.
-            for (int twoPass = 0; twoPass < 2; twoPass++) {
-                Arrays.fill(visitedLocs, false);
-                for (int byFaces = 0, nf = 6; byFaces < nf; byFaces++) {
-                    for (int byParts = 0, np = cube.getSideCount() / 6; byParts < np; byParts++) {
-                        i = byParts + byFaces * np;
-                        if (!visitedLocs[i]) {
-                            if (sideLoc[i] == i && sideOrient[i] == 0) {
-                                continue;
-                            }
-
-                            // gather a permutation cycle
-                            int cycleLength = 0;
-                            int cycleStart = 0;
-                            boolean isOnSingleFace = true;
-                            j = i;
-                            while (!visitedLocs[j]) {
-                                visitedLocs[j] = true;
-                                cycle[cycleLength++] = j;
-                                if (j % 6 != i % 6) {
-                                    isOnSingleFace = false;
-                                }
-                                if (cycle[cycleStart] > j) {
-                                    cycleStart = cycleLength - 1;
-                                }
-                                for (k = 0; sideLoc[k] != j; k++) {
-                                }
-                                j = k;
-                            }
-
-                            if (isOnSingleFace == (twoPass == 0)) {
-
-                                // print the permutation cycle
-                                if (isFirst) {
-                                    isFirst = false;
-                                } else {
-                                    buf.append(' ');
-                                }
-                                if (syntax == Syntax.PREFIX) {
-                                    // the sign of the cycle will be inserted before the opening bracket
-                                    p = buf.length();
-                                    buf.append(tBegin);
-                                } else if (syntax == Syntax.PRECIRCUMFIX) {
-                                    // the sign of the cycle will be inserted after the opening bracket
-                                    buf.append(tBegin);
-                                    p = buf.length();
-                                } else {
-                                    buf.append(tBegin);
-                                    p = -1;
-                                }
-
-                                prevOrient = 0;
-                                for (k = 0; k < cycleLength; k++) {
-                                    j = cycle[(cycleStart + k) % cycleLength];
-                                    if (k != 0) {
-                                        buf.append(tDelimiter);
-                                        prevOrient = (prevOrient + sideOrient[j]) % 4;
-                                    }
-                                    if (syntax == Syntax.PREFIX
-                                            || syntax == Syntax.PRECIRCUMFIX
-                                            || syntax == Syntax.POSTCIRCUMFIX) {
-                                        buf.append(sideOrients[prevOrient]);
-                                    }
-                                    buf.append(sides[j % 6]);
-                                    if (syntax == Syntax.SUFFIX) {
-                                        buf.append(sideOrients[prevOrient]);
-                                    }
-                                    if (hasEvenLayerCount) {
-                                        buf.append(j / 6 + 1);
-                                    } else {
-                                        if (j >= 6) {
-                                            buf.append(j / 6);
-                                        }
-                                    }
-                                }
-                                j = cycle[cycleStart];
-                                prevOrient = (prevOrient + sideOrient[j]) % 4;
-                                if (syntax == Syntax.POSTCIRCUMFIX) {
-                                    // the sign of the cycle will be inserted before the closing bracket
-                                    p = buf.length();
-                                    buf.append(tEnd);
-                                } else if (syntax == Syntax.SUFFIX) {
-                                    // the sign of the cycle will be inserted after the closing bracket
-                                    buf.append(tEnd);
-                                    p = buf.length();
-                                } else {
-                                    buf.append(tEnd);
-                                }
-                                // insert cycle sign
-                                if (prevOrient != 0) {
-                                    buf.insert(p, sideOrients[prevOrient]);
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return buf.toString();
+        return new PermutationStringWriter(syntax,
+                tR, tU, tF, tL, tD, tB,
+                tPlus, tPlusPlus, tMinus,
+                tBegin, tEnd, tDelimiter).toSidePermutationString(cube);
     }
 
     /**
@@ -1196,133 +804,10 @@ public class Cubes {
                                                         String tL, String tD, String tB,
                                                         String tPlus, String tPlusPlus, String tMinus,
                                                         String tBegin, String tEnd, String tDelimiter) {
-
-        int[] sideLoc = cube.getSideLocations();
-        int[] sideOrient = cube.getSideOrientations();
-        int[] cycle = new int[Math.max(Math.max(cube.getCornerCount(), cube.getEdgeCount()), cube.getSideCount())];
-        int layerCount = cube.getLayerCount();
-        boolean hasEvenLayerCount = layerCount % 2 == 0;
-
-        StringBuilder buf = new StringBuilder();
-        boolean[] visitedLocs;
-
-        int i, j, k;
-        int prevOrient;
-        boolean isFirst;
-
-        if (sideLoc.length > 0) { // describe the state changes of the side parts
-            String[] sides = new String[]{
-                    tR, tU, tF, tL, tD, tB // r u f l d b
-            };
-            String[] sideOrients = new String[]{
-                    "", tMinus, tPlusPlus, tPlus
-            };
-            visitedLocs = new boolean[cube.getSideCount()];
-            isFirst = true;
-            int previousCycleStartSide;
-
-            // First Pass: Only print permutation cycles which lie on a single
-            // face of the cube.
-            // Second pass: Only print permutation cycles which don't lie on
-            // a singe fass of the cube.
-            for (int twoPass = 0; twoPass < 2; twoPass++) {
-                Arrays.fill(visitedLocs, false);
-                for (int byFaces = 0, nf = 6; byFaces < nf; byFaces++) {
-                    previousCycleStartSide = -1;
-                    for (int byParts = 0, np = cube.getSideCount() / 6; byParts < np; byParts++) {
-                        i = byParts + byFaces * np;
-                        if (!visitedLocs[i]) {
-                            if (sideLoc[i] == i && sideOrient[i] == 0) {
-                                continue;
-                            }
-
-                            // gather a permutation cycle
-                            int cycleLength = 0;
-                            int cycleStart = 0;
-                            boolean isOnSingleFace = true;
-                            j = i;
-                            while (!visitedLocs[j]) {
-                                visitedLocs[j] = true;
-                                cycle[cycleLength++] = j;
-                                if (j % 6 != i % 6) {
-                                    isOnSingleFace = false;
-                                }
-                                if (cycle[cycleStart] > j) {
-                                    cycleStart = cycleLength - 1;
-                                }
-                                for (k = 0; sideLoc[k] != j; k++) {
-                                }
-                                j = k;
-                            }
-                            previousCycleStartSide = cycle[cycleStart] % 6;
-
-                            if (isOnSingleFace == (twoPass == 0)) {
-                                // only print cycles which contain more than one part
-                                if (cycleLength > 1) {
-
-                                    // print the permutation cycle
-                                    if (isFirst) {
-                                        isFirst = false;
-                                    } else {
-                                        buf.append(' ');
-                                    }
-                                    if (syntax == Syntax.PREFIX) {
-                                        // the sign of the cycle will be inserted before the opening bracket
-                                        buf.append(tBegin);
-                                    } else if (syntax == Syntax.PRECIRCUMFIX) {
-                                        // the sign of the cycle will be inserted after the opening bracket
-                                        buf.append(tBegin);
-                                    } else {
-                                        buf.append(tBegin);
-                                    }
-
-                                    prevOrient = 0;
-                                    for (k = 0; k < cycleLength; k++) {
-                                        j = cycle[(cycleStart + k) % cycleLength];
-                                        if (k != 0) {
-                                            buf.append(tDelimiter);
-                                            prevOrient = (prevOrient + sideOrient[j]) % 4;
-                                        }
-                                        if (syntax == Syntax.PREFIX
-                                                || syntax == Syntax.PRECIRCUMFIX
-                                                || syntax == Syntax.POSTCIRCUMFIX) {
-                                            // buf.append(sideOrients[prevOrient]);
-                                        }
-                                        buf.append(sides[j % 6]);
-                                        if (syntax == Syntax.SUFFIX) {
-                                            //buf.append(sideOrients[prevOrient]);
-                                        }
-                                        if (hasEvenLayerCount) {
-                                            buf.append(j / 6 + 1);
-                                        } else {
-                                            if (j >= 6) {
-                                                buf.append(j / 6);
-                                            }
-                                        }
-                                    }
-                                    j = cycle[cycleStart];
-                                    prevOrient = (prevOrient + sideOrient[j]) % 4;
-                                    if (syntax == Syntax.POSTCIRCUMFIX) {
-                                        // the sign of the cycle will be inserted before the closing bracket
-                                        buf.append(tEnd);
-                                    } else if (syntax == Syntax.SUFFIX) {
-                                        // the sign of the cycle will be inserted after the closing bracket
-                                        buf.append(tEnd);
-                                    } else {
-                                        buf.append(tEnd);
-                                    }
-                                    // insert cycle sign
-                                    if (prevOrient != 0) {
-                                        //buf.insert(p, sideOrients[prevOrient]);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return buf.toString();
+        return new PermutationStringWriter(syntax,
+                tR, tU, tF, tL, tD, tB,
+                tPlus, tPlusPlus, tMinus,
+                tBegin, tEnd, tDelimiter).toVisualSidePermutationString(cube);
     }
 
 
@@ -0,0 +1,695 @@
+/*
+ * @(#)PermutationStringWriter.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.cube;
+
+import ch.randelshofer.rubik.notation.ScriptNotation;
+import ch.randelshofer.rubik.notation.Symbol;
+import ch.randelshofer.rubik.notation.Syntax;
+import org.jhotdraw.annotation.Nonnull;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes the permutation cycles of a cube to an {@link Appendable}.
+ * <p>
+ * The output is the same as the output of
+ * {@link Cubes#toPermutationString(Cube, ScriptNotation)} and its sibling
+ * methods. Unlike these methods, this class writes directly to a
+ * {@code StringBuilder}, a {@code Writer}, or a byte channel wrapped with
+ * {@link java.nio.channels.Channels#newWriter}, and it does not create
+ * intermediate strings.
+ * <p>
+ * The corner, edge and side cycles are gathered in a single pass over the
+ * cube. The buffers that are needed for this are kept in the writer and are
+ * reused for all cubes that it writes.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Werner Randelshofer
+ */
+public class PermutationStringWriter {
+    private final Syntax syntax;
+    private final String tR, tU, tF, tL, tD, tB;
+    private final String tPlus, tPlusPlus, tMinus;
+    private final String tBegin, tEnd, tDelimiter;
+
+    /**
+     * Face tokens of the corner parts.
+     */
+    @Nonnull
+    private final String[][] cornerFaces;
+    /**
+     * Face tokens of the edge parts.
+     */
+    @Nonnull
+    private final String[][] edgeFaces;
+    /**
+     * Face tokens of the side parts.
+     */
+    @Nonnull
+    private final String[] sideFaces;
+    /**
+     * Orientation tokens of the side parts.
+     */
+    @Nonnull
+    private final String[] sideOrients;
+
+    /**
+     * Maps parts to their location.
+     */
+    @Nonnull
+    private int[] partToLoc = new int[0];
+    /**
+     * Marks visited locations.
+     */
+    @Nonnull
+    private boolean[] visited = new boolean[0];
+    /**
+     * Holds the locations of all gathered cycles, one cycle after the other.
+     */
+    @Nonnull
+    private int[] cycles = new int[0];
+    /**
+     * Holds the start index into {@link #cycles} of each gathered cycle.
+     * The extra element at the end holds the end index of the last cycle.
+     */
+    @Nonnull
+    private int[] cycleOffsets = new int[1];
+    /**
+     * Holds the index of the first location that is printed for each
+     * gathered cycle.
+     */
+    @Nonnull
+    private int[] cycleStarts = new int[0];
+    /**
+     * Holds the sum of the orientations of the parts of each gathered cycle.
+     */
+    @Nonnull
+    private int[] cycleOrients = new int[0];
+    /**
+     * Marks the gathered cycles which lie on a single face of the cube.
+     */
+    @Nonnull
+    private boolean[] cycleOnSingleFace = new boolean[0];
+    private int cycleCount;
+
+    /**
+     * True if a cycle has been written since the start of the current
+     * permutation string.
+     */
+    private boolean hasOutput;
+    /**
+     * Reusable buffer for the String methods.
+     */
+    @Nonnull
+    private final StringBuilder buf = new StringBuilder();
+
+    /**
+     * Creates a writer which uses Bandelow's English permutation notation.
+     */
+    public PermutationStringWriter() {
+        this(Syntax.PRECIRCUMFIX,
+                "r", "u", "f", "l", "d", "b",
+                "+", "++", "-",
+                "(", ")", ",");
+    }
+
+    /**
+     * Creates a writer which uses the permutation tokens of the specified
+     * notation. Uses Bandelow's English permutation notation if the notation
+     * does not support permutations.
+     */
+    public PermutationStringWriter(@Nonnull ScriptNotation notation) {
+        this(notation.isSupported(Symbol.PERMUTATION) ? notation.getSyntax(Symbol.PERMUTATION) : Syntax.PRECIRCUMFIX,
+                token(notation, Symbol.FACE_R, "r"),
+                token(notation, Symbol.FACE_U, "u"),
+                token(notation, Symbol.FACE_F, "f"),
+                token(notation, Symbol.FACE_L, "l"),
+                token(notation, Symbol.FACE_D, "d"),
+                token(notation, Symbol.FACE_B, "b"),
+                token(notation, Symbol.PERMUTATION_PLUS, "+"),
+                token(notation, Symbol.PERMUTATION_PLUSPLUS, "++"),
+                token(notation, Symbol.PERMUTATION_MINUS, "-"),
+                token(notation, Symbol.PERMUTATION_BEGIN, "("),
+                token(notation, Symbol.PERMUTATION_END, ")"),
+                token(notation, Symbol.PERMUTATION_DELIMITER, ","));
+    }
+
+    @Nonnull
+    private static String token(@Nonnull ScriptNotation notation, @Nonnull Symbol symbol, @Nonnull String defaultToken) {
+        return notation.isSupported(Symbol.PERMUTATION) ? notation.getToken(symbol) : defaultToken;
+    }
+
+    /**
+     * Creates a writer with the specified syntax and tokens.
+     */
+    public PermutationStringWriter(Syntax syntax,
+                                   String tR, String tU, String tF,
+                                   String tL, String tD, String tB,
+                                   String tPlus, String tPlusPlus, String tMinus,
+                                   String tBegin, String tEnd, String tDelimiter) {
+        this.syntax = syntax;
+        this.tR = tR;
+        this.tU = tU;
+        this.tF = tF;
+        this.tL = tL;
+        this.tD = tD;
+        this.tB = tB;
+        this.tPlus = tPlus;
+        this.tPlusPlus = tPlusPlus;
+        this.tMinus = tMinus;
+        this.tBegin = tBegin;
+        this.tEnd = tEnd;
+        this.tDelimiter = tDelimiter;
+
+        cornerFaces = new String[][]{
+                {tU, tR, tF},// urf
+                {tD, tF, tR},// dfr
+                {tU, tB, tR},// ubr
+                {tD, tR, tB},// drb
+                {tU, tL, tB},// ulb
+                {tD, tB, tL},// dbl
+                {tU, tF, tL},// ufl
+                {tD, tL, tF}// dlf
+        };
+        edgeFaces = new String[][]{
+                {tU, tR}, //"ur"
+                {tR, tF}, //"rf"
+                {tD, tR}, //"dr"
+                {tB, tU}, //"bu"
+                {tR, tB}, //"rb"
+                {tB, tD}, //"bd"
+                {tU, tL}, //"ul"
+                {tL, tB}, //"lb"
+                {tD, tL}, //"dl"
+                {tF, tU}, //"fu"
+                {tL, tF}, //"lf"
+                {tF, tD} //"fd"
+        };
+        sideFaces = new String[]{
+                tR, tU, tF, tL, tD, tB // r u f l d b
+        };
+        sideOrients = new String[]{
+                "", tMinus, tPlusPlus, tPlus
+        };
+    }
+
+    /**
+     * Writes the permutation cycles of all parts of the cube.
+     *
+     * @param cube a cube
+     * @param out  the output
+     * @throws IOException if writing to the output fails
+     * @see Cubes#toPermutationString(Cube, ScriptNotation)
+     */
+    public void writePermutation(@Nonnull Cube cube, @Nonnull Appendable out) throws IOException {
+        hasOutput = false;
+        appendCorners(cube, out);
+        appendEdges(cube, out);
+        appendSides(cube, out);
+        if (!hasOutput) {
+            out.append(tBegin);
+            out.append(tEnd);
+        }
+    }
+
+    /**
+     * Writes the permutation cycles of all parts of the cube which can be
+     * seen on a cube with solid colored stickers.
+     *
+     * @param cube a cube
+     * @param out  the output
+     * @throws IOException if writing to the output fails
+     * @see Cubes#toVisualPermutationString(Cube, ScriptNotation)
+     */
+    public void writeVisualPermutation(@Nonnull Cube cube, @Nonnull Appendable out) throws IOException {
+        hasOutput = false;
+        appendCorners(cube, out);
+        appendEdges(cube, out);
+        appendVisualSides(cube, out);
+        if (!hasOutput) {
+            out.append(tBegin);
+            out.append(tEnd);
+        }
+    }
+
+    /**
+     * Writes the permutation cycles of the corner parts of the cube.
+     * Writes nothing if all corner parts are solved.
+     */
+    public void writeCornerPermutation(@Nonnull Cube cube, @Nonnull Appendable out) throws IOException {
+        hasOutput = false;
+        appendCorners(cube, out);
+    }
+
+    /**
+     * Writes the permutation cycles of the edge parts of the cube.
+     * Writes nothing if all edge parts are solved.
+     */
+    public void writeEdgePermutation(@Nonnull Cube cube, @Nonnull Appendable out) throws IOException {
+        hasOutput = false;
+        appendEdges(cube, out);
+    }
+
+    /**
+     * Writes the permutation cycles of the side parts of the cube.
+     * Writes nothing if all side parts are solved.
+     */
+    public void writeSidePermutation(@Nonnull Cube cube, @Nonnull Appendable out) throws IOException {
+        hasOutput = false;
+        appendSides(cube, out);
+    }
+
+    /**
+     * Writes the permutation cycles of the side parts of the cube which
+     * can be seen on a cube with solid colored stickers.
+     * Writes nothing if no such cycle exists.
+     */
+    public void writeVisualSidePermutation(@Nonnull Cube cube, @Nonnull Appendable out) throws IOException {
+        hasOutput = false;
+        appendVisualSides(cube, out);
+    }
+
+    /**
+     * Returns the permutation cycles of all parts of the cube as a String.
+     */
+    @Nonnull
+    public String toPermutationString(@Nonnull Cube cube) {
+        buf.setLength(0);
+        try {
+            writePermutation(cube, buf);
+        } catch (IOException e) {
+            throw new InternalError(e);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Returns the visible permutation cycles of all parts of the cube as a
+     * String.
+     */
+    @Nonnull
+    public String toVisualPermutationString(@Nonnull Cube cube) {
+        buf.setLength(0);
+        try {
+            writeVisualPermutation(cube, buf);
+        } catch (IOException e) {
+            throw new InternalError(e);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Returns the permutation cycles of the corner parts as a String.
+     */
+    @Nonnull
+    public String toCornerPermutationString(@Nonnull Cube cube) {
+        buf.setLength(0);
+        try {
+            writeCornerPermutation(cube, buf);
+        } catch (IOException e) {
+            throw new InternalError(e);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Returns the permutation cycles of the edge parts as a String.
+     */
+    @Nonnull
+    public String toEdgePermutationString(@Nonnull Cube cube) {
+        buf.setLength(0);
+        try {
+            writeEdgePermutation(cube, buf);
+        } catch (IOException e) {
+            throw new InternalError(e);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Returns the permutation cycles of the side parts as a String.
+     */
+    @Nonnull
+    public String toSidePermutationString(@Nonnull Cube cube) {
+        buf.setLength(0);
+        try {
+            writeSidePermutation(cube, buf);
+        } catch (IOException e) {
+            throw new InternalError(e);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Returns the visible permutation cycles of the side parts as a String.
+     */
+    @Nonnull
+    public String toVisualSidePermutationString(@Nonnull Cube cube) {
+        buf.setLength(0);
+        try {
+            writeVisualSidePermutation(cube, buf);
+        } catch (IOException e) {
+            throw new InternalError(e);
+        }
+        return buf.toString();
+    }
+
+    private void appendCorners(@Nonnull Cube cube, @Nonnull Appendable out) throws IOException {
+        int[] loc, orient;
+        if (cube instanceof AbstractCube) {
+            loc = ((AbstractCube) cube).cornerLoc;
+            orient = ((AbstractCube) cube).cornerOrient;
+        } else {
+            loc = cube.getCornerLocations();
+            orient = cube.getCornerOrientations();
+        }
+        gatherCycles(loc, orient, 3, -1);
+
+        boolean isFirst = true;
+        for (int c = 0; c < cycleCount; c++) {
+            int from = cycleOffsets[c];
+            int length = cycleOffsets[c + 1] - from;
+            int start = cycleStarts[c];
+            String sign = cycleOrients[c] == 0 ? "" : (cycleOrients[c] == 1 ? tMinus : tPlus);
+
+            isFirst = appendCycleSeparator(out, isFirst);
+            appendCycleBegin(out, sign);
+            int prevOrient = 0;
+            for (int k = 0; k < length; k++) {
+                int j = cycles[from + (start + k) % length];
+                if (k != 0) {
+                    out.append(tDelimiter);
+                    prevOrient = (prevOrient + orient[j]) % 3;
+                }
+                String[] faces = cornerFaces[j];
+                switch (prevOrient) {
+                case 0:
+                    out.append(faces[0]).append(faces[1]).append(faces[2]);
+                    break;
+                case 2:
+                    out.append(faces[1]).append(faces[2]).append(faces[0]);
+                    break;
+                case 1:
+                    out.append(faces[2]).append(faces[0]).append(faces[1]);
+                    break;
+                }
+            }
+            appendCycleEnd(out, sign);
+        }
+    }
+
+    private void appendEdges(@Nonnull Cube cube, @Nonnull Appendable out) throws IOException {
+        int[] loc, orient;
+        if (cube instanceof AbstractCube) {
+            loc = ((AbstractCube) cube).edgeLoc;
+            orient = ((AbstractCube) cube).edgeOrient;
+        } else {
+            loc = cube.getEdgeLocations();
+            orient = cube.getEdgeOrientations();
+        }
+        if (loc.length == 0) {
+            return;
+        }
+        boolean hasEvenLayerCount = cube.getLayerCount() % 2 == 0;
+        gatherCycles(loc, orient, 2, 12);
+
+        boolean isFirst = true;
+        for (int c = 0; c < cycleCount; c++) {
+            int from = cycleOffsets[c];
+            int length = cycleOffsets[c + 1] - from;
+            int start = cycleStarts[c];
+            String sign = cycleOrients[c] == 0 ? "" : tPlus;
+
+            isFirst = appendCycleSeparator(out, isFirst);
+            appendCycleBegin(out, sign);
+            int prevOrient = 0;
+            for (int k = 0; k < length; k++) {
+                int j = cycles[from + (start + k) % length];
+                if (k != 0) {
+                    out.append(tDelimiter);
+                    prevOrient ^= orient[j];
+                }
+                String[] faces = edgeFaces[j % 12];
+                if (prevOrient == 1) {
+                    out.append(faces[1]).append(faces[0]);
+                } else {
+                    out.append(faces[0]).append(faces[1]);
+                }
+                if (hasEvenLayerCount) {
+                    appendNumber(out, j / 12 + 1);
+                } else if (j >= 12) {
+                    appendNumber(out, j / 12);
+                }
+            }
+            appendCycleEnd(out, sign);
+        }
+    }
+
+    private void appendSides(@Nonnull Cube cube, @Nonnull Appendable out) throws IOException {
+        int[] loc, orient;
+        if (cube instanceof AbstractCube) {
+            loc = ((AbstractCube) cube).sideLoc;
+            orient = ((AbstractCube) cube).sideOrient;
+        } else {
+            loc = cube.getSideLocations();
+            orient = cube.getSideOrientations();
+        }
+        if (loc.length == 0) {
+            return;
+        }
+        boolean hasEvenLayerCount = cube.getLayerCount() % 2 == 0;
+        boolean isPrefixOrient = syntax == Syntax.PREFIX
+                || syntax == Syntax.PRECIRCUMFIX
+                || syntax == Syntax.POSTCIRCUMFIX;
+        boolean isSuffixOrient = syntax == Syntax.SUFFIX;
+        gatherCycles(loc, orient, 4, 0);
+
+        // First pass: Only print permutation cycles which lie on a single
+        // face of the cube.
+        // Second pass: Only print permutation cycles which don't lie on
+        // a single face of the cube.
+        boolean isFirst = true;
+        for (int twoPass = 0; twoPass < 2; twoPass++) {
+            for (int c = 0; c < cycleCount; c++) {
+                if (cycleOnSingleFace[c] != (twoPass == 0)) {
+                    continue;
+                }
+                int from = cycleOffsets[c];
+                int length = cycleOffsets[c + 1] - from;
+                int start = cycleStarts[c];
+                String sign = sideOrients[cycleOrients[c]];
+
+                isFirst = appendCycleSeparator(out, isFirst);
+                appendCycleBegin(out, sign);
+                int prevOrient = 0;
+                for (int k = 0; k < length; k++) {
+                    int j = cycles[from + (start + k) % length];
+                    if (k != 0) {
+                        out.append(tDelimiter);
+                        prevOrient = (prevOrient + orient[j]) % 4;
+                    }
+                    if (isPrefixOrient) {
+                        out.append(sideOrients[prevOrient]);
+                    }
+                    out.append(sideFaces[j % 6]);
+                    if (isSuffixOrient) {
+                        out.append(sideOrients[prevOrient]);
+                    }
+                    if (hasEvenLayerCount) {
+                        appendNumber(out, j / 6 + 1);
+                    } else if (j >= 6) {
+                        appendNumber(out, j / 6);
+                    }
+                }
+                appendCycleEnd(out, sign);
+            }
+        }
+    }
+
+    /**
+     * Appends the side cycles which can be seen on a cube with solid colored
+     * stickers.
+     * <p>
+     * XXX - Like {@link Cubes#toVisualSidePermutationString}, this method
+     * only omits the orientations of the side parts. It should also ignore
+     * cycles which only change the orientation of the parts.
+     */
+    private void appendVisualSides(@Nonnull Cube cube, @Nonnull Appendable out) throws IOException {
+        int[] loc, orient;
+        if (cube instanceof AbstractCube) {
+            loc = ((AbstractCube) cube).sideLoc;
+            orient = ((AbstractCube) cube).sideOrient;
+        } else {
+            loc = cube.getSideLocations();
+            orient = cube.getSideOrientations();
+        }
+        if (loc.length == 0) {
+            return;
+        }
+        boolean hasEvenLayerCount = cube.getLayerCount() % 2 == 0;
+        gatherCycles(loc, orient, 4, 0);
+
+        boolean isFirst = true;
+        for (int twoPass = 0; twoPass < 2; twoPass++) {
+            for (int c = 0; c < cycleCount; c++) {
+                int from = cycleOffsets[c];
+                int length = cycleOffsets[c + 1] - from;
+                // only print cycles which contain more than one part
+                if (cycleOnSingleFace[c] != (twoPass == 0) || length < 2) {
+                    continue;
+                }
+                int start = cycleStarts[c];
+
+                isFirst = appendCycleSeparator(out, isFirst);
+                out.append(tBegin);
+                for (int k = 0; k < length; k++) {
+                    int j = cycles[from + (start + k) % length];
+                    if (k != 0) {
+                        out.append(tDelimiter);
+                    }
+                    out.append(sideFaces[j % 6]);
+                    if (hasEvenLayerCount) {
+                        appendNumber(out, j / 6 + 1);
+                    } else if (j >= 6) {
+                        appendNumber(out, j / 6);
+                    }
+                }
+                out.append(tEnd);
+            }
+        }
+    }
+
+    /**
+     * Gathers all permutation cycles of the specified parts in one pass.
+     *
+     * @param loc       the locations of the parts
+     * @param orient    the orientations of the parts
+     * @param modulo    the number of orientations of a part
+     * @param startRule -1 = start each cycle with the smallest part,
+     *                  0 = start each cycle with the smallest location,
+     *                  n &gt; 0 = start each cycle with the location that has
+     *                  the same location modulo n as the start of the
+     *                  previous cycle
+     */
+    private void gatherCycles(@Nonnull int[] loc, @Nonnull int[] orient, int modulo, int startRule) {
+        int n = loc.length;
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            partToLoc[loc[i]] = i;
+        }
+        Arrays.fill(visited, 0, n, false);
+
+        cycleCount = 0;
+        int size = 0;
+        int previousCycleStart = -1;
+        for (int i = 0; i < n; i++) {
+            if (visited[i] || (loc[i] == i && orient[i] == 0)) {
+                continue;
+            }
+            int from = size;
+            int start = 0;
+            int orientSum = 0;
+            boolean isOnSingleFace = true;
+            int j = i;
+            while (!visited[j]) {
+                visited[j] = true;
+                cycles[size++] = j;
+                orientSum += orient[j];
+                if (j % 6 != i % 6) {
+                    isOnSingleFace = false;
+                }
+                if (startRule < 0) {
+                    if (loc[j] < loc[cycles[from + start]]) {
+                        start = size - 1 - from;
+                    }
+                } else if (startRule == 0) {
+                    if (cycles[from + start] > j) {
+                        start = size - 1 - from;
+                    }
+                } else if (previousCycleStart == j % startRule) {
+                    start = size - 1 - from;
+                }
+                j = partToLoc[j];
+            }
+            if (startRule > 0) {
+                previousCycleStart = cycles[from + start] % startRule;
+            }
+            cycleOffsets[cycleCount] = from;
+            cycleStarts[cycleCount] = start;
+            cycleOrients[cycleCount] = orientSum % modulo;
+            cycleOnSingleFace[cycleCount] = isOnSingleFace;
+            cycleCount++;
+        }
+        cycleOffsets[cycleCount] = size;
+    }
+
+    private void ensureCapacity(int n) {
+        if (partToLoc.length < n) {
+            partToLoc = new int[n];
+            visited = new boolean[n];
+            cycles = new int[n];
+            cycleOffsets = new int[n + 1];
+            cycleStarts = new int[n];
+            cycleOrients = new int[n];
+            cycleOnSingleFace = new boolean[n];
+        }
+    }
+
+    /**
+     * Appends a blank between two cycles, or a line break between the first
+     * cycle of a part type and the output of the preceding part types.
+     *
+     * @return false
+     */
+    private boolean appendCycleSeparator(@Nonnull Appendable out, boolean isFirst) throws IOException {
+        if (!isFirst) {
+            out.append(' ');
+        } else if (hasOutput) {
+            out.append('\n');
+        }
+        hasOutput = true;
+        return false;
+    }
+
+    private void appendCycleBegin(@Nonnull Appendable out, @Nonnull String sign) throws IOException {
+        if (syntax == Syntax.PREFIX) {
+            // the sign of the cycle is written before the opening bracket
+            out.append(sign);
+            out.append(tBegin);
+        } else if (syntax == Syntax.PRECIRCUMFIX) {
+            // the sign of the cycle is written after the opening bracket
+            out.append(tBegin);
+            out.append(sign);
+        } else {
+            out.append(tBegin);
+        }
+    }
+
+    private void appendCycleEnd(@Nonnull Appendable out, @Nonnull String sign) throws IOException {
+        if (syntax == Syntax.POSTCIRCUMFIX) {
+            // the sign of the cycle is written before the closing bracket
+            out.append(sign);
+            out.append(tEnd);
+        } else if (syntax == Syntax.SUFFIX) {
+            // the sign of the cycle is written after the closing bracket
+            out.append(tEnd);
+            out.append(sign);
+        } else {
+            out.append(tEnd);
+        }
+    }
+
+    /**
+     * Appends a non-negative number without creating a String.
+     */
+    private static void appendNumber(@Nonnull Appendable out, int value) throws IOException {
+        if (value >= 10) {
+            appendNumber(out, value / 10);
+        }
+        out.append((char) ('0' + value % 10));
+    }
+}
@@ -1289,11 +1289,11 @@ public class ProfessorCube extends AbstractCube {
 
     @Nonnull
     public int[][] toStickers() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return StickerCubes.toStickers(this);
     }
 
     public void setToStickers(int[][] stickers) {
-        throw new UnsupportedOperationException("Not supported yet.");
+        StickerCubes.setToStickers(this, stickers);
     }
 
     public int getPartSwipeAxis(int part, int orientation, int swipeDirection) {
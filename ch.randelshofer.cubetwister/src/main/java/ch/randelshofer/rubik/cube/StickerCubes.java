@@ -6,11 +6,8 @@
 package ch.randelshofer.rubik.cube;
 
 import org.jhotdraw.annotation.Nonnull;
-import org.jhotdraw.io.StreamPosTokenizer;
 
 import java.io.IOException;
-import java.io.StreamTokenizer;
-import java.io.StringReader;
 
 
 public class StickerCubes {
@@ -287,17 +284,54 @@ public class StickerCubes {
     }
 
     /**
-     * Sets the cube to the specified stickers.
+     * Returns an array of stickers which reflect the current state of the cube.
+     * <p>
+     * Unlike {@link #rubiksCubeToStickers}, this method supports cubes with
+     * 2 through 7 layers.
+     *
+     * @param cube a cube
+     * @return A two dimensional array. First dimension: faces.
+     * Second dimension: sticker index on the faces.
+     * @see StickerMapper
      */
-    public static void setToStickers(@Nonnull Cube cube, int[] stickers) {
-        int[][] perFaceStickers = new int[6][cube.getLayerCount() * cube.getLayerCount()];
-        int index = 0;
+    @Nonnull
+    public static int[][] toStickers(@Nonnull Cube cube) {
+        int n = cube.getLayerCount();
+        int[] stickers = StickerMapper.getInstance(n).toStickers(cube);
+        int[][] perFaceStickers = new int[6][n * n];
         for (int face = 0; face < perFaceStickers.length; face++) {
-            for (int sticker = 0; sticker < perFaceStickers[face].length; sticker++) {
-                perFaceStickers[face][sticker] = stickers[index++];
-            }
+            System.arraycopy(stickers, face * n * n, perFaceStickers[face], 0, n * n);
+        }
+        return perFaceStickers;
+    }
+
+    /**
+     * Sets the cube to the specified stickers.
+     *
+     * @param cube     a cube
+     * @param stickers An array of dimensions [6][n*n] containing sticker
+     *                 values in the range [0,5] for the six faces right, up,
+     *                 front, left, down, back.
+     * @see StickerMapper
+     */
+    public static void setToStickers(@Nonnull Cube cube, @Nonnull int[][] stickers) {
+        int n = cube.getLayerCount();
+        int[] flatStickers = new int[6 * n * n];
+        for (int face = 0; face < 6; face++) {
+            System.arraycopy(stickers[face], 0, flatStickers, face * n * n, n * n);
         }
-        StickerCubes.setRubksCubeToStickers(((RubiksCube) cube), perFaceStickers);
+        StickerMapper.getInstance(n).setToStickers(cube, flatStickers);
+    }
+
+    /**
+     * Sets the cube to the specified stickers.
+     *
+     * @param cube     a cube
+     * @param stickers An array of 6*n*n sticker values in the range [0,5].
+     * @see StickerMapper
+     */
+    public static void setToStickers(@Nonnull Cube cube, @Nonnull int[] stickers) {
+        StickerMapper.getInstance(cube.getLayerCount()).setToStickers(cube, stickers);
     }
 
     /**
@@ -305,45 +339,45 @@ public class StickerCubes {
      *
      * <pre>
      * stickersString = faceString{6}
-     * faceString     = face, ':', face{9}, '\n'
+     * faceString     = face, ':', face{n*n}, '\n'
      * face     = 'U'|'R'|'F'|'L'|'D'|'B'
      * </pre>
      *
      * @param cube           The cube to be set to the stickers string.
-     * @param stickersString A string with 6*12 characters.
+     * @param stickersString A string with 6*(n*n+3) characters.
      * @param faces          A string with 6 characters identifying each face of the cube , e.g. "RUFLDB".
      * @throws java.io.IOException If stickersString has bad syntax
      */
     public static void setToStickersString(@Nonnull Cube cube, @Nonnull String stickersString, @Nonnull String faces) throws IOException {
-        int[][] perFaceStickers = new int[6][9];
-        StreamPosTokenizer t = new StreamPosTokenizer(new StringReader(stickersString));
-        t.resetSyntax();
-        t.eolIsSignificant(true);
-        while (t.nextToken() != StreamTokenizer.TT_EOF) {
-            if (t.ttype < 0) {
-                throw new IOException("illegal token " + t.ttype + " at line=" + t.lineno() + ", pos=" + t.getStartPosition());
+        int n = cube.getLayerCount();
+        int[] stickers = new int[6 * n * n];
+        int line = 1;
+        int pos = 0;
+        int length = stickersString.length();
+        while (pos < length) {
+            char ch = stickersString.charAt(pos);
+            if (ch == '\n') {
+                line++;
+                pos++;
+                continue;
             }
-            int face = faces.indexOf(t.ttype);
+            int face = faces.indexOf(ch);
             if (face == -1) {
-                throw new IOException("illegal face:" + (char) t.ttype + " at line=" + t.lineno() + ", pos=" + t.getStartPosition());
+                throw new IOException("illegal face:" + ch + " at line=" + line + ", pos=" + pos);
             }
-            System.out.print(face + ":");
-            if (t.nextToken() != ':') {
-                throw new IOException("colon expected:" + (char) t.ttype + " at line=" + t.lineno() + ", pos=" + t.getStartPosition());
+            pos++;
+            if (pos >= length || stickersString.charAt(pos) != ':') {
+                throw new IOException("colon expected at line=" + line + ", pos=" + pos);
             }
-            for (int i = 0; i < 9; i++) {
-                int sticker = faces.indexOf(t.nextToken());
+            pos++;
+            for (int i = 0; i < n * n; i++, pos++) {
+                int sticker = pos < length ? faces.indexOf(stickersString.charAt(pos)) : -1;
                 if (sticker == -1) {
-                    throw new IOException("illegal sticker:" + (char) t.ttype + " at line=" + t.lineno() + ", pos=" + t.getStartPosition());
+                    throw new IOException("illegal sticker at line=" + line + ", pos=" + pos);
                 }
-                perFaceStickers[face][i] = sticker;
-                System.out.print(sticker);
-            }
-            while (t.nextToken() == '\n') {
+                stickers[face * n * n + i] = sticker;
             }
-            System.out.println();
-            t.pushBack();
         }
-        StickerCubes.setRubksCubeToStickers(((RubiksCube) cube), perFaceStickers);
+        setToStickers(cube, stickers);
     }
 }
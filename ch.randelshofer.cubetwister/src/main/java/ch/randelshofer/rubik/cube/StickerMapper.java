@@ -0,0 +1,545 @@
+/*
+ * @(#)StickerMapper.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.cube;
+
+import org.jhotdraw.annotation.Nonnull;
+
+import java.util.Arrays;
+
+/**
+ * Maps the parts of a cube to stickers and vice versa.
+ * <p>
+ * The stickers are stored in a flat array of {@code 6 * n * n} elements,
+ * where {@code n} is the layer count of the cube. The faces are stored in
+ * the order right, up, front, left, down, back. The stickers of a face are
+ * stored row by row, as shown for a 3x3 cube in
+ * {@link StickerCubes#rubiksCubeToStickers}. The value of a sticker is the
+ * index of the face on which it is located when the cube is solved.
+ * <p>
+ * The mapper precomputes a table which maps each (part location,
+ * orientation) pair to a sticker index. Thus a cube can be converted to
+ * stickers with a single table lookup per sticker, and stickers can be
+ * converted to a cube with a single table lookup per part.
+ * <p>
+ * Instances of this class are immutable and can be shared by multiple
+ * threads. Use {@link #getInstance} to get the mapper for a layer count.
+ *
+ * @author Werner Randelshofer
+ */
+public class StickerMapper {
+    private static final StickerMapper[] instances = new StickerMapper[8];
+
+    private final int layerCount;
+    /**
+     * The number of stickers on a face.
+     */
+    private final int faceStickerCount;
+    /**
+     * Maps {@code location * 3 + orientation} of a corner to a sticker index.
+     */
+    @Nonnull
+    private final int[] cornerStickers;
+    /**
+     * Maps {@code part * 3 + orientation} of a corner to the face of the
+     * sticker on the solved cube.
+     */
+    @Nonnull
+    private final int[] cornerFaces;
+    /**
+     * Maps the faces seen at a corner location {@code f0 * 36 + f1 * 6 + f2}
+     * to {@code part * 3 + orientation + 1}, or to 0 if no corner part has
+     * these faces.
+     */
+    @Nonnull
+    private final int[] cornerLookup;
+    /**
+     * Maps {@code location * 2 + orientation} of an edge to a sticker index.
+     */
+    @Nonnull
+    private final int[] edgeStickers;
+    /**
+     * Maps {@code part * 2 + orientation} of an edge to the face of the
+     * sticker on the solved cube.
+     */
+    @Nonnull
+    private final int[] edgeFaces;
+    /**
+     * Maps the faces seen at an edge location {@code f0 * 6 + f1} to the
+     * {@code part * 2 + orientation} values of all edge parts which have
+     * these faces.
+     */
+    @Nonnull
+    private final int[][] edgeLookup;
+    /**
+     * Maps the location of a side to a sticker index.
+     */
+    @Nonnull
+    private final int[] sideStickers;
+    /**
+     * Maps the faces to the side parts which have this face.
+     */
+    @Nonnull
+    private final int[][] sideLookup;
+
+    /**
+     * Returns the sticker mapper for the specified layer count.
+     *
+     * @param layerCount the layer count, a value in the range [2,7]
+     * @return the sticker mapper
+     */
+    @Nonnull
+    public static StickerMapper getInstance(int layerCount) {
+        if (layerCount < 2 || layerCount > 7) {
+            throw new IllegalArgumentException("Unsupported layer count " + layerCount);
+        }
+        synchronized (instances) {
+            StickerMapper instance = instances[layerCount];
+            if (instance == null) {
+                instance = new StickerMapper(layerCount);
+                instances[layerCount] = instance;
+            }
+            return instance;
+        }
+    }
+
+    private StickerMapper(int layerCount) {
+        this.layerCount = layerCount;
+        this.faceStickerCount = layerCount * layerCount;
+
+        // Determine the position of each part location by twisting each
+        // layer of a cube once. A location lies on the layer if the twist
+        // changes the part or the orientation of the part at the location.
+        Cube cube = CubeFactory.create(layerCount);
+        cube.setQuiet(true);
+        int cornerCount = cube.getCornerCount();
+        int edgeCount = cube.getEdgeCount();
+        int sideCount = cube.getSideCount();
+        int[][] cornerPos = new int[cornerCount][3];
+        int[][] edgePos = new int[edgeCount][3];
+        int[][] sidePos = new int[sideCount][3];
+        for (int axis = 0; axis < 3; axis++) {
+            for (int layer = 0; layer < layerCount; layer++) {
+                cube.reset();
+                cube.transform(axis, 1 << layer, 1);
+                probeLayer(cube.getCornerLocations(), cube.getCornerOrientations(), cornerPos, axis, layer);
+                probeLayer(cube.getEdgeLocations(), cube.getEdgeOrientations(), edgePos, axis, layer);
+                probeLayer(cube.getSideLocations(), cube.getSideOrientations(), sidePos, axis, layer);
+            }
+        }
+
+        // Flip the layer numbers of an axis, if the urf corner does not lie
+        // on the last layer of the axis.
+        boolean[] flip = new boolean[3];
+        for (int axis = 0; axis < 3; axis++) {
+            flip[axis] = cornerPos[0][axis] != layerCount - 1;
+        }
+        flipLayers(cornerPos, flip);
+        flipLayers(edgePos, flip);
+        flipLayers(sidePos, flip);
+
+        cornerStickers = new int[cornerCount * 3];
+        cornerFaces = new int[cornerCount * 3];
+        for (int i = 0; i < cornerCount; i++) {
+            for (int k = 0; k < 3; k++) {
+                int face = StickerCubes.CORNER_TRANSLATION[i][k * 2];
+                cornerFaces[i * 3 + k] = face;
+                cornerStickers[i * 3 + k] = toStickerIndex(face, cornerPos[i]);
+            }
+        }
+        edgeStickers = new int[edgeCount * 2];
+        edgeFaces = new int[edgeCount * 2];
+        for (int i = 0; i < edgeCount; i++) {
+            for (int k = 0; k < 2; k++) {
+                int face = StickerCubes.EDGE_TRANSLATION[i % 12][k * 2];
+                edgeFaces[i * 2 + k] = face;
+                edgeStickers[i * 2 + k] = toStickerIndex(face, edgePos[i]);
+            }
+        }
+        sideStickers = new int[sideCount];
+        for (int i = 0; i < sideCount; i++) {
+            sideStickers[i] = toStickerIndex(i % 6, sidePos[i]);
+        }
+
+        // Build the lookup tables for converting stickers to parts.
+        cornerLookup = new int[6 * 6 * 6];
+        for (int part = 0; part < cornerCount; part++) {
+            for (int orient = 0; orient < 3; orient++) {
+                int f0 = cornerFaces[part * 3 + orient];
+                int f1 = cornerFaces[part * 3 + (1 + orient) % 3];
+                int f2 = cornerFaces[part * 3 + (2 + orient) % 3];
+                cornerLookup[f0 * 36 + f1 * 6 + f2] = part * 3 + orient + 1;
+            }
+        }
+        int[] edgeLookupCount = new int[6 * 6];
+        for (int part = 0; part < edgeCount; part++) {
+            edgeLookupCount[edgeFaces[part * 2] * 6 + edgeFaces[part * 2 + 1]]++;
+            edgeLookupCount[edgeFaces[part * 2 + 1] * 6 + edgeFaces[part * 2]]++;
+        }
+        edgeLookup = new int[6 * 6][];
+        for (int i = 0; i < edgeLookup.length; i++) {
+            edgeLookup[i] = new int[edgeLookupCount[i]];
+            edgeLookupCount[i] = 0;
+        }
+        for (int part = 0; part < edgeCount; part++) {
+            for (int orient = 0; orient < 2; orient++) {
+                int key = edgeFaces[part * 2 + orient] * 6 + edgeFaces[part * 2 + (1 + orient) % 2];
+                edgeLookup[key][edgeLookupCount[key]++] = part * 2 + orient;
+            }
+        }
+        sideLookup = new int[6][sideCount / 6];
+        for (int part = 0; part < sideCount; part++) {
+            sideLookup[part % 6][part / 6] = part;
+        }
+    }
+
+    private static void probeLayer(@Nonnull int[] loc, @Nonnull int[] orient, @Nonnull int[][] pos, int axis, int layer) {
+        for (int i = 0; i < loc.length; i++) {
+            if (loc[i] != i || orient[i] != 0) {
+                pos[i][axis] = layer;
+            }
+        }
+    }
+
+    private void flipLayers(@Nonnull int[][] pos, @Nonnull boolean[] flip) {
+        for (int[] p : pos) {
+            for (int axis = 0; axis < 3; axis++) {
+                if (flip[axis]) {
+                    p[axis] = layerCount - 1 - p[axis];
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the sticker on the specified face of the part at
+     * the specified position.
+     *
+     * @param face the face
+     * @param pos  the position of the part: x from left to right, y from
+     *             down to up, z from back to front
+     * @return the sticker index
+     */
+    private int toStickerIndex(int face, @Nonnull int[] pos) {
+        int last = layerCount - 1;
+        int x = pos[0], y = pos[1], z = pos[2];
+        int row, column;
+        switch (face) {
+        case 0: // right
+            row = last - y;
+            column = last - z;
+            break;
+        case 1: // up
+            row = z;
+            column = x;
+            break;
+        case 2: // front
+            row = last - y;
+            column = x;
+            break;
+        case 3: // left
+            row = last - y;
+            column = z;
+            break;
+        case 4: // down
+            row = last - z;
+            column = x;
+            break;
+        case 5: // back
+        default:
+            row = last - y;
+            column = last - x;
+            break;
+        }
+        return face * faceStickerCount + row * layerCount + column;
+    }
+
+    public int getLayerCount() {
+        return layerCount;
+    }
+
+    /**
+     * Returns the number of stickers on the cube.
+     */
+    public int getStickerCount() {
+        return faceStickerCount * 6;
+    }
+
+    /**
+     * Returns the index of the sticker at the specified orientation of the
+     * specified corner location.
+     */
+    public int getCornerSticker(int location, int orientation) {
+        return cornerStickers[location * 3 + orientation];
+    }
+
+    /**
+     * Returns the index of the sticker at the specified orientation of the
+     * specified edge location.
+     */
+    public int getEdgeSticker(int location, int orientation) {
+        return edgeStickers[location * 2 + orientation];
+    }
+
+    /**
+     * Returns the index of the sticker of the specified side location.
+     */
+    public int getSideSticker(int location) {
+        return sideStickers[location];
+    }
+
+    /**
+     * Returns the stickers of the cube in a new array.
+     *
+     * @param cube a cube with the layer count of this mapper
+     * @return the stickers
+     */
+    @Nonnull
+    public int[] toStickers(@Nonnull Cube cube) {
+        int[] stickers = new int[getStickerCount()];
+        writeStickers(cube, stickers);
+        return stickers;
+    }
+
+    /**
+     * Writes the stickers of the cube into the provided array.
+     *
+     * @param cube     a cube with the layer count of this mapper
+     * @param stickers an array with at least {@link #getStickerCount}
+     *                 elements
+     */
+    public void writeStickers(@Nonnull Cube cube, @Nonnull int[] stickers) {
+        checkLayerCount(cube);
+        if (cube instanceof AbstractCube) {
+            AbstractCube c = (AbstractCube) cube;
+            synchronized (c) {
+                writeStickers(c.cornerLoc, c.cornerOrient, c.edgeLoc, c.edgeOrient, c.sideLoc, stickers);
+            }
+        } else {
+            writeStickers(cube.getCornerLocations(), cube.getCornerOrientations(),
+                    cube.getEdgeLocations(), cube.getEdgeOrientations(),
+                    cube.getSideLocations(), stickers);
+        }
+    }
+
+    private void writeStickers(@Nonnull int[] cornerLoc, @Nonnull int[] cornerOrient,
+                               @Nonnull int[] edgeLoc, @Nonnull int[] edgeOrient,
+                               @Nonnull int[] sideLoc, @Nonnull int[] stickers) {
+        for (int i = 0; i < cornerLoc.length; i++) {
+            int part = cornerLoc[i] * 3;
+            int orient = cornerOrient[i];
+            stickers[cornerStickers[i * 3]] = cornerFaces[part + orient];
+            stickers[cornerStickers[i * 3 + 1]] = cornerFaces[part + (1 + orient) % 3];
+            stickers[cornerStickers[i * 3 + 2]] = cornerFaces[part + (2 + orient) % 3];
+        }
+        for (int i = 0; i < edgeLoc.length; i++) {
+            int part = edgeLoc[i] * 2;
+            int orient = edgeOrient[i];
+            stickers[edgeStickers[i * 2]] = edgeFaces[part + orient];
+            stickers[edgeStickers[i * 2 + 1]] = edgeFaces[part + 1 - orient];
+        }
+        for (int i = 0; i < sideLoc.length; i++) {
+            stickers[sideStickers[i]] = sideLoc[i] % 6;
+        }
+    }
+
+    /**
+     * Writes the stickers of the cube into the provided byte array.
+     *
+     * @param cube     a cube with the layer count of this mapper
+     * @param stickers an array with at least {@link #getStickerCount}
+     *                 elements
+     */
+    public void writeStickers(@Nonnull Cube cube, @Nonnull byte[] stickers) {
+        checkLayerCount(cube);
+        if (cube instanceof AbstractCube) {
+            AbstractCube c = (AbstractCube) cube;
+            synchronized (c) {
+                writeStickers(c.cornerLoc, c.cornerOrient, c.edgeLoc, c.edgeOrient, c.sideLoc, stickers);
+            }
+        } else {
+            writeStickers(cube.getCornerLocations(), cube.getCornerOrientations(),
+                    cube.getEdgeLocations(), cube.getEdgeOrientations(),
+                    cube.getSideLocations(), stickers);
+        }
+    }
+
+    private void writeStickers(@Nonnull int[] cornerLoc, @Nonnull int[] cornerOrient,
+                               @Nonnull int[] edgeLoc, @Nonnull int[] edgeOrient,
+                               @Nonnull int[] sideLoc, @Nonnull byte[] stickers) {
+        for (int i = 0; i < cornerLoc.length; i++) {
+            int part = cornerLoc[i] * 3;
+            int orient = cornerOrient[i];
+            stickers[cornerStickers[i * 3]] = (byte) cornerFaces[part + orient];
+            stickers[cornerStickers[i * 3 + 1]] = (byte) cornerFaces[part + (1 + orient) % 3];
+            stickers[cornerStickers[i * 3 + 2]] = (byte) cornerFaces[part + (2 + orient) % 3];
+        }
+        for (int i = 0; i < edgeLoc.length; i++) {
+            int part = edgeLoc[i] * 2;
+            int orient = edgeOrient[i];
+            stickers[edgeStickers[i * 2]] = (byte) edgeFaces[part + orient];
+            stickers[edgeStickers[i * 2 + 1]] = (byte) edgeFaces[part + 1 - orient];
+        }
+        for (int i = 0; i < sideLoc.length; i++) {
+            stickers[sideStickers[i]] = (byte) (sideLoc[i] % 6);
+        }
+    }
+
+    /**
+     * Sets the cube to a state where the faces of the parts map to the
+     * provided stickers.
+     * <p>
+     * Parts which look the same, for example the side parts of a face,
+     * are assigned in the order of their locations. The orientation of the
+     * side parts is set to 0.
+     *
+     * @param cube     a cube with the layer count of this mapper
+     * @param stickers an array with {@link #getStickerCount} elements
+     *                 containing sticker values in the range [0,5] for the
+     *                 six faces right, up, front, left, down, back.
+     * @throws IllegalArgumentException if the stickers do not describe a
+     *                                  valid cube
+     */
+    public void setToStickers(@Nonnull Cube cube, @Nonnull int[] stickers) {
+        checkLayerCount(cube);
+        if (stickers.length < getStickerCount()) {
+            throw new IllegalArgumentException("Too few stickers " + stickers.length);
+        }
+        int[] cornerLoc = new int[cubeCornerCount()];
+        int[] cornerOrient = new int[cornerLoc.length];
+        int[] edgeLoc = new int[edgeStickers.length / 2];
+        int[] edgeOrient = new int[edgeLoc.length];
+        int[] sideLoc = new int[sideStickers.length];
+        int[] sideOrient = new int[sideLoc.length];
+
+        // Translate corner parts to match stickers.
+        boolean[] used = new boolean[Math.max(cornerLoc.length, Math.max(edgeLoc.length, sideLoc.length))];
+        for (int i = 0; i < cornerLoc.length; i++) {
+            int f0 = stickers[cornerStickers[i * 3]];
+            int f1 = stickers[cornerStickers[i * 3 + 1]];
+            int f2 = stickers[cornerStickers[i * 3 + 2]];
+            int value = isFace(f0) && isFace(f1) && isFace(f2) ? cornerLookup[f0 * 36 + f1 * 6 + f2] - 1 : -1;
+            if (value == -1) {
+                throw new IllegalArgumentException("Invalid corner cube " + i);
+            }
+            int part = value / 3;
+            if (used[part]) {
+                throw new IllegalArgumentException("Duplicate corner cube " + part + " at location " + i);
+            }
+            used[part] = true;
+            cornerLoc[i] = part;
+            cornerOrient[i] = value % 3;
+        }
+
+        // Translate edge parts to match stickers.
+        Arrays.fill(used, false);
+        for (int i = 0; i < edgeLoc.length; i++) {
+            int f0 = stickers[edgeStickers[i * 2]];
+            int f1 = stickers[edgeStickers[i * 2 + 1]];
+            if (!isFace(f0) || !isFace(f1) || edgeLookup[f0 * 6 + f1].length == 0) {
+                throw new IllegalArgumentException("Invalid edge cube " + i);
+            }
+            int value = choose(edgeLookup[f0 * 6 + f1], used, i, 2);
+            if (value == -1) {
+                throw new IllegalArgumentException("Duplicate edge cube at location " + i);
+            }
+            edgeLoc[i] = value / 2;
+            edgeOrient[i] = value % 2;
+        }
+
+        // Translate side parts to match stickers.
+        Arrays.fill(used, false);
+        for (int i = 0; i < sideLoc.length; i++) {
+            int f = stickers[sideStickers[i]];
+            if (!isFace(f)) {
+                throw new IllegalArgumentException("Invalid side cube " + i);
+            }
+            int value = choose(sideLookup[f], used, i, 1);
+            if (value == -1) {
+                throw new IllegalArgumentException("Duplicate side cube at location " + i);
+            }
+            sideLoc[i] = value;
+        }
+
+        if (cube instanceof AbstractCube) {
+            AbstractCube c = (AbstractCube) cube;
+            synchronized (c) {
+                System.arraycopy(cornerLoc, 0, c.cornerLoc, 0, cornerLoc.length);
+                System.arraycopy(cornerOrient, 0, c.cornerOrient, 0, cornerOrient.length);
+                System.arraycopy(edgeLoc, 0, c.edgeLoc, 0, edgeLoc.length);
+                System.arraycopy(edgeOrient, 0, c.edgeOrient, 0, edgeOrient.length);
+                System.arraycopy(sideLoc, 0, c.sideLoc, 0, sideLoc.length);
+                System.arraycopy(sideOrient, 0, c.sideOrient, 0, sideOrient.length);
+                c.transformType = AbstractCube.TransformType.UNKNOWN;
+            }
+            c.fireCubeChanged(new CubeEvent(c, 0, 0, 0));
+        } else {
+            cube.setCorners(cornerLoc, cornerOrient);
+            cube.setEdges(edgeLoc, edgeOrient);
+            cube.setSides(sideLoc, sideOrient);
+        }
+    }
+
+    /**
+     * Sets the cube to a state where the faces of the parts map to the
+     * provided stickers.
+     *
+     * @param cube     a cube with the layer count of this mapper
+     * @param stickers an array with {@link #getStickerCount} elements
+     * @throws IllegalArgumentException if the stickers do not describe a
+     *                                  valid cube
+     * @see #setToStickers(Cube, int[])
+     */
+    public void setToStickers(@Nonnull Cube cube, @Nonnull byte[] stickers) {
+        int[] intStickers = new int[Math.min(stickers.length, getStickerCount())];
+        for (int i = 0; i < intStickers.length; i++) {
+            intStickers[i] = stickers[i];
+        }
+        setToStickers(cube, intStickers);
+    }
+
+    private int cubeCornerCount() {
+        return cornerStickers.length / 3;
+    }
+
+    private static boolean isFace(int face) {
+        return face >= 0 && face < 6;
+    }
+
+    /**
+     * Chooses an unused part from the candidates. Prefers the part whose
+     * home location is the specified location.
+     *
+     * @param candidates candidate values {@code part * stride + orientation}
+     * @param used       marks the parts which are already in use
+     * @param location   the location
+     * @param stride     the number of orientations encoded in a value
+     * @return the chosen value, or -1 if all candidates are in use
+     */
+    private static int choose(@Nonnull int[] candidates, @Nonnull boolean[] used, int location, int stride) {
+        int chosen = -1;
+        for (int value : candidates) {
+            int part = value / stride;
+            if (!used[part]) {
+                if (part == location) {
+                    chosen = value;
+                    break;
+                }
+                if (chosen == -1) {
+                    chosen = value;
+                }
+            }
+        }
+        if (chosen != -1) {
+            used[chosen / stride] = true;
+        }
+        return chosen;
+    }
+
+    private void checkLayerCount(@Nonnull Cube cube) {
+        if (cube.getLayerCount() != layerCount) {
+            throw new IllegalArgumentException("Layer count " + cube.getLayerCount() + " does not match " + layerCount);
+        }
+    }
+}
@@ -14,11 +14,19 @@ import idx3d.idx3d_Node;
 import idx3d.idx3d_Object;
 import idx3d.idx3d_Scene;
 import idx3d.idx3d_Texture;
+import idx3d.idx3d_Triangle;
 import org.jhotdraw.annotation.Nonnull;
 import org.jhotdraw.annotation.Nullable;
 
 import java.awt.Color;
 import java.awt.Image;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * Abstract base class for the geometrical representation of a {@link Cube}
@@ -75,6 +83,17 @@ public abstract class AbstractCubeIdx3D extends AbstractCube3D {
     protected float explosion = 15f;
     protected boolean isInStartedPlayer;
     private float unitScaleFactor = 0.018f;
+    /**
+     * Holds the meshes of the part shapes of all cubes in this process.
+     * The meshes are validated before they are put into the map, and are
+     * never changed afterwards, so they can be shared by cubes which are
+     * created on different threads.
+     * <p>
+     * The key of a mesh built from arrays is a {@link ShapeKey}, which
+     * compares the vertex array and the face array of the shape by content.
+     */
+    @Nonnull
+    private final static Map<Object, idx3d_Object> partMeshes = new ConcurrentHashMap<>();
 
     /**
      * Creates a new instance.
@@ -322,6 +341,60 @@ public abstract class AbstractCubeIdx3D extends AbstractCube3D {
         }
     }
 
+    /**
+     * Creates the mesh of a part.
+     * <p>
+     * All parts of the same shape are instances of a shared mesh, which is
+     * built on the first call with vertex and face arrays of equal content,
+     * by any cube in this process. The parts share the vertex positions and
+     * normals of the mesh, and only have their own transform, materials and
+     * texture coordinates.
+     *
+     * @param verts the coordinates of the vertices, three values per vertex
+     * @param faces the vertex indices of the faces, each face is a convex
+     *              polygon
+     * @return an instance of the mesh
+     */
+    @Nonnull
+    protected idx3d_Object createPartMesh(@Nonnull float[] verts, @Nonnull int[][] faces) {
+        return createPartMesh(new ShapeKey(verts, faces), () -> {
+            idx3d_Object object3D = new idx3d_Object();
+            for (int i = 0; i < verts.length / 3; i++) {
+                object3D.addVertex(verts[i * 3], verts[i * 3 + 1], verts[i * 3 + 2]);
+            }
+            for (int[] face : faces) {
+                for (int j = 2; j < face.length; j++) {
+                    object3D.addTriangle(new idx3d_Triangle(
+                            object3D.vertex(face[0]),
+                            object3D.vertex(face[j - 1]),
+                            object3D.vertex(face[j])));
+                }
+            }
+            return object3D;
+        });
+    }
+
+    /**
+     * Creates the mesh of a part, which is built by a factory.
+     * <p>
+     * The factory is only invoked on the first call with an equal key, by any
+     * cube in this process. The returned object is an instance of the mesh.
+     *
+     * @param key     the key of the shape, must implement equals and hashCode
+     *                and must include all parameters of the factory
+     * @param factory creates the mesh of the shape
+     * @return an instance of the mesh
+     */
+    @Nonnull
+    protected idx3d_Object createPartMesh(@Nonnull Object key, @Nonnull Supplier<idx3d_Object> factory) {
+        idx3d_Object mesh = partMeshes.computeIfAbsent(key, k -> {
+            idx3d_Object object3D = factory.get();
+            object3D.rebuild();
+            return object3D;
+        });
+        return mesh.createInstance();
+    }
+
     protected idx3d_Group getPart(int partIndex) {
         return parts[partIndex];
     }
@@ -414,6 +487,43 @@ public abstract class AbstractCubeIdx3D extends AbstractCube3D {
 
     protected abstract void validateTwist(int[] partIndices, int[] locations, int[] orientations, int length, int axis, int angle, float alpha);
 
+    /**
+     * Notifies all listeners that a twist has progressed.
+     * <p>
+     * While the twist is in progress, the location transforms of the
+     * twisted parts are the dynamic nodes of the scene. A render pipeline
+     * in layered mode renders the other parts only once, and then renders
+     * only the twisted parts for each frame.
+     *
+     * @param partIndices the indices of the twisted parts
+     * @param length      the number of twisted parts
+     * @param alpha       the progress of the twist, 1 when finished
+     */
+    protected void fireTwistProgressed(int[] partIndices, int length, float alpha) {
+        if (alpha < 1f) {
+            List<idx3d_Node> twistedNodes = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                twistedNodes.add(locationTransforms[partIndices[i]]);
+            }
+            scene.setDynamicNodes(twistedNodes);
+        } else {
+            scene.setDynamicNodes(Collections.emptyList());
+        }
+        super.fireStateChanged();
+    }
+
+    /**
+     * Invalidates the cached image of the static parts of the scene, and
+     * notifies all listeners.
+     */
+    @Override
+    protected void fireStateChanged() {
+        if (scene != null) {
+            scene.invalidateStaticLayer();
+        }
+        super.fireStateChanged();
+    }
+
     /**
      * Updates the visibility of a part.
      * The part Index is interpreted according to the scheme
@@ -499,4 +609,45 @@ public abstract class AbstractCubeIdx3D extends AbstractCube3D {
     public boolean isInStartedPlayer() {
         return isInStartedPlayer;
     }
+
+    /**
+     * The key of a mesh which is built from a vertex array and a face array.
+     * Holds copies of the arrays, so that the key does not change when the
+     * arrays of the caller are changed, and compares them by content.
+     */
+    private final static class ShapeKey {
+        @Nonnull
+        private final float[] verts;
+        @Nonnull
+        private final int[][] faces;
+        private final int hash;
+
+        ShapeKey(@Nonnull float[] verts, @Nonnull int[][] faces) {
+            this.verts = verts.clone();
+            this.faces = new int[faces.length][];
+            for (int i = 0; i < faces.length; i++) {
+                this.faces[i] = faces[i].clone();
+            }
+            hash = 31 * Arrays.hashCode(this.verts) + Arrays.deepHashCode(this.faces);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ShapeKey)) {
+                return false;
+            }
+            ShapeKey that = (ShapeKey) o;
+            return hash == that.hash
+                    && Arrays.equals(verts, that.verts)
+                    && Arrays.deepEquals(faces, that.faces);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
 }
@@ -21,6 +21,7 @@ import org.monte.media.av.Interpolator;
 import org.monte.media.interpolator.SplineInterpolator;
 
 import javax.swing.SwingUtilities;
+import java.util.List;
 
 /**
  * Abstract base class for the geometrical representation of a {@link PocketCube}
@@ -145,7 +146,7 @@ public abstract class AbstractPocketCubeIdx3D extends AbstractCubeIdx3D {
         object3D.material = new idx3d_InternalMaterial();
         parts[centerOffset] = object3D;
          */
-        idx3d_Object object3D = idx3d_ObjectFactory.SPHERE(9, 18);
+        idx3d_Object object3D = createPartMesh(List.of("SPHERE", 9f, 18), () -> idx3d_ObjectFactory.SPHERE(9, 18));
         object3D.material = new idx3d_InternalMaterial();
         idx3d_Group group = new idx3d_Group();
         group.addChild(object3D);
@@ -257,7 +258,7 @@ public abstract class AbstractPocketCubeIdx3D extends AbstractCubeIdx3D {
             protected void update(float value) {
                 //validateTwist(finalIndices, locationTransforms, normaltransforms, axis, angle, value);
                 validateTwist(partIndices, locations, orientations, finalCount, axis, angle, value);
-                fireStateChanged();
+                fireTwistProgressed(partIndices, finalCount, value);
             }
 
             @Override
@@ -21,6 +21,7 @@ import org.monte.media.av.Interpolator;
 import org.monte.media.interpolator.SplineInterpolator;
 
 import javax.swing.SwingUtilities;
+import java.util.List;
 
 /**
  * Abstract base class for the geometrical representation of a {@link ProfessorCube}
@@ -67,7 +68,7 @@ public abstract class AbstractProfessorCubeIdx3D extends AbstractCubeIdx3D {
     protected void initCenter() {
         idx3d_Object sphere;
 
-        sphere = idx3d_ObjectFactory.SPHERE(PART_LENGTH * 1.5f, 18);
+        sphere = createPartMesh(List.of("SPHERE", PART_LENGTH * 1.5f, 18), () -> idx3d_ObjectFactory.SPHERE(PART_LENGTH * 1.5f, 18));
 
         idx3d_Object object3D = sphere;
         object3D.material = new idx3d_InternalMaterial();
@@ -435,7 +436,7 @@ public abstract class AbstractProfessorCubeIdx3D extends AbstractCubeIdx3D {
 
             protected void update(float value) {
                 validateTwist(partIndices, locations, orientations, finalCount, axis, angle, value);
-                fireStateChanged();
+                fireTwistProgressed(partIndices, finalCount, value);
             }
 
             @Override
@@ -384,7 +384,7 @@ public abstract class AbstractRubiksCubeIdx3D extends AbstractCubeIdx3D {
             @Override
             protected void update(float value) {
                 validateTwist(partIndices, locations, orientations, finalCount, axis, angle, value);
-                fireStateChanged();
+                fireTwistProgressed(partIndices, finalCount, value);
             }
 
             @Override
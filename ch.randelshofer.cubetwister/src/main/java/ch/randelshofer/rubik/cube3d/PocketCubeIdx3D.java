@@ -11,7 +11,6 @@ import idx3d.idx3d_Group;
 import idx3d.idx3d_InternalMaterial;
 import idx3d.idx3d_Object;
 import idx3d.idx3d_Scene;
-import idx3d.idx3d_Triangle;
 import org.jhotdraw.annotation.Nonnull;
 
 import java.awt.Color;
@@ -410,26 +409,12 @@ public class PocketCubeIdx3D extends AbstractPocketCubeIdx3D {
 
     @Override
     protected void initCorners() {
-        int i, j, part;
+        int part;
         float[] verts = CORNER_VERTS;
         int[][] faces = CORNER_FACES;
 
         for (part = 0; part < 8; part++) {
-            idx3d_Object object3D = new idx3d_Object();
-            for (i = 0; i < verts.length / 3; i++) {
-                object3D.addVertex(
-                        verts[i * 3], verts[i * 3 + 1], verts[i * 3 + 2]);
-            }
-            for (i = 0; i < faces.length; i++) {
-                for (j = 2; j < faces[i].length; j++) {
-                    idx3d_Triangle triangle = new idx3d_Triangle(
-                            object3D.vertex(faces[i][0]),
-                            object3D.vertex(faces[i][j - 1]),
-                            object3D.vertex(faces[i][j]));
-
-                    object3D.addTriangle(triangle);
-                }
-            }
+            idx3d_Object object3D = createPartMesh(verts, faces);
             object3D.material = new idx3d_InternalMaterial();
             idx3d_InternalMaterial sticker = new idx3d_InternalMaterial();
             object3D.triangle(0).setTriangleMaterial(sticker);
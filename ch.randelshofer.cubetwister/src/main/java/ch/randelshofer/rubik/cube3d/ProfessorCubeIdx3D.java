@@ -362,20 +362,7 @@ public class ProfessorCubeIdx3D extends AbstractProfessorCubeIdx3D {
                     };
         }
         for (int part = 0; part < edgeCount; part++) {
-            idx3d_Object object3D = new idx3d_Object();
-            for (int i = 0; i < EDGE_VERTS.length / 3; i++) {
-                object3D.addVertex(
-                        EDGE_VERTS[i * 3], EDGE_VERTS[i * 3 + 1], EDGE_VERTS[i * 3 + 2]);
-            }
-            for (int i = 0; i < EDGE_FACES.length; i++) {
-                for (int j = 2; j < EDGE_FACES[i].length; j++) {
-                    idx3d_Triangle triangle = new idx3d_Triangle(
-                            object3D.vertex(EDGE_FACES[i][0]),
-                            object3D.vertex(EDGE_FACES[i][j - 1]),
-                            object3D.vertex(EDGE_FACES[i][j]));
-                    object3D.addTriangle(triangle);
-                }
-            }
+            idx3d_Object object3D = createPartMesh(EDGE_VERTS, EDGE_FACES);
             object3D.material = new idx3d_InternalMaterial();
             idx3d_InternalMaterial sticker = new idx3d_InternalMaterial();
             object3D.triangle(0).setTriangleMaterial(sticker);
@@ -615,26 +602,7 @@ public class ProfessorCubeIdx3D extends AbstractProfessorCubeIdx3D {
         int[] myMap = {0, 1, 1, 0, -1, -1, -1, 0, 1};
         for (int part = 0; part
                 < sideCount; part++) {
-            idx3d_Object object3D = new idx3d_Object();
-            for (int i = 0; i
-                    < SIDE_VERTS.length / 3; i++) {
-                object3D.addVertex(
-                        SIDE_VERTS[i * 3], SIDE_VERTS[i * 3 + 1], SIDE_VERTS[i * 3 + 2]);
-            }
-
-            for (int i = 0; i
-                    < SIDE_FACES.length; i++) {
-                for (int j = 2; j
-                        < SIDE_FACES[i].length; j++) {
-                    idx3d_Triangle triangle = new idx3d_Triangle(
-                            object3D.vertex(SIDE_FACES[i][0]),
-                            object3D.vertex(SIDE_FACES[i][j - 1]),
-                            object3D.vertex(SIDE_FACES[i][j]));
-                    object3D.addTriangle(triangle);
-                    //if (i == 0) triangle.setMaterial(STICKER_MATERIALS[part]);
-                }
-
-            }
+            idx3d_Object object3D = createPartMesh(SIDE_VERTS, SIDE_FACES);
 
             object3D.material = new idx3d_InternalMaterial();
             idx3d_InternalMaterial sticker1 = new idx3d_InternalMaterial();
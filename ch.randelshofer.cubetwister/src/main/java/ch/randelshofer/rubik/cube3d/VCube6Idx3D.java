@@ -13,7 +13,6 @@ import idx3d.idx3d_InternalMaterial;
 import idx3d.idx3d_Node;
 import idx3d.idx3d_Object;
 import idx3d.idx3d_Scene;
-import idx3d.idx3d_Triangle;
 import org.jhotdraw.annotation.Nonnull;
 
 import java.awt.Color;
@@ -63,7 +62,7 @@ public class VCube6Idx3D extends AbstractCube6Idx3D {
 
     @Override
     protected void initCorners() {
-        int i, j, part;
+        int part;
         if (CORNER_VERTS == null) {
             // The corner parts are bigger than the side parts
             CORNER_VERTS = new float[]{
@@ -142,21 +141,7 @@ public class VCube6Idx3D extends AbstractCube6Idx3D {
                     };
         }
         for (part = 0; part < cornerCount; part++) {
-            idx3d_Object object3D = new idx3d_Object();
-            for (i = 0; i < CORNER_VERTS.length / 3; i++) {
-                object3D.addVertex(
-                        CORNER_VERTS[i * 3], CORNER_VERTS[i * 3 + 1], CORNER_VERTS[i * 3 + 2]);
-            }
-            for (i = 0; i < CORNER_FACES.length; i++) {
-                for (j = 2; j < CORNER_FACES[i].length; j++) {
-                    idx3d_Triangle triangle = new idx3d_Triangle(
-                            object3D.vertex(CORNER_FACES[i][0]),
-                            object3D.vertex(CORNER_FACES[i][j - 1]),
-                            object3D.vertex(CORNER_FACES[i][j]));
-
-                    object3D.addTriangle(triangle);
-                }
-            }
+            idx3d_Object object3D = createPartMesh(CORNER_VERTS, CORNER_FACES);
             object3D.material = new idx3d_InternalMaterial();
             idx3d_InternalMaterial sticker = new idx3d_InternalMaterial();
             object3D.triangle(0).setTriangleMaterial(sticker);
@@ -371,20 +356,7 @@ public class VCube6Idx3D extends AbstractCube6Idx3D {
                     };
         }
         for (int part = 0; part < edgeCount; part++) {
-            idx3d_Object object3D = new idx3d_Object();
-            for (int i = 0; i < EDGE_VERTS.length / 3; i++) {
-                object3D.addVertex(
-                        EDGE_VERTS[i * 3], EDGE_VERTS[i * 3 + 1], EDGE_VERTS[i * 3 + 2]);
-            }
-            for (int i = 0; i < EDGE_FACES.length; i++) {
-                for (int j = 2; j < EDGE_FACES[i].length; j++) {
-                    idx3d_Triangle triangle = new idx3d_Triangle(
-                            object3D.vertex(EDGE_FACES[i][0]),
-                            object3D.vertex(EDGE_FACES[i][j - 1]),
-                            object3D.vertex(EDGE_FACES[i][j]));
-                    object3D.addTriangle(triangle);
-                }
-            }
+            idx3d_Object object3D = createPartMesh(EDGE_VERTS, EDGE_FACES);
             object3D.material = new idx3d_InternalMaterial();
             idx3d_InternalMaterial sticker = new idx3d_InternalMaterial();
             object3D.triangle(0).setTriangleMaterial(sticker);
@@ -669,21 +641,7 @@ public class VCube6Idx3D extends AbstractCube6Idx3D {
         }
 
         for (int part = 0; part < sideCount; part++) {
-            idx3d_Object object3D = new idx3d_Object();
-            for (int i = 0; i < SIDE_VERTS.length / 3; i++) {
-                object3D.addVertex(
-                        SIDE_VERTS[i * 3], SIDE_VERTS[i * 3 + 1], SIDE_VERTS[i * 3 + 2]);
-            }
-            for (int i = 0; i < SIDE_FACES.length; i++) {
-                for (int j = 2; j < SIDE_FACES[i].length; j++) {
-                    idx3d_Triangle triangle = new idx3d_Triangle(
-                            object3D.vertex(SIDE_FACES[i][0]),
-                            object3D.vertex(SIDE_FACES[i][j - 1]),
-                            object3D.vertex(SIDE_FACES[i][j]));
-                    object3D.addTriangle(triangle);
-                    //if (i == 0) triangle.setMaterial(STICKER_MATERIALS[part]);
-                }
-            }
+            idx3d_Object object3D = createPartMesh(SIDE_VERTS, SIDE_FACES);
 
             object3D.material = new idx3d_InternalMaterial();
             idx3d_InternalMaterial sticker1 = new idx3d_InternalMaterial();
@@ -13,7 +13,6 @@ import idx3d.idx3d_InternalMaterial;
 import idx3d.idx3d_Node;
 import idx3d.idx3d_Object;
 import idx3d.idx3d_Scene;
-import idx3d.idx3d_Triangle;
 import org.jhotdraw.annotation.Nonnull;
 
 import java.awt.Color;
@@ -347,7 +346,7 @@ public class VCube7Idx3D extends AbstractCube7Idx3D {
 
     @Override
     protected void initCorners() {
-        int i, j, part;
+        int part;
         if (CORNER_VERTS == null) {
             // The corner parts are smaller than the side parts and curved
             CORNER_VERTS = new float[]{
@@ -423,21 +422,7 @@ public class VCube7Idx3D extends AbstractCube7Idx3D {
                     };
         }
         for (part = 0; part < cornerCount; part++) {
-            idx3d_Object object3D = new idx3d_Object();
-            for (i = 0; i < CORNER_VERTS.length / 3; i++) {
-                object3D.addVertex(
-                        CORNER_VERTS[i * 3], CORNER_VERTS[i * 3 + 1], CORNER_VERTS[i * 3 + 2]);
-            }
-            for (i = 0; i < CORNER_FACES.length; i++) {
-                for (j = 2; j < CORNER_FACES[i].length; j++) {
-                    idx3d_Triangle triangle = new idx3d_Triangle(
-                            object3D.vertex(CORNER_FACES[i][0]),
-                            object3D.vertex(CORNER_FACES[i][j - 1]),
-                            object3D.vertex(CORNER_FACES[i][j]));
-
-                    object3D.addTriangle(triangle);
-                }
-            }
+            idx3d_Object object3D = createPartMesh(CORNER_VERTS, CORNER_FACES);
             object3D.material = new idx3d_InternalMaterial();
             idx3d_InternalMaterial sticker = new idx3d_InternalMaterial();
             object3D.triangle(0).setTriangleMaterial(sticker);
@@ -894,20 +879,7 @@ public class VCube7Idx3D extends AbstractCube7Idx3D {
                     }
                     break;
             }
-            idx3d_Object object3D = new idx3d_Object();
-            for (int i = 0; i < verts.length / 3; i++) {
-                object3D.addVertex(
-                        verts[i * 3], verts[i * 3 + 1], verts[i * 3 + 2]);
-            }
-            for (int i = 0; i < EDGE_FACES.length; i++) {
-                for (int j = 2; j < EDGE_FACES[i].length; j++) {
-                    idx3d_Triangle triangle = new idx3d_Triangle(
-                            object3D.vertex(EDGE_FACES[i][0]),
-                            object3D.vertex(EDGE_FACES[i][j - 1]),
-                            object3D.vertex(EDGE_FACES[i][j]));
-                    object3D.addTriangle(triangle);
-                }
-            }
+            idx3d_Object object3D = createPartMesh(verts, EDGE_FACES);
             object3D.material = new idx3d_InternalMaterial();
             idx3d_InternalMaterial mat = new idx3d_InternalMaterial();
             object3D.triangle(0).setTriangleMaterial(mat);
@@ -2039,26 +2011,7 @@ public class VCube7Idx3D extends AbstractCube7Idx3D {
                     verts = SIDE25_VERTS;
                     break;
             }
-            idx3d_Object object3D = new idx3d_Object();
-            for (int i = 0; i
-                    < verts.length / 3; i++) {
-                object3D.addVertex(
-                        verts[i * 3], verts[i * 3 + 1], verts[i * 3 + 2]);
-            }
-
-            for (int i = 0; i
-                    < SIDE_FACES.length; i++) {
-                for (int j = 2; j
-                        < SIDE_FACES[i].length; j++) {
-                    idx3d_Triangle triangle = new idx3d_Triangle(
-                            object3D.vertex(SIDE_FACES[i][0]),
-                            object3D.vertex(SIDE_FACES[i][j - 1]),
-                            object3D.vertex(SIDE_FACES[i][j]));
-                    object3D.addTriangle(triangle);
-                    //if (i == 0) triangle.setMaterial(STICKER_MATERIALS[part]);
-                }
-
-            }
+            idx3d_Object object3D = createPartMesh(verts, SIDE_FACES);
 
             object3D.material = new idx3d_InternalMaterial();
             idx3d_InternalMaterial sticker1 = new idx3d_InternalMaterial();
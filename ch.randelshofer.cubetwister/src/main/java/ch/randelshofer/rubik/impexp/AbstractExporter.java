@@ -12,7 +12,9 @@ import ch.randelshofer.cubetwister.doc.ScriptModel;
 import ch.randelshofer.gui.ProgressObserver;
 import ch.randelshofer.rubik.cube.Cubes;
 import ch.randelshofer.rubik.cube.RubiksCube;
+import ch.randelshofer.rubik.notation.Symbol;
 import ch.randelshofer.rubik.parser.MoveMetrics;
+import ch.randelshofer.rubik.parser.NotationTranslator;
 import ch.randelshofer.rubik.parser.ScriptParser;
 import ch.randelshofer.rubik.parser.ast.MacroNode;
 import ch.randelshofer.rubik.parser.ast.Node;
@@ -24,8 +26,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.StringTokenizer;
 /**
  * AbstractExporter.
  *
@@ -103,9 +107,11 @@ public class AbstractExporter extends JPanel implements Exporter {
             if (sr.isParsed) {
                 cube.reset();
                 parsedScript.applyTo(cube, false);
-                sr.ltm = MoveMetrics.getLayerTurnCount(parsedScript);
-                sr.ftm = MoveMetrics.getFaceTurnCount(parsedScript);
-                sr.qtm = MoveMetrics.getQuarterTurnCount(parsedScript);
+                MoveMetrics metrics = new MoveMetrics();
+                metrics.accept(parsedScript);
+                sr.ltm = metrics.getLayerTurnCount();
+                sr.ftm = metrics.getFaceTurnCount();
+                sr.qtm = metrics.getQuarterTurnCount();
                 sr.visualOrder = Cubes.getVisibleOrder(cube);
                 sr.realOrder = Cubes.getOrder(cube);
                 sr.visualPermutation = Cubes.toVisualPermutationString(cube, parser.getNotation());
@@ -128,14 +134,23 @@ public class AbstractExporter extends JPanel implements Exporter {
 
     /**
      * Creates translated script records.
+     * <p>
+     * The scripts are translated in parallel with the
+     * {@link NotationTranslator} of the notation. The local macros of a
+     * script are written by their identifier, and are defined in the
+     * macros of the record.
      */
     @Nonnull
-    public ArrayList createScriptRecords(@Nonnull NotationModel translator, @Nonnull ProgressObserver p) throws IOException {
+    public ArrayList<ScriptRecord> createScriptRecords(@Nonnull NotationModel translator, @Nonnull ProgressObserver p) throws IOException {
         p.setMaximum(documentModel.getScripts().getChildCount() + 1);
         int progress = 0;
 
+        NotationTranslator notationTranslator = NotationTranslator.getInstance(translator);
         RubiksCube cube = new RubiksCube();
         ArrayList<ScriptRecord> records = new ArrayList<ScriptRecord>(documentModel.getScripts().getChildCount());
+        ArrayList<ScriptRecord> translatedRecords = new ArrayList<ScriptRecord>();
+        ArrayList<Node> translatedScripts = new ArrayList<Node>();
+        ArrayList<Set<String>> translatedLocalMacros = new ArrayList<Set<String>>();
 
         for (Enumeration i = documentModel.getScripts().children(); i.hasMoreElements(); ) {
             ScriptModel item = (ScriptModel) i.nextElement();
@@ -151,144 +166,73 @@ public class AbstractExporter extends JPanel implements Exporter {
             sr.author = item.getAuthor();
             sr.date = item.getDate();
             sr.notation = translator.getName();
+            sr.script = item.getScript();
 
             // Add synthetic fields to record
             ScriptParser parser = item.getParser();
             Node parsedScript = item.getParsedScript();
             sr.isParsed = parsedScript != null;
-            sr.macros = new String[item.getMacroModels().getChildCount()][2];
-            if (sr.isParsed) {
 
-                // Translate
-                // -------------------------------------------------
-                @SuppressWarnings("unchecked")
-                List<MacroNode> macros = (List)item.getMacroModels().getChildren();
-                ScriptParser oldParser = item.getNotationModel().getParser(macros);
-
-                // Parse the local macros
-                ArrayList<MacroNode> localMacros = new ArrayList<MacroNode>();
-                for (Iterator j = macros.iterator(); j.hasNext(); ) {
-                    MacroModel macro = (MacroModel) j.next();
-                    localMacros.add(new MacroNode(macro.getIdentifier(),
-                            macro.getScript(), 0, 0));
+            // Local macros are written by their identifier
+            Set<String> localMacroIdentifiers = new HashSet<String>();
+            for (Enumeration j = item.getMacroModels().children(); j.hasMoreElements(); ) {
+                MacroModel macro = (MacroModel) j.nextElement();
+                for (StringTokenizer st = new StringTokenizer(macro.getIdentifier()); st.hasMoreTokens(); ) {
+                    localMacroIdentifiers.add(st.nextToken());
                 }
+            }
 
-                ScriptParser newParser = translator.getParser(localMacros);
-
-                // Translate the Script
-                if (true) {
-                    throw new InternalError("not implemented");
-                }
-                /*
-                if (oldParser.isTwistSupported() && ! newParser.isTwistSupported()) {
-                    SequenceNode node = oldParser.parse(item.getScript());
-                    cube.reset();
-                    node.applySubtreeTo(cube, false);
-                    sr.script = cube.toPermutationString(newParser);
-                } else {
-                    sr.script = newParser.toString(oldParser.parse(item.getScript()), parsedMacros);
+            // Translate the macros and add them to the data record
+            sr.macros = new String[item.getMacroModels().getChildCount()][2];
+            int k = 0;
+            for (Enumeration j = item.getMacroModels().children(); j.hasMoreElements(); ) {
+                MacroModel macro = (MacroModel) j.nextElement();
+                sr.macros[k][0] = macro.getIdentifier();
+                sr.macros[k][1] = macro.getScript();
+                if (sr.isParsed) {
+                    MacroNode macroNode = new MacroNode(macro.getIdentifier(), macro.getScript(), 0, 0);
+                    macroNode.expand(parser);
+                    // Translate the body, so that the macro is not written by
+                    // its own identifier
+                    sr.macros[k][1] = notationTranslator.toString(macroNode.getChildAt(0), localMacroIdentifiers);
                 }
+                k++;
+            }
 
-                // Translate the macros
-                ArrayList translatedMacros = new ArrayList(macros.size());
-                sr.macros = new String[macros.size()][2];
-                for (int j = 0; j < macros.size(); j++) {
-                    MacroModel macro = (MacroModel) macros.get(j);
-                    sr.macros[j][0] = macro.getIdentifier();
-                    sr.macros[j][1]  =
-                    newParser.toString(
-                    (SequenceNode) ((SequenceNode) parsedMacros.get(macro.getIdentifier())).getChildAt(0),
-                    parsedMacros
-                    );
-                    MacroModel translatedMacro = new MacroModel();
-                    translatedMacro.setIdentifier(sr.macros[j][0]);
-                    translatedMacro.setScript(sr.macros[j][1]);
-                    translatedMacros.add(translatedMacro);
-                }
-                newParser = translator.getParser(translatedMacros);
-                parsedScript = newParser.parse(sr.script);
-                 */
+            if (sr.isParsed) {
                 cube.reset();
                 parsedScript.applyTo(cube, false);
-                sr.ltm = MoveMetrics.getLayerTurnCount(parsedScript);
-                sr.ftm = MoveMetrics.getFaceTurnCount(parsedScript);
-                sr.qtm = MoveMetrics.getQuarterTurnCount(parsedScript);
+                MoveMetrics metrics = new MoveMetrics();
+                metrics.accept(parsedScript);
+                sr.ltm = metrics.getLayerTurnCount();
+                sr.ftm = metrics.getFaceTurnCount();
+                sr.qtm = metrics.getQuarterTurnCount();
                 sr.visualOrder = Cubes.getVisibleOrder(cube);
                 sr.realOrder = Cubes.getOrder(cube);
-                new InternalError("not implemented");
-                /*
-                sr.visualPermutation = Cubes.toVisualPermutationString(cube, newParser);
-                sr.realPermutation = Cubes.toPermutationString(cube, newParser);
-                 */
-                /*
-                java.util.List macros = new TreeNodeCollection(item.getMacroModels());
-                ScriptParser oldParser = item.getNotationModel().getParser(macros);
-
-                // Parse the local macros
-                HashMap parsedMacros = new HashMap();
-                for (int j=0; j < macros.size(); j++) {
-                    MacroModel macro = (MacroModel) macros.get(j);
-                    MacroNode macroNode = new MacroNode(
-                    new StringTokenizer(macro.getIdentifier()).nextToken(),
-                    macro.getScript(), 0, 0
-                    );
-                    macroNode.expand(oldParser);
-                    StringTokenizer t = new StringTokenizer(macro.getIdentifier());
-                    while (t.hasMoreTokens()) {
-                        parsedMacros.put(t.nextToken(), macroNode);
-                    }
-                }
-
-                ScriptParser newParser = translator.getParser(parsedMacros);
+                sr.visualPermutation = Cubes.toVisualPermutationString(cube, translator);
+                sr.realPermutation = Cubes.toPermutationString(cube, translator);
 
-                // Translate the Script and add it to the data record
-                parsedScript = oldParser.parse(item.getScript());
-                if (oldParser.isTwistSupported() && ! newParser.isTwistSupported()) {
-                    parsedScript.applySubtreeTo(cube, false);
-                    sr.script = cube.toPermutationString(newParser);
+                // Translate the script later, together with the other scripts
+                if (item.getNotationModel().isSupported(Symbol.MOVE) && !translator.isSupported(Symbol.MOVE)) {
+                    sr.script = sr.realPermutation;
                 } else {
-                    sr.script = newParser.toString(parsedScript, parsedMacros);
+                    translatedRecords.add(sr);
+                    translatedScripts.add(parsedScript);
+                    translatedLocalMacros.add(localMacroIdentifiers);
                 }
-
-                // Translate the macros and add them to the data record
-
-                sr.macros = new String[macros.size()][2];
-                ArrayList translatedMacros = new ArrayList(macros.size());
-                for (int k=0; k < macros.size(); k++) {
-                    MacroModel macro = (MacroModel) macros.get(k);
-                    String identifier = macro.getIdentifier();
-                    String macroScript =
-                    newParser.toString(
-                    (SequenceNode) ((SequenceNode) parsedMacros.get(identifier)).getChildAt(0),
-                    parsedMacros
-                    );
-                    MacroModel translatedMacro = new MacroModel();
-                    translatedMacro.setIdentifier(identifier);
-                    translatedMacro.setScript(macroScript);
-                    translatedMacros.add(translatedMacro);
-
-                    sr.macros[k][0] = macro.getIdentifier();
-                    sr.macros[k++][1] = translatedMacro.getScript();
-                }
-
-                newParser = translator.getParser(translatedMacros);
-                parsedScript = newParser.parse(sr.script);
-
-                cube.reset();
-                parsedScript.applySubtreeTo(cube, false);
-                sr.ltm = MoveMetrics.getLayerTurnCount(parsedScript);
-                sr.ftm = MoveMetrics.getFaceTurnCount(parsedScript);
-                sr.qtm = MoveMetrics.getQuarterTurnCount(parsedScript);
-                sr.visualOrder = cube.getVisibleOrder();
-                sr.realOrder = cube.getOrder();
-                sr.visualPermutation = cube.toVisualPermutationString(newParser);
-                sr.realPermutation = cube.toPermutationString(newParser);
-                 */
             }
 
             records.add(sr);
         }
 
+        // Translate the scripts
+        p.setProgress(++progress);
+        p.setNote("Translating scripts");
+        List<String> scripts = notationTranslator.translate(translatedScripts, translatedLocalMacros);
+        for (int i = 0; i < scripts.size(); i++) {
+            translatedRecords.get(i).script = scripts.get(i);
+        }
+
         return records;
     }
 
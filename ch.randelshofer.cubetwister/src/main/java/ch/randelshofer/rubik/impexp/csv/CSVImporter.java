@@ -6,12 +6,15 @@ package ch.randelshofer.rubik.impexp.csv;
 
 import ch.randelshofer.cubetwister.doc.DocumentModel;
 import ch.randelshofer.cubetwister.doc.MacroModel;
+import ch.randelshofer.cubetwister.doc.NotationModel;
 import ch.randelshofer.cubetwister.doc.ScriptModel;
 import ch.randelshofer.gui.Fonts;
 import ch.randelshofer.gui.ProgressObserver;
 import ch.randelshofer.io.BoundedRangeReader;
 import ch.randelshofer.io.CSVReader;
+import ch.randelshofer.io.ParseException;
 import ch.randelshofer.rubik.impexp.Importer;
+import ch.randelshofer.rubik.parser.BulkScriptParser;
 import org.jhotdraw.annotation.Nonnull;
 import org.jhotdraw.annotation.Nullable;
 
@@ -28,6 +31,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * CSVImporter.
@@ -175,6 +179,7 @@ public class CSVImporter extends JPanel implements Importer {
                 p.setNote("Importing line " + (++lineNumber) + "...");
                 result.add(importScript(columns, columnIndices));
             }
+            checkScripts(result, p);
             return result;
         } finally {
             if (in != null) {
@@ -227,6 +232,44 @@ public class CSVImporter extends JPanel implements Importer {
         return item;
     }
 
+    /**
+     * Parses the scripts in parallel with the default notation of the
+     * document, and reports the scripts which can not be parsed.
+     * Scripts with local macros are not checked here, because each of them
+     * needs a parser of its own.
+     */
+    private void checkScripts(@Nonnull List<ScriptModel> scripts, @Nonnull ProgressObserver p) {
+        if (documentModel == null || documentModel.getDefaultCube() == null) {
+            return;
+        }
+        NotationModel notation = documentModel.getDefaultNotation(documentModel.getDefaultCube().getLayerCount());
+        if (notation == null) {
+            return;
+        }
+        List<ScriptModel> checked = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (ScriptModel item : scripts) {
+            String text = item.getScript();
+            if (text != null && item.getMacroModels().getChildCount() == 0) {
+                checked.add(item);
+                texts.add(text);
+            }
+        }
+        p.setNote("Checking " + texts.size() + " scripts...");
+        int errorCount = 0;
+        for (BulkScriptParser.Result r : new BulkScriptParser(notation).parse(texts)) {
+            ParseException e = r.getException();
+            if (e != null) {
+                errorCount++;
+                p.printf("%s: %s @%d..%d%n", checked.get(r.getIndex()).getName(), e.getMessage(),
+                        e.getStartPosition(), e.getEndPosition());
+            }
+        }
+        if (errorCount > 0) {
+            p.setWarning(errorCount + " of " + texts.size() + " scripts can not be parsed.");
+        }
+    }
+
     public void setDocumentModel(DocumentModel model) {
         this.documentModel = model;
     }
@@ -6,12 +6,17 @@
 package ch.randelshofer.rubik.impexp.cubeexplorer;
 
 import ch.randelshofer.cubetwister.doc.DocumentModel;
+import ch.randelshofer.cubetwister.doc.NotationModel;
 import ch.randelshofer.cubetwister.doc.ScriptModel;
 import ch.randelshofer.gui.ProgressObserver;
 import ch.randelshofer.io.BoundedRangeReader;
+import ch.randelshofer.io.ParseException;
 import ch.randelshofer.rubik.impexp.Importer;
-import ch.randelshofer.rubik.parser.ScriptParser;
-import ch.randelshofer.rubik.parser.ast.Node;
+import ch.randelshofer.rubik.notation.DefaultScriptNotation;
+import ch.randelshofer.rubik.notation.Move;
+import ch.randelshofer.rubik.notation.ScriptNotation;
+import ch.randelshofer.rubik.parser.BulkScriptParser;
+import ch.randelshofer.rubik.parser.ast.ResolvedMoves;
 import org.jhotdraw.annotation.Nonnull;
 
 import javax.swing.JComponent;
@@ -20,7 +25,6 @@ import java.io.File;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 /**
  * CubeExplorer Importer.
@@ -38,12 +42,16 @@ import java.util.List;
 public class CubeExplorerImporter extends JPanel implements Importer {
     private final static long serialVersionUID = 1L;
     private DocumentModel documentModel;
-    private KociembaENGParser kociembaParser;
+    /**
+     * The moves of CubeExplorer are the face moves of the default notation
+     * of a 3x3 cube.
+     */
+    @Nonnull
+    private final ScriptNotation kociembaNotation = new DefaultScriptNotation(3);
 
     /** Creates new form. */
     public CubeExplorerImporter() {
         initComponents();
-        kociembaParser = new KociembaENGParser();
     }
 
     /** This method is called from within the constructor to
@@ -78,15 +86,29 @@ public class CubeExplorerImporter extends JPanel implements Importer {
             p.setModel(bris);
             in = new LineNumberReader(bris);
             ArrayList<ScriptModel> result = new ArrayList<ScriptModel>();
+            NotationModel defaultNotation = documentModel.getDefaultNotation(documentModel.getDefaultCube().getLayerCount());
 
-            @SuppressWarnings("unchecked")
-            ScriptParser defaultParser = documentModel.getDefaultNotation(documentModel.getDefaultCube().getLayerCount()).getParser((List)Collections.emptyList());
-
-            // Read all subsequent lines
+            // Read all lines, and split them into name and script
+            List<String> scripts = new ArrayList<>();
             String line;
             while ((line = in.readLine()) != null) {
-                p.setNote("Importing line " + (in.getLineNumber()) + "...");
-                result.add(importScript(line, defaultParser));
+                p.setNote("Reading line " + (in.getLineNumber()) + "...");
+                result.add(importScript(line, scripts));
+            }
+
+            // Parse the scripts in parallel, and translate them into the
+            // default notation
+            p.setNote("Parsing " + scripts.size() + " scripts...");
+            BulkScriptParser bulkParser = new BulkScriptParser(kociembaNotation);
+            bulkParser.setResolvingMoves(true);
+            for (BulkScriptParser.Result r : bulkParser.parse(scripts)) {
+                ScriptModel scriptModel = result.get(r.getIndex());
+                ParseException e = r.getException();
+                if (e != null) {
+                    p.printf("Line %d: %s @%d..%d%n", r.getIndex() + 1, e.getMessage(),
+                            e.getStartPosition(), e.getEndPosition());
+                }
+                scriptModel.setScript(translate(r, defaultNotation));
             }
             return result;
         } finally {
@@ -96,9 +118,38 @@ public class CubeExplorerImporter extends JPanel implements Importer {
         }
     }
 
+    /**
+     * Translates the moves of a parsed script into the specified notation.
+     * Returns the script unchanged, if it could not be parsed, or if the
+     * notation has no token for one of its moves.
+     */
+    private String translate(@Nonnull BulkScriptParser.Result r, @Nonnull ScriptNotation notation) {
+        ResolvedMoves moves = r.getResolvedMoves();
+        if (moves == null) {
+            return r.getScript();
+        }
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0, n = moves.size(); i < n; i++) {
+            String token = moves.isMove(i)
+                    ? notation.getMoveToken(new Move(3, moves.getAxis(i), moves.getLayerMask(i), moves.getAngle(i)))
+                    : null;
+            if (token == null) {
+                return r.getScript();
+            }
+            if (i > 0) {
+                buf.append(' ');
+            }
+            buf.append(token);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Creates a script model with the name of the line, and adds the
+     * script of the line to the list of scripts.
+     */
     @Nonnull
-    private ScriptModel importScript(@Nonnull String line, ScriptParser defaultParser)
-            throws IOException {
+    private ScriptModel importScript(@Nonnull String line, @Nonnull List<String> scripts) {
         int pbr = line.indexOf('(');
         int pss = line.indexOf("//");
         if (pbr == -1 || pbr > pss) {
@@ -114,11 +165,7 @@ public class CubeExplorerImporter extends JPanel implements Importer {
             script = line.substring(0, pbr).trim();
             scriptModel.setName(line.substring(pss + 2).trim());
         }
-        Node node = kociembaParser.parse(script);
-        if (true) {
-            throw new InternalError("not implemented");
-        }
-        //       scriptModel.setScript(defaultParser.toString(node));
+        scripts.add(script);
 
         return scriptModel;
     }
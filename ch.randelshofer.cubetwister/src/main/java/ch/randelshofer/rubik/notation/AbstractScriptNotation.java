@@ -28,18 +28,22 @@ public abstract class AbstractScriptNotation implements ScriptNotation {
     private final HashMap<Symbol, Syntax> symbolToSyntaxMap = new HashMap<>();
     private final Map<String, String> macros = new HashMap<>();
     private int layerCount;
+    private long modificationCount;
 
     public void putMacro(String identifier, String code) {
+        modificationCount++;
         macros.put(identifier, code);
         tokenToSymbolsMap.computeIfAbsent(identifier, k -> new ArrayList<>()).add(Symbol.MACRO);
     }
 
     public void removeToken(Symbol symbol, String token) {
+        modificationCount++;
         symbolToTokensMap.computeIfAbsent(symbol, k -> new ArrayList<>()).remove(token);
         tokenToSymbolsMap.computeIfAbsent(token, k -> new ArrayList<>()).remove(symbol);
     }
 
     protected void setLayerCount(int value) {
+        modificationCount++;
         this.layerCount = value;
     }
 
@@ -48,6 +52,11 @@ public abstract class AbstractScriptNotation implements ScriptNotation {
         return layerCount;
     }
 
+    @Override
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
     @Nullable
     @Override
     public String getEquivalentMacro(Cube cube, Map<String, MacroNode> localMacros) {
@@ -144,6 +153,7 @@ public abstract class AbstractScriptNotation implements ScriptNotation {
 
 
     protected void addToken(Symbol symbol, String token) {
+        modificationCount++;
         symbolToTokensMap.computeIfAbsent(symbol, k -> new ArrayList<>()).add(token);
         tokenToSymbolsMap.computeIfAbsent(token, k -> new ArrayList<>()).add(symbol);
     }
@@ -155,6 +165,7 @@ public abstract class AbstractScriptNotation implements ScriptNotation {
     }
 
     protected void putSyntax(Symbol symbol, Syntax syntax) {
+        modificationCount++;
         symbolToSyntaxMap.put(symbol, syntax);
     }
 }
@@ -132,6 +132,22 @@ public interface ScriptNotation {
      */
     Collection<String> getTokens();
 
+    /**
+     * Returns a number that changes whenever the tokens, the syntaxes, the
+     * supported symbols, the macros or the layer count of this notation
+     * change. Parsers and translators use this number to detect that a
+     * cached tokenizer, a cached syntax tree or a cached translation table
+     * is outdated.
+     * <p>
+     * The default implementation returns 0. Notations which can change
+     * must override this method.
+     *
+     * @return the modification count of the notation
+     */
+    default long getModificationCount() {
+        return 0;
+    }
+
     /**
      * Given a (potentially ambiguous) token returns all symbols for
      * that token.
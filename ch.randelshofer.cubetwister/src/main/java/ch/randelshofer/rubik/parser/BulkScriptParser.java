@@ -0,0 +1,231 @@
+/*
+ * @(#)BulkScriptParser.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.parser;
+
+import ch.randelshofer.io.ParseException;
+import ch.randelshofer.rubik.notation.ScriptNotation;
+import ch.randelshofer.rubik.parser.ast.MacroNode;
+import ch.randelshofer.rubik.parser.ast.Node;
+import ch.randelshofer.rubik.parser.ast.ResolvedMoves;
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Parses many scripts in parallel.
+ * <p>
+ * A {@link ScriptParser} must not be used by multiple threads concurrently.
+ * This class creates one parser per thread. All parsers share the same
+ * notation and local macros, which must not be changed while scripts are
+ * being parsed.
+ * <p>
+ * The results are returned in the order of the scripts. A script that can
+ * not be parsed does not stop the other scripts from being parsed; its
+ * result holds the exception instead of the syntax tree.
+ * <pre>{@code
+ * BulkScriptParser bulk = new BulkScriptParser(notation);
+ * for (BulkScriptParser.Result result : bulk.parse(lines)) {
+ *     if (result.getException() != null) {
+ *         ... report the error of row result.getIndex() ...
+ *     }
+ * }
+ * }</pre>
+ *
+ * @author Werner Randelshofer
+ */
+public class BulkScriptParser {
+    /**
+     * Holds the parser of each thread.
+     */
+    @Nonnull
+    private final ThreadLocal<ScriptParser> parsers;
+    /**
+     * Whether the syntax trees are lowered into {@link ResolvedMoves}
+     * by the parsing threads.
+     */
+    private boolean resolvingMoves;
+
+    public BulkScriptParser(@Nonnull ScriptNotation notation) {
+        this(notation, Collections.emptyList());
+    }
+
+    public BulkScriptParser(@Nonnull ScriptNotation notation, @Nonnull List<MacroNode> localMacros) {
+        this(() -> new ScriptParser(notation, localMacros));
+    }
+
+    /**
+     * Creates a new instance which gets the parser of each thread from the
+     * specified factory.
+     *
+     * @param parserFactory creates a new parser each time it is invoked
+     */
+    public BulkScriptParser(@Nonnull Supplier<ScriptParser> parserFactory) {
+        Objects.requireNonNull(parserFactory, "parserFactory");
+        this.parsers = ThreadLocal.withInitial(parserFactory);
+    }
+
+    /**
+     * If set to true, the parsing threads also lower the syntax tree of
+     * each script into {@link ResolvedMoves}, so that
+     * {@link Result#getResolvedMoves()} does not need to do this on the
+     * thread that processes the results.
+     * <p>
+     * The default value is false.
+     */
+    public void setResolvingMoves(boolean newValue) {
+        resolvingMoves = newValue;
+    }
+
+    public boolean isResolvingMoves() {
+        return resolvingMoves;
+    }
+
+    /**
+     * Parses the scripts in parallel.
+     *
+     * @param scripts the scripts
+     * @return the results in the order of the scripts
+     */
+    @Nonnull
+    public List<Result> parse(@Nonnull List<String> scripts) {
+        return IntStream.range(0, scripts.size())
+                .parallel()
+                .mapToObj(i -> parse(i, scripts.get(i)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Parses the scripts of a stream in parallel.
+     * <p>
+     * The stream is consumed before parsing starts.
+     *
+     * @param scripts a stream of scripts
+     * @return the results in the encounter order of the stream
+     */
+    @Nonnull
+    public List<Result> parse(@Nonnull Stream<String> scripts) {
+        return parse(scripts.collect(Collectors.toList()));
+    }
+
+    /**
+     * Parses line-delimited scripts in parallel. Each line holds one script.
+     * The index of a result is the line number minus one.
+     * <p>
+     * The reader is read until its end, but it is not closed.
+     *
+     * @param in a reader
+     * @return the results in the order of the lines
+     * @throws IOException if reading fails
+     */
+    @Nonnull
+    public List<Result> parse(@Nonnull Reader in) throws IOException {
+        BufferedReader reader = (in instanceof BufferedReader) ? (BufferedReader) in : new BufferedReader(in);
+        List<String> lines = new ArrayList<>();
+        try {
+            reader.lines().forEachOrdered(lines::add);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return parse(lines);
+    }
+
+    /**
+     * Parses a single script with the parser of the current thread.
+     */
+    @Nonnull
+    private Result parse(int index, @Nonnull String script) {
+        try {
+            Node node = parsers.get().parse(script);
+            ResolvedMoves moves = resolvingMoves ? node.getResolvedMoves() : null;
+            return new Result(index, script, node, moves, null);
+        } catch (ParseException e) {
+            return new Result(index, script, null, null, e);
+        }
+    }
+
+    /**
+     * The result of parsing one script.
+     */
+    public static final class Result {
+        private final int index;
+        private final String script;
+        @Nullable
+        private final Node node;
+        @Nullable
+        private ResolvedMoves resolvedMoves;
+        @Nullable
+        private final ParseException exception;
+
+        private Result(int index, String script, @Nullable Node node, @Nullable ResolvedMoves resolvedMoves, @Nullable ParseException exception) {
+            this.index = index;
+            this.script = script;
+            this.node = node;
+            this.resolvedMoves = resolvedMoves;
+            this.exception = exception;
+        }
+
+        /**
+         * Returns the index of the script in the input.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the script.
+         */
+        public String getScript() {
+            return script;
+        }
+
+        /**
+         * Returns the syntax tree of the script, or null if the script
+         * could not be parsed.
+         */
+        @Nullable
+        public Node getNode() {
+            return node;
+        }
+
+        /**
+         * Returns the resolved moves of the script. Returns null if the
+         * script could not be parsed, or if it is too long to be lowered.
+         */
+        @Nullable
+        public ResolvedMoves getResolvedMoves() {
+            if (resolvedMoves == null && node != null) {
+                resolvedMoves = node.getResolvedMoves();
+            }
+            return resolvedMoves;
+        }
+
+        /**
+         * Returns the exception if the script could not be parsed, or null
+         * if the script has been parsed.
+         */
+        @Nullable
+        public ParseException getException() {
+            return exception;
+        }
+
+        @Nonnull
+        @Override
+        public String toString() {
+            return "Result{" + index + ", " + (exception == null ? node : exception.getMessage()) + '}';
+        }
+    }
+}
@@ -0,0 +1,510 @@
+/*
+ * @(#)IncrementalScriptParser.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.parser;
+
+import ch.randelshofer.io.ParseException;
+import ch.randelshofer.rubik.cube.CubePermutation;
+import ch.randelshofer.rubik.notation.ScriptNotation;
+import ch.randelshofer.rubik.parser.ast.MacroNode;
+import ch.randelshofer.rubik.parser.ast.Node;
+import ch.randelshofer.rubik.parser.ast.NodeCodec;
+import ch.randelshofer.rubik.parser.ast.SequenceNode;
+import ch.randelshofer.rubik.tokenizer.Tokenizer;
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Parses successive versions of a script, and reuses the unchanged
+ * statements of the previous version.
+ * <p>
+ * This parser is intended for a script that is edited by the user, and
+ * that is re-parsed after each edit. For each statement at the top level
+ * of the script, the parser remembers the position at which the statement
+ * started, and the position up to which the tokenizer had read the input
+ * before the statement was parsed. When a new version of the script is
+ * parsed, the parser determines the range of text that has changed, and
+ * then:
+ * <ul>
+ * <li>keeps the statements before the change, for which the tokenizer had
+ * not read into the changed text,</li>
+ * <li>parses the statements from there on, until it reaches the start of
+ * a statement in the unchanged text after the change,</li>
+ * <li>reuses the statements from there on, and shifts their positions by
+ * the length difference of the versions.</li>
+ * </ul>
+ * The {@link MoveMetrics} and the {@link CubePermutation} of the script
+ * are updated the same way: each statement holds the metrics and the
+ * permutation of the script up to and including the statement. The values
+ * of the reused statements are derived from their previous values.
+ * <p>
+ * The nodes of the reused statements are cloned from the previous syntax
+ * tree. The syntax trees returned by this parser are never changed by it,
+ * so that they can still be used, for example by a player or an exporter,
+ * after a new version of the script has been parsed.
+ * <p>
+ * The parser falls back to parsing the entire script, if the notation,
+ * the macros or the layer count have changed since the previous version.
+ * <p>
+ * If the parser has a {@link ParsedScriptCache}, it looks up the entire
+ * script in the cache before parsing it, and it stores the entire script
+ * in the cache after parsing it. A cache entry holds the syntax tree
+ * encoded with {@link NodeCodec}, and the start and lookahead positions of
+ * the statements, so that the parser can continue with incremental
+ * parsing after the script has been restored from the cache.
+ *
+ * @author Werner Randelshofer
+ */
+public class IncrementalScriptParser {
+    /**
+     * Holds the state of the parser after a statement at the top level of
+     * the script.
+     */
+    private static class Statement {
+        /**
+         * The node of the statement.
+         */
+        @Nonnull
+        final Node node;
+        /**
+         * The position of the first token of the statement.
+         */
+        final int start;
+        /**
+         * The lookahead position of the tokenizer before the statement was
+         * parsed.
+         */
+        final int lookahead;
+        /**
+         * The metrics of the script up to and including this statement.
+         */
+        @Nonnull
+        final MoveMetrics metrics;
+        /**
+         * The permutation of the script up to and including this statement.
+         */
+        @Nonnull
+        final CubePermutation permutation;
+
+        Statement(@Nonnull Node node, int start, int lookahead, @Nonnull MoveMetrics metrics, @Nonnull CubePermutation permutation) {
+            this.node = node;
+            this.start = start;
+            this.lookahead = lookahead;
+            this.metrics = metrics;
+            this.permutation = permutation;
+        }
+    }
+
+    /**
+     * The settings of a parser which affect the syntax tree.
+     */
+    private static class Configuration {
+        @Nonnull
+        final ScriptNotation notation;
+        final long modificationCount;
+        final int layerCount;
+        @Nonnull
+        final Map<String, String> localMacros;
+
+        Configuration(@Nonnull ScriptParser parser) {
+            notation = parser.getNotation();
+            modificationCount = notation.getModificationCount();
+            layerCount = notation.getLayerCount();
+            localMacros = new HashMap<>();
+            for (Map.Entry<String, MacroNode> entry : parser.getLocalMacros().entrySet()) {
+                localMacros.put(entry.getKey(), entry.getValue().getScript());
+            }
+        }
+
+        boolean isCompatible(@Nonnull Configuration that) {
+            return this.notation == that.notation
+                    && this.modificationCount == that.modificationCount
+                    && this.layerCount == that.layerCount
+                    && this.localMacros.equals(that.localMacros);
+        }
+    }
+
+    /**
+     * The previous version of the script, or null.
+     */
+    @Nullable
+    private String text;
+    /**
+     * The configuration of the parser that parsed the previous version.
+     */
+    @Nullable
+    private Configuration configuration;
+    /**
+     * The statements of the previous version.
+     */
+    @Nonnull
+    private List<Statement> statements = new ArrayList<>();
+    /**
+     * The end position of the previous syntax tree.
+     */
+    private int endPosition;
+    /**
+     * The number of statements that have been parsed by the last call to
+     * {@link #parse}.
+     */
+    private int parsedCount;
+    /**
+     * The cache for entire scripts, or null.
+     */
+    @Nullable
+    private ParsedScriptCache cache;
+
+    public IncrementalScriptParser() {
+    }
+
+    /**
+     * Sets the cache in which this parser looks up scripts, which it has
+     * to parse entirely.
+     *
+     * @param cache a cache or null
+     */
+    public void setCache(@Nullable ParsedScriptCache cache) {
+        this.cache = cache;
+    }
+
+    @Nullable
+    public ParsedScriptCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Parses the specified script.
+     * <p>
+     * If the script is a new version of the script that has been parsed
+     * by the previous call of this method, only the changed statements are
+     * parsed.
+     *
+     * @param parser the parser
+     * @param input  the script
+     * @return the syntax tree of the script
+     * @throws ParseException on parse failure
+     */
+    @Nonnull
+    public Node parse(@Nonnull ScriptParser parser, @Nonnull String input) throws ParseException {
+        Objects.requireNonNull(input, "input");
+        Configuration newConfiguration = new Configuration(parser);
+        String oldText = this.text;
+        if (oldText == null || configuration == null || !configuration.isCompatible(newConfiguration)) {
+            reset();
+            oldText = null;
+        }
+        configuration = newConfiguration;
+        List<Statement> old = statements;
+        int layerCount = newConfiguration.layerCount;
+
+        // Look up the entire script in the cache
+        String cacheKey = null;
+        if (oldText == null && cache != null) {
+            cacheKey = cache.getKey(parser, input);
+            byte[] data = cache.get(cacheKey);
+            if (data != null) {
+                Node root = restore(data, input, layerCount);
+                if (root != null) {
+                    return root;
+                }
+            }
+        }
+
+        // Determine the changed range of text
+        int prefix = 0, suffix = 0;
+        if (oldText != null) {
+            int limit = Math.min(oldText.length(), input.length());
+            while (prefix < limit && oldText.charAt(prefix) == input.charAt(prefix)) {
+                prefix++;
+            }
+            while (suffix < limit - prefix
+                    && oldText.charAt(oldText.length() - 1 - suffix) == input.charAt(input.length() - 1 - suffix)) {
+                suffix++;
+            }
+        }
+        int delta = oldText == null ? 0 : input.length() - oldText.length();
+        int suffixStart = input.length() - suffix;
+
+        // Find the last statement before which the tokenizer had only read
+        // unchanged text. Keep the statements before it, and parse the
+        // script again from there on.
+        int keep = 0;
+        while (keep < old.size() - 1 && old.get(keep + 1).lookahead <= prefix) {
+            keep++;
+        }
+        int restart = keep == 0 ? 0 : old.get(keep).start;
+        int baseLookahead = keep == 0 ? 0 : old.get(keep).lookahead;
+
+        SequenceNode root = new SequenceNode();
+        root.setStartPosition(0);
+        Node[] kept = new Node[keep];
+        for (int i = 0; i < keep; i++) {
+            kept[i] = old.get(i).node.cloneSubtree();
+            root.add(kept[i]);
+        }
+
+        // Parse the changed statements, until we reach a statement that
+        // we can reuse.
+        Tokenizer tt = parser.newTokenizer();
+        tt.setInput(input, restart);
+        List<int[]> parsed = new ArrayList<>();
+        int reuse = -1;
+        List<Statement> list;
+        try {
+            while (true) {
+                int lookahead = Math.max(baseLookahead, tt.getLookaheadPosition());
+                if (tt.nextToken() == Tokenizer.TT_EOF) {
+                    break;
+                }
+                int start = tt.getStartPosition();
+                tt.pushBack();
+                if (oldText != null && start >= suffixStart) {
+                    int k = findStatement(old, start - delta);
+                    if (k != -1 && (k == 0) == (root.getChildCount() == 0)) {
+                        reuse = k;
+                        break;
+                    }
+                }
+                int childCount = root.getChildCount();
+                parser.parseStatement(tt, root);
+                if (root.getChildCount() > childCount) {
+                    parsed.add(new int[]{start, lookahead});
+                }
+            }
+
+            // The last kept statement may have been consumed by the first
+            // parsed statement.
+            int unchanged = 0;
+            while (unchanged < keep && root.getChildAt(unchanged) == kept[unchanged]) {
+                unchanged++;
+            }
+
+            list = new ArrayList<>(root.getChildCount() + (reuse == -1 ? 0 : old.size() - reuse));
+            MoveMetrics metrics = unchanged == 0 ? new MoveMetrics() : new MoveMetrics(old.get(unchanged - 1).metrics);
+            CubePermutation permutation = unchanged == 0 ? CubePermutation.identity(layerCount) : old.get(unchanged - 1).permutation;
+            for (int i = 0, n = root.getChildCount(); i < n; i++) {
+                Node node = root.getChildAt(i);
+                if (i < unchanged) {
+                    Statement s = old.get(i);
+                    list.add(new Statement(node, s.start, s.lookahead, s.metrics, s.permutation));
+                    continue;
+                }
+                metrics.accept(node);
+                permutation = permutation.then(node.compile(layerCount));
+                int[] startAndLookahead = i < keep ? new int[]{old.get(i).start, old.get(i).lookahead} : parsed.get(i - keep);
+                list.add(new Statement(node, startAndLookahead[0], startAndLookahead[1], new MoveMetrics(metrics), permutation));
+            }
+            parsedCount = root.getChildCount() - unchanged;
+
+            if (reuse == -1) {
+                root.setEndPosition(tt.getEndPosition());
+            } else {
+                // Reuse the statements after the change.
+                int lookahead = Math.max(baseLookahead, tt.getLookaheadPosition());
+                CubePermutation oldBase = reuse == 0 ? CubePermutation.identity(layerCount) : old.get(reuse - 1).permutation;
+                CubePermutation correction = permutation.then(oldBase.inverse());
+                MoveMetrics oldMetrics = reuse == 0 ? new MoveMetrics() : old.get(reuse - 1).metrics;
+                boolean converged = false;
+                for (int k = reuse, n = old.size(); k < n; k++) {
+                    Statement s = old.get(k);
+                    Node node = s.node.cloneSubtree();
+                    for (Node descendant : node.preorderIterable()) {
+                        descendant.setStartPosition(descendant.getStartPosition() + delta);
+                        descendant.setEndPosition(descendant.getEndPosition() + delta);
+                    }
+                    root.add(node);
+
+                    // The metrics can be shifted, as soon as they are about to
+                    // coalesce the same move as before.
+                    if (!converged && metrics.isInSameStateAs(oldMetrics)) {
+                        converged = true;
+                    }
+                    MoveMetrics newMetrics;
+                    if (converged) {
+                        newMetrics = new MoveMetrics(s.metrics);
+                        newMetrics.shift(metrics, oldMetrics);
+                    } else {
+                        metrics.accept(node);
+                        oldMetrics = s.metrics;
+                        newMetrics = new MoveMetrics(metrics);
+                    }
+
+                    CubePermutation newPermutation = correction.isIdentity() ? s.permutation : correction.then(s.permutation);
+                    list.add(new Statement(node, s.start + delta, Math.max(lookahead, s.lookahead + delta),
+                            newMetrics, newPermutation));
+                }
+                root.setEndPosition(endPosition + delta);
+            }
+        } catch (ParseException | RuntimeException e) {
+            reset();
+            throw e;
+        }
+
+        this.text = input;
+        this.statements = list;
+        this.endPosition = root.getEndPosition();
+        if (cacheKey != null) {
+            try {
+                cache.put(cacheKey, encode(root));
+            } catch (IOException e) {
+                // The script will be parsed again.
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Encodes the syntax tree and the positions of the statements.
+     * <pre>
+     * Data      = StatementCount , { Start , Lookahead } , Node ;
+     * </pre>
+     *
+     * @param root the syntax tree
+     * @return the encoded data
+     * @throws IOException if the syntax tree can not be encoded
+     */
+    @Nonnull
+    private byte[] encode(@Nonnull Node root) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buf);
+        NodeCodec.writeUnsigned(out, statements.size());
+        for (Statement s : statements) {
+            NodeCodec.writeUnsigned(out, s.start);
+            NodeCodec.writeUnsigned(out, s.lookahead);
+        }
+        NodeCodec.write(out, root);
+        out.flush();
+        return buf.toByteArray();
+    }
+
+    /**
+     * Restores the syntax tree and the statements from encoded data, and
+     * computes the metrics and the permutations of the statements.
+     *
+     * @param data       the encoded data
+     * @param input      the script
+     * @param layerCount the layer count of the notation
+     * @return the syntax tree, or null if the data is corrupt
+     */
+    @Nullable
+    private Node restore(@Nonnull byte[] data, @Nonnull String input, int layerCount) {
+        Node root;
+        int[] positions;
+        List<Statement> list;
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            int count = NodeCodec.readUnsigned(in);
+            positions = new int[count * 2];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = NodeCodec.readUnsigned(in);
+            }
+            root = NodeCodec.read(in);
+            if (!(root instanceof SequenceNode) || root.getChildCount() != count
+                    || in.read() != -1 || root.getEndPosition() > input.length()) {
+                return null;
+            }
+
+            list = new ArrayList<>(root.getChildCount());
+            MoveMetrics metrics = new MoveMetrics();
+            CubePermutation permutation = CubePermutation.identity(layerCount);
+            for (int i = 0, n = root.getChildCount(); i < n; i++) {
+                Node node = root.getChildAt(i);
+                metrics.accept(node);
+                permutation = permutation.then(node.compile(layerCount));
+                list.add(new Statement(node, positions[i * 2], positions[i * 2 + 1], new MoveMetrics(metrics), permutation));
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+
+        this.text = input;
+        this.statements = list;
+        this.endPosition = root.getEndPosition();
+        this.parsedCount = 0;
+        return root;
+    }
+
+    /**
+     * Searches for the statement with the specified start position.
+     *
+     * @param list  the statements
+     * @param start the start position
+     * @return the index of the statement or -1
+     */
+    private static int findStatement(@Nonnull List<Statement> list, int start) {
+        int low = 0, high = list.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midStart = list.get(mid).start;
+            if (midStart < start) {
+                low = mid + 1;
+            } else if (midStart > start) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the metrics of the script that has been parsed last.
+     *
+     * @return a copy of the metrics
+     */
+    @Nonnull
+    public MoveMetrics getMetrics() {
+        return statements.isEmpty() ? new MoveMetrics() : new MoveMetrics(statements.get(statements.size() - 1).metrics);
+    }
+
+    /**
+     * Returns the permutation of the script that has been parsed last.
+     * The layer count of the permutation is the layer count of the notation.
+     *
+     * @return the permutation
+     * @throws IllegalStateException if no script has been parsed
+     */
+    @Nonnull
+    public CubePermutation getPermutation() {
+        if (configuration == null) {
+            throw new IllegalStateException("No script has been parsed.");
+        }
+        return statements.isEmpty() ? CubePermutation.identity(configuration.layerCount)
+                : statements.get(statements.size() - 1).permutation;
+    }
+
+    /**
+     * Returns the number of top level statements that have been parsed by
+     * the last call to {@link #parse}. The remaining statements have been
+     * reused from the previous version of the script.
+     *
+     * @return the number of parsed statements
+     */
+    public int getParsedCount() {
+        return parsedCount;
+    }
+
+    /**
+     * Discards the previous version of the script. The next call to
+     * {@link #parse} parses the entire script.
+     */
+    public void reset() {
+        text = null;
+        configuration = null;
+        statements = new ArrayList<>();
+        endPosition = 0;
+        parsedCount = 0;
+    }
+}
@@ -4,11 +4,20 @@
  */
 package ch.randelshofer.rubik.parser;
 
+import ch.randelshofer.rubik.parser.ast.CommutationNode;
+import ch.randelshofer.rubik.parser.ast.ConjugationNode;
+import ch.randelshofer.rubik.parser.ast.InversionNode;
 import ch.randelshofer.rubik.parser.ast.MoveNode;
+import ch.randelshofer.rubik.parser.ast.NOPNode;
 import ch.randelshofer.rubik.parser.ast.Node;
+import ch.randelshofer.rubik.parser.ast.PermutationCycleNode;
+import ch.randelshofer.rubik.parser.ast.ReflectionNode;
+import ch.randelshofer.rubik.parser.ast.RepetitionNode;
+import ch.randelshofer.rubik.parser.ast.RotationNode;
 import org.jhotdraw.annotation.Nonnull;
 import org.jhotdraw.annotation.Nullable;
 
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 import static java.lang.Math.abs;
@@ -27,10 +36,25 @@ import static java.lang.Math.abs;
  */
 public class MoveMetrics implements Consumer<Node> {
     /**
-     * Current move node.
+     * True if there is a current move.
      */
-    @Nullable
-    private MoveNode current = null;
+    private boolean hasCurrent = false;
+    /**
+     * Layer count of the current move.
+     */
+    private int currentLayerCount;
+    /**
+     * Axis of the current move.
+     */
+    private int currentAxis;
+    /**
+     * Layer mask of the current move.
+     */
+    private int currentLayerMask;
+    /**
+     * Angle of the current move.
+     */
+    private int currentAngle;
     /**
      * Face Turn Metric without current node.
      */
@@ -66,6 +90,25 @@ public class MoveMetrics implements Consumer<Node> {
         this.coalesce = coalesce;
     }
 
+    /**
+     * Creates a copy of the specified {@code MoveMetrics}.
+     *
+     * @param that another {@code MoveMetrics}
+     */
+    public MoveMetrics(@Nonnull MoveMetrics that) {
+        this.hasCurrent = that.hasCurrent;
+        this.currentLayerCount = that.currentLayerCount;
+        this.currentAxis = that.currentAxis;
+        this.currentLayerMask = that.currentLayerMask;
+        this.currentAngle = that.currentAngle;
+        this.ftm = that.ftm;
+        this.qtm = that.qtm;
+        this.btm = that.btm;
+        this.ltm = that.ltm;
+        this.moveCount = that.moveCount;
+        this.coalesce = that.coalesce;
+    }
+
     /**
      * Gets the layer turn count of the subtree starting
      * at this node.
@@ -106,54 +149,145 @@ public class MoveMetrics implements Consumer<Node> {
         return metrics.getQuarterTurnCount();
     }
 
+    /**
+     * Counts the resolved moves of the specified node.
+     * <p>
+     * The metrics are computed in a single pass over the tree. The metrics
+     * of the children of a repetition, commutation, conjugation or rotation
+     * are only computed once, and then combined. Repetitions are combined
+     * by squaring, so that computing the metrics of
+     * {@code (R U)1000000} takes about as long as computing the metrics of
+     * {@code R U}.
+     */
     @Override
     public void accept(@Nonnull Node node) {
-        // coalesce moves for counting
-        for (Node resolvedNode : node.resolvedIterable(false)) {
-            if (!(resolvedNode instanceof MoveNode)) {
-                continue;// filter for move nodes
+        if (node instanceof MoveNode) {
+            accept((MoveNode) node);
+        } else {
+            summarize(node, false).applyTo(this);
+        }
+    }
+
+    /**
+     * Computes the summary of the resolved moves of a subtree.
+     * Follows the same order as {@link Node#resolvedIterator(boolean)}.
+     *
+     * @param node    the root of the subtree
+     * @param inverse whether the summary of the inverse sequence shall be
+     *                computed
+     * @return a new summary
+     */
+    @Nonnull
+    private Summary summarize(@Nonnull Node node, boolean inverse) {
+        if (node instanceof MoveNode) {
+            MoveNode move = (MoveNode) node;
+            return new Summary(coalesce).append(move.getLayerCount(), move.getAxis(), move.getLayerMask(),
+                    inverse ? -move.getAngle() : move.getAngle());
+        } else if (node instanceof NOPNode || node instanceof PermutationCycleNode) {
+            return new Summary(coalesce);
+        } else if (node instanceof InversionNode) {
+            return summarizeChildren(node, !inverse);
+        } else if (node instanceof ReflectionNode) {
+            Summary s = summarizeChildren(node, inverse);
+            s.reflect();
+            return s;
+        } else if (node instanceof RepetitionNode) {
+            Summary s = summarizeChildren(node, inverse);
+            return s.power(Math.max(1, ((RepetitionNode) node).getRepeatCount()));
+        } else if (node instanceof CommutationNode
+                || node instanceof ConjugationNode
+                || node instanceof RotationNode) {
+            if (node.getChildCount() != 2) {
+                return new Summary(coalesce);
             }
-            MoveNode moveNode = (MoveNode) resolvedNode;
-            int layerMask = moveNode.getLayerMask();
-            int layerCount = moveNode.getLayerCount();
-            int angle = moveNode.getAngle();
-            int allLayers = (1 << layerCount) - 1;
-            int axis = moveNode.getAxis();
-            if (layerMask == 0 || angle == 0) {
-                // skip nop, don't count
-            } else if (current == null) {
-                // cannot coalesce
-                current = moveNode;
-                moveCount++;
-            } else if (coalesce && current.getAxis() == axis && layerMask == allLayers) {
-                // skip cube rotation over same axis
-                moveCount++;
-            } else if (coalesce && current.getAxis() == axis && current.getLayerMask() == layerMask) {
-                // coalesce subsequent move on same axis and same layer
-                current = new MoveNode(layerCount, axis, layerMask, angle + current.getAngle(),
-                        current.getStartPosition(), moveNode.getEndPosition());
-                moveCount++;
-            } else if (coalesce && current.getAxis() == axis && current.getAngle() == angle && (current.getLayerMask() & layerMask) == 0) {
-                // coalesce subsequent move on same axis and angle and different layers
-                current = new MoveNode(layerCount, axis, current.getLayerMask() | layerMask, angle,
-                        current.getStartPosition(), moveNode.getEndPosition());
-                moveCount++;
+            Node a = node.getChildAt(0);
+            Node b = node.getChildAt(1);
+            if (node instanceof CommutationNode) {
+                Summary sa = summarize(a, false);
+                Summary sb = summarize(b, false);
+                Summary sai = summarize(a, true);
+                Summary sbi = summarize(b, true);
+                return inverse
+                        ? sb.append(sa).append(sbi).append(sai)
+                        : sa.append(sb).append(sai).append(sbi);
+            } else if (node instanceof ConjugationNode) {
+                return summarize(a, false).append(summarize(b, inverse)).append(summarize(a, true));
             } else {
-                // cannot coalesce
-                if (isTwistMove(current)) {
-                    addToTurnMetrics(current);
-                }
-                current = moveNode;
-                moveCount++;
+                return summarize(a, true).append(summarize(b, inverse)).append(summarize(a, false));
+            }
+        } else {
+            return summarizeChildren(node, inverse);
+        }
+    }
+
+    @Nonnull
+    private Summary summarizeChildren(@Nonnull Node node, boolean inverse) {
+        Summary s = new Summary(coalesce);
+        int n = node.getChildCount();
+        for (int i = 0; i < n; i++) {
+            s.append(summarize(node.getChildAt(inverse ? n - 1 - i : i), inverse));
+        }
+        return s;
+    }
+
+    private void accept(@Nonnull MoveNode move) {
+        accept(move.getLayerCount(), move.getAxis(), move.getLayerMask(), move.getAngle());
+    }
+
+    /**
+     * Counts a move. Coalesces it with the current move if possible.
+     */
+    private void accept(int layerCount, int axis, int layerMask, int angle) {
+        int allLayers = (1 << layerCount) - 1;
+        if (layerMask == 0 || angle == 0) {
+            // skip nop, don't count
+        } else if (!hasCurrent) {
+            // cannot coalesce
+            setCurrent(layerCount, axis, layerMask, angle);
+            moveCount++;
+        } else if (coalesce && currentAxis == axis && layerMask == allLayers) {
+            // skip cube rotation over same axis
+            moveCount++;
+        } else if (coalesce && currentAxis == axis && currentLayerMask == layerMask) {
+            // coalesce subsequent move on same axis and same layer
+            setCurrent(layerCount, axis, layerMask, angle + currentAngle);
+            moveCount++;
+        } else if (coalesce && currentAxis == axis && currentAngle == angle && (currentLayerMask & layerMask) == 0) {
+            // coalesce subsequent move on same axis and angle and different layers
+            setCurrent(layerCount, axis, currentLayerMask | layerMask, angle);
+            moveCount++;
+        } else {
+            // cannot coalesce
+            if (isTwistMove(currentLayerCount, currentLayerMask, currentAngle)) {
+                addToTurnMetrics(currentLayerCount, currentLayerMask, currentAngle);
             }
+            setCurrent(layerCount, axis, layerMask, angle);
+            moveCount++;
         }
     }
 
-    private void addToTurnMetrics(@Nonnull MoveNode move) {
-        ltm += countLayerTurns(move);
-        qtm += countQuarterTurns(move);
-        ftm += countFaceTurns(move);
-        btm += countBlockTurns(move);
+    private void setCurrent(int layerCount, int axis, int layerMask, int angle) {
+        hasCurrent = true;
+        currentLayerCount = layerCount;
+        currentAxis = axis;
+        currentLayerMask = layerMask;
+
+        // Normalize angle to range [-2, +2], like MoveNode does.
+        int a = angle % 4;
+        if (a == 3) {
+            a = -1;
+        }
+        if (a == -3) {
+            a = 1;
+        }
+        currentAngle = a;
+    }
+
+    private void addToTurnMetrics(int layerCount, int layerMask, int angle) {
+        ltm += countLayerTurns(layerCount, layerMask, angle);
+        qtm += countQuarterTurns(layerCount, layerMask, angle);
+        ftm += countFaceTurns(layerCount, layerMask, angle);
+        btm += countBlockTurns(layerCount, layerMask, angle);
     }
 
     /**
@@ -170,20 +304,60 @@ public class MoveMetrics implements Consumer<Node> {
         this.qtm += that.qtm;
         this.ftm += that.ftm;
         int tmpCount = this.moveCount;
-        if (that.current != null) {
-            accept(that.current);
+        if (that.hasCurrent) {
+            accept(that.currentLayerCount, that.currentAxis, that.currentLayerMask, that.currentAngle);
         }
         this.moveCount = tmpCount + that.moveCount;
         return this;
     }
 
     /**
-     * Gets the block turn count of the specified move node.
+     * Returns true if this {@code MoveMetrics} will count the same moves
+     * as that {@code MoveMetrics} for any further nodes. This is the case
+     * if both are about to coalesce the same move.
+     *
+     * @param that another {@code MoveMetrics}
+     * @return true if both are in the same coalescing state
      */
-    private int countBlockTurns(@Nonnull MoveNode move) {
-        int layerCount = move.getLayerCount();
-        int layerMask = move.getLayerMask();
-        int turns = abs(move.getAngle()) % 4;
+    boolean isInSameStateAs(@Nonnull MoveMetrics that) {
+        if (this.coalesce != that.coalesce) {
+            return false;
+        }
+        if (!this.hasCurrent || !that.hasCurrent) {
+            return this.hasCurrent == that.hasCurrent;
+        }
+        return this.currentLayerCount == that.currentLayerCount
+                && this.currentAxis == that.currentAxis
+                && this.currentLayerMask == that.currentLayerMask
+                && this.currentAngle == that.currentAngle;
+    }
+
+    /**
+     * Adds the counts of {@code plus} to this {@code MoveMetrics} and
+     * subtracts the counts of {@code minus}.
+     * <p>
+     * If this {@code MoveMetrics} has been derived from {@code minus} by
+     * accepting further nodes, and {@code plus} is in the
+     * {@linkplain #isInSameStateAs same state} as {@code minus}, then this
+     * yields the counts that {@code plus} would have after accepting the
+     * same nodes.
+     *
+     * @param plus  the counts to be added
+     * @param minus the counts to be subtracted
+     */
+    void shift(@Nonnull MoveMetrics plus, @Nonnull MoveMetrics minus) {
+        this.ltm += plus.ltm - minus.ltm;
+        this.btm += plus.btm - minus.btm;
+        this.qtm += plus.qtm - minus.qtm;
+        this.ftm += plus.ftm - minus.ftm;
+        this.moveCount += plus.moveCount - minus.moveCount;
+    }
+
+    /**
+     * Gets the block turn count of the specified move.
+     */
+    private int countBlockTurns(int layerCount, int layerMask, int angle) {
+        int turns = abs(angle) % 4;
         if (turns == 0) {
             return 0;
         } else {
@@ -206,7 +380,7 @@ public class MoveMetrics implements Consumer<Node> {
     }
 
     /**
-     * Gets the face turn count of the specified node.
+     * Gets the face turn count of the specified move.
      * <p>
      * If a move has changed at least one layer but not all layers:
      * <ul>
@@ -215,10 +389,8 @@ public class MoveMetrics implements Consumer<Node> {
      *     <li>counts 2: otherwise</li>
      * </ul>
      */
-    private int countFaceTurns(@Nonnull MoveNode move) {
-        int layerCount = move.getLayerCount();
-        int layerMask = move.getLayerMask();
-        int angle = abs(move.getAngle()) % 4;
+    private int countFaceTurns(int layerCount, int layerMask, int angle) {
+        angle = abs(angle) % 4;
 
         int allLayers = (1 << layerCount) - 1;
         if (angle == 0 || layerMask == 0 || layerMask == allLayers) {
@@ -232,12 +404,10 @@ public class MoveMetrics implements Consumer<Node> {
     }
 
     /**
-     * Gets the layer turn count of the specified move node.
+     * Gets the layer turn count of the specified move.
      */
-    private int countLayerTurns(@Nonnull MoveNode move) {
-        int layerCount = move.getLayerCount();
-        int layerMask = move.getLayerMask();
-        int turns = abs(move.getAngle()) % 4;
+    private int countLayerTurns(int layerCount, int layerMask, int angle) {
+        int turns = abs(angle) % 4;
         if (turns == 0) {
             return 0;
         } else {
@@ -252,35 +422,35 @@ public class MoveMetrics implements Consumer<Node> {
     }
 
     /**
-     * Gets the face turn count of the specified node.
+     * Gets the quarter turn count of the specified move.
      */
-    private int countQuarterTurns(@Nonnull MoveNode move) {
-        int qturns = abs(move.getAngle() % 4);
+    private int countQuarterTurns(int layerCount, int layerMask, int angle) {
+        int qturns = abs(angle % 4);
         if (qturns == 3) {
             qturns = 1;
         }
-        return countFaceTurns(move) * qturns;
+        return countFaceTurns(layerCount, layerMask, angle) * qturns;
     }
 
     /**
      * Gets the current block turn count.
      */
     public int getBlockTurnCount() {
-        return current == null ? btm : btm + countBlockTurns(current);
+        return hasCurrent ? btm + countBlockTurns(currentLayerCount, currentLayerMask, currentAngle) : btm;
     }
 
     /**
      * Gets the current face turn count.
      */
     public int getFaceTurnCount() {
-        return current == null ? ftm : ftm + countFaceTurns(current);
+        return hasCurrent ? ftm + countFaceTurns(currentLayerCount, currentLayerMask, currentAngle) : ftm;
     }
 
     /**
      * Gets the current layer turn count.
      */
     public int getLayerTurnCount() {
-        return current == null ? ltm : ltm + countLayerTurns(current);
+        return hasCurrent ? ltm + countLayerTurns(currentLayerCount, currentLayerMask, currentAngle) : ltm;
     }
 
     /**
@@ -294,7 +464,7 @@ public class MoveMetrics implements Consumer<Node> {
      * Gets the current quarter turn count.
      */
     public int getQuarterTurnCount() {
-        return current == null ? qtm : qtm + countQuarterTurns(current);
+        return hasCurrent ? qtm + countQuarterTurns(currentLayerCount, currentLayerMask, currentAngle) : qtm;
     }
 
     public boolean isCoalesce() {
@@ -308,19 +478,204 @@ public class MoveMetrics implements Consumer<Node> {
     /**
      * Returns true if the specified move twists layers.
      *
-     * @param move a move
+     * @param layerCount the layer count of the move
+     * @param layerMask  the layer mask of the move
+     * @param angle      the angle of the move
      * @return true if move twists layrser
      */
-    private boolean isTwistMove(@Nonnull MoveNode move) {
-        int layerCount = move.getLayerCount();
-        int turns = abs(move.getAngle()) % 4;
+    private boolean isTwistMove(int layerCount, int layerMask, int angle) {
+        int turns = abs(angle) % 4;
         int allLayers = (1 << (layerCount)) - 1;
-        int layerMask = move.getLayerMask();
 
         return turns != 0 && layerMask != 0 && layerMask != allLayers;
 
     }
 
+    /**
+     * Reverses the bits of a layer mask like {@link MoveNode#reflect()}
+     * does.
+     */
+    private static int reflectLayerMask(int layerCount, int layerMask, int angle) {
+        int reflected = 0;
+        if (angle != 0) {
+            for (int i = 0; i < layerCount; i++) {
+                reflected <<= 1;
+                reflected |= (layerMask & 1);
+                layerMask >>>= 1;
+            }
+        }
+        return reflected;
+    }
+
+    /**
+     * Summarizes the effect of a sequence of moves on the counts of a
+     * {@code MoveMetrics}, so that the sequence can be counted without
+     * iterating over its moves again.
+     * <p>
+     * Only the leading moves of a sequence can be coalesced with the
+     * current move of a {@code MoveMetrics}. These are the moves up to the
+     * first move over a different axis. This move can not be coalesced with
+     * any preceding move. Therefore, the counts of all further moves do not
+     * depend on what came before the sequence.
+     * <p>
+     * A summary thus consists of the leading moves, the first move over a
+     * different axis, and a {@code MoveMetrics} which has counted the
+     * sequence from that move on.
+     */
+    private static class Summary {
+        private final boolean coalesce;
+        /**
+         * The number of moves in the sequence without no-op moves.
+         */
+        private int moveCount;
+        /**
+         * The leading moves over the same axis. Four ints per move:
+         * layerCount, axis, layerMask and angle.
+         */
+        @Nonnull
+        private int[] head = new int[8];
+        private int headLength;
+        /**
+         * The first move over a different axis, or null.
+         */
+        @Nullable
+        private int[] tailMove;
+        /**
+         * The counts of the sequence from {@link #tailMove} on. This
+         * {@code MoveMetrics} has been empty before it counted
+         * {@code tailMove}.
+         */
+        @Nullable
+        private MoveMetrics tail;
+
+        Summary(boolean coalesce) {
+            this.coalesce = coalesce;
+        }
+
+        @Nonnull
+        Summary copy() {
+            Summary that = new Summary(coalesce);
+            that.moveCount = this.moveCount;
+            that.head = this.head.clone();
+            that.headLength = this.headLength;
+            that.tailMove = this.tailMove;
+            that.tail = this.tail == null ? null : new MoveMetrics(this.tail);
+            return that;
+        }
+
+        /**
+         * Appends a move to this summary.
+         */
+        @Nonnull
+        Summary append(int layerCount, int axis, int layerMask, int angle) {
+            if (layerMask == 0 || angle == 0) {
+                return this;
+            }
+            moveCount++;
+            if (tail != null) {
+                tail.accept(layerCount, axis, layerMask, angle);
+            } else if (coalesce && (headLength == 0 || head[1] == axis)) {
+                if (headLength == head.length) {
+                    head = Arrays.copyOf(head, head.length * 2);
+                }
+                head[headLength++] = layerCount;
+                head[headLength++] = axis;
+                head[headLength++] = layerMask;
+                head[headLength++] = angle;
+            } else {
+                tailMove = new int[]{layerCount, axis, layerMask, angle};
+                tail = new MoveMetrics(coalesce);
+                tail.accept(layerCount, axis, layerMask, angle);
+            }
+            return this;
+        }
+
+        /**
+         * Appends the sequence of another summary to this summary.
+         */
+        @Nonnull
+        Summary append(@Nonnull Summary that) {
+            if (that.moveCount == 0) {
+                return this;
+            }
+            int count = moveCount + that.moveCount;
+            if (tail != null) {
+                that.applyTo(tail);
+            } else if (that.headLength > 0 && (headLength == 0 || head[1] == that.head[1])) {
+                if (headLength + that.headLength > head.length) {
+                    head = Arrays.copyOf(head, Math.max(head.length * 2, headLength + that.headLength));
+                }
+                System.arraycopy(that.head, 0, head, headLength, that.headLength);
+                headLength += that.headLength;
+                tailMove = that.tailMove;
+                tail = that.tail == null ? null : new MoveMetrics(that.tail);
+            } else {
+                tailMove = that.headLength > 0 ? Arrays.copyOf(that.head, 4) : that.tailMove;
+                tail = new MoveMetrics(coalesce);
+                that.applyTo(tail);
+            }
+            moveCount = count;
+            return this;
+        }
+
+        /**
+         * Returns the summary of this sequence repeated the specified
+         * number of times.
+         */
+        @Nonnull
+        Summary power(int times) {
+            Summary result = new Summary(coalesce);
+            Summary base = this;
+            while (times > 0) {
+                if ((times & 1) != 0) {
+                    result.append(base);
+                }
+                times >>>= 1;
+                if (times > 0) {
+                    base = base.copy().append(base);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Reflects the moves of this summary. The counts of a sequence
+         * do not change when it is reflected, because reflection preserves
+         * the number of turned layers, and whether two moves can be
+         * coalesced.
+         */
+        void reflect() {
+            for (int i = 0; i < headLength; i += 4) {
+                head[i + 2] = reflectLayerMask(head[i], head[i + 2], head[i + 3]);
+            }
+            if (tail != null) {
+                tailMove = new int[]{tailMove[0], tailMove[1],
+                        reflectLayerMask(tailMove[0], tailMove[2], tailMove[3]), tailMove[3]};
+                tail.currentLayerMask = reflectLayerMask(tail.currentLayerCount, tail.currentLayerMask, tail.currentAngle);
+            }
+        }
+
+        /**
+         * Counts the sequence of this summary with the specified
+         * {@code MoveMetrics}.
+         */
+        void applyTo(@Nonnull MoveMetrics metrics) {
+            int count = metrics.moveCount + moveCount;
+            for (int i = 0; i < headLength; i += 4) {
+                metrics.accept(head[i], head[i + 1], head[i + 2], head[i + 3]);
+            }
+            if (tail != null) {
+                metrics.accept(tailMove[0], tailMove[1], tailMove[2], tailMove[3]);
+                metrics.ftm += tail.ftm;
+                metrics.qtm += tail.qtm;
+                metrics.btm += tail.btm;
+                metrics.ltm += tail.ltm;
+                metrics.setCurrent(tail.currentLayerCount, tail.currentAxis, tail.currentLayerMask, tail.currentAngle);
+            }
+            metrics.moveCount = count;
+        }
+    }
+
     @Nonnull
     @Override
     public String toString() {
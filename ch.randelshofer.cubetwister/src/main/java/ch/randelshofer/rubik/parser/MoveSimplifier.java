@@ -0,0 +1,345 @@
+/*
+ * @(#)MoveSimplifier.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.parser;
+
+import ch.randelshofer.rubik.parser.ast.MoveNode;
+import ch.randelshofer.rubik.parser.ast.Node;
+import ch.randelshofer.rubik.parser.ast.ResolvedMoves;
+import ch.randelshofer.rubik.parser.ast.SequenceNode;
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reduces the resolved moves of a script to a shorter sequence of moves
+ * with the same side effect on a cube.
+ * <p>
+ * Subsequent moves over the same axis commute. They are merged by adding
+ * up the angles of each layer. This cancels {@code R R'}, merges
+ * {@code R R} into {@code R2}, folds {@code R L R'} into {@code L}, and
+ * merges {@code R MR L'} into a single cube rotation. When the moves over
+ * an axis cancel out completely, the moves before them are merged with the
+ * moves after them, so that {@code R U U' R'} is reduced to nothing.
+ * <p>
+ * The merged moves of an axis are re-emitted with one move per angle. If
+ * this is not shorter than the moves from which they have been merged,
+ * for example when {@code TD- SU2} on a 4x4 cube would become three
+ * moves, the original moves are kept. Thus the simplified sequence never
+ * has more moves than the resolved moves of the script.
+ * <p>
+ * Nodes which are not moves, such as permutation cycles, are copied into
+ * the simplified sequence. Moves are not merged across them.
+ * <p>
+ * Like {@link MoveMetrics}, this class can be used with streams:
+ * <pre>{@code
+ * Stream<Node> nodeStream = ...;
+ * SequenceNode simplified = nodeStream.collect(MoveSimplifier::new,
+ *                                              MoveSimplifier::accept,
+ *                                              MoveSimplifier::combine)
+ *                                     .toSequence();
+ * }</pre>
+ *
+ * @author Werner Randelshofer
+ */
+public class MoveSimplifier implements Consumer<Node> {
+    /**
+     * The simplified sequence. Subsequent groups have different axes
+     * or layer counts, or one of them holds a node.
+     */
+    @Nonnull
+    private final List<Group> groups = new ArrayList<>();
+
+    public MoveSimplifier() {
+    }
+
+    /**
+     * Returns the simplified resolved moves of the specified node.
+     *
+     * @param node a node
+     * @return a new sequence node which holds the simplified moves
+     */
+    @Nonnull
+    public static SequenceNode simplify(@Nonnull Node node) {
+        MoveSimplifier simplifier = new MoveSimplifier();
+        simplifier.accept(node);
+        return simplifier.toSequence();
+    }
+
+    /**
+     * Adds the resolved moves of the specified node.
+     */
+    @Override
+    public void accept(@Nonnull Node node) {
+        if (node instanceof MoveNode) {
+            accept((MoveNode) node);
+            return;
+        }
+        ResolvedMoves moves = node.getResolvedMoves();
+        if (moves == null) {
+            for (Node resolvedNode : node.resolvedIterable(false)) {
+                if (resolvedNode instanceof MoveNode) {
+                    accept((MoveNode) resolvedNode);
+                } else {
+                    groups.add(new Group(resolvedNode));
+                }
+            }
+            return;
+        }
+        int layerCount = moves.getLayerCount();
+        for (int i = 0, n = moves.size(); i < n; i++) {
+            if (moves.isMove(i)) {
+                Node source = moves.getSource(i);
+                accept(layerCount, moves.getAxis(i), moves.getLayerMask(i), moves.getAngle(i),
+                        source.getStartPosition(), source.getEndPosition(), 1);
+            } else {
+                Node resolvedNode = moves.getSource(i);
+                if (resolvedNode instanceof MoveNode) {
+                    accept((MoveNode) resolvedNode);
+                } else {
+                    groups.add(new Group(resolvedNode));
+                }
+            }
+        }
+    }
+
+    private void accept(@Nonnull MoveNode move) {
+        accept(move.getLayerCount(), move.getAxis(), move.getLayerMask(), move.getAngle(),
+                move.getStartPosition(), move.getEndPosition(), 1);
+    }
+
+    /**
+     * Merges a move into the last group, or adds a new group.
+     *
+     * @param count the number of resolved moves that the move stands for
+     */
+    private void accept(int layerCount, int axis, int layerMask, int angle, int startpos, int endpos, int count) {
+        if ((angle & 3) == 0 || layerMask == 0) {
+            return;
+        }
+        Group last = groups.isEmpty() ? null : groups.get(groups.size() - 1);
+        if (last == null || !last.canMerge(layerCount, axis)) {
+            last = new Group(layerCount, axis);
+            last.startpos = startpos;
+            groups.add(last);
+        }
+        last.add(layerMask, angle, startpos, endpos, count);
+        last.endpos = endpos;
+        if (last.isIdentity()) {
+            groups.remove(groups.size() - 1);
+        }
+    }
+
+    /**
+     * Appends the state of another {@code MoveSimplifier} to this one.
+     *
+     * @param that another {@code MoveSimplifier}
+     * @return this {@code MoveSimplifier}
+     */
+    @Nonnull
+    public MoveSimplifier combine(@Nonnull MoveSimplifier that) {
+        for (Group group : that.groups) {
+            if (group.node != null) {
+                groups.add(group);
+            } else if (group.moves != null) {
+                for (int[] move : group.moves) {
+                    accept(group.layerCount, group.axis, move[0], move[1], move[2], move[3], 1);
+                }
+            } else {
+                // Replay the merged moves. The first one stands for all
+                // resolved moves of the group, which are not replayed.
+                int count = group.count - group.getMergedSize() + 1;
+                for (int angle = 1; angle <= 3; angle++) {
+                    int layerMask = group.getLayerMask(angle);
+                    if (layerMask != 0) {
+                        accept(group.layerCount, group.axis, layerMask, angle,
+                                group.startpos, group.endpos, count);
+                        count = 1;
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of moves and other nodes in the simplified
+     * sequence.
+     */
+    public int size() {
+        int size = 0;
+        for (Group group : groups) {
+            size += group.size();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the simplified sequence. Moves are returned as new
+     * {@code MoveNode}s. Their positions span the positions of the moves
+     * from which they have been merged.
+     *
+     * @return a new sequence node
+     */
+    @Nonnull
+    public SequenceNode toSequence() {
+        SequenceNode sequence = new SequenceNode();
+        if (!groups.isEmpty()) {
+            sequence.setStartPosition(groups.get(0).startpos);
+            sequence.setEndPosition(groups.get(groups.size() - 1).endpos);
+        }
+        for (Group group : groups) {
+            group.addTo(sequence);
+        }
+        return sequence;
+    }
+
+    /**
+     * A node, or moves over the same axis.
+     */
+    private static class Group {
+        /**
+         * The maximal number of moves that a group re-emits. A group with
+         * more moves than this is always shortened.
+         */
+        private final static int MAX_MOVES = 3;
+        /**
+         * The node, or null if this group holds moves.
+         */
+        @Nullable
+        private final Node node;
+        private final int layerCount;
+        private final int axis;
+        /**
+         * The angle of each layer in the range [0, 3].
+         */
+        @Nullable
+        private final int[] angles;
+        /**
+         * The number of resolved moves that have been merged into this
+         * group.
+         */
+        private int count;
+        /**
+         * The moves that have been merged into this group, or null if
+         * there are more than {@link #MAX_MOVES} of them, or if one of
+         * them stands for more than one resolved move. Each move is
+         * stored as {layerMask, angle, startpos, endpos}.
+         */
+        @Nullable
+        private List<int[]> moves;
+        private int startpos;
+        private int endpos;
+
+        Group(@Nonnull Node node) {
+            this.node = node;
+            this.layerCount = 0;
+            this.axis = -1;
+            this.angles = null;
+            this.startpos = node.getStartPosition();
+            this.endpos = node.getEndPosition();
+        }
+
+        Group(int layerCount, int axis) {
+            this.node = null;
+            this.layerCount = layerCount;
+            this.axis = axis;
+            this.angles = new int[layerCount];
+            this.moves = new ArrayList<>(MAX_MOVES);
+        }
+
+        boolean canMerge(int layerCount, int axis) {
+            return node == null && this.layerCount == layerCount && this.axis == axis;
+        }
+
+        void add(int layerMask, int angle, int startpos, int endpos, int count) {
+            this.count += count;
+            if (moves != null) {
+                if (count == 1 && moves.size() < MAX_MOVES) {
+                    moves.add(new int[]{layerMask, angle, startpos, endpos});
+                } else {
+                    moves = null;
+                }
+            }
+            for (int layer = 0; layer < layerCount; layer++) {
+                if ((layerMask & (1 << layer)) != 0) {
+                    angles[layer] = (angles[layer] + angle) & 3;
+                }
+            }
+        }
+
+        boolean isIdentity() {
+            for (int angle : angles) {
+                if (angle != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns the layer mask of all layers with the specified angle.
+         */
+        private int getLayerMask(int angle) {
+            int layerMask = 0;
+            for (int layer = 0; layer < layerCount; layer++) {
+                if (angles[layer] == angle) {
+                    layerMask |= 1 << layer;
+                }
+            }
+            return layerMask;
+        }
+
+        /**
+         * Returns the number of moves needed for the merged angles.
+         */
+        private int getMergedSize() {
+            int size = 0;
+            for (int angle = 1; angle <= 3; angle++) {
+                if (getLayerMask(angle) != 0) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        /**
+         * Returns true if the merged angles are re-emitted, and false if
+         * the original moves are kept.
+         */
+        private boolean isMerged() {
+            return moves == null || getMergedSize() < moves.size();
+        }
+
+        int size() {
+            if (node != null) {
+                return 1;
+            }
+            return isMerged() ? getMergedSize() : moves.size();
+        }
+
+        void addTo(@Nonnull SequenceNode sequence) {
+            if (node != null) {
+                sequence.add(node.clone());
+                return;
+            }
+            if (!isMerged()) {
+                for (int[] move : moves) {
+                    sequence.add(new MoveNode(layerCount, axis, move[0], move[1], move[2], move[3]));
+                }
+                return;
+            }
+            for (int angle = 1; angle <= 3; angle++) {
+                int layerMask = getLayerMask(angle);
+                if (layerMask != 0) {
+                    sequence.add(new MoveNode(layerCount, axis, layerMask, angle == 3 ? -1 : angle,
+                            startpos, endpos));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,867 @@
+/*
+ * @(#)NotationTranslator.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.parser;
+
+import ch.randelshofer.rubik.notation.Move;
+import ch.randelshofer.rubik.notation.ScriptNotation;
+import ch.randelshofer.rubik.notation.Symbol;
+import ch.randelshofer.rubik.notation.Syntax;
+import ch.randelshofer.rubik.parser.ast.BinaryNode;
+import ch.randelshofer.rubik.parser.ast.CommutationNode;
+import ch.randelshofer.rubik.parser.ast.ConjugationNode;
+import ch.randelshofer.rubik.parser.ast.GroupingNode;
+import ch.randelshofer.rubik.parser.ast.InversionNode;
+import ch.randelshofer.rubik.parser.ast.MacroNode;
+import ch.randelshofer.rubik.parser.ast.MoveNode;
+import ch.randelshofer.rubik.parser.ast.NOPNode;
+import ch.randelshofer.rubik.parser.ast.Node;
+import ch.randelshofer.rubik.parser.ast.PermutationCycleNode;
+import ch.randelshofer.rubik.parser.ast.ReflectionNode;
+import ch.randelshofer.rubik.parser.ast.RepetitionNode;
+import ch.randelshofer.rubik.parser.ast.RotationNode;
+import ch.randelshofer.rubik.parser.ast.SequenceNode;
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Translates parsed scripts into the tokens of a notation.
+ * <p>
+ * The translator precompiles a table which maps each move of the notation,
+ * given by axis, layer mask and angle, to the UTF-8 bytes of its token.
+ * Moves for which the notation has no token are compiled into an
+ * equivalent expression at construction time, for example {@code R2} into
+ * {@code R R}, or {@code L'} into the inversion of {@code L}. The tokens of
+ * the composite symbols are precompiled in the same way. Translating a
+ * script is therefore a walk over its syntax tree, which copies bytes from
+ * the tables into the output, without looking up any strings.
+ * <p>
+ * The output can be parsed with the notation of the translator, and has the
+ * same effect on a cube as the translated script. Macros are written as
+ * their expansion, unless they are local macros of the script, which are
+ * written by their identifier. Composite expressions which are not
+ * supported by the notation are written as their resolved moves.
+ * <p>
+ * Many scripts can be translated in parallel with
+ * {@link #translate(List, OutputStream, byte[])}. The output of the scripts
+ * is streamed in their order, while the following scripts are still being
+ * translated.
+ * <p>
+ * This class is thread-safe. Instances can be obtained from
+ * {@link #getInstance(ScriptNotation)}, which reuses the tables until the
+ * notation {@linkplain ScriptNotation#getModificationCount() changes}.
+ *
+ * @author Werner Randelshofer
+ */
+public class NotationTranslator {
+    /**
+     * Caches the translators of notations.
+     * <p>
+     * Key = notation, Value = translator.
+     * The translator is held by a soft reference, because it references
+     * the notation. The translator survives garbage collections until
+     * memory runs low, and the notation can be collected when it is not
+     * used anymore.
+     * Access to this map must be synchronized on the map.
+     */
+    @Nonnull
+    private final static Map<ScriptNotation, SoftReference<NotationTranslator>> translators = new WeakHashMap<>();
+
+    /**
+     * Forms of written statements. The form determines whether a statement
+     * can be written as the operand of another statement without
+     * enclosing it in a grouping.
+     */
+    private final static int ATOMIC = 1;
+    private final static int PREFIX = 2;
+    private final static int SUFFIX = 4;
+    private final static int INFIX = 8;
+    private final static int SEQUENCE = 16;
+    /**
+     * The forms which can be written as the operand of a suffix.
+     */
+    private final static int SUFFIX_OPERAND = ATOMIC | SUFFIX;
+    /**
+     * The forms which can be written as the operand of a prefix or an infix.
+     */
+    private final static int PREFIX_OPERAND = ATOMIC | PREFIX | SUFFIX;
+
+    @Nonnull
+    private final ScriptNotation notation;
+    private final int layerCount;
+    private final long modificationCount;
+    /**
+     * The written moves.
+     * <p>
+     * Index = {@code ((axis << layerCount) | layerMask) * 4 + (angle & 3)}.
+     * An entry is null, if the notation can not express the move.
+     */
+    @Nonnull
+    private final Written[] moves;
+    /**
+     * The composite symbols, which are supported by the notation.
+     */
+    @Nonnull
+    private final Map<Symbol, Composite> composites = new EnumMap<>(Symbol.class);
+    @Nullable
+    private final byte[] nop;
+
+    /**
+     * Holds precompiled bytes and their form.
+     */
+    private static class Written {
+        @Nonnull
+        final byte[] bytes;
+        final int form;
+
+        Written(@Nonnull byte[] bytes, int form) {
+            this.bytes = bytes;
+            this.form = form;
+        }
+    }
+
+    /**
+     * Holds the syntax and the precompiled tokens of a composite symbol.
+     */
+    private static class Composite {
+        @Nonnull
+        final Syntax syntax;
+        @Nullable
+        final byte[] begin;
+        @Nullable
+        final byte[] end;
+        @Nullable
+        final byte[] delimiter;
+        @Nullable
+        final byte[] operator;
+
+        Composite(@Nonnull Syntax syntax, @Nullable byte[] begin, @Nullable byte[] end,
+                  @Nullable byte[] delimiter, @Nullable byte[] operator) {
+            this.syntax = syntax;
+            this.begin = begin;
+            this.end = end;
+            this.delimiter = delimiter;
+            this.operator = operator;
+        }
+    }
+
+    /**
+     * Creates a new instance and precompiles the tables of the notation.
+     *
+     * @param notation the notation into which scripts are translated
+     */
+    public NotationTranslator(@Nonnull ScriptNotation notation) {
+        this.notation = notation;
+        this.layerCount = notation.getLayerCount();
+        this.modificationCount = notation.getModificationCount();
+
+        compileComposite(Symbol.GROUPING, Symbol.GROUPING_BEGIN, Symbol.GROUPING_END, null, null);
+        compileComposite(Symbol.INVERSION, Symbol.INVERSION_BEGIN, Symbol.INVERSION_END, null, Symbol.INVERSION_OPERATOR);
+        compileComposite(Symbol.REFLECTION, Symbol.REFLECTION_BEGIN, Symbol.REFLECTION_END, null, Symbol.REFLECTION_OPERATOR);
+        compileComposite(Symbol.REPETITION, Symbol.REPETITION_BEGIN, Symbol.REPETITION_END, Symbol.REPETITION_DELIMITER, Symbol.REPETITION_OPERATOR);
+        compileComposite(Symbol.COMMUTATION, Symbol.COMMUTATION_BEGIN, Symbol.COMMUTATION_END, Symbol.COMMUTATION_DELIMITER, Symbol.COMMUTATION_OPERATOR);
+        compileComposite(Symbol.CONJUGATION, Symbol.CONJUGATION_BEGIN, Symbol.CONJUGATION_END, Symbol.CONJUGATION_DELIMITER, Symbol.CONJUGATION_OPERATOR);
+        compileComposite(Symbol.ROTATION, Symbol.ROTATION_BEGIN, Symbol.ROTATION_END, Symbol.ROTATION_DELIMITER, Symbol.ROTATION_OPERATOR);
+        if (notation.isSupported(Symbol.PERMUTATION)) {
+            composites.put(Symbol.PERMUTATION, new Composite(notation.getSyntax(Symbol.PERMUTATION), null, null, null, null));
+        }
+        nop = getBytes(Symbol.NOP);
+
+        moves = new Written[(3 << layerCount) * 4];
+        if (notation.isSupported(Symbol.MOVE)) {
+            compileMoves();
+        }
+    }
+
+    /**
+     * Returns a translator for the specified notation. The translator is
+     * shared until the notation changes.
+     *
+     * @param notation the notation into which scripts are translated
+     * @return the translator
+     */
+    @Nonnull
+    public static NotationTranslator getInstance(@Nonnull ScriptNotation notation) {
+        synchronized (translators) {
+            SoftReference<NotationTranslator> ref = translators.get(notation);
+            NotationTranslator translator = ref == null ? null : ref.get();
+            if (translator == null || translator.modificationCount != notation.getModificationCount()) {
+                translator = new NotationTranslator(notation);
+                translators.put(notation, new SoftReference<>(translator));
+            }
+            return translator;
+        }
+    }
+
+    @Nonnull
+    public ScriptNotation getNotation() {
+        return notation;
+    }
+
+    /**
+     * Translates a script.
+     *
+     * @param node the parsed script
+     * @return the translated script
+     * @throws IOException if the notation can not express the script
+     */
+    @Nonnull
+    public String toString(@Nonnull Node node) throws IOException {
+        return new String(translate(node), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Translates a script with local macros. A macro node is written by
+     * its identifier, if it is one of the local macros.
+     *
+     * @param node        the parsed script
+     * @param localMacros the identifiers of the local macros
+     * @return the translated script
+     * @throws IOException if the notation can not express the script
+     */
+    @Nonnull
+    public String toString(@Nonnull Node node, @Nonnull Set<String> localMacros) throws IOException {
+        Output out = new Output(localMacros);
+        writeNode(node, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Translates a script into UTF-8 bytes.
+     *
+     * @param node the parsed script
+     * @return the translated script
+     * @throws IOException if the notation can not express the script
+     */
+    @Nonnull
+    public byte[] translate(@Nonnull Node node) throws IOException {
+        Output out = new Output(Collections.emptySet());
+        writeNode(node, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Translates a script into UTF-8 bytes and writes them to the output
+     * stream.
+     *
+     * @param node the parsed script
+     * @param out  the output stream
+     * @throws IOException if the notation can not express the script, or
+     *                     if writing fails
+     */
+    public void translate(@Nonnull Node node, @Nonnull OutputStream out) throws IOException {
+        Output buf = new Output(Collections.emptySet());
+        writeNode(node, buf);
+        buf.writeTo(out);
+    }
+
+    /**
+     * Translates many scripts in parallel.
+     *
+     * @param nodes the parsed scripts
+     * @return the translated scripts in the same order
+     * @throws IOException if the notation can not express a script
+     */
+    @Nonnull
+    public List<String> translate(@Nonnull List<? extends Node> nodes) throws IOException {
+        return translate(nodes, Collections.nCopies(nodes.size(), Collections.emptySet()));
+    }
+
+    /**
+     * Translates many scripts with local macros in parallel. A macro node
+     * of a script is written by its identifier, if it is one of the local
+     * macros of the script.
+     *
+     * @param nodes       the parsed scripts
+     * @param localMacros the identifiers of the local macros of each script,
+     *                    in the same order as the scripts
+     * @return the translated scripts in the same order
+     * @throws IOException if the notation can not express a script
+     */
+    @Nonnull
+    public List<String> translate(@Nonnull List<? extends Node> nodes, @Nonnull List<? extends Set<String>> localMacros) throws IOException {
+        if (nodes.size() != localMacros.size()) {
+            throw new IllegalArgumentException("nodes.size=" + nodes.size() + " != localMacros.size=" + localMacros.size());
+        }
+        try {
+            return IntStream.range(0, nodes.size()).parallel()
+                    .mapToObj(i -> {
+                        try {
+                            return toString(nodes.get(i), localMacros.get(i));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Translates many scripts in parallel, and streams them in their order
+     * into the output stream. The scripts are separated by the specified
+     * separator.
+     * <p>
+     * A script is written as soon as it and all scripts before it have been
+     * translated, so that the output does not have to be held in memory.
+     *
+     * @param nodes     the parsed scripts
+     * @param out       the output stream
+     * @param separator the bytes written after each script, for example a
+     *                  line separator
+     * @throws IOException if the notation can not express a script, or if
+     *                     writing fails
+     */
+    public void translate(@Nonnull List<? extends Node> nodes, @Nonnull OutputStream out, @Nonnull byte[] separator) throws IOException {
+        try {
+            IntStream.range(0, nodes.size()).parallel()
+                    .mapToObj(i -> {
+                        try {
+                            return translate(nodes.get(i));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .forEachOrdered(bytes -> {
+                        try {
+                            out.write(bytes);
+                            out.write(separator);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Compilation of the tables
+    // ---------------------------------------------------------------------
+
+    private void compileComposite(@Nonnull Symbol symbol, @Nonnull Symbol beginSymbol, @Nonnull Symbol endSymbol,
+                                  @Nullable Symbol delimiterSymbol, @Nullable Symbol operatorSymbol) {
+        if (!notation.isSupported(symbol)) {
+            return;
+        }
+        Syntax syntax = notation.getSyntax(symbol);
+        byte[] begin = getBytes(beginSymbol);
+        byte[] end = getBytes(endSymbol);
+        byte[] delimiter = delimiterSymbol == null ? null : getBytes(delimiterSymbol);
+        byte[] operator = operatorSymbol == null ? null : getBytes(operatorSymbol);
+        boolean complete;
+        switch (syntax) {
+            case PREFIX:
+            case SUFFIX:
+                complete = symbol == Symbol.REPETITION
+                        || (isUnary(symbol) ? operator != null : begin != null && end != null);
+                break;
+            case CIRCUMFIX:
+                complete = isUnary(symbol) && begin != null && end != null;
+                break;
+            case PRECIRCUMFIX:
+            case POSTCIRCUMFIX:
+                complete = !isUnary(symbol) && symbol != Symbol.REPETITION
+                        && begin != null && end != null && delimiter != null;
+                break;
+            case PREINFIX:
+            case POSTINFIX:
+                complete = !isUnary(symbol) && operator != null;
+                break;
+            default:
+                complete = false;
+                break;
+        }
+        if (complete) {
+            composites.put(symbol, new Composite(syntax, begin, end, delimiter, operator));
+        }
+    }
+
+    private static boolean isUnary(@Nonnull Symbol symbol) {
+        return symbol == Symbol.GROUPING || symbol == Symbol.INVERSION || symbol == Symbol.REFLECTION;
+    }
+
+    /**
+     * Compiles the moves. Quarter turns are compiled first, so that half
+     * turns can fall back to them.
+     */
+    private void compileMoves() {
+        for (int angle : new int[]{1, -1, 2}) {
+            for (int axis = 0; axis < 3; axis++) {
+                for (int layerMask = 1; layerMask < (1 << layerCount); layerMask++) {
+                    moves[getMoveIndex(axis, layerMask, angle)] = compileMove(axis, layerMask, angle);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private Written compileMove(int axis, int layerMask, int angle) {
+        byte[] token = getMoveBytes(axis, layerMask, angle);
+        if (token == null && angle == 2) {
+            token = getMoveBytes(axis, layerMask, -2);
+        }
+        if (token != null) {
+            return new Written(token, ATOMIC);
+        }
+
+        // Fall back to the inversion of the move in the opposite direction
+        Composite inversion = composites.get(Symbol.INVERSION);
+        byte[] inverse = angle == 2 ? null : getMoveBytes(axis, layerMask, -angle);
+        if (inverse != null && inversion != null) {
+            Output out = new Output(Collections.emptySet());
+            switch (inversion.syntax) {
+                case PREFIX:
+                    out.prefix(inversion.operator);
+                    out.statement(inverse);
+                    return new Written(out.toByteArray(), PREFIX);
+                case SUFFIX:
+                    out.statement(inverse);
+                    out.suffix(inversion.operator);
+                    return new Written(out.toByteArray(), SUFFIX);
+                default:
+                    out.begin(inversion.begin);
+                    out.statement(inverse);
+                    out.end(inversion.end);
+                    return new Written(out.toByteArray(), ATOMIC);
+            }
+        }
+
+        // Fall back to two quarter turns
+        if (angle == 2) {
+            Written quarter = moves[getMoveIndex(axis, layerMask, 1)];
+            if (quarter == null) {
+                quarter = moves[getMoveIndex(axis, layerMask, -1)];
+            }
+            if (quarter != null) {
+                Output out = new Output(Collections.emptySet());
+                out.statement(quarter.bytes);
+                out.statement(quarter.bytes);
+                return new Written(out.toByteArray(), SEQUENCE);
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private byte[] getMoveBytes(int axis, int layerMask, int angle) {
+        return toBytes(notation.getMoveToken(new Move(layerCount, axis, layerMask, angle)));
+    }
+
+    @Nullable
+    private byte[] getBytes(@Nonnull Symbol symbol) {
+        return toBytes(notation.getToken(symbol));
+    }
+
+    @Nullable
+    private static byte[] toBytes(@Nullable String token) {
+        return token == null || token.isEmpty() ? null : token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private int getMoveIndex(int axis, int layerMask, int angle) {
+        return ((axis << layerCount) | layerMask) * 4 + (angle & 3);
+    }
+
+    // ---------------------------------------------------------------------
+    // Translation
+    // ---------------------------------------------------------------------
+
+    /**
+     * Returns the symbol of a composite node, or null if the node is not a
+     * composite node which is supported by the notation.
+     */
+    @Nullable
+    private Composite getComposite(@Nonnull Node node) {
+        Symbol symbol;
+        Class<?> c = node.getClass();
+        if (c == InversionNode.class) {
+            symbol = Symbol.INVERSION;
+        } else if (c == ReflectionNode.class) {
+            symbol = Symbol.REFLECTION;
+        } else if (c == RepetitionNode.class) {
+            symbol = Symbol.REPETITION;
+        } else if (c == CommutationNode.class) {
+            symbol = Symbol.COMMUTATION;
+        } else if (c == ConjugationNode.class) {
+            symbol = Symbol.CONJUGATION;
+        } else if (c == RotationNode.class) {
+            symbol = Symbol.ROTATION;
+        } else if (c == GroupingNode.class) {
+            symbol = Symbol.GROUPING;
+        } else if (c == PermutationCycleNode.class) {
+            symbol = Symbol.PERMUTATION;
+        } else {
+            return null;
+        }
+        return composites.get(symbol);
+    }
+
+    /**
+     * Returns true, if the node is written as the statements of its
+     * children.
+     */
+    private boolean isTransparent(@Nonnull Node node, @Nonnull Output out) {
+        return node instanceof SequenceNode
+                || node instanceof MacroNode && !isLocalMacro(node, out)
+                || node.getClass() == GroupingNode.class && !composites.containsKey(Symbol.GROUPING);
+    }
+
+    /**
+     * Returns true, if the node is a macro which is written by its
+     * identifier.
+     */
+    private static boolean isLocalMacro(@Nonnull Node node, @Nonnull Output out) {
+        if (!(node instanceof MacroNode) || out.localMacros.isEmpty()) {
+            return false;
+        }
+        String identifier = ((MacroNode) node).getIdentifier();
+        return identifier != null && out.localMacros.contains(identifier);
+    }
+
+    /**
+     * Returns the form of the statement, which is written for the
+     * specified node.
+     */
+    private int getForm(@Nonnull Node node, @Nonnull Output out) throws IOException {
+        if (node instanceof MoveNode) {
+            return getMove((MoveNode) node).form;
+        }
+        if (node instanceof NOPNode) {
+            return nop == null ? SEQUENCE : ATOMIC;
+        }
+        if (isLocalMacro(node, out)) {
+            return ATOMIC;
+        }
+        Composite composite = getComposite(node);
+        if (composite == null) {
+            return SEQUENCE;
+        }
+        switch (composite.syntax) {
+            case PREFIX:
+                return PREFIX;
+            case SUFFIX:
+                return SUFFIX;
+            case PREINFIX:
+            case POSTINFIX:
+                return INFIX;
+            default:
+                return ATOMIC;
+        }
+    }
+
+    @Nonnull
+    private Written getMove(@Nonnull MoveNode move) throws IOException {
+        int layerMask = move.getLayerMask();
+        int angle = move.getAngle();
+        Written written = (layerMask & ~((1 << layerCount) - 1)) == 0 && angle != 0
+                ? moves[getMoveIndex(move.getAxis(), layerMask, angle)] : null;
+        if (written == null) {
+            throw new IOException("The notation \"" + notation.getName()
+                    + "\" can not express the move " + move.getAxis() + ":" + layerMask + ":" + angle + ".");
+        }
+        return written;
+    }
+
+    /**
+     * Writes a node as zero or more statements.
+     */
+    private void writeNode(@Nonnull Node node, @Nonnull Output out) throws IOException {
+        if (node instanceof MoveNode) {
+            out.statement(getMove((MoveNode) node).bytes);
+            return;
+        }
+        if (node instanceof NOPNode) {
+            if (nop != null) {
+                out.statement(nop);
+            }
+            return;
+        }
+        if (isLocalMacro(node, out)) {
+            out.statement(((MacroNode) node).getIdentifier().getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        if (isTransparent(node, out)) {
+            writeStatements(node.getChildren(), out);
+            return;
+        }
+        Composite composite = getComposite(node);
+        if (composite == null) {
+            if (node instanceof PermutationCycleNode) {
+                throw new IOException("The notation \"" + notation.getName() + "\" can not express a permutation.");
+            }
+            writeStatements(node.toResolvedList(false), out);
+        } else if (node instanceof PermutationCycleNode) {
+            StringWriter w = new StringWriter();
+            node.writeTokens(w, notation, Collections.emptyMap());
+            out.statement(w.toString().getBytes(StandardCharsets.UTF_8));
+        } else if (node instanceof RepetitionNode) {
+            writeRepetition((RepetitionNode) node, composite, out);
+        } else if (node instanceof BinaryNode) {
+            writeBinary(node, composite, out);
+        } else {
+            writeUnary(node, composite, out);
+        }
+    }
+
+    private void writeStatements(@Nonnull List<Node> nodes, @Nonnull Output out) throws IOException {
+        for (Node node : nodes) {
+            writeNode(node, out);
+        }
+    }
+
+    private void writeUnary(@Nonnull Node node, @Nonnull Composite composite, @Nonnull Output out) throws IOException {
+        switch (composite.syntax) {
+            case PREFIX:
+                out.prefix(composite.operator);
+                writeOperand(node.getChildren(), PREFIX_OPERAND, out);
+                break;
+            case SUFFIX:
+                writeOperand(node.getChildren(), SUFFIX_OPERAND, out);
+                out.suffix(composite.operator);
+                break;
+            default:
+                out.begin(composite.begin);
+                writeStatements(node.getChildren(), out);
+                out.end(composite.end);
+                break;
+        }
+    }
+
+    private void writeRepetition(@Nonnull RepetitionNode node, @Nonnull Composite composite, @Nonnull Output out) throws IOException {
+        int repeatCount = node.getRepeatCount();
+        switch (composite.syntax) {
+            case PREFIX:
+                out.number(repeatCount);
+                writeOperand(node.getChildren(), PREFIX_OPERAND, out);
+                break;
+            case SUFFIX:
+                writeOperand(node.getChildren(), SUFFIX_OPERAND, out);
+                out.suffixNumber(repeatCount);
+                break;
+            case PREINFIX:
+                out.number(repeatCount);
+                out.infix(composite.operator);
+                writeOperand(node.getChildren(), PREFIX_OPERAND, out);
+                break;
+            default:
+                writeOperand(node.getChildren(), PREFIX_OPERAND, out);
+                out.infix(composite.operator);
+                out.number(repeatCount);
+                break;
+        }
+    }
+
+    private void writeBinary(@Nonnull Node node, @Nonnull Composite composite, @Nonnull Output out) throws IOException {
+        List<Node> operand1 = getStatements(node.getChildAt(0), out);
+        List<Node> operand2 = getStatements(node.getChildAt(1), out);
+        switch (composite.syntax) {
+            case PREFIX:
+                out.begin(composite.begin);
+                writeStatements(operand1, out);
+                out.end(composite.end);
+                out.join();
+                writeOperand(operand2, PREFIX_OPERAND, out);
+                break;
+            case SUFFIX:
+                writeOperand(operand2, SUFFIX_OPERAND, out);
+                out.suffix(composite.begin);
+                out.join();
+                writeStatements(operand1, out);
+                out.end(composite.end);
+                break;
+            case PRECIRCUMFIX:
+                out.begin(composite.begin);
+                writeStatements(operand1, out);
+                out.end(composite.delimiter);
+                writeStatements(operand2, out);
+                out.end(composite.end);
+                break;
+            case POSTCIRCUMFIX:
+                out.begin(composite.begin);
+                writeStatements(operand2, out);
+                out.end(composite.delimiter);
+                writeStatements(operand1, out);
+                out.end(composite.end);
+                break;
+            case PREINFIX:
+                writeOperand(operand1, PREFIX_OPERAND, out);
+                out.infix(composite.operator);
+                writeOperand(operand2, PREFIX_OPERAND, out);
+                break;
+            default:
+                writeOperand(operand2, PREFIX_OPERAND, out);
+                out.infix(composite.operator);
+                writeOperand(operand1, PREFIX_OPERAND, out);
+                break;
+        }
+    }
+
+    /**
+     * Writes the nodes as a single statement with one of the specified
+     * forms. Encloses the nodes in a grouping if necessary.
+     */
+    private void writeOperand(@Nonnull List<Node> nodes, int forms, @Nonnull Output out) throws IOException {
+        List<Node> statements = nodes.size() == 1 ? getStatements(nodes.get(0), out) : getStatements(nodes, out);
+        if (statements.size() == 1 && (getForm(statements.get(0), out) & forms) != 0) {
+            writeNode(statements.get(0), out);
+            return;
+        }
+        Composite grouping = composites.get(Symbol.GROUPING);
+        if (grouping == null) {
+            throw new IOException("The notation \"" + notation.getName() + "\" can not express a grouping.");
+        }
+        out.begin(grouping.begin);
+        writeStatements(statements, out);
+        out.end(grouping.end);
+    }
+
+    /**
+     * Returns the nodes which are written as the statements of the
+     * specified node.
+     */
+    @Nonnull
+    private List<Node> getStatements(@Nonnull Node node, @Nonnull Output out) {
+        if (node instanceof NOPNode && nop == null) {
+            return Collections.emptyList();
+        }
+        return isTransparent(node, out) ? getStatements(node.getChildren(), out) : Collections.singletonList(node);
+    }
+
+    @Nonnull
+    private List<Node> getStatements(@Nonnull List<Node> nodes, @Nonnull Output out) {
+        List<Node> statements = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            statements.addAll(getStatements(node, out));
+        }
+        return statements;
+    }
+
+    /**
+     * A growable byte buffer which inserts spaces between statements.
+     * <p>
+     * A space is written before a statement, unless it follows a begin
+     * token or a prefix. No space is written before an end token, a
+     * delimiter or a suffix, unless the adjacent bytes would be read as
+     * a single token.
+     */
+    private static class Output {
+        /**
+         * The identifiers of the local macros, which are written by their
+         * identifier.
+         */
+        @Nonnull
+        final Set<String> localMacros;
+        @Nonnull
+        private byte[] buf = new byte[64];
+        private int count;
+        /**
+         * Whether the next statement must be separated by a space.
+         */
+        private boolean separate;
+
+        Output(@Nonnull Set<String> localMacros) {
+            this.localMacros = localMacros;
+        }
+
+        void statement(@Nonnull byte[] bytes) {
+            if (separate) {
+                writeSpace();
+            }
+            append(bytes);
+            separate = true;
+        }
+
+        void begin(@Nonnull byte[] bytes) {
+            statement(bytes);
+            separate = false;
+        }
+
+        void prefix(@Nonnull byte[] bytes) {
+            begin(bytes);
+        }
+
+        void end(@Nonnull byte[] bytes) {
+            append(bytes);
+            separate = true;
+        }
+
+        void suffix(@Nonnull byte[] bytes) {
+            end(bytes);
+        }
+
+        void infix(@Nonnull byte[] bytes) {
+            writeSpace();
+            append(bytes);
+            separate = true;
+        }
+
+        /**
+         * Joins the next statement to the previous bytes without a space.
+         */
+        void join() {
+            separate = false;
+        }
+
+        void number(int value) {
+            statement(Integer.toString(value).getBytes(StandardCharsets.US_ASCII));
+        }
+
+        void suffixNumber(int value) {
+            end(Integer.toString(value).getBytes(StandardCharsets.US_ASCII));
+        }
+
+        private void writeSpace() {
+            if (count > 0 && buf[count - 1] != ' ') {
+                ensureCapacity(1);
+                buf[count++] = ' ';
+            }
+        }
+
+        private void append(@Nonnull byte[] bytes) {
+            if (count > 0 && bytes.length > 0 && isWordByte(buf[count - 1]) && isWordByte(bytes[0])) {
+                writeSpace();
+            }
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buf, count, bytes.length);
+            count += bytes.length;
+        }
+
+        private static boolean isWordByte(byte b) {
+            return b >= 0 && Character.isLetterOrDigit(b);
+        }
+
+        private void ensureCapacity(int n) {
+            if (count + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + n));
+            }
+        }
+
+        @Nonnull
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+
+        void writeTo(@Nonnull OutputStream out) throws IOException {
+            out.write(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * @(#)ParsedScriptCache.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.parser;
+
+import ch.randelshofer.rubik.notation.Move;
+import ch.randelshofer.rubik.notation.ScriptNotation;
+import ch.randelshofer.rubik.notation.Symbol;
+import ch.randelshofer.rubik.notation.Syntax;
+import ch.randelshofer.rubik.parser.ast.MacroNode;
+import ch.randelshofer.rubik.parser.ast.NodeCodec;
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+ * A cache on disk for parsed scripts.
+ * <p>
+ * Each entry holds the binary encoding of a parsed script, see
+ * {@link IncrementalScriptParser#setCache}. The key of an entry is a hash
+ * of the script, of the local macros, and of a digest of the notation.
+ * The digest of the notation covers its tokens, syntaxes and macros, so
+ * that an entry is not found anymore, when the notation is changed.
+ * <p>
+ * The cache is bounded. Entries which have not been used for longer than
+ * the maximal age are evicted, and the least recently used entries are
+ * evicted, when the entries take up more than the maximal size. The
+ * cache checks this when the first entry is written, and then each time
+ * after an eighth of the maximal size has been written. It can be
+ * cleared with {@link #clear()}. Errors when reading, writing or evicting
+ * entries are ignored, because the script can always be parsed again.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Werner Randelshofer
+ */
+public class ParsedScriptCache {
+    /**
+     * The version of the key. Must be incremented when the data of an
+     * entry changes.
+     */
+    private final static int VERSION = 1;
+    /**
+     * The file name extension of an entry.
+     */
+    @Nonnull
+    private final static String EXTENSION = ".ast";
+    /**
+     * The file name extension of an entry that is being written.
+     */
+    @Nonnull
+    private final static String TMP_EXTENSION = ".tmp";
+    /**
+     * The default maximal size of all entries in bytes.
+     */
+    public final static long DEFAULT_MAX_SIZE = 32L << 20;
+    /**
+     * The default maximal age of an entry since it has been used.
+     */
+    @Nonnull
+    public final static Duration DEFAULT_MAX_AGE = Duration.ofDays(30);
+    /**
+     * Caches the digests of notations.
+     * <p>
+     * Key = notation, Value = digest.
+     * Access to this map must be synchronized on the map.
+     */
+    @Nonnull
+    private final static Map<ScriptNotation, NotationDigest> digests = new WeakHashMap<>();
+    @Nullable
+    private static ParsedScriptCache defaultCache;
+
+    /**
+     * The directory which holds the entries.
+     */
+    @Nonnull
+    private final Path directory;
+    private final long maxSize;
+    @Nonnull
+    private final Duration maxAge;
+    /**
+     * The number of bytes written since the entries have been evicted, or
+     * -1 if they have not been evicted yet.
+     * Access to this field must be synchronized on this cache.
+     */
+    private long writtenSinceEviction = -1;
+
+    /**
+     * Holds the digest of a notation, and the modification count of the
+     * notation at the time when the digest was computed.
+     */
+    private static class NotationDigest {
+        final long modificationCount;
+        @Nonnull
+        final byte[] digest;
+
+        NotationDigest(@Nonnull ScriptNotation notation) {
+            modificationCount = notation.getModificationCount();
+
+            MessageDigest md = newMessageDigest();
+            update(md, "layerCount=" + notation.getLayerCount());
+            for (Symbol symbol : Symbol.values()) {
+                update(md, symbol + "=" + notation.getSyntax(symbol));
+            }
+            List<String> tokens = new ArrayList<>(notation.getTokens());
+            tokens.sort(null);
+            for (String token : tokens) {
+                update(md, token);
+                for (Symbol symbol : notation.getSymbols(token)) {
+                    update(md, symbol.name());
+                }
+                Move move = notation.getMoveFromToken(token);
+                if (move != null) {
+                    update(md, move.getLayerCount() + ":" + move.getAxis() + ":" + move.getLayerMask() + ":" + move.getAngle());
+                }
+            }
+            for (Map.Entry<String, String> entry : new TreeMap<>(notation.getAllMacros()).entrySet()) {
+                update(md, entry.getKey());
+                update(md, entry.getValue());
+            }
+            digest = md.digest();
+        }
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param directory the directory which holds the entries. The directory
+     *                  is created when the first entry is written.
+     */
+    public ParsedScriptCache(@Nonnull Path directory) {
+        this(directory, DEFAULT_MAX_SIZE, DEFAULT_MAX_AGE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param directory the directory which holds the entries. The directory
+     *                  is created when the first entry is written.
+     * @param maxSize   the maximal size of all entries in bytes
+     * @param maxAge    the maximal age of an entry since it has been used
+     */
+    public ParsedScriptCache(@Nonnull Path directory, long maxSize, @Nonnull Duration maxAge) {
+        if (maxSize < 0 || maxAge.isNegative()) {
+            throw new IllegalArgumentException("maxSize=" + maxSize + ", maxAge=" + maxAge);
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Returns the cache in the cache folder of the user.
+     */
+    @Nonnull
+    public static synchronized ParsedScriptCache getDefault() {
+        if (defaultCache == null) {
+            defaultCache = new ParsedScriptCache(getCacheFolder()
+                    .resolve("ch.randelshofer.cubetwister").resolve("Scripts"));
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Returns the cache folder of the user on this platform.
+     * <ul>
+     * <li>Mac OS X: {@code ~/Library/Caches}</li>
+     * <li>Windows: {@code %LOCALAPPDATA%}</li>
+     * <li>Other platforms: {@code $XDG_CACHE_HOME} or {@code ~/.cache}</li>
+     * </ul>
+     * Falls back to the temporary folder, if the folder can not be
+     * determined.
+     */
+    @Nonnull
+    private static Path getCacheFolder() {
+        String os = System.getProperty("os.name", "").toLowerCase();
+        String home = System.getProperty("user.home");
+        try {
+            if (os.startsWith("mac")) {
+                if (home != null) {
+                    return Paths.get(home, "Library", "Caches");
+                }
+            } else if (os.startsWith("windows")) {
+                String localAppData = System.getenv("LOCALAPPDATA");
+                if (localAppData != null && !localAppData.isEmpty()) {
+                    return Paths.get(localAppData);
+                }
+            } else {
+                String xdgCacheHome = System.getenv("XDG_CACHE_HOME");
+                if (xdgCacheHome != null && Paths.get(xdgCacheHome).isAbsolute()) {
+                    return Paths.get(xdgCacheHome);
+                }
+                if (home != null) {
+                    return Paths.get(home, ".cache");
+                }
+            }
+        } catch (InvalidPathException e) {
+            // fall back to the temporary folder
+        }
+        return Paths.get(System.getProperty("java.io.tmpdir"));
+    }
+
+    @Nonnull
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the key of a script.
+     *
+     * @param parser the parser which parses the script
+     * @param script the script
+     * @return the key
+     */
+    @Nonnull
+    public String getKey(@Nonnull ScriptParser parser, @Nonnull String script) {
+        MessageDigest md = newMessageDigest();
+        update(md, "v" + VERSION + "." + NodeCodec.VERSION);
+        md.update(getDigest(parser.getNotation()));
+        for (Map.Entry<String, MacroNode> entry : new TreeMap<>(parser.getLocalMacros()).entrySet()) {
+            update(md, entry.getKey());
+            update(md, entry.getValue().getScript());
+        }
+        update(md, script);
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /**
+     * Returns the data of the specified entry.
+     *
+     * @param key the key of the entry
+     * @return the data, or null if the cache does not hold the entry
+     */
+    @Nullable
+    public byte[] get(@Nonnull String key) {
+        Path entry = directory.resolve(key + EXTENSION);
+        byte[] data;
+        try {
+            data = Files.readAllBytes(entry);
+        } catch (IOException e) {
+            return null;
+        }
+        try {
+            // The modification time of an entry is the time when it was
+            // last used.
+            Files.setLastModifiedTime(entry, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            // The entry may be evicted earlier.
+        }
+        return data;
+    }
+
+    /**
+     * Stores the data of the specified entry.
+     * <p>
+     * The data is written to a temporary file, which is then renamed, so
+     * that readers never see an incomplete entry.
+     *
+     * @param key  the key of the entry
+     * @param data the data
+     */
+    public void put(@Nonnull String key, @Nonnull byte[] data) {
+        Path tmp = null;
+        try {
+            Files.createDirectories(directory);
+            tmp = Files.createTempFile(directory, key, TMP_EXTENSION);
+            Files.write(tmp, data);
+            Files.move(tmp, directory.resolve(key + EXTENSION),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch (IOException | UnsupportedOperationException e) {
+            // The script will be parsed again.
+        } finally {
+            if (tmp != null) {
+                tmp.toFile().delete();
+            }
+        }
+        evictIfNeeded(data.length);
+    }
+
+    /**
+     * Evicts entries if this is the first entry that has been written, or
+     * if an eighth of the maximal size has been written since the entries
+     * have been evicted.
+     *
+     * @param length the number of bytes that have been written
+     */
+    private synchronized void evictIfNeeded(int length) {
+        if (writtenSinceEviction >= 0) {
+            writtenSinceEviction += length;
+            if (writtenSinceEviction < maxSize / 8) {
+                return;
+            }
+        }
+        writtenSinceEviction = 0;
+        try {
+            evict();
+        } catch (IOException | UncheckedIOException e) {
+            // The entries will be evicted the next time.
+        }
+    }
+
+    /**
+     * Removes all entries that have not been used for longer than the
+     * maximal age, and the least recently used entries that exceed the
+     * maximal size. Also removes incomplete entries that are older than
+     * the maximal age.
+     *
+     * @throws IOException if the directory can not be read
+     */
+    void evict() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        FileTime expired = FileTime.from(Instant.now().minus(maxAge));
+        List<Path> entries = new ArrayList<>();
+        Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(EXTENSION) && !name.endsWith(TMP_EXTENSION)) {
+                    continue;
+                }
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    continue;
+                }
+                if (attrs.lastModifiedTime().compareTo(expired) < 0) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(EXTENSION)) {
+                    entries.add(file);
+                    attributes.put(file, attrs);
+                }
+            }
+        }
+
+        // Keep the most recently used entries.
+        entries.sort((a, b) -> attributes.get(b).lastModifiedTime().compareTo(attributes.get(a).lastModifiedTime()));
+        long size = 0;
+        for (Path entry : entries) {
+            size += attributes.get(entry).size();
+            if (size > maxSize) {
+                Files.deleteIfExists(entry);
+            }
+        }
+    }
+
+    /**
+     * Removes all entries.
+     *
+     * @throws IOException if an entry can not be removed
+     */
+    public void clear() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path entry : entries) {
+                Files.deleteIfExists(entry);
+            }
+        }
+    }
+
+    @Nonnull
+    private static byte[] getDigest(@Nonnull ScriptNotation notation) {
+        synchronized (digests) {
+            NotationDigest digest = digests.get(notation);
+            if (digest == null || digest.modificationCount != notation.getModificationCount()) {
+                digest = new NotationDigest(notation);
+                digests.put(notation, digest);
+            }
+            return digest.digest;
+        }
+    }
+
+    @Nonnull
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalError("SHA-256 is not supported", e);
+        }
+    }
+
+    /**
+     * Updates the message digest with a string, followed by a separator.
+     */
+    private static void update(@Nonnull MessageDigest md, @Nullable String value) {
+        md.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        md.update((byte) 0);
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return "ParsedScriptCache{" + directory + ", maxSize=" + maxSize + ", maxAge=" + maxAge + '}';
+    }
+}
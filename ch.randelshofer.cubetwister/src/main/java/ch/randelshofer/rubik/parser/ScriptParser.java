@@ -6,6 +6,7 @@
 package ch.randelshofer.rubik.parser;
 
 import ch.randelshofer.io.ParseException;
+import ch.randelshofer.math.GraphSearch;
 import ch.randelshofer.rubik.notation.ScriptNotation;
 import ch.randelshofer.rubik.notation.Symbol;
 import ch.randelshofer.rubik.notation.Syntax;
@@ -25,14 +26,20 @@ import ch.randelshofer.rubik.parser.ast.RotationNode;
 import ch.randelshofer.rubik.parser.ast.SequenceNode;
 import ch.randelshofer.rubik.parser.ast.UnaryNode;
 import ch.randelshofer.rubik.tokenizer.Tokenizer;
+import ch.randelshofer.rubik.tokenizer.TokenizerDefinition;
 import org.jhotdraw.annotation.Nonnull;
 import org.jhotdraw.annotation.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -144,13 +151,91 @@ import java.util.stream.Collectors;
  * Kewyord  = Char , { Char } ;
  * Char     = 'A'..'Z' | 'a'..'z' | '0'..'9' | '.'..'$' ;
  * </pre>
+ * <p>
+ * The tokenizer for a notation and a set of local macro identifiers is
+ * built only once, and is then shared by all parsers with the same
+ * notation and local macro identifiers. The shared tokenizer is rebuilt
+ * when the notation {@linkplain ScriptNotation#getModificationCount()
+ * changes}.
+ * <p>
+ * The body of a macro is parsed only once per parser. Each use of the macro
+ * gets a copy of the parsed body. Recursive macros are detected with a
+ * dependency graph of the macros, which is built when the first macro is
+ * parsed. The parsed macros and the dependency graph are discarded when the
+ * notation changes. Since a parser
+ * caches macros, a parser instance must not be used by multiple threads
+ * concurrently.
  *
  * @author Werner Randelshofer
  */
 
 public class ScriptParser {
+    /**
+     * Maximal number of tokenizer definitions that are cached per notation.
+     */
+    private final static int MAX_CACHED_DEFINITIONS = 16;
+    /**
+     * Caches the tokenizer definitions of notations.
+     * <p>
+     * Key = notation, Value = cached definitions.
+     * Access to this map must be synchronized on the map.
+     */
+    @Nonnull
+    private final static Map<ScriptNotation, CachedDefinitions> tokenizerCache = new WeakHashMap<>();
+
+    /**
+     * Holds the tokenizer definitions of a notation.
+     */
+    private static class CachedDefinitions {
+        /**
+         * The modification count of the notation at the time when the
+         * definitions were created.
+         */
+        final long modificationCount;
+        /**
+         * Key = local macro identifiers, Value = tokenizer definition.
+         */
+        @Nonnull
+        final Map<Set<String>, TokenizerDefinition> definitions = new LinkedHashMap<>(16, 0.75f, true) {
+            private final static long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Set<String>, TokenizerDefinition> eldest) {
+                return size() > MAX_CACHED_DEFINITIONS;
+            }
+        };
+
+        CachedDefinitions(long modificationCount) {
+            this.modificationCount = modificationCount;
+        }
+    }
+
     private ScriptNotation notation;
     private Map<String, MacroNode> localMacros;
+    /**
+     * The identifiers of the local macros. This is the key for the
+     * tokenizer definitions in {@link #tokenizerCache}.
+     */
+    @Nonnull
+    private final Set<String> localMacroIdentifiers;
+    /**
+     * Caches the parsed macro bodies.
+     * <p>
+     * Key = macro script, Value = syntax tree of the script.
+     */
+    @Nonnull
+    private final Map<String, Node> macroCache = new HashMap<>();
+    /**
+     * The identifiers of the macros that are part of a recursion, or null
+     * if the dependency graph of the macros has not been built yet.
+     */
+    @Nullable
+    private Set<String> recursiveMacros;
+    /**
+     * The modification count of the notation at the time when
+     * {@link #macroCache} and {@link #recursiveMacros} were validated.
+     */
+    private long macroCacheModificationCount;
 
     public ScriptParser(ScriptNotation notation) {
         this(notation, Collections.emptyList());
@@ -160,6 +245,7 @@ public class ScriptParser {
         this.notation = notation;
         this.localMacros = localMacros.stream().collect(
                 Collectors.toMap(MacroNode::getIdentifier, Function.identity()));
+        this.localMacroIdentifiers = Set.copyOf(this.localMacros.keySet());
     }
 
     @Nonnull
@@ -217,6 +303,36 @@ public class ScriptParser {
         return n;
     }
 
+    /**
+     * Returns the tokenizer definition for the notation and the local
+     * macros of this parser. Gets the definition from the cache, or creates
+     * a new one if the cache does not have an up to date definition.
+     */
+    @Nonnull
+    private TokenizerDefinition getTokenizerDefinition() {
+        long modificationCount = notation.getModificationCount();
+        Set<String> identifiers = localMacroIdentifiers;
+        TokenizerDefinition definition = null;
+        synchronized (tokenizerCache) {
+            CachedDefinitions cached = tokenizerCache.get(notation);
+            if (cached != null && cached.modificationCount == modificationCount) {
+                definition = cached.definitions.get(identifiers);
+            }
+        }
+        if (definition == null) {
+            definition = createTokenizer(notation).getDefinition();
+            synchronized (tokenizerCache) {
+                CachedDefinitions cached = tokenizerCache.get(notation);
+                if (cached == null || cached.modificationCount != modificationCount) {
+                    cached = new CachedDefinitions(modificationCount);
+                    tokenizerCache.put(notation, cached);
+                }
+                cached.definitions.put(identifiers, definition);
+            }
+        }
+        return definition;
+    }
+
     @Nonnull
     private Tokenizer createTokenizer(@Nonnull ScriptNotation notation) {
         var tt = new Tokenizer();
@@ -260,14 +376,134 @@ public class ScriptParser {
         return notation;
     }
 
+    /**
+     * Returns the local macros of this parser.
+     *
+     * @return the local macros, key = identifier, value = macro
+     */
+    @Nonnull
+    Map<String, MacroNode> getLocalMacros() {
+        return Collections.unmodifiableMap(localMacros);
+    }
+
+    /**
+     * Creates a tokenizer for the notation and the local macros of this
+     * parser.
+     *
+     * @return a new tokenizer
+     */
+    @Nonnull
+    Tokenizer newTokenizer() {
+        validateMacroCache();
+        return new Tokenizer(getTokenizerDefinition());
+    }
+
     @Nonnull
     public Node parse(@Nonnull String input) throws ParseException {
         Objects.requireNonNull(input, "input");
-        var tt = this.createTokenizer(this.notation);
+        var tt = newTokenizer();
         tt.setInput(input);
         return parseScript(tt);
     }
 
+    /**
+     * Parses the script of a macro.
+     * <p>
+     * The script is parsed only once by this parser. Each invocation of this
+     * method returns a new copy of the syntax tree. The start and end
+     * positions of all nodes of the copy are set to the specified positions.
+     *
+     * @param identifier the identifier of the macro, or null if the macro
+     *                   is anonymous
+     * @param script     the script of the macro
+     * @param startpos   the start position of the macro in the source
+     * @param endpos     the end position of the macro in the source
+     * @return the syntax tree of the script
+     * @throws ParseException if the script can not be parsed, or if the
+     *                        macro is part of a recursion
+     */
+    @Nonnull
+    public Node parseMacro(@Nullable String identifier, @Nonnull String script, int startpos, int endpos) throws ParseException {
+        validateMacroCache();
+        if (identifier != null && getRecursiveMacros().contains(identifier)) {
+            throw new ParseException("Macro: Illegal Recursion", startpos, endpos);
+        }
+        Node body = macroCache.get(script);
+        if (body == null) {
+            body = parse(script);
+            macroCache.put(script, body);
+        }
+        return copyMacroBody(body, startpos, endpos);
+    }
+
+    @Nonnull
+    private static Node copyMacroBody(@Nonnull Node node, int startpos, int endpos) {
+        Node copy = node.clone();
+        copy.removeAllChildren();
+        copy.setStartPosition(startpos);
+        copy.setEndPosition(endpos);
+        for (Node child : node.getChildren()) {
+            copy.add(copyMacroBody(child, startpos, endpos));
+        }
+        return copy;
+    }
+
+    /**
+     * Discards the parsed macros and the dependency graph of the macros, if
+     * the notation has changed since they were built.
+     */
+    private void validateMacroCache() {
+        long modificationCount = notation.getModificationCount();
+        if (modificationCount != macroCacheModificationCount) {
+            macroCache.clear();
+            recursiveMacros = null;
+            macroCacheModificationCount = modificationCount;
+        }
+    }
+
+    /**
+     * Returns the identifiers of the macros that are part of a recursion.
+     * <p>
+     * Builds a dependency graph of the macros of the notation and the local
+     * macros, and searches for its strongly connected components.
+     *
+     * @return the identifiers of the recursive macros
+     */
+    @Nonnull
+    private Set<String> getRecursiveMacros() {
+        if (recursiveMacros == null) {
+            Map<String, String> scripts = new HashMap<>(notation.getAllMacros());
+            for (MacroNode macro : localMacros.values()) {
+                scripts.putIfAbsent(macro.getIdentifier(), macro.getScript());
+            }
+
+            Map<String, List<String>> dependencies = new HashMap<>();
+            Tokenizer tt = newTokenizer();
+            for (Map.Entry<String, String> entry : scripts.entrySet()) {
+                List<String> list = new ArrayList<>();
+                tt.setInput(entry.getValue());
+                while (tt.nextToken() != Tokenizer.TT_EOF) {
+                    if (tt.getTokenType() == Tokenizer.TT_KEYWORD && scripts.containsKey(tt.getStringValue())) {
+                        list.add(tt.getStringValue());
+                    }
+                }
+                dependencies.put(entry.getKey(), list);
+            }
+
+            Set<String> recursive = new HashSet<>();
+            for (List<String> component : GraphSearch.findStronglyConnectedComponents(
+                    (String identifier) -> dependencies.getOrDefault(identifier, Collections.emptyList()),
+                    scripts.keySet())) {
+                String first = component.get(0);
+                if (component.size() > 1 || dependencies.get(first).contains(first)) {
+                    recursive.addAll(component);
+                }
+            }
+            recursiveMacros = recursive;
+        }
+        return recursiveMacros;
+    }
+
     private void parseCircumfix(@Nonnull Tokenizer tt, @Nonnull Node parent, @Nonnull Symbol symbol) throws ParseException {
         var startPos = tt.getStartPosition();
         var operand1 = parseCircumfixOperand(tt, symbol);
@@ -732,13 +968,8 @@ public class ScriptParser {
             // Expand macro
             try {
                 var macro = notation.getMacro(token);
-                var macroScript = parse(macro);
+                var macroScript = parseMacro(token, macro, tt.getStartPosition(), tt.getEndPosition());
                 var macroNode = new MacroNode(null, token, tt.getStartPosition(), tt.getEndPosition());
-                for (Node node : macroScript.preorderIterable()) {
-                    node.setStartPosition(tt.getStartPosition());
-                    node.setEndPosition(tt.getEndPosition());
-                }
-
                 macroNode.add(macroScript);
                 child = macroNode;
             } catch (ParseException e) {
@@ -829,7 +1060,7 @@ public class ScriptParser {
      * @param parent the parent of the statement
      * @throws ParseException
      */
-    private void parseStatement(@Nonnull Tokenizer tt, @Nonnull Node parent) throws ParseException {
+    void parseStatement(@Nonnull Tokenizer tt, @Nonnull Node parent) throws ParseException {
         switch (tt.nextToken()) {
         case Tokenizer.TT_NUMBER:
             tt.pushBack();
@@ -4,6 +4,8 @@
  */
 package ch.randelshofer.rubik.parser.ast;
 
+import ch.randelshofer.rubik.cube.Cube;
+import ch.randelshofer.rubik.cube.CubePermutation;
 import ch.randelshofer.rubik.notation.Symbol;
 import ch.randelshofer.util.SequenceIterator;
 import org.jhotdraw.annotation.Nonnull;
@@ -73,4 +75,34 @@ public class CommutationNode extends BinaryNode {
                 )
         );
     }
+
+    @Override
+    void resolveInto(@Nonnull ResolvedMoves.Builder builder, boolean inverse) {
+        if (getChildCount() != 2) {
+            return;
+        }
+        Node a = getChildAt(0);
+        Node b = getChildAt(1);
+        if (inverse) {
+            b.resolveInto(builder, false);
+            a.resolveInto(builder, false);
+            b.resolveInto(builder, true);
+            a.resolveInto(builder, true);
+        } else {
+            a.resolveInto(builder, false);
+            b.resolveInto(builder, false);
+            a.resolveInto(builder, true);
+            b.resolveInto(builder, true);
+        }
+    }
+
+    @Override
+    protected void compileInto(@Nonnull Cube cube) {
+        if (getChildCount() != 2) {
+            return;
+        }
+        CubePermutation a = getChildAt(0).compile(cube.getLayerCount());
+        CubePermutation b = getChildAt(1).compile(cube.getLayerCount());
+        cube.transform(a.then(b).then(a.inverse()).then(b.inverse()));
+    }
 }
@@ -4,6 +4,7 @@
  */
 package ch.randelshofer.rubik.parser.ast;
 
+import ch.randelshofer.rubik.cube.Cube;
 import ch.randelshofer.rubik.notation.ScriptNotation;
 import ch.randelshofer.rubik.notation.Symbol;
 import org.jhotdraw.annotation.Nonnull;
@@ -33,4 +34,9 @@ public class GroupingNode extends UnaryNode {
         }
 
     }
+
+    @Override
+    protected void compileInto(@Nonnull Cube cube) {
+        compileChildrenInto(cube);
+    }
 }
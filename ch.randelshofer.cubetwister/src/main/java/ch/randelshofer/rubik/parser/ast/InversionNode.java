@@ -4,6 +4,7 @@
  */
 package ch.randelshofer.rubik.parser.ast;
 
+import ch.randelshofer.rubik.cube.Cube;
 import ch.randelshofer.rubik.notation.ScriptNotation;
 import ch.randelshofer.rubik.notation.Symbol;
 import ch.randelshofer.rubik.notation.Syntax;
@@ -33,6 +34,11 @@ public class InversionNode extends UnaryNode {
         return super.resolvedIterator(!inverse);
     }
 
+    @Override
+    void resolveInto(@Nonnull ResolvedMoves.Builder builder, boolean inverse) {
+        super.resolveInto(builder, !inverse);
+    }
+
     @Override
     public void writeTokens(Writer w, @Nonnull ScriptNotation p, Map<String, MacroNode> macroMap)
             throws IOException {
@@ -84,4 +90,9 @@ public class InversionNode extends UnaryNode {
             }
         }
     }
+
+    @Override
+    protected void compileInto(@Nonnull Cube cube) {
+        cube.transform(compileChildren(cube.getLayerCount()).inverse());
+    }
 }
@@ -4,13 +4,11 @@
  */
 package ch.randelshofer.rubik.parser.ast;
 
-import ch.randelshofer.io.ParseException;
 import ch.randelshofer.rubik.notation.ScriptNotation;
 import ch.randelshofer.rubik.parser.ScriptParser;
 import org.jhotdraw.annotation.Nonnull;
 import org.jhotdraw.annotation.Nullable;
 
-import javax.swing.tree.DefaultMutableTreeNode;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.Map;
@@ -54,6 +52,15 @@ public class MacroNode extends Node {
         return script;
     }
 
+    /**
+     * Expands the macro by adding the parsed script as child of this node.
+     * <p>
+     * The parser parses the script only once, and detects recursive
+     * macros, see {@link ScriptParser#parseMacro}.
+     *
+     * @param parser the parser
+     * @throws IOException if the script can not be parsed
+     */
     public void expand(@Nonnull ScriptParser parser)
             throws IOException {
         // Don't expand if already expanded
@@ -61,27 +68,7 @@ public class MacroNode extends Node {
             return;
         }
 
-        // Check if macro is recursive
-        DefaultMutableTreeNode ancestor = (DefaultMutableTreeNode) getParent();
-        while (ancestor != null) {
-            if (ancestor instanceof MacroNode
-                    && ((MacroNode) ancestor).identifier.equals(identifier)) {
-                throw new ParseException("Macro: Illegal Recursion", getStartPosition(), getEndPosition());
-            }
-            ancestor = (DefaultMutableTreeNode) ancestor.getParent();
-        }
-
-        // Expand the macro
-        removeAllChildren();
-        add(parser.parse(script));
-
-        // Overwrite start and end positions of children
-        int sp = getStartPosition();
-        int ep = getEndPosition();
-        for (Node node : preorderIterable()) {
-            node.setStartPosition(sp);
-            node.setEndPosition(ep);
-        }
+        add(parser.parseMacro(identifier, script, getStartPosition(), getEndPosition()));
     }
 
     @Override
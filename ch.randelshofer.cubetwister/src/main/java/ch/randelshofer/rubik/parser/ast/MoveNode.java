@@ -87,14 +87,17 @@ public class MoveNode extends Node {
 
     public void setAxis(int newValue) {
         axis = newValue;
+        invalidate();
     }
 
     public void setLayerMask(int newValue) {
         layerMask = newValue;
+        invalidate();
     }
 
     public void setAngle(int newValue) {
         angle = newValue;
+        invalidate();
     }
 
     public int getLayerCount() {
@@ -103,6 +106,7 @@ public class MoveNode extends Node {
 
     public void setLayerCount(int newValue) {
         layerCount = newValue;
+        invalidate();
     }
 
     @Nonnull
@@ -117,6 +121,11 @@ public class MoveNode extends Node {
         }
     }
 
+    @Override
+    void resolveInto(@Nonnull ResolvedMoves.Builder builder, boolean inverse) {
+        builder.addMove(this, inverse);
+    }
+
     /**
      * Transformes the node by the given ScriptParser.symbol constant.
      * Does nothing if the transformation can not be done.
@@ -137,6 +146,7 @@ public class MoveNode extends Node {
                         this.axis = (this.axis + angle) % 2 + 1;
                         break;
                 }
+                invalidate();
             }
         }
         //symbol = ScriptParser.transformSymbol(transformerSymbol, symbol);
@@ -155,6 +165,7 @@ public class MoveNode extends Node {
     @Override
     public void invert() {
         angle = -angle;
+        invalidate();
     }
 
     /**
@@ -172,6 +183,7 @@ public class MoveNode extends Node {
                 oldMask >>>= 1;
             }
         }
+        invalidate();
     }
 
     public void setTo(@Nonnull MoveNode that) {
@@ -179,6 +191,7 @@ public class MoveNode extends Node {
         this.angle = that.angle;
         this.axis = that.axis;
         this.layerCount = that.layerCount;
+        invalidate();
     }
 
     public boolean isRotation() {
@@ -45,6 +45,11 @@ public class NOPNode extends Node {
         //return new SingletonIterator<Node>(this);
     }
 
+    @Override
+    void resolveInto(@Nonnull ResolvedMoves.Builder builder, boolean inverse) {
+        // a no-op has no moves
+    }
+
     /**
      * Returns a string representation of this node using the specified notation.
      */
@@ -6,12 +6,15 @@ package ch.randelshofer.rubik.parser.ast;
 
 import ch.randelshofer.gui.tree.TreeNodeImpl;
 import ch.randelshofer.rubik.cube.Cube;
+import ch.randelshofer.rubik.cube.CubeFactory;
+import ch.randelshofer.rubik.cube.CubePermutation;
 import ch.randelshofer.rubik.notation.ScriptNotation;
 import ch.randelshofer.rubik.notation.Symbol;
 import ch.randelshofer.util.ReverseListIterator;
 import org.jhotdraw.annotation.Nonnull;
 import org.jhotdraw.annotation.Nullable;
 
+import javax.swing.tree.MutableTreeNode;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -43,6 +46,16 @@ public abstract class Node extends TreeNodeImpl<Node> {
      * The end position of this node in the source.
      */
     protected int endpos;
+    /**
+     * The cached resolved moves of this node. This field is only set on
+     * the root of a tree, and it is cleared when the subtree changes.
+     * Holds {@link #TOO_MANY_MOVES} if the subtree has too many moves to be
+     * lowered.
+     */
+    @Nullable
+    private transient ResolvedMoves resolvedMoves;
+    @Nonnull
+    private final static ResolvedMoves TOO_MANY_MOVES = new ResolvedMoves.Builder().build();
 
     public Node() {
     }
@@ -102,11 +115,155 @@ public abstract class Node extends TreeNodeImpl<Node> {
      * @param inverse If true, the transform will be done in inverse order.
      */
     public void applyTo(Cube cube, boolean inverse) {
-        for (Node node : resolvedIterable(inverse)) {
-            node.applyTo(cube, false);
+        ResolvedMoves moves = getResolvedMoves();
+        if (moves != null) {
+            moves.applyTo(cube, inverse);
+        } else {
+            for (Node node : resolvedIterable(inverse)) {
+                node.applyTo(cube, false);
+            }
+        }
+    }
+
+    /**
+     * Returns the resolved sequence of the subtree starting at this node,
+     * lowered into a flat array of moves.
+     * <p>
+     * If this node is the root of a tree, the array is cached until the
+     * tree is changed.
+     *
+     * @return the resolved moves, or null if the subtree has too many
+     * moves to be lowered into an array
+     */
+    @Nullable
+    public ResolvedMoves getResolvedMoves() {
+        ResolvedMoves moves = resolvedMoves;
+        if (moves == null) {
+            ResolvedMoves.Builder builder = new ResolvedMoves.Builder();
+            resolveInto(builder, false);
+            moves = builder.isOverflow() ? TOO_MANY_MOVES : builder.build();
+            if (getParent() == null) {
+                resolvedMoves = moves;
+            }
+        }
+        return moves == TOO_MANY_MOVES ? null : moves;
+    }
+
+    /**
+     * Adds the resolved sequence of the subtree starting at this node to
+     * the builder. The sequence must contain the same moves as
+     * {@link #resolvedIterator(boolean)}. Subclasses which override
+     * {@code resolvedIterator} must override this method too.
+     *
+     * @param builder the builder
+     * @param inverse whether the inverse sequence shall be added
+     */
+    void resolveInto(@Nonnull ResolvedMoves.Builder builder, boolean inverse) {
+        resolveChildrenInto(builder, inverse);
+    }
+
+    /**
+     * Adds the resolved sequence of the children of this node to the
+     * builder.
+     *
+     * @param builder the builder
+     * @param inverse whether the inverse sequence shall be added
+     */
+    void resolveChildrenInto(@Nonnull ResolvedMoves.Builder builder, boolean inverse) {
+        if (children != null) {
+            int n = children.size();
+            for (int i = 0; i < n && !builder.isOverflow(); i++) {
+                ((Node) children.get(inverse ? n - 1 - i : i)).resolveInto(builder, inverse);
+            }
+        }
+    }
+
+    /**
+     * Discards the cached resolved moves of this node and of its
+     * ancestors. Must be called whenever the side effect of the subtree
+     * starting at this node changes.
+     */
+    protected void invalidate() {
+        for (Node node = this; node != null; node = node.getParent()) {
+            node.resolvedMoves = null;
+        }
+    }
+
+    @Override
+    public void insert(MutableTreeNode newChild, int childIndex) {
+        super.insert(newChild, childIndex);
+        invalidate();
+    }
+
+    @Override
+    public void remove(int childIndex) {
+        super.remove(childIndex);
+        invalidate();
+    }
+
+    @Override
+    public Node clone() {
+        Node that = super.clone();
+        that.resolvedMoves = null;
+        return that;
+    }
+
+    /**
+     * Compiles the side effect of this node into a permutation of a cube
+     * with the specified layer count.
+     * <p>
+     * The permutation can be applied to a cube in a single pass with
+     * {@link Cube#transform(CubePermutation)}. Repetitions are compiled
+     * with exponentiation by squaring, so that the cost of compiling
+     * {@code (R U R' U')1000} is close to the cost of compiling
+     * {@code R U R' U'}.
+     *
+     * @param layerCount the layer count of the cube
+     * @return the permutation
+     */
+    @Nonnull
+    public CubePermutation compile(int layerCount) {
+        Cube cube = CubeFactory.create(layerCount);
+        compileInto(cube);
+        return new CubePermutation(cube);
+    }
+
+    /**
+     * Applies the side effect of this node to the cube. Subclasses override
+     * this method if they can compile their children into a permutation,
+     * and apply it faster than by applying all their resolved moves.
+     *
+     * @param cube a cube without listeners
+     */
+    protected void compileInto(@Nonnull Cube cube) {
+        applyTo(cube, false);
+    }
+
+    /**
+     * Applies the side effect of the children of this node to the cube.
+     *
+     * @param cube a cube without listeners
+     */
+    protected void compileChildrenInto(@Nonnull Cube cube) {
+        for (Node child : getChildren()) {
+            child.compileInto(cube);
         }
     }
 
+    /**
+     * Compiles the side effect of the children of this node into a
+     * permutation.
+     *
+     * @param layerCount the layer count of the cube
+     * @return the permutation
+     */
+    @Nonnull
+    protected CubePermutation compileChildren(int layerCount) {
+        Cube cube = CubeFactory.create(layerCount);
+        compileChildrenInto(cube);
+        return new CubePermutation(cube);
+    }
+
     @Override
     public String toString() {
         StringBuilder b = new StringBuilder();
@@ -217,6 +374,10 @@ public abstract class Node extends TreeNodeImpl<Node> {
 
     @Nonnull
     public List<Node> toResolvedList(boolean inverse) {
+        ResolvedMoves moves = inverse ? null : getResolvedMoves();
+        if (moves != null) {
+            return moves.toNodeList();
+        }
         List<Node> list = new ArrayList<>();
         resolvedIterator(inverse).forEachRemaining(list::add);
         return list;
@@ -0,0 +1,289 @@
+/*
+ * @(#)NodeCodec.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.parser.ast;
+
+import org.jhotdraw.annotation.Nonnull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+/**
+ * Encodes a syntax tree into a compact binary format, and decodes it.
+ * <p>
+ * A decoded tree is equal to the encoded tree: it has nodes of the same
+ * classes, with the same source positions, and with the same moves,
+ * repeat counts, macros and permutations. Decoding a tree is much faster
+ * than parsing its script again.
+ * <p>
+ * The nodes are written in preorder. Each node is written as a kind byte,
+ * followed by its start position, its length and its child count, followed
+ * by the fields of its kind. Integers are written as variable length
+ * quantities. Signed integers are zigzag encoded, so that small negative
+ * values, such as the position {@code -1} or the angle {@code -1}, take
+ * only one byte.
+ * <pre>
+ * Node     = Kind , StartPos , Length , ChildCount , { Field } , { Node } ;
+ * Move     = LayerCount , Axis , LayerMask , Angle ;
+ * Repeat   = RepeatCount ;
+ * Macro    = Identifier , Script ;
+ * Cycle    = Type , Sign , LayerCount ;
+ * Item     = Orientation , Location ;
+ * </pre>
+ *
+ * @author Werner Randelshofer
+ */
+public final class NodeCodec {
+    /**
+     * The version of the format. Must be incremented when the format
+     * changes.
+     */
+    public final static int VERSION = 1;
+
+    private final static int SEQUENCE = 0;
+    private final static int GROUPING = 1;
+    private final static int INVERSION = 2;
+    private final static int REFLECTION = 3;
+    private final static int REPETITION = 4;
+    private final static int COMMUTATION = 5;
+    private final static int CONJUGATION = 6;
+    private final static int ROTATION = 7;
+    private final static int MOVE = 8;
+    private final static int NOP = 9;
+    private final static int MACRO = 10;
+    private final static int PERMUTATION_CYCLE = 11;
+    private final static int PERMUTATION_ITEM = 12;
+    private final static int UNARY = 13;
+
+    /**
+     * Prevent instance creation.
+     */
+    private NodeCodec() {
+    }
+
+    /**
+     * Writes the subtree starting at the specified node.
+     *
+     * @param out  the output
+     * @param node the root of the subtree
+     * @throws IOException if writing fails, or if the subtree contains a
+     *                     node of an unsupported class
+     */
+    public static void write(@Nonnull DataOutput out, @Nonnull Node node) throws IOException {
+        int kind = getKind(node);
+        out.writeByte(kind);
+        writeSigned(out, node.getStartPosition());
+        writeSigned(out, node.getEndPosition() - node.getStartPosition());
+        writeUnsigned(out, node.getChildCount());
+        switch (kind) {
+            case MOVE: {
+                MoveNode move = (MoveNode) node;
+                writeUnsigned(out, move.getLayerCount());
+                writeUnsigned(out, move.getAxis());
+                writeUnsigned(out, move.getLayerMask());
+                writeSigned(out, move.getAngle());
+                break;
+            }
+            case REPETITION:
+                writeSigned(out, ((RepetitionNode) node).getRepeatCount());
+                break;
+            case MACRO: {
+                MacroNode macro = (MacroNode) node;
+                writeString(out, macro.getIdentifier());
+                writeString(out, macro.getScript());
+                break;
+            }
+            case PERMUTATION_CYCLE: {
+                PermutationCycleNode cycle = (PermutationCycleNode) node;
+                writeSigned(out, cycle.getType());
+                writeSigned(out, cycle.getSign());
+                writeSigned(out, cycle.getLayerCount());
+                break;
+            }
+            case PERMUTATION_ITEM: {
+                PermutationItemNode item = (PermutationItemNode) node;
+                writeSigned(out, item.getOrientation());
+                writeSigned(out, item.getLocation());
+                break;
+            }
+            default:
+                break;
+        }
+        for (Node child : node.getChildren()) {
+            write(out, child);
+        }
+    }
+
+    /**
+     * Reads a subtree that has been written with
+     * {@link #write(DataOutput, Node)}.
+     *
+     * @param in the input
+     * @return the root of the subtree
+     * @throws IOException if reading fails, or if the input is corrupt
+     */
+    @Nonnull
+    public static Node read(@Nonnull DataInput in) throws IOException {
+        int kind = in.readUnsignedByte();
+        int startpos = readSigned(in);
+        int endpos = startpos + readSigned(in);
+        int childCount = readUnsigned(in);
+        Node node;
+        switch (kind) {
+            case SEQUENCE:
+                node = new SequenceNode();
+                break;
+            case GROUPING:
+                node = new GroupingNode();
+                break;
+            case INVERSION:
+                node = new InversionNode();
+                break;
+            case REFLECTION:
+                node = new ReflectionNode();
+                break;
+            case REPETITION: {
+                RepetitionNode repetition = new RepetitionNode();
+                repetition.setRepeatCount(readSigned(in));
+                node = repetition;
+                break;
+            }
+            case COMMUTATION:
+                node = new CommutationNode();
+                break;
+            case CONJUGATION:
+                node = new ConjugationNode();
+                break;
+            case ROTATION:
+                node = new RotationNode();
+                break;
+            case MOVE: {
+                int layerCount = readUnsigned(in);
+                int axis = readUnsigned(in);
+                int layerMask = readUnsigned(in);
+                int angle = readSigned(in);
+                node = new MoveNode(layerCount, axis, layerMask, angle, startpos, endpos);
+                break;
+            }
+            case NOP:
+                node = new NOPNode();
+                break;
+            case MACRO: {
+                String identifier = readString(in);
+                String script = readString(in);
+                node = new MacroNode(identifier, script);
+                break;
+            }
+            case PERMUTATION_CYCLE: {
+                PermutationCycleNode cycle = new PermutationCycleNode();
+                int type = readSigned(in);
+                int sign = readSigned(in);
+                cycle.setState(type, sign, readSigned(in));
+                node = cycle;
+                break;
+            }
+            case PERMUTATION_ITEM: {
+                PermutationItemNode item = new PermutationItemNode();
+                item.setOrientation(readSigned(in));
+                item.setLocation(readSigned(in));
+                node = item;
+                break;
+            }
+            case UNARY:
+                node = new UnaryNode();
+                break;
+            default:
+                throw new StreamCorruptedException("Illegal node kind: " + kind);
+        }
+        node.setStartPosition(startpos);
+        node.setEndPosition(endpos);
+        for (int i = 0; i < childCount; i++) {
+            node.add(read(in));
+        }
+        return node;
+    }
+
+    private static int getKind(@Nonnull Node node) throws IOException {
+        Class<?> c = node.getClass();
+        if (c == SequenceNode.class) {
+            return SEQUENCE;
+        } else if (c == MoveNode.class) {
+            return MOVE;
+        } else if (c == GroupingNode.class) {
+            return GROUPING;
+        } else if (c == InversionNode.class) {
+            return INVERSION;
+        } else if (c == ReflectionNode.class) {
+            return REFLECTION;
+        } else if (c == RepetitionNode.class) {
+            return REPETITION;
+        } else if (c == CommutationNode.class) {
+            return COMMUTATION;
+        } else if (c == ConjugationNode.class) {
+            return CONJUGATION;
+        } else if (c == RotationNode.class) {
+            return ROTATION;
+        } else if (c == NOPNode.class) {
+            return NOP;
+        } else if (c == MacroNode.class) {
+            return MACRO;
+        } else if (c == PermutationCycleNode.class) {
+            return PERMUTATION_CYCLE;
+        } else if (c == PermutationItemNode.class) {
+            return PERMUTATION_ITEM;
+        } else if (c == UnaryNode.class) {
+            return UNARY;
+        }
+        throw new IOException("Unsupported node: " + c.getName());
+    }
+
+    /**
+     * Writes a non-negative integer as a variable length quantity with 7
+     * bits per byte.
+     */
+    public static void writeUnsigned(@Nonnull DataOutput out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Writes an integer in zigzag encoding as a variable length quantity.
+     */
+    public static void writeSigned(@Nonnull DataOutput out, int value) throws IOException {
+        writeUnsigned(out, (value << 1) ^ (value >> 31));
+    }
+
+    public static int readUnsigned(@Nonnull DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Illegal variable length quantity.");
+    }
+
+    public static int readSigned(@Nonnull DataInput in) throws IOException {
+        int value = readUnsigned(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeString(@Nonnull DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(@Nonnull DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
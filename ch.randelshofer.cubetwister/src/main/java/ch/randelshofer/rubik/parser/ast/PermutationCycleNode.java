@@ -101,6 +101,22 @@ public class PermutationCycleNode extends Node implements Cloneable {
         return type;
     }
 
+    int getLayerCount() {
+        return layerCount;
+    }
+
+    /**
+     * Sets the type, the sign and the layer count of a permutation whose
+     * items are added as nodes, instead of with {@link #addPermItem}.
+     * This method is used by {@link NodeCodec}.
+     */
+    void setState(int type, int sign, int layerCount) {
+        this.type = type;
+        this.sign = sign;
+        this.layerCount = layerCount;
+        invalidate();
+    }
+
     public void setSignSymbol(@Nullable Symbol signSymbol) {
         int s;
         if (signSymbol == Symbol.PERMUTATION_MINUS) {
@@ -122,6 +138,7 @@ public class PermutationCycleNode extends Node implements Cloneable {
             }
         }
         sign = s;
+        invalidate();
     }
 
     /**
@@ -624,6 +641,7 @@ public class PermutationCycleNode extends Node implements Cloneable {
                 }
                 break;
         }
+        invalidate();
     }
 
     @Override
@@ -648,6 +666,17 @@ public class PermutationCycleNode extends Node implements Cloneable {
         }
     }
 
+    @Override
+    void resolveInto(@Nonnull ResolvedMoves.Builder builder, boolean inverse) {
+        if (inverse) {
+            PermutationCycleNode inversedNode = clone();
+            inversedNode.invert();
+            builder.addNode(inversedNode);
+        } else {
+            builder.addNode(this);
+        }
+    }
+
     /**
      * Transforms the node by the given ScriptParser.symbol constant.
      */
@@ -722,6 +751,7 @@ public class PermutationCycleNode extends Node implements Cloneable {
         }
         // compute the sign
         sign = (modulo + prevOrient + orient[i]) % modulo;
+        invalidate();
     }
 
     public int getSign() {
@@ -788,6 +818,16 @@ public class PermutationCycleNode extends Node implements Cloneable {
         return theClone;
     }
 
+    /**
+     * Returns a deep clone of this node. The clone already holds clones of
+     * the children.
+     */
+    @Nonnull
+    @Override
+    public PermutationCycleNode cloneSubtree() {
+        return clone();
+    }
+
     private final static Symbol[][] SIDE_SYMBOLS = {
             {Symbol.FACE_R},
             {Symbol.FACE_U},//
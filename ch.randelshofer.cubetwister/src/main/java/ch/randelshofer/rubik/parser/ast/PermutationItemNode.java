@@ -35,6 +35,7 @@ public class PermutationItemNode extends Node {
 
     public void setOrientation(int orientation) {
         this.orientation = orientation;
+        invalidate();
     }
 
     public int getLocation() {
@@ -43,5 +44,6 @@ public class PermutationItemNode extends Node {
 
     public void setLocation(int location) {
         this.location = location;
+        invalidate();
     }
 }
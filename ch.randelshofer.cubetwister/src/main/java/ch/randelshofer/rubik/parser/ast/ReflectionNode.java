@@ -75,6 +75,13 @@ public class ReflectionNode extends UnaryNode {
         return new ReflectedIterator(super.resolvedIterator(inverse));
     }
 
+    @Override
+    void resolveInto(@Nonnull ResolvedMoves.Builder builder, boolean inverse) {
+        int from = builder.size();
+        super.resolveInto(builder, inverse);
+        builder.reflect(from);
+    }
+
     private static class ReflectedIterator
             implements Iterator<Node> {
         protected Iterator<Node> inner;
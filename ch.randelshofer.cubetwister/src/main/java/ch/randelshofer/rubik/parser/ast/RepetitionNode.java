@@ -4,6 +4,7 @@
  */
 package ch.randelshofer.rubik.parser.ast;
 
+import ch.randelshofer.rubik.cube.Cube;
 import ch.randelshofer.rubik.notation.ScriptNotation;
 import ch.randelshofer.rubik.notation.Symbol;
 import ch.randelshofer.rubik.notation.Syntax;
@@ -43,6 +44,7 @@ public class RepetitionNode extends Node {
 
     public void setRepeatCount(int r) {
         repeatCount = r;
+        invalidate();
     }
 
     public int getRepeatCount() {
@@ -60,6 +62,16 @@ public class RepetitionNode extends Node {
         return new ResolvedIterator(this, inverse, repeatCount);
     }
 
+    /**
+     * Resolves the children once, and then copies their moves.
+     */
+    @Override
+    void resolveInto(@Nonnull ResolvedMoves.Builder builder, boolean inverse) {
+        int from = builder.size();
+        resolveChildrenInto(builder, inverse);
+        builder.repeat(from, repeatCount - 1);
+    }
+
     @Nonnull
     @Override
     @SuppressWarnings({"rawtypes", "unchecked"})
@@ -163,4 +175,16 @@ public class RepetitionNode extends Node {
         b.append("}");
         return b.toString();
     }
+
+    /**
+     * Compiles the children once, and then raises the permutation to the
+     * power of the repeat count. Like {@link #resolvedIterator}, a repeat
+     * count smaller than 1 performs the children once.
+     */
+    @Override
+    protected void compileInto(@Nonnull Cube cube) {
+        if (getChildCount() > 0) {
+            cube.transform(compileChildren(cube.getLayerCount()).power(Math.max(1, repeatCount)));
+        }
+    }
 }
@@ -0,0 +1,401 @@
+/*
+ * @(#)ResolvedMoves.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.parser.ast;
+
+import ch.randelshofer.rubik.cube.Cube;
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The resolved sequence of a subtree of the parse tree, lowered into a
+ * flat array of moves.
+ * <p>
+ * Each entry of the sequence is either a move, stored as an
+ * {@code axis, layerMask, angle} triple, or a node which can not be stored
+ * as a move, such as a {@link PermutationCycleNode}, or a {@link MoveNode}
+ * with a layer count that differs from the layer count of the first move.
+ * <p>
+ * The sequence contains the same moves in the same order as
+ * {@link Node#resolvedIterator(boolean)}, but it can be applied to a cube,
+ * and it can be measured, without walking the tree and without allocating
+ * iterators and inverted or reflected clones of the nodes.
+ * <p>
+ * Instances of this class are immutable. They are obtained from
+ * {@link Node#getResolvedMoves()}.
+ *
+ * @author Werner Randelshofer
+ */
+public final class ResolvedMoves {
+    /**
+     * The maximal number of entries. Longer sequences are not lowered.
+     */
+    final static int MAX_SIZE = 1 << 22;
+    /**
+     * The axis value of an entry that holds a node instead of a move.
+     */
+    private final static int NODE_ENTRY = -1;
+
+    /**
+     * The layer count of the moves.
+     */
+    private final int layerCount;
+    /**
+     * The number of entries.
+     */
+    private final int size;
+    /**
+     * Three ints for each entry: axis, layerMask and angle. If the axis is
+     * {@link #NODE_ENTRY}, then the entry holds a node.
+     */
+    @Nonnull
+    private final int[] moves;
+    /**
+     * For each entry the index of its node in {@link #nodes}.
+     */
+    @Nonnull
+    private final int[] sources;
+    /**
+     * For move entries, the move node of the tree from which the move was
+     * resolved. For node entries, the resolved node.
+     */
+    @Nonnull
+    private final Node[] nodes;
+
+    private ResolvedMoves(int layerCount, int size, @Nonnull int[] moves, @Nonnull int[] sources, @Nonnull Node[] nodes) {
+        this.layerCount = layerCount;
+        this.size = size;
+        this.moves = moves;
+        this.sources = sources;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the layer count of the moves. Returns 0 if the sequence does
+     * not contain moves.
+     */
+    public int getLayerCount() {
+        return layerCount;
+    }
+
+    /**
+     * Returns true if the specified entry is a move.
+     */
+    public boolean isMove(int index) {
+        return moves[checkIndex(index) * 3] != NODE_ENTRY;
+    }
+
+    /**
+     * Returns the axis of the specified move entry.
+     */
+    public int getAxis(int index) {
+        return moves[checkIndex(index) * 3];
+    }
+
+    /**
+     * Returns the layer mask of the specified move entry.
+     */
+    public int getLayerMask(int index) {
+        return moves[checkIndex(index) * 3 + 1];
+    }
+
+    /**
+     * Returns the angle of the specified move entry.
+     */
+    public int getAngle(int index) {
+        return moves[checkIndex(index) * 3 + 2];
+    }
+
+    /**
+     * Returns the node of the tree from which the specified entry was
+     * resolved. The node carries the position of the entry in the script.
+     * <p>
+     * For a move entry, this is a {@link MoveNode} which may differ from
+     * the entry, if the move has been inverted or reflected. For any other
+     * entry, this is the resolved node itself.
+     */
+    @Nonnull
+    public Node getSource(int index) {
+        return nodes[sources[checkIndex(index)]];
+    }
+
+    /**
+     * Returns the specified entry as a node.
+     * <p>
+     * Returns the source node if it performs the same move as the entry,
+     * and a new {@link MoveNode} with the position of the source node
+     * otherwise.
+     */
+    @Nonnull
+    public Node getNode(int index) {
+        Node source = getSource(index);
+        int i = index * 3;
+        if (moves[i] == NODE_ENTRY) {
+            return source;
+        }
+        MoveNode move = (MoveNode) source;
+        if (move.getAxis() == moves[i] && move.getLayerMask() == moves[i + 1]
+                && move.getAngle() == moves[i + 2] && move.getLayerCount() == layerCount) {
+            return move;
+        }
+        return new MoveNode(layerCount, moves[i], moves[i + 1], moves[i + 2],
+                move.getStartPosition(), move.getEndPosition());
+    }
+
+    /**
+     * Returns all entries as nodes.
+     *
+     * @see #getNode(int)
+     */
+    @Nonnull
+    public List<Node> toNodeList() {
+        List<Node> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(getNode(i));
+        }
+        return list;
+    }
+
+    /**
+     * Applies the entries to the cube.
+     *
+     * @param cube    a cube
+     * @param inverse if true, applies the inverse of the entries in reverse
+     *                order
+     */
+    public void applyTo(@Nonnull Cube cube, boolean inverse) {
+        applyTo(cube, 0, size, inverse);
+    }
+
+    /**
+     * Applies the entries in the range {@code [from, to)} to the cube.
+     *
+     * @param cube    a cube
+     * @param from    the index of the first entry, inclusive
+     * @param to      the index of the last entry, exclusive
+     * @param inverse if true, applies the inverse of the entries in reverse
+     *                order
+     */
+    public void applyTo(@Nonnull Cube cube, int from, int to, boolean inverse) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("from=" + from + ", to=" + to + ", size=" + size);
+        }
+        if (inverse) {
+            for (int i = to - 1; i >= from; i--) {
+                applyEntryTo(cube, i, true);
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                applyEntryTo(cube, i, false);
+            }
+        }
+    }
+
+    private void applyEntryTo(@Nonnull Cube cube, int index, boolean inverse) {
+        int i = index * 3;
+        int axis = moves[i];
+        if (axis == NODE_ENTRY) {
+            nodes[sources[index]].applyTo(cube, inverse);
+        } else {
+            cube.transform(axis, moves[i + 1], inverse ? -moves[i + 2] : moves[i + 2]);
+        }
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+        }
+        return index;
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder("ResolvedMoves{");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                b.append(' ');
+            }
+            if (moves[i * 3] == NODE_ENTRY) {
+                b.append(nodes[sources[i]].getClass().getSimpleName());
+            } else {
+                b.append(moves[i * 3]).append(':').append(moves[i * 3 + 1]).append(':').append(moves[i * 3 + 2]);
+            }
+        }
+        return b.append('}').toString();
+    }
+
+    /**
+     * Collects the entries while the tree is being lowered.
+     * See {@link Node#resolveInto(Builder, boolean)}.
+     */
+    static final class Builder {
+        private int layerCount;
+        private int size;
+        private boolean overflow;
+        @Nonnull
+        private int[] moves = new int[48];
+        @Nonnull
+        private int[] sources = new int[16];
+        @Nonnull
+        private final List<Node> nodes = new ArrayList<>();
+        /**
+         * The node that has been added last to {@link #nodes}.
+         */
+        @Nullable
+        private Node lastNode;
+
+        /**
+         * Returns the number of entries collected so far.
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Returns true if the sequence has become too long to be lowered.
+         */
+        boolean isOverflow() {
+            return overflow;
+        }
+
+        /**
+         * Adds the move of the specified node.
+         *
+         * @param move    a move node of the tree
+         * @param inverse whether the inverse of the move shall be added
+         */
+        void addMove(@Nonnull MoveNode move, boolean inverse) {
+            if (layerCount == 0) {
+                layerCount = move.getLayerCount();
+            }
+            if (move.getLayerCount() != layerCount) {
+                if (inverse) {
+                    MoveNode inverted = (MoveNode) move.clone();
+                    inverted.invert();
+                    addNode(inverted);
+                } else {
+                    addNode(move);
+                }
+                return;
+            }
+            if (!grow(1)) {
+                return;
+            }
+            int i = size * 3;
+            moves[i] = move.getAxis();
+            moves[i + 1] = move.getLayerMask();
+            moves[i + 2] = inverse ? -move.getAngle() : move.getAngle();
+            sources[size++] = indexOf(move);
+        }
+
+        /**
+         * Adds a resolved node which can not be stored as a move.
+         */
+        void addNode(@Nonnull Node node) {
+            if (!grow(1)) {
+                return;
+            }
+            int i = size * 3;
+            moves[i] = NODE_ENTRY;
+            moves[i + 1] = 0;
+            moves[i + 2] = 0;
+            sources[size++] = indexOf(node);
+        }
+
+        /**
+         * Reflects the entries in the range {@code [from, size())}.
+         */
+        void reflect(int from) {
+            for (int index = from; index < size; index++) {
+                int i = index * 3;
+                if (moves[i] == NODE_ENTRY) {
+                    Node node = nodes.get(sources[index]);
+                    if (node instanceof MoveNode) {
+                        MoveNode reflected = (MoveNode) node.clone();
+                        reflected.reflect();
+                        sources[index] = indexOf(reflected);
+                    }
+                } else {
+                    moves[i + 1] = reflectLayerMask(moves[i + 1], moves[i + 2]);
+                }
+            }
+        }
+
+        /**
+         * Reflects a layer mask like {@link MoveNode#reflect()} does.
+         */
+        private int reflectLayerMask(int oldMask, int angle) {
+            int layerMask = 0;
+            if (angle != 0) {
+                for (int i = 0; i < layerCount; i++) {
+                    layerMask <<= 1;
+                    layerMask |= (oldMask & 1);
+                    oldMask >>>= 1;
+                }
+            }
+            return layerMask;
+        }
+
+        /**
+         * Appends the entries in the range {@code [from, size())} the
+         * specified number of times.
+         */
+        void repeat(int from, int times) {
+            int length = size - from;
+            if (times <= 0 || length == 0) {
+                return;
+            }
+            if ((long) length * times > MAX_SIZE - size) {
+                overflow = true;
+                return;
+            }
+            grow(length * times);
+            for (int t = 0; t < times; t++) {
+                System.arraycopy(moves, from * 3, moves, size * 3, length * 3);
+                System.arraycopy(sources, from, sources, size, length);
+                size += length;
+            }
+        }
+
+        private int indexOf(@Nonnull Node node) {
+            if (node != lastNode) {
+                lastNode = node;
+                nodes.add(node);
+            }
+            return nodes.size() - 1;
+        }
+
+        private boolean grow(int count) {
+            if (overflow || size + count > MAX_SIZE) {
+                overflow = true;
+                return false;
+            }
+            int capacity = sources.length;
+            if (size + count > capacity) {
+                int newCapacity = Math.max(size + count, Math.min(MAX_SIZE, capacity * 2));
+                moves = Arrays.copyOf(moves, newCapacity * 3);
+                sources = Arrays.copyOf(sources, newCapacity);
+            }
+            return true;
+        }
+
+        @Nonnull
+        ResolvedMoves build() {
+            return new ResolvedMoves(layerCount, size, Arrays.copyOf(moves, size * 3),
+                    Arrays.copyOf(sources, size), nodes.toArray(new Node[0]));
+        }
+    }
+}
@@ -4,8 +4,10 @@
  */
 package ch.randelshofer.rubik.parser.ast;
 
+import ch.randelshofer.rubik.cube.Cube;
 import ch.randelshofer.rubik.cube.RubiksCube;
 import ch.randelshofer.rubik.notation.Move;
+import org.jhotdraw.annotation.Nonnull;
 
 /**
  * A SequenceNode holds a sequence of statements as its children A.
@@ -95,4 +97,8 @@ public class SequenceNode extends Node {
         }
     }
 
+    @Override
+    protected void compileInto(@Nonnull Cube cube) {
+        compileChildrenInto(cube);
+    }
 }
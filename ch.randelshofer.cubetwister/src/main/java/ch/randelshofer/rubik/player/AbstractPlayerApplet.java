@@ -1640,11 +1640,13 @@ public abstract class AbstractPlayerApplet extends javax.swing.JApplet
                         if (scr == null) {
                             turnCountInfo = "";
                         } else {
+                            MoveMetrics metrics = new MoveMetrics();
+                            metrics.accept(scr);
                             turnCountInfo
-                                    = MoveMetrics.getBlockTurnCount(scr) + " btm, "
-                                    + MoveMetrics.getLayerTurnCount(scr) + " ltm, "
-                                    + MoveMetrics.getFaceTurnCount(scr) + " ftm, "
-                                    + MoveMetrics.getQuarterTurnCount(scr) + " qtm";
+                                    = metrics.getBlockTurnCount() + " btm, "
+                                    + metrics.getLayerTurnCount() + " ltm, "
+                                    + metrics.getFaceTurnCount() + " ftm, "
+                                    + metrics.getQuarterTurnCount() + " qtm";
                         }
 
                     }
@@ -15,6 +15,7 @@ import ch.randelshofer.rubik.cube3d.Cube3D;
 import ch.randelshofer.rubik.cube3d.Cube3DEvent;
 import ch.randelshofer.rubik.cube3d.Cube3DListener;
 import ch.randelshofer.rubik.parser.MoveMetrics;
+import ch.randelshofer.rubik.parser.MoveSimplifier;
 import ch.randelshofer.rubik.parser.ast.Node;
 import ch.randelshofer.util.Images;
 import org.jhotdraw.annotation.Nonnull;
@@ -79,6 +80,13 @@ public class ScriptPlayer extends AbstractPlayer {
     private Random random = new Random();
     private boolean isEnabled = true;
     private boolean isHideControlsIfNoScript = false;
+    /**
+     * When this flag is true, the script player plays the simplified moves
+     * of the script.
+     *
+     * @see MoveSimplifier
+     */
+    private boolean isSimplified = false;
     @Nullable
     private ImageIcon partialResetIcon;
     @Nullable
@@ -153,19 +161,13 @@ public class ScriptPlayer extends AbstractPlayer {
                         if (scriptIndex >= 0 || scriptIndex <= resolvedScript.size()) {
                             if (scriptIndex == newIndex - 1) {
                                 currentNode = activeNode = resolvedScript.get(scriptIndex);
-                                ftm += MoveMetrics.getFaceTurnCount(activeNode);
-                                btm += MoveMetrics.getBlockTurnCount(activeNode);
-                                ltm += MoveMetrics.getLayerTurnCount(activeNode);
-                                qtm += MoveMetrics.getQuarterTurnCount(activeNode);
+                                addToTurnMetrics(activeNode, 1);
                                 fireStateChanged();
                                 activeNode.applyTo(cube, false);
                                 scriptIndex++;
                             } else if (scriptIndex == newIndex + 1) {
                                 currentNode = activeNode = resolvedScript.get(--scriptIndex);
-                                ftm -= MoveMetrics.getFaceTurnCount(activeNode);
-                                btm -= MoveMetrics.getBlockTurnCount(activeNode);
-                                ltm -= MoveMetrics.getLayerTurnCount(activeNode);
-                                qtm -= MoveMetrics.getQuarterTurnCount(activeNode);
+                                addToTurnMetrics(activeNode, -1);
                                 fireStateChanged();
                                 activeNode.applyTo(cube, true);
                             } else {
@@ -175,18 +177,12 @@ public class ScriptPlayer extends AbstractPlayer {
                                 while (scriptIndex < newIndex) {
                                     Node node = resolvedScript.get(scriptIndex++);
                                     node.applyTo(cube, false);
-                                    ftm += MoveMetrics.getFaceTurnCount(activeNode);
-                                    btm += MoveMetrics.getBlockTurnCount(activeNode);
-                                    ltm += MoveMetrics.getLayerTurnCount(activeNode);
-                                    qtm += MoveMetrics.getQuarterTurnCount(activeNode);
+                                    addToTurnMetrics(activeNode, 1);
                                 }
                                 while (scriptIndex > newIndex) {
                                     Node node = resolvedScript.get(--scriptIndex);
                                     node.applyTo(cube, true);
-                                    ftm -= MoveMetrics.getFaceTurnCount(activeNode);
-                                    btm -= MoveMetrics.getBlockTurnCount(activeNode);
-                                    ltm -= MoveMetrics.getLayerTurnCount(activeNode);
-                                    qtm -= MoveMetrics.getQuarterTurnCount(activeNode);
+                                    addToTurnMetrics(activeNode, -1);
                                 }
                                 cube.setQuiet(false);
                             }
@@ -430,7 +426,13 @@ public class ScriptPlayer extends AbstractPlayer {
         }
         }*/
         List<Node> empty = Collections.emptyList();
-        resolvedScript = (script == null) ? empty : script.toResolvedList(false);
+        if (script == null) {
+            resolvedScript = empty;
+        } else if (isSimplified) {
+            resolvedScript = MoveSimplifier.simplify(script).getChildren();
+        } else {
+            resolvedScript = script.toResolvedList(false);
+        }
         scriptIndex = 0;
         ftm = btm = ltm = qtm = 0;
         progress.setValue(0);
@@ -446,6 +448,28 @@ public class ScriptPlayer extends AbstractPlayer {
         propertyChangeSupport.firePropertyChange("script", oldValue, newValue);
     }
 
+    /**
+     * If set to true, the player plays the simplified moves of the script.
+     * Moves which cancel each other out are not played, and subsequent
+     * moves over the same axis are played as a single move.
+     *
+     * @param newValue the new value
+     * @see MoveSimplifier
+     */
+    public void setSimplified(boolean newValue) {
+        boolean oldValue = isSimplified;
+        if (oldValue != newValue) {
+            isSimplified = newValue;
+            setScript(script);
+            reset();
+            propertyChangeSupport.firePropertyChange("simplified", oldValue, newValue);
+        }
+    }
+
+    public boolean isSimplified() {
+        return isSimplified;
+    }
+
     @Nullable
     public Node getScript() {
         return script;
@@ -617,19 +641,13 @@ public class ScriptPlayer extends AbstractPlayer {
                 newIndex = progress.getValue() + 1;
                 if (scriptIndex == newIndex - 1) {
                     currentNode = activeNode = resolvedScript.get(scriptIndex);
-                    ftm += MoveMetrics.getFaceTurnCount(activeNode);
-                    btm += MoveMetrics.getBlockTurnCount(activeNode);
-                    ltm += MoveMetrics.getLayerTurnCount(activeNode);
-                    qtm += MoveMetrics.getQuarterTurnCount(activeNode);
+                    addToTurnMetrics(activeNode, 1);
                     fireStateChanged();
                     activeNode.applyTo(cube, false);
                     scriptIndex++;
                 } else if (scriptIndex == newIndex + 1) {
                     currentNode = activeNode = resolvedScript.get(--scriptIndex);
-                    ftm -= MoveMetrics.getFaceTurnCount(activeNode);
-                    btm -= MoveMetrics.getBlockTurnCount(activeNode);
-                    ltm -= MoveMetrics.getLayerTurnCount(activeNode);
-                    qtm -= MoveMetrics.getQuarterTurnCount(activeNode);
+                    addToTurnMetrics(activeNode, -1);
                     fireStateChanged();
                     activeNode.applyTo(cube, true);
                 } else if (scriptIndex < newIndex - 1) {
@@ -639,10 +657,7 @@ public class ScriptPlayer extends AbstractPlayer {
                     while (scriptIndex < newIndex - 1) {
                         Node node = resolvedScript.get(scriptIndex++);
                         node.applyTo(cube, false);
-                        ftm += MoveMetrics.getFaceTurnCount(activeNode);
-                        btm += MoveMetrics.getBlockTurnCount(activeNode);
-                        ltm += MoveMetrics.getLayerTurnCount(activeNode);
-                        qtm += MoveMetrics.getQuarterTurnCount(activeNode);
+                        addToTurnMetrics(activeNode, 1);
                     }
                     cube.setQuiet(false);
                     currentNode = activeNode = resolvedScript.get(scriptIndex);
@@ -656,10 +671,7 @@ public class ScriptPlayer extends AbstractPlayer {
                     while (scriptIndex > newIndex - 1) {
                         Node node = resolvedScript.get(--scriptIndex);
                         node.applyTo(cube, true);
-                        ftm -= MoveMetrics.getFaceTurnCount(activeNode);
-                        btm -= MoveMetrics.getBlockTurnCount(activeNode);
-                        ltm -= MoveMetrics.getLayerTurnCount(activeNode);
-                        qtm -= MoveMetrics.getQuarterTurnCount(activeNode);
+                        addToTurnMetrics(activeNode, -1);
                     }
                     newIndex--;
                     cube.setQuiet(false);
@@ -775,6 +787,22 @@ public class ScriptPlayer extends AbstractPlayer {
         cube.setQuiet(false);
     }
 
+    /**
+     * Adds the turn counts of the specified node to the turn counts of the
+     * player.
+     *
+     * @param node a node
+     * @param sign 1 to add the counts, -1 to subtract them
+     */
+    private void addToTurnMetrics(@Nonnull Node node, int sign) {
+        MoveMetrics metrics = new MoveMetrics();
+        metrics.accept(node);
+        ftm += sign * metrics.getFaceTurnCount();
+        btm += sign * metrics.getBlockTurnCount();
+        ltm += sign * metrics.getLayerTurnCount();
+        qtm += sign * metrics.getQuarterTurnCount();
+    }
+
     public int getFaceTurnCount() {
         return ftm;
     }
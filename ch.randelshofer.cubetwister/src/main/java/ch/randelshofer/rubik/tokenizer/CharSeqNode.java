@@ -72,6 +72,14 @@ public class CharSeqNode {
         return this.children.get(ch);
     }
 
+    /**
+     * Returns the children map. The map must not be modified.
+     */
+    @Nonnull
+    Map<Character, CharSeqNode> getChildMap() {
+        return this.children;
+    }
+
     void putChild(char ch, @Nonnull CharSeqNode child) {
         this.children.put(ch, child);
     }
@@ -0,0 +1,206 @@
+/*
+ * @(#)KeywordAutomaton.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.tokenizer;
+
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A deterministic finite automaton that recognizes the character sequences
+ * of a {@link CharSeqNode} tree.
+ * <p>
+ * The automaton is compiled from the tree, and is immutable afterwards.
+ * Each state of the automaton corresponds to a node of the tree. The
+ * transitions are stored in a dense table, which is indexed by state and
+ * character class. The characters that occur in the tree are mapped to
+ * character classes 1 through {@code n}. All other characters are mapped
+ * to character class 0, which has no transitions.
+ * <p>
+ * Thus, matching a character costs one array lookup for the character
+ * class (or a binary search for characters outside of the ASCII range),
+ * and one array lookup for the transition. No boxing takes place.
+ * <p>
+ * Instances of this class can be shared by multiple threads.
+ *
+ * @author Werner Randelshofer
+ */
+public final class KeywordAutomaton {
+    /**
+     * The start state.
+     */
+    public final static int START = 0;
+    /**
+     * The value returned by {@link #next} if there is no transition.
+     * The start state can not be reached by a transition, and thus also
+     * serves as the 'no transition' value.
+     */
+    public final static int NONE = START;
+
+    private final static int ASCII_LIMIT = 128;
+
+    /**
+     * Maps characters below {@link #ASCII_LIMIT} to character classes.
+     */
+    @Nonnull
+    private final int[] asciiClasses = new int[ASCII_LIMIT];
+    /**
+     * Sorted array of the characters above {@link #ASCII_LIMIT} which occur
+     * in the tree.
+     */
+    @Nonnull
+    private final char[] otherChars;
+    /**
+     * The character classes of {@link #otherChars}.
+     */
+    @Nonnull
+    private final int[] otherClasses;
+    /**
+     * The number of character classes including class 0.
+     */
+    private final int classCount;
+    /**
+     * The transition table. The next state for {@code state} and
+     * character class {@code c} is stored at index
+     * {@code state * classCount + c}.
+     */
+    @Nonnull
+    private final int[] transitions;
+    /**
+     * The character sequence recognized by a state, or null.
+     */
+    @Nonnull
+    private final String[] charseqs;
+    /**
+     * The end sequence of a state, or null.
+     */
+    @Nonnull
+    private final String[] endseqs;
+
+    /**
+     * Compiles an automaton from a character sequence tree.
+     *
+     * @param root the root of the tree
+     */
+    public KeywordAutomaton(@Nonnull CharSeqNode root) {
+        // Number the nodes in breadth first order and collect the characters
+        List<CharSeqNode> nodes = new ArrayList<>();
+        TreeSet<Character> chars = new TreeSet<>();
+        ArrayDeque<CharSeqNode> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            CharSeqNode node = queue.remove();
+            nodes.add(node);
+            for (Map.Entry<Character, CharSeqNode> entry : node.getChildMap().entrySet()) {
+                chars.add(entry.getKey());
+                queue.add(entry.getValue());
+            }
+        }
+
+        // Assign character classes
+        int otherCount = 0;
+        for (char ch : chars) {
+            if (ch >= ASCII_LIMIT) {
+                otherCount++;
+            }
+        }
+        otherChars = new char[otherCount];
+        otherClasses = new int[otherCount];
+        int charClass = 0;
+        int otherIndex = 0;
+        for (char ch : chars) {
+            charClass++;
+            if (ch < ASCII_LIMIT) {
+                asciiClasses[ch] = charClass;
+            } else {
+                otherChars[otherIndex] = ch;
+                otherClasses[otherIndex] = charClass;
+                otherIndex++;
+            }
+        }
+        classCount = charClass + 1;
+
+        // Fill the transition table
+        int stateCount = nodes.size();
+        transitions = new int[stateCount * classCount];
+        charseqs = new String[stateCount];
+        endseqs = new String[stateCount];
+        int nextState = 1;
+        for (int state = 0; state < stateCount; state++) {
+            CharSeqNode node = nodes.get(state);
+            charseqs[state] = node.getCharseq();
+            endseqs[state] = node.getEndseq();
+            // The children are enqueued in the same order as above
+            for (char ch : node.getChildMap().keySet()) {
+                transitions[state * classCount + getCharClass(ch)] = nextState++;
+            }
+        }
+    }
+
+    /**
+     * Returns the character class of the specified character.
+     *
+     * @param ch a character
+     * @return the character class, 0 if the character does not occur in any
+     * character sequence
+     */
+    private int getCharClass(char ch) {
+        if (ch < ASCII_LIMIT) {
+            return asciiClasses[ch];
+        }
+        int index = Arrays.binarySearch(otherChars, ch);
+        return index < 0 ? 0 : otherClasses[index];
+    }
+
+    /**
+     * Returns the state that is reached from the specified state with the
+     * specified character.
+     *
+     * @param state a state
+     * @param ch    a character
+     * @return the next state or {@link #NONE}
+     */
+    public int next(int state, char ch) {
+        return transitions[state * classCount + getCharClass(ch)];
+    }
+
+    /**
+     * Returns the character sequence that is recognized by the specified
+     * state.
+     *
+     * @param state a state
+     * @return the character sequence or null if the state does not
+     * recognize a character sequence
+     */
+    @Nullable
+    public String getCharseq(int state) {
+        return charseqs[state];
+    }
+
+    /**
+     * Returns the end sequence of the specified state.
+     *
+     * @param state a state
+     * @return the end sequence or null if the state does not recognize a
+     * start-end sequence
+     */
+    @Nullable
+    public String getEndseq(int state) {
+        return endseqs[state];
+    }
+
+    /**
+     * Returns the number of states.
+     */
+    public int getStateCount() {
+        return charseqs.length;
+    }
+}
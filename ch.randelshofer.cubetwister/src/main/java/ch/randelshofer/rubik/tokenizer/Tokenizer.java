@@ -7,8 +7,7 @@ package ch.randelshofer.rubik.tokenizer;
 import org.jhotdraw.annotation.Nonnull;
 import org.jhotdraw.annotation.Nullable;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * A greedy tokenizer.
@@ -21,6 +20,15 @@ import java.util.Map;
  * <p>
  * Note that keyword parsing is greedy.
  * <p>
+ * The keywords and comments are compiled into a {@link KeywordAutomaton}
+ * when the first token is parsed after they have been changed. Characters
+ * are classified with bit masks and array lookups, no boxing takes place.
+ * <p>
+ * The settings of a configured tokenizer can be frozen into an immutable
+ * {@link TokenizerDefinition} with {@link #getDefinition}. The definition
+ * can be shared by multiple threads, and new tokenizers can be created
+ * from it at little cost.
+ * <p>
  * The tokenizer supports backtracking. That is, it can be
  * set to the state of another tokenizer. See method {@link #setTo}.
  */
@@ -40,6 +48,12 @@ public class Tokenizer {
     @Nonnull
     private String input = "";
     private int pos = 0;
+    /**
+     * The position after the last character that has been read from the
+     * input, or the length of the input plus 1 if the end of the input
+     * has been read.
+     */
+    private int lookahead = 0;
     private boolean pushedBack = false;
     private int ttype = TT_EOF;
     private int tstart = 0;
@@ -49,17 +63,51 @@ public class Tokenizer {
     @Nullable
     private Integer nval = null;
 
-    @Nonnull
+    /**
+     * The keyword tree, or null if the tokenizer has been created from
+     * a definition.
+     */
+    @Nullable
     private CharSeqNode keywordTree = new CharSeqNode();
     /**
-     * Map<Character,TType> maps char to ttype or to null
+     * The definition, or null if the settings have been changed since the
+     * definition was created.
      */
-    private Map<Character, Integer> lookup = new HashMap<>();
+    @Nullable
+    private TokenizerDefinition definition;
+    /**
+     * Bit mask of the characters below 64 that the tokenizer skips.
+     */
+    private long skipMask;
+    /**
+     * Sorted array of the characters from 64 upwards that the tokenizer skips.
+     */
+    @Nonnull
+    private char[] skipChars = new char[0];
+    /**
+     * Whether the tokenizer parses numbers.
+     */
+    private boolean numbers;
 
 
     public Tokenizer() {
     }
 
+    /**
+     * Creates a tokenizer with the specified definition.
+     * <p>
+     * The settings of the tokenizer can not be changed.
+     *
+     * @param definition the definition
+     */
+    public Tokenizer(@Nonnull TokenizerDefinition definition) {
+        this.keywordTree = null;
+        this.definition = definition;
+        this.skipMask = definition.skipMask;
+        this.skipChars = definition.skipChars;
+        this.numbers = definition.numbers;
+    }
+
     /**
      * Adds a comment token.
      * <p>
@@ -74,14 +122,8 @@ public class Tokenizer {
      * </pre>
      */
     public void addComment(@Nonnull String start, @Nonnull String end) {
-        CharSeqNode.addStartEndSequence(keywordTree, start, end);
-    }
-
-    /**
-     * Adds a digit character.
-     */
-    private void addDigit(char ch) {
-        this.lookup.put(ch, TT_DIGIT);
+        invalidateDefinition();
+        CharSeqNode.addStartEndSequence(getKeywordTree(), start, end);
     }
 
     /**
@@ -90,7 +132,8 @@ public class Tokenizer {
      * @param keyword the keyword token
      */
     public void addKeyword(@Nonnull String keyword) {
-        CharSeqNode.addCharacterSequence(keywordTree, keyword);
+        invalidateDefinition();
+        CharSeqNode.addCharacterSequence(getKeywordTree(), keyword);
     }
 
 
@@ -98,23 +141,23 @@ public class Tokenizer {
      * Defines the tokens needed for parsing non-negative integers.
      */
     public void addNumbers() {
-        this.addDigit('0');
-        this.addDigit('1');
-        this.addDigit('2');
-        this.addDigit('3');
-        this.addDigit('4');
-        this.addDigit('5');
-        this.addDigit('6');
-        this.addDigit('7');
-        this.addDigit('8');
-        this.addDigit('9');
+        invalidateDefinition();
+        this.numbers = true;
     }
 
     /**
      * Adds a character that the tokenizer should skip.
      */
     private void addSkip(char ch) {
-        this.lookup.put(ch, TT_SKIP);
+        invalidateDefinition();
+        if (ch < 64) {
+            this.skipMask |= 1L << ch;
+        } else if (Arrays.binarySearch(this.skipChars, ch) < 0) {
+            char[] chars = Arrays.copyOf(this.skipChars, this.skipChars.length + 1);
+            chars[chars.length - 1] = ch;
+            Arrays.sort(chars);
+            this.skipChars = chars;
+        }
     }
 
     /**
@@ -160,9 +203,66 @@ public class Tokenizer {
         return this.ttype;
     }
 
-    private <K, V> V getOrDefault(@Nonnull Map<K, V> map, K key, V defaultValue) {
-        V value = map.get(key);
-        return value == null ? defaultValue : value;
+    /**
+     * Returns the type of the specified character.
+     *
+     * @param ch a character
+     * @return TT_SKIP, TT_DIGIT or TT_WORD
+     */
+    private int getCharType(int ch) {
+        if (ch < 64) {
+            if ((this.skipMask & (1L << ch)) != 0) {
+                return TT_SKIP;
+            }
+            if (this.numbers && ch >= '0' && ch <= '9') {
+                return TT_DIGIT;
+            }
+        } else if (this.skipChars.length != 0 && Arrays.binarySearch(this.skipChars, (char) ch) >= 0) {
+            return TT_SKIP;
+        }
+        return TT_WORD;
+    }
+
+    /**
+     * Returns the keyword tree.
+     *
+     * @throws IllegalStateException if the tokenizer has been created from
+     *                               a definition
+     */
+    @Nonnull
+    private CharSeqNode getKeywordTree() {
+        if (this.keywordTree == null) {
+            throw new IllegalStateException("The settings of a tokenizer with a definition can not be changed.");
+        }
+        return this.keywordTree;
+    }
+
+    /**
+     * Must be called before the settings are changed.
+     *
+     * @throws IllegalStateException if the tokenizer has been created from
+     *                               a definition
+     */
+    private void invalidateDefinition() {
+        getKeywordTree();
+        this.definition = null;
+    }
+
+    /**
+     * Returns the definition of this tokenizer. Creates the definition if
+     * the settings have been changed.
+     *
+     * @return the definition
+     */
+    @Nonnull
+    public TokenizerDefinition getDefinition() {
+        TokenizerDefinition d = this.definition;
+        if (d == null) {
+            d = new TokenizerDefinition(new KeywordAutomaton(getKeywordTree()),
+                    this.skipMask, this.skipChars, this.numbers);
+            this.definition = d;
+        }
+        return d;
     }
 
     /**
@@ -182,25 +282,29 @@ public class Tokenizer {
             int ch = this.read();
 
             // try to skip characters
-            while (ch != TT_EOF && this.getOrDefault(this.lookup, (char) ch, TT_WORD) == TT_SKIP) {
+            while (ch != TT_EOF && this.getCharType(ch) == TT_SKIP) {
                 ch = this.read();
                 start += 1;
             }
 
             // try to tokenize a keyword or a comment
-            CharSeqNode node = this.keywordTree;
-            CharSeqNode foundNode = null;
+            KeywordAutomaton automaton = this.getDefinition().keywordAutomaton;
+            int state = KeywordAutomaton.START;
+            int foundState = KeywordAutomaton.NONE;
             int end = start;
-            while (ch != TT_EOF && node != null && node.getChild((char) ch) != null) {
-                node = node.getChild((char) ch);
-                if (node != null && node.getCharseq() != null) {
-                    foundNode = node;
+            while (ch != TT_EOF) {
+                state = automaton.next(state, (char) ch);
+                if (state == KeywordAutomaton.NONE) {
+                    break;
+                }
+                if (automaton.getCharseq(state) != null) {
+                    foundState = state;
                     end = this.pos;
                 }
                 ch = this.read();
             }
-            if (foundNode != null) {
-                String commentEnd = foundNode.getEndseq();
+            if (foundState != KeywordAutomaton.NONE) {
+                String commentEnd = automaton.getEndseq(foundState);
                 if (commentEnd != null) {
                     seekTo(commentEnd);
                     continue loop;
@@ -210,15 +314,15 @@ public class Tokenizer {
                 this.ttype = TT_KEYWORD;
                 this.tstart = start;
                 this.tend = end;
-                this.sval = foundNode.getCharseq();
+                this.sval = automaton.getCharseq(foundState);
                 return this.ttype;
             }
             this.setPosition(start);
             ch = this.read();
 
             // try to tokenize a number
-            if (ch != TT_EOF && this.getOrDefault(this.lookup, (char) ch, TT_WORD) == TT_DIGIT) {
-                while (ch != TT_EOF && this.getOrDefault(this.lookup, (char) ch, TT_WORD) == TT_DIGIT) {
+            if (ch != TT_EOF && this.getCharType(ch) == TT_DIGIT) {
+                while (ch != TT_EOF && this.getCharType(ch) == TT_DIGIT) {
                     ch = this.read();
                 }
                 if (ch != TT_EOF) {
@@ -233,8 +337,8 @@ public class Tokenizer {
             }
 
             // try to tokenize a word
-            if (ch != TT_EOF && this.getOrDefault(this.lookup, (char) ch, TT_WORD) == TT_WORD) {
-                while (ch != TT_EOF && this.getOrDefault(this.lookup, (char) ch, TT_WORD) == TT_WORD) {
+            if (ch != TT_EOF && this.getCharType(ch) == TT_WORD) {
+                while (ch != TT_EOF && this.getCharType(ch) == TT_WORD) {
                     ch = this.read();
                 }
                 if (ch != TT_EOF) {
@@ -270,9 +374,11 @@ public class Tokenizer {
         if (this.pos < this.input.length()) {
             int ch = this.input.charAt(this.pos);
             this.pos = this.pos + 1;
+            this.lookahead = Math.max(this.lookahead, this.pos);
             return ch;
         } else {
             this.pos = this.input.length();
+            this.lookahead = this.input.length() + 1;
             return TT_EOF;
         }
     }
@@ -280,6 +386,7 @@ public class Tokenizer {
     private void seekTo(@Nonnull String str) {
         int i = this.input.indexOf(str, this.pos);
         pos = (i == -1) ? this.input.length() : i + str.length();
+        lookahead = Math.max(lookahead, (i == -1) ? this.input.length() + 1 : pos);
     }
 
     /**
@@ -288,15 +395,48 @@ public class Tokenizer {
      * @param input the input String;
      */
     public void setInput(@Nonnull String input) {
+        setInput(input, 0);
+    }
+
+    /**
+     * Sets the input for the tokenizer, and starts tokenizing at the
+     * specified position.
+     * <p>
+     * The position must be at the start of a token, or at a character that
+     * can be skipped.
+     *
+     * @param input    the input String;
+     * @param position the start position
+     */
+    public void setInput(@Nonnull String input, int position) {
         this.input = input;
-        this.pos = 0;
+        this.pos = position;
+        this.lookahead = position;
         this.pushedBack = false;
         this.ttype = TT_EOF;
-        this.tstart = 0;
-        this.tend = 0;
+        this.tstart = position;
+        this.tend = position;
         this.sval = null;
     }
 
+    /**
+     * Returns the position after the last character that this tokenizer
+     * has read from the input. This includes the characters that the
+     * tokenizer has looked at beyond the end of a token, and the characters
+     * that have been read before backtracking with {@link #setTo}.
+     * <p>
+     * Returns the length of the input plus 1, if the tokenizer has tried
+     * to read past the end of the input.
+     * <p>
+     * A parser can use this position to determine which parts of its
+     * result depend on which parts of the input.
+     *
+     * @return the lookahead position
+     */
+    public int getLookaheadPosition() {
+        return lookahead;
+    }
+
     /**
      * Sets the input position.
      */
@@ -318,14 +458,18 @@ public class Tokenizer {
     public void setTo(@Nonnull Tokenizer that) {
         this.input = that.input;
         this.pos = that.pos;
+        this.lookahead = Math.max(this.lookahead, that.lookahead);
         this.pushedBack = that.pushedBack;
-        this.lookup = that.lookup;
+        this.skipMask = that.skipMask;
+        this.skipChars = that.skipChars;
+        this.numbers = that.numbers;
         this.ttype = that.ttype;
         this.tstart = that.tstart;
         this.tend = that.tend;
         this.sval = that.sval;
         this.nval = that.nval;
         this.keywordTree = that.keywordTree;
+        this.definition = that.getDefinition();
     }
 
     /**
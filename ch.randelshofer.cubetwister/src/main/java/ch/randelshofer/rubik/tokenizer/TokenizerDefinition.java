@@ -0,0 +1,35 @@
+/*
+ * @(#)TokenizerDefinition.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.tokenizer;
+
+import org.jhotdraw.annotation.Nonnull;
+
+/**
+ * The immutable settings of a {@link Tokenizer}: the compiled keywords and
+ * comments, the characters to skip, and whether numbers are parsed.
+ * <p>
+ * A definition is obtained from a configured tokenizer with
+ * {@link Tokenizer#getDefinition}. It can then be shared by multiple
+ * threads, and any number of tokenizers can be created from it with
+ * {@link Tokenizer#Tokenizer(TokenizerDefinition)} without having to
+ * add the keywords again.
+ *
+ * @author Werner Randelshofer
+ */
+public final class TokenizerDefinition {
+    @Nonnull
+    final KeywordAutomaton keywordAutomaton;
+    final long skipMask;
+    @Nonnull
+    final char[] skipChars;
+    final boolean numbers;
+
+    TokenizerDefinition(@Nonnull KeywordAutomaton keywordAutomaton, long skipMask, @Nonnull char[] skipChars, boolean numbers) {
+        this.keywordAutomaton = keywordAutomaton;
+        this.skipMask = skipMask;
+        this.skipChars = skipChars;
+        this.numbers = numbers;
+    }
+}
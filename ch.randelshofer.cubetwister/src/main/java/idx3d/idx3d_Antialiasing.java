@@ -0,0 +1,64 @@
+// | -----------------------------------------------------------------
+// | idx3d III is (c)1999/2000 by Peter Walser
+// | -----------------------------------------------------------------
+// | idx3d is a 3d engine written in 100% pure Java (1.1 compatible)
+// | and provides a fast and flexible API for software 3d rendering
+// | on the Java platform.
+// |
+// | Feel free to use the idx3d API / classes / source code for
+// | non-commercial purposes (of course on your own risk).
+// | If you intend to use idx3d for commercial purposes, please
+// | contact me with an e-mail [proxima@active.ch].
+// |
+// | Thanx & greetinx go to:
+// | * Wilfred L. Guerin, 	for testing, bug report, and tons 
+// |			of brilliant suggestions
+// | * Sandy McArthur,	for reverse loops
+// | * Dr. Douglas Lyons,	for mentioning idx3d1 in his book
+// | * Hugo Elias,		for maintaining his great page
+// | * the comp.graphics.algorithms people, 
+// | 			for scientific concerns
+// | * Tobias Hill,		for inspiration and awakening my
+// |			interest in java gfx coding
+// | * Kai Krause,		for inspiration and hope
+// | * Incarom & Parisienne,	for keeping me awake during the 
+// |			long coding nights
+// | * Doris Langhard,	for being the sweetest girl on earth
+// | * Etnica, Infinity Project, X-Dream and "Space Night"@BR3
+// | 			for great sound while coding
+// | and all coderz & scenerz out there (keep up the good work, ppl :)
+// |
+// | Peter Walser
+// | proxima@active.ch
+// | http://www2.active.ch/~proxima
+// | "On the eigth day, God started debugging"
+// | -----------------------------------------------------------------
+
+package idx3d;
+
+/**
+ * Antialiasing strategies of {@link idx3d_Screen}.
+ */
+public enum idx3d_Antialiasing {
+    /**
+     * No antialiasing.
+     */
+    NONE,
+    /**
+     * Ordered-grid supersampling. The scene is rendered into a buffer with
+     * 2x2 samples per pixel, which are averaged. Needs 4 times the memory
+     * of the screen for the samples and for the z-buffer.
+     */
+    SUPERSAMPLING,
+    /**
+     * An FXAA-style filter, which is only applied at depth edges of the
+     * scene, so that the interior of textures stays sharp. Needs 1.25 times
+     * the memory of the screen.
+     */
+    EDGE,
+    /**
+     * An FXAA-style post-process filter on all pixels of the screen.
+     * Needs 1.25 times the memory of the screen.
+     */
+    FXAA
+}
@@ -48,8 +48,6 @@ public final class idx3d_Color
     public static final int MASK7Bit = 0xFEFEFF;  // mask for additive/subtractive shading
     public static final int MASK6Bit = 0xFCFCFC;  // mask for additive/subtractive shading
 	public static final int RGB=0xFFFFFF;  // rgb mask
-	
-	private static int pixel,color,overflow,scale,r,g,b;
 
 	private idx3d_Color()
 	//Allow no instances
@@ -106,8 +104,8 @@ public final class idx3d_Color
 		public static int add(int color1, int color2)
 		// Adds color1 and color2
 		{
-			pixel=(color1&MASK7Bit)+(color2&MASK7Bit);
-			overflow=pixel&0x1010100;
+			int pixel=(color1&MASK7Bit)+(color2&MASK7Bit);
+			int overflow=pixel&0x1010100;
 			overflow=overflow-(overflow>>8);
 			return ALPHA|overflow|pixel;
 		}
@@ -115,8 +113,8 @@ public final class idx3d_Color
 		public static int sub(int color1, int color2)
 		// Substracts color2 from color1
 		{
-			pixel=(color1&MASK7Bit)+(~color2&MASK7Bit);
-			overflow=~pixel&0x1010100;
+			int pixel=(color1&MASK7Bit)+(~color2&MASK7Bit);
+			int overflow=~pixel&0x1010100;
 			overflow=overflow-(overflow>>8);
 			return ALPHA|(~overflow&pixel);
 		}
@@ -124,8 +122,8 @@ public final class idx3d_Color
 		public static int subneg(int color1, int color2)
 		// Substracts the negative of color2 from color1
 		{
-			pixel=(color1&MASK7Bit)+(color2&MASK7Bit);
-			overflow=~pixel&0x1010100;
+			int pixel=(color1&MASK7Bit)+(color2&MASK7Bit);
+			int overflow=~pixel&0x1010100;
 			overflow=overflow-(overflow>>8);
 			return ALPHA|(~overflow&pixel);
 		}
@@ -148,9 +146,9 @@ public final class idx3d_Color
 			if (factor==255) return color;
 			if (factor==127) return (color&0xFEFEFE)>>1;
 			
-			r=(((color>>16)&255)*factor)>>8;
-			g=(((color>>8)&255)*factor)>>8;
-			b=((color&255)*factor)>>8;
+			int r=(((color>>16)&255)*factor)>>8;
+			int g=(((color>>8)&255)*factor)>>8;
+			int b=((color&255)*factor)>>8;
 			return ALPHA|(r<<16)|(g<<8)|b;
 		}
 		
@@ -158,9 +156,9 @@ public final class idx3d_Color
 		{
 			if ((color1&RGB)==0) return 0;
 			if ((color2&RGB)==0) return 0;
-			r=(((color1>>16)&255)*((color2>>16)&255))>>8;
-			g=(((color1>>8)&255)*((color2>>8)&255))>>8;
-			b=((color1&255)*(color2&255))>>8;
+			int r=(((color1>>16)&255)*((color2>>16)&255))>>8;
+			int g=(((color1>>8)&255)*((color2>>8)&255))>>8;
+			int b=((color1&255)*(color2&255))>>8;
 			return ALPHA|(r<<16)|(g<<8)|b;
 		}
 		
@@ -171,9 +169,9 @@ public final class idx3d_Color
 			if (alpha==255) return bkgrd;
 			if (alpha==127) return mix(bkgrd,color);
 			
-			r=(alpha*(((bkgrd>>16)&255)-((color>>16)&255))>>8)+((color>>16)&255);
-			g=(alpha*(((bkgrd>>8)&255)-((color>>8)&255))>>8)+((color>>8)&255);
-			b=(alpha*((bkgrd&255)-(color&255))>>8)+(color&255);
+			int r=(alpha*(((bkgrd>>16)&255)-((color>>16)&255))>>8)+((color>>16)&255);
+			int g=(alpha*(((bkgrd>>8)&255)-((color>>8)&255))>>8)+((color>>8)&255);
+			int b=(alpha*((bkgrd&255)-(color&255))>>8)+(color&255);
 			
 			return ALPHA|(r<<16)|(g<<8)|b;
 			
@@ -110,6 +110,7 @@ public class idx3d_FXLensFlare extends idx3d_FXPlugin
 		public void setPos(idx3d_Vector pos)
 		{
 			flareObject.vertex[0].pos=pos;
+			flareObject.updateGeometry();
 		}	
 	
 		public void clear()
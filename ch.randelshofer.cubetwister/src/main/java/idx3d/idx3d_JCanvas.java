@@ -346,6 +346,7 @@ public class idx3d_JCanvas extends JComponent implements MouseListener, MouseMot
                 }
             }
             renderPipeline.useIdBuffer(true);
+            renderPipeline.setLayered(true);
         } else {
             renderPipeline.setScene(scene);
             Dimension renderSize = renderPipeline.size();
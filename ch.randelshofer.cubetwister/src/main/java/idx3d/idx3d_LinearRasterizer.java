@@ -38,6 +38,9 @@ package idx3d;
 import org.jhotdraw.annotation.Nonnull;
 import org.jhotdraw.annotation.Nullable;
 
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
 /**
  * Linear rasterizer stage of the render pipeline.
  * <p>
@@ -112,6 +115,9 @@ public final class idx3d_LinearRasterizer extends idx3d_Rasterizer {
     @Nullable int[] zBuffer;
     @Nullable int[] idBuffer;
     int width, height;
+    /** The rows which are rasterized, from bandTop (inclusive) to
+     * bandBottom (exclusive). */
+    int bandTop, bandBottom;
     boolean useIdBuffer;
     boolean antialias;
     final int zFar = 0xFFFFFFF;
@@ -147,6 +153,8 @@ public final class idx3d_LinearRasterizer extends idx3d_Rasterizer {
         idBuffer = pipeline.idBuffer;
         width = screen.w;
         height = screen.h;
+        bandTop = 0;
+        bandBottom = height;
         useIdBuffer = pipeline.useIdBuffer;
         antialias = screen.antialias();
     }
@@ -157,10 +165,24 @@ public final class idx3d_LinearRasterizer extends idx3d_Rasterizer {
         idBuffer = null;
         width = -1;
         height = -1;
+        bandTop = 0;
+        bandBottom = -1;
         useIdBuffer = false;
         antialias = false;
     }
 
+    @Nonnull
+    @Override
+    idx3d_Rasterizer createBandRasterizer() {
+        return new idx3d_LinearRasterizer(null);
+    }
+
+    @Override
+    void setBand(int top, int bottom) {
+        bandTop = max(0, top);
+        bandBottom = min(height, bottom);
+    }
+
     public boolean isAntialiased() {
         return antialias;
     }
@@ -360,7 +382,7 @@ public final class idx3d_LinearRasterizer extends idx3d_Rasterizer {
         //   /   . '         ' .   \
         //  + . '               ' . +
         // p3                      p3
-        if (y2 >= 0) {
+        if (y2 >= bandTop) {
             dy = y2 - y1;
             if (dy != 0) {
                 dxL = (x2 - x1) / dy;
@@ -380,18 +402,18 @@ public final class idx3d_LinearRasterizer extends idx3d_Rasterizer {
             txBase = tx1;
             tyBase = ty1;
 
-            if (y1 < 0) {
-                xBase -= y1 * dxL;
-                xMax -= y1 * dxR;
-                zBase -= y1 * dzBase;
-                nxBase -= y1 * dnxBase;
-                nyBase -= y1 * dnyBase;
-                txBase -= y1 * dtxBase;
-                tyBase -= y1 * dtyBase;
-                y1 = 0;
+            if (y1 < bandTop) {
+                xBase += (bandTop - y1) * dxL;
+                xMax += (bandTop - y1) * dxR;
+                zBase += (bandTop - y1) * dzBase;
+                nxBase += (bandTop - y1) * dnxBase;
+                nyBase += (bandTop - y1) * dnyBase;
+                txBase += (bandTop - y1) * dtxBase;
+                tyBase += (bandTop - y1) * dtyBase;
+                y1 = bandTop;
             }
 
-            y2 = (y2 < height) ? y2 : height;
+            y2 = (y2 < bandBottom) ? y2 : bandBottom;
             offset = y1 * width;
             for (y = y1; y < y2; y++) {
                 renderLine();
@@ -407,7 +429,7 @@ public final class idx3d_LinearRasterizer extends idx3d_Rasterizer {
         //   /===, '          ' ,===\
         //  +=, '                ' .=+
         // p3                       p3
-        if (y2 < height) {
+        if (y2 < bandBottom) {
             dy = y3 - y2;
             if (dy != 0) {
                 dxL = (x3 - x2) / dy;
@@ -427,18 +449,18 @@ public final class idx3d_LinearRasterizer extends idx3d_Rasterizer {
             txBase = tx2;
             tyBase = ty2;
 
-            if (y2 < 0) {
-                xBase -= y2 * dxL;
-                xMax -= y2 * dxR;
-                zBase -= y2 * dzBase;
-                nxBase -= y2 * dnxBase;
-                nyBase -= y2 * dnyBase;
-                txBase -= y2 * dtxBase;
-                tyBase -= y2 * dtyBase;
-                y2 = 0;
+            if (y2 < bandTop) {
+                xBase += (bandTop - y2) * dxL;
+                xMax += (bandTop - y2) * dxR;
+                zBase += (bandTop - y2) * dzBase;
+                nxBase += (bandTop - y2) * dnxBase;
+                nyBase += (bandTop - y2) * dnyBase;
+                txBase += (bandTop - y2) * dtxBase;
+                tyBase += (bandTop - y2) * dtyBase;
+                y2 = bandTop;
             }
 
-            y3 = (y3 < height) ? y3 : height;
+            y3 = (y3 < bandBottom) ? y3 : bandBottom;
             offset = y2 * width;
 
             for (y = y2; y < y3; y++) {
@@ -736,7 +758,7 @@ public final class idx3d_LinearRasterizer extends idx3d_Rasterizer {
             y = a.y << 16;
             for (x = a.x; x <= b.x; x++) {
                 y2 = y >> 16;
-                if (idx3d_Math.inrange(x, 0, width - 1) && idx3d_Math.inrange(y2, 0, height - 1)) {
+                if (idx3d_Math.inrange(x, 0, width - 1) && idx3d_Math.inrange(y2, bandTop, min(bandBottom, height - 1))) {
                     offset = y2 * width;
                     if (z < zBuffer[x + offset]) {
                         if (!screen.antialias) {
@@ -776,7 +798,7 @@ public final class idx3d_LinearRasterizer extends idx3d_Rasterizer {
             try {
                 for (y = a.y; y <= b.y; y++) {
                     x2 = x >> 16;
-                    if (idx3d_Math.inrange(x2, 0, width - 1) && idx3d_Math.inrange(y, 0, height - 1)) {
+                    if (idx3d_Math.inrange(x2, 0, width - 1) && idx3d_Math.inrange(y, bandTop, min(bandBottom, height - 1))) {
                         offset = y * width;
                         if (z < zBuffer[x2 + offset]) {
                             if (!screen.antialias) {
@@ -42,12 +42,19 @@ import org.jhotdraw.annotation.Nonnull;
  * Singleton class for accelerated mathematical operations.
  */
 public final class idx3d_Math {
-    private static float sinus[];
-    private static float cosinus[];
-    private static boolean trig = false;
     public static float pi = 3.1415926535f;
     private static float rad2scale = 4096f / 3.14159265f / 2f;
     private static float pad = 256 * 3.14159265f;
+    /**
+     * The lookup tables are built when the class is initialized, so that
+     * pipelines which render concurrently never see a partially built table.
+     */
+    private final static float sinus[] = new float[4096];
+    private final static float cosinus[] = new float[4096];
+
+    static {
+        buildTrig();
+    }
 
     private static int[] fastRandoms;
     private static int fastRndPointer = 0;
@@ -69,16 +76,10 @@ public final class idx3d_Math {
     }
 
     public static final float sin(float angle) {
-        if (!trig) {
-            buildTrig();
-        }
         return sinus[(int) ((angle + pad) * rad2scale) & 0xFFF];
     }
 
     public static final float cos(float angle) {
-        if (!trig) {
-            buildTrig();
-        }
         return cosinus[(int) ((angle + pad) * rad2scale) & 0xFFF];
     }
 
@@ -86,9 +87,6 @@ public final class idx3d_Math {
         if (idx3d_Scene.VERBOSE) {
             System.out.println(">> Building idx3d_Math LUT");
         }
-        sinus = new float[4096];
-        cosinus = new float[4096];
-
         for (int i = 0; i < 4096; i++) {
             sinus[i] = (float) Math.sin((float) i / rad2scale);
             cosinus[i] = (float) Math.cos((float) i / rad2scale);
@@ -100,8 +98,6 @@ public final class idx3d_Math {
         cosinus[2048] = -1.0f;
         sinus[3072] = -1.0f;//270°
         cosinus[3072] = 0.0f;
-
-        trig = true;
     }
 
     public static final float pythagoras(float a, float b) {
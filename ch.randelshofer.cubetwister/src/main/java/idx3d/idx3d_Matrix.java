@@ -113,6 +113,50 @@ public class idx3d_Matrix // defines a 3d matrix
         return data;
     }
 
+    /**
+     * Copies the 16 values of this matrix row by row into an array.
+     */
+    public void exportToArray(@Nonnull float[] data, int offset) {
+        data[offset] = m00;
+        data[offset + 1] = m01;
+        data[offset + 2] = m02;
+        data[offset + 3] = m03;
+        data[offset + 4] = m10;
+        data[offset + 5] = m11;
+        data[offset + 6] = m12;
+        data[offset + 7] = m13;
+        data[offset + 8] = m20;
+        data[offset + 9] = m21;
+        data[offset + 10] = m22;
+        data[offset + 11] = m23;
+        data[offset + 12] = m30;
+        data[offset + 13] = m31;
+        data[offset + 14] = m32;
+        data[offset + 15] = m33;
+    }
+
+    /**
+     * Sets this matrix to 16 values which are stored row by row in an array.
+     */
+    public void importFromArray(@Nonnull float[] data, int offset) {
+        m00 = data[offset];
+        m01 = data[offset + 1];
+        m02 = data[offset + 2];
+        m03 = data[offset + 3];
+        m10 = data[offset + 4];
+        m11 = data[offset + 5];
+        m12 = data[offset + 6];
+        m13 = data[offset + 7];
+        m20 = data[offset + 8];
+        m21 = data[offset + 9];
+        m22 = data[offset + 10];
+        m23 = data[offset + 11];
+        m30 = data[offset + 12];
+        m31 = data[offset + 13];
+        m32 = data[offset + 14];
+        m33 = data[offset + 15];
+    }
+
     // F A C T O R Y  M E T H O D S
     @Nonnull
     public static idx3d_Matrix shiftMatrix(float dx, float dy, float dz) // matrix for shifting
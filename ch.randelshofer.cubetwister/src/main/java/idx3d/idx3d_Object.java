@@ -64,6 +64,19 @@ public class idx3d_Object extends idx3d_Node {
 
     idx3d_Vertex[] vertex;
     idx3d_Triangle[] triangle;
+    /**
+     * The geometry as a structure of arrays, which is used for projection.
+     * Null if the object has not been validated, or if its triangles refer
+     * to vertices of other objects.
+     */
+    @Nullable
+    idx3d_PackedGeometry geometry;
+    /**
+     * The object whose vertex positions, vertex normals and triangle normals
+     * are shared by this object. Null if this object is not an instance.
+     */
+    @Nullable
+    private idx3d_Object template;
 
     public int vertices = 0;
     public int triangles = 0;
@@ -177,6 +190,20 @@ public class idx3d_Object extends idx3d_Node {
             }
         }
 
+        if (template != null) {
+            if (template.geometry != null && vertices == template.vertices
+                    && triangles == template.triangles) {
+                // The normals are shared with the template, and need not
+                // be regenerated.
+                for (int i = vertices - 1; i >= 0; i--) {
+                    vertex[i].id = i;
+                }
+                geometry = template.geometry.share();
+                return;
+            }
+            unshare();
+        }
+
         for (int i = vertices - 1; i >= 0; i--) {
             vertex[i].id = i;
             vertex[i].resetNeighbors();
@@ -218,12 +245,59 @@ public class idx3d_Object extends idx3d_Node {
      * Regenerates the vertex normals.
      */
     public void regenerate() {
+        if (template != null) {
+            unshare();
+            invalidate();
+            validate();
+            return;
+        }
         for (int i = 0; i < triangles; i++) {
             triangle[i].regenerateNormal();
         }
         for (int i = 0; i < vertices; i++) {
             vertex[i].regenerateNormal();
         }
+        updateGeometry();
+    }
+
+    /**
+     * Updates the packed geometry which is used for projection from the
+     * vertices and triangles. This method must be called, when the
+     * positions or normals of the vertices of a validated object are
+     * changed directly. The methods of this class, which change vertices,
+     * call it.
+     */
+    public void updateGeometry() {
+        geometry = (vertex == null) ? null
+                : idx3d_PackedGeometry.pack(vertex, vertices, triangle, triangles);
+    }
+
+    /**
+     * Projects the vertices and triangles into camera space and onto the
+     * screen, and clips them at the frustrum.
+     * <p>
+     * The projected fields of a vertex are only updated, if the vertex
+     * belongs to a visible triangle, or to no triangle at all.
+     */
+    void project(@Nonnull idx3d_Matrix vertexProjection, @Nonnull idx3d_Matrix normalProjection,
+                 @Nonnull idx3d_Camera camera, int w, int h) {
+        idx3d_PackedGeometry g = geometry;
+        if (g == null) {
+            for (int i = vertices - 1; i >= 0; i--) {
+                idx3d_Vertex v = vertex[i];
+                v.project(vertexProjection, normalProjection, camera);
+                v.clipFrustrum(w, h);
+            }
+            for (int i = triangles - 1; i >= 0; i--) {
+                idx3d_Triangle t = triangle[i];
+                t.project(normalProjection);
+                t.clipFrustrum(w, h);
+            }
+            return;
+        }
+
+        g.project(vertexProjection, normalProjection, camera, w, h);
+        g.copyTo(vertex, triangle, material != null);
     }
 
     @Nonnull
@@ -302,6 +376,11 @@ public class idx3d_Object extends idx3d_Node {
      * does not move. Usefull if you want prepare objects for self rotation.
      */
     public void detach() {
+        if (template != null) {
+            unshare();
+            invalidate();
+            validate();
+        }
         idx3d_Vector center = getCenter();
 
         for (int i = 0; i < vertices; i++) {
@@ -309,6 +388,7 @@ public class idx3d_Object extends idx3d_Node {
             vertex[i].pos.y -= center.y;
             vertex[i].pos.z -= center.z;
         }
+        updateGeometry();
         shift(center);
     }
 
@@ -364,6 +444,75 @@ public class idx3d_Object extends idx3d_Node {
         return obj;
     }
 
+    /**
+     * Creates an instance of this object.
+     * <p>
+     * The instance has its own vertices and triangles, but shares the
+     * positions and normals of the vertices and the normals of the triangles
+     * with this object, and the packed geometry which is used for projection.
+     * Therefore an instance needs less memory than a clone, and its normals
+     * need not be regenerated. The instance gets a copy of the matrices, of
+     * the materials and of the texture coordinates of this object, which can
+     * be changed independently.
+     * <p>
+     * When the geometry of an instance is changed, for example with
+     * {@link #regenerate} or {@link #detach}, the instance gets its own copy
+     * of the shared vectors. The geometry of this object must not be changed
+     * anymore, after an instance has been created.
+     *
+     * @throws IllegalStateException if a triangle refers to a vertex of
+     * another object
+     */
+    @Nonnull
+    public idx3d_Object createInstance() {
+        rebuild();
+        if (geometry == null) {
+            throw new IllegalStateException("Object " + name + " has triangles with vertices of other objects.");
+        }
+        idx3d_Object obj = new idx3d_Object();
+        idx3d_Vertex[] copies = new idx3d_Vertex[vertices];
+        for (int i = 0; i < vertices; i++) {
+            idx3d_Vertex copy = new idx3d_Vertex();
+            copy.pos = vertex[i].pos;
+            copy.n = vertex[i].n;
+            copies[i] = copy;
+        }
+        for (idx3d_Vertex v : vertexData) {
+            obj.addVertex(copies[v.id]);
+        }
+        for (idx3d_Triangle t : triangleData) {
+            idx3d_Triangle copy = new idx3d_Triangle(copies[t.p1.id], copies[t.p2.id], copies[t.p3.id]);
+            copy.n = t.n;
+            copy.setUV(t.u[0], t.v[0], t.u[1], t.v[1], t.u[2], t.v[2]);
+            copy.setTriangleMaterial(t.getTriangleMaterial());
+            obj.addTriangle(copy);
+        }
+        obj.template = this;
+        obj.name = name;
+        obj.material = material;
+        obj.matrix = matrix.getClone();
+        obj.normalmatrix = normalmatrix.getClone();
+        return obj;
+    }
+
+    /**
+     * Gives this object its own copy of the vectors, which it shares with
+     * its template.
+     */
+    private void unshare() {
+        if (template == null) {
+            return;
+        }
+        template = null;
+        for (idx3d_Vertex v : vertexData) {
+            v.pos = v.pos.getClone();
+            v.n = v.n.getClone();
+        }
+        for (idx3d_Triangle t : triangleData) {
+            t.n = t.n.getClone();
+        }
+    }
+
     public void removeDuplicateVertices() {
         rebuild();
         ArrayList<idx3d_Edge> edgesToCollapse = new ArrayList<idx3d_Edge>();
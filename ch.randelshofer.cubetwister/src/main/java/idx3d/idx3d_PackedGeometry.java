@@ -0,0 +1,362 @@
+// | -----------------------------------------------------------------
+// | idx3d III is (c)1999/2000 by Peter Walser
+// | -----------------------------------------------------------------
+// | idx3d is a 3d engine written in 100% pure Java (1.1 compatible)
+// | and provides a fast and flexible API for software 3d rendering
+// | on the Java platform.
+// |
+// | Feel free to use the idx3d API / classes / source code for
+// | non-commercial purposes (of course on your own risk).
+// | If you intend to use idx3d for commercial purposes, please
+// | contact me with an e-mail [proxima@active.ch].
+// |
+// | Thanx & greetinx go to:
+// | * Wilfred L. Guerin, 	for testing, bug report, and tons 
+// |			of brilliant suggestions
+// | * Sandy McArthur,	for reverse loops
+// | * Dr. Douglas Lyons,	for mentioning idx3d1 in his book
+// | * Hugo Elias,		for maintaining his great page
+// | * the comp.graphics.algorithms people, 
+// | 			for scientific concerns
+// | * Tobias Hill,		for inspiration and awakening my
+// |			interest in java gfx coding
+// | * Kai Krause,		for inspiration and hope
+// | * Incarom & Parisienne,	for keeping me awake during the 
+// |			long coding nights
+// | * Doris Langhard,	for being the sweetest girl on earth
+// | * Etnica, Infinity Project, X-Dream and "Space Night"@BR3
+// | 			for great sound while coding
+// | and all coderz & scenerz out there (keep up the good work, ppl :)
+// |
+// | Peter Walser
+// | proxima@active.ch
+// | http://www2.active.ch/~proxima
+// | "On the eigth day, God started debugging"
+// | -----------------------------------------------------------------
+
+package idx3d;
+
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * The geometry of an {@link idx3d_Object} as a structure of arrays.
+ * <p>
+ * The coordinates of the vertices, of the vertex normals and of the
+ * triangle normals are stored in one array per component, and the
+ * triangles are stored as indices into the vertex arrays. The projection
+ * runs in tight loops over these arrays, which the JIT compiler can
+ * vectorize, instead of visiting each idx3d_Vertex and idx3d_Vector.
+ * <p>
+ * The vertices and triangles of the object remain the view of the geometry
+ * which is used by the rasterizers and by the application: the results of
+ * the projection are copied back into them. The arrays are built from the
+ * vertices by {@link idx3d_Object#updateGeometry()}.
+ * <p>
+ * The instances of an object share the coordinates, the normals and the
+ * triangles of the geometry of the object, and only have their own arrays
+ * for the results of the projection.
+ */
+final class idx3d_PackedGeometry {
+    final int vertices;
+    final int triangles;
+
+    // V E R T I C E S
+
+    /** Coordinates of the vertices. */
+    @Nonnull
+    final float[] x, y, z;
+    /** Vertex normals. */
+    @Nonnull
+    final float[] nx, ny, nz;
+    /** Transformed coordinates of the vertices. */
+    @Nonnull
+    final float[] x2, y2, z2;
+    /** Transformed vertex normals. */
+    @Nonnull
+    final float[] nx2, ny2, nz2;
+    /** Projected coordinates and clipping codes of the vertices. */
+    @Nonnull
+    final int[] sx, sy, sz, clipcode;
+
+    // T R I A N G L E S
+
+    /** The vertex indices of the triangles, three per triangle. */
+    @Nonnull
+    final int[] indices;
+    /** Normals of the triangles. */
+    @Nonnull
+    final float[] tnx, tny, tnz;
+    /** Transformed normals of the triangles. */
+    @Nonnull
+    final float[] tnx2, tny2, tnz2;
+
+    // V I E W
+
+    /** The vertices which do not belong to a triangle. */
+    @Nonnull
+    private int[] looseVertices = new int[0];
+    /** The frame in which each vertex has been copied to its view. */
+    @Nonnull
+    private final int[] copiedFrame;
+    private int frame;
+
+    private idx3d_PackedGeometry(int vertices, int triangles) {
+        this.vertices = vertices;
+        this.triangles = triangles;
+        x = new float[vertices];
+        y = new float[vertices];
+        z = new float[vertices];
+        nx = new float[vertices];
+        ny = new float[vertices];
+        nz = new float[vertices];
+        x2 = new float[vertices];
+        y2 = new float[vertices];
+        z2 = new float[vertices];
+        nx2 = new float[vertices];
+        ny2 = new float[vertices];
+        nz2 = new float[vertices];
+        sx = new int[vertices];
+        sy = new int[vertices];
+        sz = new int[vertices];
+        clipcode = new int[vertices];
+        indices = new int[triangles * 3];
+        tnx = new float[triangles];
+        tny = new float[triangles];
+        tnz = new float[triangles];
+        tnx2 = new float[triangles];
+        tny2 = new float[triangles];
+        tnz2 = new float[triangles];
+        copiedFrame = new int[vertices];
+    }
+
+    private idx3d_PackedGeometry(@Nonnull idx3d_PackedGeometry source) {
+        vertices = source.vertices;
+        triangles = source.triangles;
+        x = source.x;
+        y = source.y;
+        z = source.z;
+        nx = source.nx;
+        ny = source.ny;
+        nz = source.nz;
+        x2 = new float[vertices];
+        y2 = new float[vertices];
+        z2 = new float[vertices];
+        nx2 = new float[vertices];
+        ny2 = new float[vertices];
+        nz2 = new float[vertices];
+        sx = new int[vertices];
+        sy = new int[vertices];
+        sz = new int[vertices];
+        clipcode = new int[vertices];
+        indices = source.indices;
+        tnx = source.tnx;
+        tny = source.tny;
+        tnz = source.tnz;
+        tnx2 = new float[triangles];
+        tny2 = new float[triangles];
+        tnz2 = new float[triangles];
+        looseVertices = source.looseVertices;
+        copiedFrame = new int[vertices];
+    }
+
+    /**
+     * Packs the geometry of the specified vertices and triangles.
+     * The id of each vertex must be its index in the vertex array.
+     *
+     * @return the packed geometry, or null if a triangle refers to a vertex
+     * which is not in the vertex array
+     */
+    @Nullable
+    static idx3d_PackedGeometry pack(@Nonnull idx3d_Vertex[] vertex, int vertices,
+                                     @Nonnull idx3d_Triangle[] triangle, int triangles) {
+        idx3d_PackedGeometry g = new idx3d_PackedGeometry(vertices, triangles);
+        for (int i = 0; i < vertices; i++) {
+            idx3d_Vertex v = vertex[i];
+            g.x[i] = v.pos.x;
+            g.y[i] = v.pos.y;
+            g.z[i] = v.pos.z;
+            g.nx[i] = v.n.x;
+            g.ny[i] = v.n.y;
+            g.nz[i] = v.n.z;
+        }
+        for (int i = 0, j = 0; i < triangles; i++, j += 3) {
+            idx3d_Triangle t = triangle[i];
+            if (!contains(vertex, vertices, t.p1) || !contains(vertex, vertices, t.p2)
+                    || !contains(vertex, vertices, t.p3)) {
+                return null;
+            }
+            g.indices[j] = t.p1.id;
+            g.indices[j + 1] = t.p2.id;
+            g.indices[j + 2] = t.p3.id;
+            g.tnx[i] = t.n.x;
+            g.tny[i] = t.n.y;
+            g.tnz[i] = t.n.z;
+        }
+
+        boolean[] used = new boolean[vertices];
+        int looseCount = vertices;
+        for (int index : g.indices) {
+            if (!used[index]) {
+                used[index] = true;
+                looseCount--;
+            }
+        }
+        g.looseVertices = new int[looseCount];
+        for (int i = 0, j = 0; i < vertices; i++) {
+            if (!used[i]) {
+                g.looseVertices[j++] = i;
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Creates a geometry for an instance of the object. The geometry shares
+     * the coordinates, the normals and the triangles with this geometry.
+     */
+    @Nonnull
+    idx3d_PackedGeometry share() {
+        return new idx3d_PackedGeometry(this);
+    }
+
+    private static boolean contains(@Nonnull idx3d_Vertex[] vertex, int vertices, @Nonnull idx3d_Vertex v) {
+        return v.id >= 0 && v.id < vertices && vertex[v.id] == v;
+    }
+
+    /**
+     * Projects the vertices and the triangle normals into camera space and
+     * onto the screen, and computes the clipping codes of the vertices.
+     * This produces the same values as {@link idx3d_Vertex#project} and
+     * {@link idx3d_Vertex#clipFrustrum}.
+     */
+    void project(@Nonnull idx3d_Matrix vp, @Nonnull idx3d_Matrix np, @Nonnull idx3d_Camera camera, int w, int h) {
+        transform(vp, x, y, z, x2, y2, z2, vertices);
+        transform(np, nx, ny, nz, nx2, ny2, nz2, vertices);
+        transform(np, tnx, tny, tnz, tnx2, tny2, tnz2, triangles);
+
+        float scale = camera.screenscale / camera.fovfact;
+        int cx = camera.screenwidth >> 1;
+        int cy = camera.screenheight >> 1;
+        for (int i = 0; i < vertices; i++) {
+            float pz = z2[i];
+            float fact = scale / ((pz > 0.1) ? pz : 0.1f);
+            int px = (int) (x2[i] * fact + cx);
+            int py = (int) (-y2[i] * fact + cy);
+            sx[i] = px;
+            sy[i] = py;
+            sz[i] = (int) (65536f * pz);
+            clipcode[i] = (px < 0 ? 1 : 0) | (px >= w ? 2 : 0)
+                    | (py < 0 ? 4 : 0) | (py >= h ? 8 : 0) | (pz < 0 ? 16 : 0);
+        }
+    }
+
+    /**
+     * Transforms points or normals by a matrix, like
+     * {@link idx3d_Vector#transformInto}.
+     */
+    private static void transform(@Nonnull idx3d_Matrix m,
+                                  @Nonnull float[] x, @Nonnull float[] y, @Nonnull float[] z,
+                                  @Nonnull float[] x2, @Nonnull float[] y2, @Nonnull float[] z2, int n) {
+        float m00 = m.m00, m01 = m.m01, m02 = m.m02, m03 = m.m03;
+        float m10 = m.m10, m11 = m.m11, m12 = m.m12, m13 = m.m13;
+        float m20 = m.m20, m21 = m.m21, m22 = m.m22, m23 = m.m23;
+        for (int i = 0; i < n; i++) {
+            float vx = x[i], vy = y[i], vz = z[i];
+            x2[i] = vx * m00 + vy * m01 + vz * m02 + m03;
+            y2[i] = vx * m10 + vy * m11 + vz * m12 + m13;
+            z2[i] = vx * m20 + vy * m21 + vz * m22 + m23;
+        }
+    }
+
+    /**
+     * Copies the results of the projection into the vertices and triangles,
+     * and performs backface culling and frustrum clipping of the triangles.
+     * This produces the same values as {@link idx3d_Triangle#project} and
+     * {@link idx3d_Triangle#clipFrustrum}.
+     * <p>
+     * The rasterizers only read the vertices of visible triangles. To save
+     * memory bandwidth, the other vertices are not updated, except for the
+     * vertices which do not belong to a triangle.
+     *
+     * @param hasMaterial whether the object has a material, if not all
+     *                    triangles are invisible
+     */
+    void copyTo(@Nonnull idx3d_Vertex[] vertex, @Nonnull idx3d_Triangle[] triangle, boolean hasMaterial) {
+        if (++frame == 0) {
+            Arrays.fill(copiedFrame, 0);
+            frame = 1;
+        }
+        for (int i : looseVertices) {
+            copyTo(vertex[i], i);
+        }
+        for (int i = 0, j = 0; i < triangles; i++, j += 3) {
+            idx3d_Triangle t = triangle[i];
+            if (!hasMaterial) {
+                t.visible = false;
+                continue;
+            }
+            int a = indices[j], b = indices[j + 1], c = indices[j + 2];
+            t.outOfFrustrum = (clipcode[a] & clipcode[b] & clipcode[c]) != 0;
+            if (t.outOfFrustrum) {
+                t.visible = false;
+                continue;
+            }
+            float ntx = tnx2[i], nty = tny2[i], ntz = tnz2[i];
+            if (ntz <= 0.5) {
+                // Compute the angle between the center of the triangle and
+                // its normal like idx3d_Vector.angle, which normalizes both.
+                float cx = x2[a] + x2[b] + x2[c];
+                float cy = y2[a] + y2[b] + y2[c];
+                float cz = z2[a] + z2[b] + z2[c];
+                float dist = (float) Math.sqrt(cx * cx + cy * cy + cz * cz);
+                if (dist != 0) {
+                    float invdist = 1 / dist;
+                    cx *= invdist;
+                    cy *= invdist;
+                    cz *= invdist;
+                }
+                dist = (float) Math.sqrt(ntx * ntx + nty * nty + ntz * ntz);
+                if (dist != 0) {
+                    float invdist = 1 / dist;
+                    ntx *= invdist;
+                    nty *= invdist;
+                    ntz *= invdist;
+                }
+                t.visible = cx * ntx + cy * nty + cz * ntz > 0;
+                if (!t.visible) {
+                    continue;
+                }
+            } else {
+                t.visible = true;
+            }
+            t.n2.setTo(ntx, nty, ntz);
+            t.dist = sz[a] + sz[b] + sz[c];
+            t.projectTexture();
+            if (copiedFrame[a] != frame) {
+                copyTo(vertex[a], a);
+            }
+            if (copiedFrame[b] != frame) {
+                copyTo(vertex[b], b);
+            }
+            if (copiedFrame[c] != frame) {
+                copyTo(vertex[c], c);
+            }
+        }
+    }
+
+    private void copyTo(@Nonnull idx3d_Vertex v, int i) {
+        copiedFrame[i] = frame;
+        v.pos2.setTo(x2[i], y2[i], z2[i]);
+        v.n2.setTo(nx2[i], ny2[i], nz2[i]);
+        v.x = sx[i];
+        v.y = sy[i];
+        v.z = sz[i];
+        v.nx = (int) (nx2[i] * 127 + 127);
+        v.ny = (int) (ny2[i] * 127 + 127);
+        v.clipcode = clipcode[i];
+        v.visible = clipcode[i] == 0;
+    }
+}
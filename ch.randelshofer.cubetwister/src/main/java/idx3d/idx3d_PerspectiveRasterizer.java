@@ -115,6 +115,9 @@ public final class idx3d_PerspectiveRasterizer extends idx3d_Rasterizer {
     @Nullable int[] zBuffer;
     @Nullable int[] idBuffer;
     int width, height;
+    /** The rows which are rasterized, from bandTop (inclusive) to
+     * bandBottom (exclusive). */
+    int bandTop, bandBottom;
     boolean useIdBuffer;
     boolean antialias;
     final int zFar = 0xFFFFFFF;
@@ -150,6 +153,8 @@ public final class idx3d_PerspectiveRasterizer extends idx3d_Rasterizer {
         idBuffer = pipeline.idBuffer;
         width = screen.w;
         height = screen.h;
+        bandTop = 0;
+        bandBottom = height;
         useIdBuffer = pipeline.useIdBuffer;
         antialias = screen.antialias();
     }
@@ -160,10 +165,24 @@ public final class idx3d_PerspectiveRasterizer extends idx3d_Rasterizer {
         idBuffer = null;
         width = -1;
         height = -1;
+        bandTop = 0;
+        bandBottom = -1;
         useIdBuffer = false;
         antialias = false;
     }
 
+    @Nonnull
+    @Override
+    idx3d_Rasterizer createBandRasterizer() {
+        return new idx3d_PerspectiveRasterizer(null);
+    }
+
+    @Override
+    void setBand(int top, int bottom) {
+        bandTop = max(0, top);
+        bandBottom = min(height, bottom);
+    }
+
     public boolean isAntialiased() {
         return antialias;
     }
@@ -395,7 +414,7 @@ public final class idx3d_PerspectiveRasterizer extends idx3d_Rasterizer {
         //   /   . '         ' .   \
         //  + . '               ' . +
         // p3                      p3
-        if (y2 >= 0) {
+        if (y2 >= bandTop) {
             dy = y2 - y1;
             if (dy != 0) {
                 dxL = (x2 - x1) / dy;
@@ -415,18 +434,23 @@ public final class idx3d_PerspectiveRasterizer extends idx3d_Rasterizer {
             txBase = tx1;
             tyBase = ty1;
 
-            if (y1 < 0) {
-                xBase -= y1 * dxL;
-                xMax -= y1 * dxR;
-                zBase -= y1 * dzBase;
-                nxBase -= y1 * dnxBase;
-                nyBase -= y1 * dnyBase;
-                txBase -= y1 * dtxBase;
-                tyBase -= y1 * dtyBase;
-                y1 = 0;
+            if (y1 < bandTop) {
+                xBase += (bandTop - y1) * dxL;
+                xMax += (bandTop - y1) * dxR;
+                zBase += (bandTop - y1) * dzBase;
+                nxBase += (bandTop - y1) * dnxBase;
+                nyBase += (bandTop - y1) * dnyBase;
+                txBase += (bandTop - y1) * dtxBase;
+                tyBase += (bandTop - y1) * dtyBase;
+                y1 = bandTop;
+                if (bandTop > 0) {
+                    // The lines above the band have been skipped
+                    y = bandTop - 1;
+                    interpolateTextureBase();
+                }
             }
 
-            y2 = (y2 < height) ? y2 : height;
+            y2 = (y2 < bandBottom) ? y2 : bandBottom;
             offset = y1 * width;
             for (y = y1; y < y2; y++) {
                 renderLine();
@@ -442,7 +466,7 @@ public final class idx3d_PerspectiveRasterizer extends idx3d_Rasterizer {
         //   /===, '          ' ,===\
         //  +=, '                ' .=+
         // p3                       p3
-        if (y2 < height) {
+        if (y2 < bandBottom) {
             dy = y3 - y2;
             if (dy != 0) {
                 dxL = (x3 - x2) / dy;
@@ -462,18 +486,23 @@ public final class idx3d_PerspectiveRasterizer extends idx3d_Rasterizer {
             txBase = tx2;
             tyBase = ty2;
 
-            if (y2 < 0) {
-                xBase -= y2 * dxL;
-                xMax -= y2 * dxR;
-                zBase -= y2 * dzBase;
-                nxBase -= y2 * dnxBase;
-                nyBase -= y2 * dnyBase;
-                txBase -= y2 * dtxBase;
-                tyBase -= y2 * dtyBase;
-                y2 = 0;
+            if (y2 < bandTop) {
+                xBase += (bandTop - y2) * dxL;
+                xMax += (bandTop - y2) * dxR;
+                zBase += (bandTop - y2) * dzBase;
+                nxBase += (bandTop - y2) * dnxBase;
+                nyBase += (bandTop - y2) * dnyBase;
+                txBase += (bandTop - y2) * dtxBase;
+                tyBase += (bandTop - y2) * dtyBase;
+                y2 = bandTop;
+                if (bandTop > 0) {
+                    // The lines above the band have been skipped
+                    y = bandTop - 1;
+                    interpolateTextureBase();
+                }
             }
 
-            y3 = (y3 < height) ? y3 : height;
+            y3 = (y3 < bandBottom) ? y3 : bandBottom;
             offset = y2 * width;
 
             for (y = y2; y < y3; y++) {
@@ -552,6 +581,7 @@ public final class idx3d_PerspectiveRasterizer extends idx3d_Rasterizer {
     private long dpz, dpu, dpv, dpw;
 
     /** Renders a trapezoid from y=ymin to y<ymax.
+     * Only the rows of the current band are rendered.
      * <pre>
      *      p1          p3
      *      /            \
@@ -589,6 +619,13 @@ public final class idx3d_PerspectiveRasterizer extends idx3d_Rasterizer {
                 p4 = swap;
             }
         }
+        // The edges are chosen on the full trapezoid, so that each band of
+        // the screen renders the same edges.
+        ymin = max(ymin, bandTop);
+        ymax = min(ymax, bandBottom);
+        if (ymin >= ymax) {
+            return;
+        }
         {
             long d =  p2.y - p1.y;
             dpLx = ((long) (p2.x - p1.x) << FPbits) / d;
@@ -736,6 +773,11 @@ public final class idx3d_PerspectiveRasterizer extends idx3d_Rasterizer {
         zBase += dzBase;
         nxBase += dnxBase;
         nyBase += dnyBase;
+        interpolateTextureBase();
+    }
+
+    /** Computes txBase and tyBase for the line after y. */
+    private void interpolateTextureBase() {
 //*   xr  := (x - x1) / (x1 - x2);
 //*   tr  := xr * z1 / (xr * z1 + (1 - xr) * z2);
         double xr = (y - yStart) / (float) (yEnd - yStart);
@@ -990,7 +1032,7 @@ public final class idx3d_PerspectiveRasterizer extends idx3d_Rasterizer {
             y = a.y << 16;
             for (x = a.x; x <= b.x; x++) {
                 y2 = y >> 16;
-                if (idx3d_Math.inrange(x, 0, width - 1) && idx3d_Math.inrange(y2, 0, height - 1)) {
+                if (idx3d_Math.inrange(x, 0, width - 1) && idx3d_Math.inrange(y2, bandTop, min(bandBottom, height - 1))) {
                     offset = y2 * width;
                     if (z < zBuffer[x + offset]) {
                         if (!screen.antialias) {
@@ -1030,7 +1072,7 @@ public final class idx3d_PerspectiveRasterizer extends idx3d_Rasterizer {
             try {
                 for (y = a.y; y <= b.y; y++) {
                     x2 = x >> 16;
-                    if (idx3d_Math.inrange(x2, 0, width - 1) && idx3d_Math.inrange(y, 0, height - 1)) {
+                    if (idx3d_Math.inrange(x2, 0, width - 1) && idx3d_Math.inrange(y, bandTop, min(bandBottom, height - 1))) {
                         offset = y * width;
                         if (z < zBuffer[x2 + offset]) {
                             if (!screen.antialias) {
@@ -53,6 +53,20 @@ public abstract class idx3d_Rasterizer {
     abstract void rebuildReferences(idx3d_RenderPipeline pipeline);
     abstract void clearReferences();
 
+    /** Creates a rasterizer of the same kind, which can rasterize a band
+     of the screen concurrently with this rasterizer.
+     Returns null if this rasterizer does not support bands. */
+    idx3d_Rasterizer createBandRasterizer() {
+        return null;
+    }
+
+    /** Restricts rasterization to the rows from top (inclusive) to bottom
+     (exclusive). Must be called after rebuildReferences, which resets the
+     rows to the full screen. By convention this method is only called by
+     idx3d_RenderPipeline. */
+    void setBand(int top, int bottom) {
+    }
+
     /** Renderer. */
     public abstract void render(idx3d_Triangle tri);
 }
@@ -42,7 +42,9 @@ import org.jhotdraw.annotation.Nonnull;
 import org.jhotdraw.annotation.Nullable;
 
 import java.awt.Image;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.IntStream;
 
 /**
  * Renders a scene in a sequence of stages.
@@ -59,11 +61,12 @@ public class idx3d_RenderPipeline {
     private boolean antialiasChangeRequested = false;
     private int requestedWidth;
     private int requestedHeight;
-    private boolean requestedAntialias;
+    @Nonnull
+    private idx3d_Antialiasing requestedAntialiasing = idx3d_Antialiasing.NONE;
     boolean useIdBuffer = false;
     @Nullable idx3d_Rasterizer rasterizer;
-    @Nonnull ArrayList<idx3d_Triangle> opaqueQueue = new ArrayList<idx3d_Triangle>();
-    @Nonnull ArrayList<idx3d_Triangle> transparentQueue = new ArrayList<idx3d_Triangle>();
+    @Nonnull idx3d_TriangleQueue opaqueQueue = new idx3d_TriangleQueue();
+    @Nonnull idx3d_TriangleQueue transparentQueue = new idx3d_TriangleQueue();
     @Nonnull idx3d_Matrix vertexProjection = new idx3d_Matrix();
     @Nonnull idx3d_Matrix normalProjection = new idx3d_Matrix();
     final int zFar = 0xFFFFFFF;    // B U F F E R S
@@ -71,6 +74,47 @@ public class idx3d_RenderPipeline {
     public int zBuffer[];
     @Nullable
     public int idBuffer[];
+    // B A N D S
+    /** The number of horizontal bands of the screen, which are rasterized
+     in parallel. */
+    private int parallelism = 1;
+    /** The height of a band. */
+    private int bandHeight;
+    /** The rasterizers of the bands. */
+    @Nonnull
+    private idx3d_Rasterizer[] bandRasterizers = new idx3d_Rasterizer[0];
+    /** The triangles in the order in which they are rasterized. */
+    @Nonnull
+    private idx3d_Triangle[] renderOrder = new idx3d_Triangle[0];
+    /** The triangles of the bands, as indices into renderOrder. */
+    @Nonnull
+    private int[][] bandTriangles = new int[0][];
+    /** The number of triangles of the bands. */
+    @Nonnull
+    private int[] bandSizes = new int[0];
+    // L A Y E R S
+    /** The number of values per object in a projection key: a flag,
+     and the vertex and normal projections. */
+    private final static int PROJECTION_LENGTH = 25;
+    /** True if the static objects are cached in a layer. */
+    private boolean layered = false;
+    /** Holds true for each object of the scene, which is dynamic. */
+    @Nonnull
+    private boolean[] dynamicObjects = new boolean[0];
+    /** The key of the current frame and of the static layer. */
+    @Nonnull
+    private int[] staticKey = new int[0];
+    @Nonnull
+    private float[] projections = new float[0];
+    @Nonnull
+    private float[] staticProjections = new float[0];
+    @Nullable
+    private idx3d_Object[] staticObjects;
+    @Nullable
+    private idx3d_Texture staticBackground;
+    /** The buffers of the static layer, null if the layer is not valid. */
+    @Nullable
+    private int[] staticPixels, staticZBuffer, staticIdBuffer;
     // C O N S T R U C T O R S
 
     public idx3d_RenderPipeline(idx3d_Scene scene, int w, int h) {
@@ -82,10 +126,43 @@ public class idx3d_RenderPipeline {
     // P U B L I C   M E T H O D S
 
     public void setAntialias(boolean antialias) {
-        if (screen.isAntialias() != antialias) {
-            antialiasChangeRequested = true;
-            requestedAntialias = antialias;
+        setAntialiasing(antialias ? idx3d_Antialiasing.SUPERSAMPLING : idx3d_Antialiasing.NONE);
+    }
+
+    /**
+     * Sets the antialiasing strategy. The change takes effect with the
+     * next rendered frame.
+     */
+    public void setAntialiasing(@Nonnull idx3d_Antialiasing antialiasing) {
+        antialiasChangeRequested = screen.getAntialiasing() != antialiasing;
+        requestedAntialiasing = antialiasing;
+    }
+
+    /**
+     * Sets the number of horizontal bands of the screen, which are
+     * rasterized in parallel.
+     * <p>
+     * Each band has its own rasterizer, and renders all triangles which
+     * overlap with it in the same order as a single rasterizer does.
+     * Since the pixels of a band are only written by its rasterizer, the
+     * image is identical to the image rendered with a parallelism of 1.
+     * <p>
+     * The triangles are rasterized by a single rasterizer if the
+     * rasterizer does not support bands, if the id buffer is used, or
+     * if a wireframe material is rendered on an antialiased screen.
+     *
+     * @param parallelism the number of bands, 1 renders on the calling
+     *                    thread. The default value is 1.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism=" + parallelism);
         }
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
     }
 
     public float getFPS() {
@@ -116,7 +193,77 @@ public class idx3d_RenderPipeline {
         }
         rasterizer.rebuildReferences(this);
 
-        // Clear buffers	
+        // Prepare
+        cam.setScreensize(screen.w, screen.h);
+        scene.prepareForRendering();
+        rasterizer.rebuildReferences(this);
+
+        idx3d_Matrix m = cam.getMatrix();
+        idx3d_Matrix nm = cam.getNormalMatrix();
+        if (layered && classifyObjects() && prepareStaticLayer(cam, m, nm)) {
+            // Composite the dynamic objects on top of the static layer
+            restoreStaticLayer();
+            emptyQueues();
+            projectObjects(cam, m, nm, true);
+            rasterize();
+        } else {
+            clearBuffers();
+            emptyQueues();
+            projectObjects(cam, m, nm, null);
+            rasterize();
+        }
+        screen.render(zBuffer);
+
+        // Clean up
+        rasterizer.clearReferences();
+
+    }
+
+    public void useIdBuffer(boolean useIdBuffer) {
+        if (this.useIdBuffer != useIdBuffer) {
+            this.useIdBuffer = useIdBuffer;
+            if (useIdBuffer) {
+                idBuffer = new int[screen.width * screen.height];
+            } else {
+                idBuffer = null;
+            }
+        }
+    }
+
+    /**
+     * Sets whether the pipeline caches an image of the static objects of the
+     * scene.
+     * <p>
+     * In layered mode, the objects which are not below a dynamic node of the
+     * scene are rendered once into a cached color and depth buffer. Each
+     * frame starts with a copy of these buffers, on top of which only the
+     * objects below the dynamic nodes are projected and rasterized. The cache
+     * is rendered again, when the projection of a static object, the camera,
+     * the size of the screen, the antialiasing strategy, or the set of
+     * dynamic nodes changes, or when {@link idx3d_Scene#invalidateStaticLayer}
+     * is called. The image is the same as without layers, except for pixels
+     * where a static and a dynamic triangle have the same depth.
+     * <p>
+     * If the static objects have transparent triangles, the scene is
+     * rendered as a whole, because the dynamic objects behind them could
+     * not be blended correctly.
+     *
+     * @param layered true to cache the static objects. The default value is
+     *                false.
+     */
+    public void setLayered(boolean layered) {
+        this.layered = layered;
+        if (!layered) {
+            disposeStaticLayer();
+        }
+    }
+
+    public boolean isLayered() {
+        return layered;
+    }
+    // P R I V A T E   M E T H O D S
+
+    private void clearBuffers() {
         idx3d_Math.clearBuffer(zBuffer, zFar);
         if (useIdBuffer) {
             idx3d_Math.clearBuffer(idBuffer, (short) -1);
@@ -124,26 +271,25 @@ public class idx3d_RenderPipeline {
         if (scene.environment.background != null) {
             screen.drawBackground(scene.environment.background, 0, 0, screen.w, screen.h);
         } else {
-            screen.clear(scene.environment.bgcolor);        // Prepare
+            screen.clear(scene.environment.bgcolor);
         }
-        cam.setScreensize(screen.w, screen.h);
-        scene.prepareForRendering();
-        emptyQueues();
-        rasterizer.rebuildReferences(this);
-
-        // Project
+    }
 
-        idx3d_Matrix m = cam.getMatrix();
-        idx3d_Matrix nm = cam.getNormalMatrix();
+    /**
+     * Projects the visible objects of the scene and enqueues their
+     * triangles.
+     *
+     * @param dynamic true projects only dynamic objects, false only static
+     *                objects, null all objects
+     */
+    private void projectObjects(@Nonnull idx3d_Camera cam, @Nonnull idx3d_Matrix m, @Nonnull idx3d_Matrix nm, @Nullable Boolean dynamic) {
         idx3d_Object obj;
-        idx3d_Triangle t;
-        idx3d_Vertex v;
         int w = screen.w;
         int h = screen.h;
 
         for (int id = scene.objects - 1; id >= 0; id--) {
             obj = scene.object[id];
-            if (obj.visible) {
+            if (obj.visible && (dynamic == null || dynamicObjects[id] == dynamic)) {
                 //vertexProjection=obj.getVertexProjection();
                 //normalProjection=obj.getNormalProjection();
                 obj.getVertexProjectionInto(vertexProjection);
@@ -151,55 +297,253 @@ public class idx3d_RenderPipeline {
                 vertexProjection.transform(m);
                 normalProjection.transform(nm);
 
-                for (int i = obj.vertices - 1; i >= 0; i--) {
-                    v = obj.vertex[i];
-                    v.project(vertexProjection, normalProjection, cam);
-                    v.clipFrustrum(w, h);
-                }
+                obj.project(vertexProjection, normalProjection, cam, w, h);
                 for (int i = obj.triangles - 1; i >= 0; i--) {
-                    t = obj.triangle[i];
-                    t.project(normalProjection);
-                    t.clipFrustrum(w, h);
-                    enqueueTriangle(t);
+                    enqueueTriangle(obj.triangle[i]);
                 }
             }
         }
+    }
+
+    /**
+     * Rasterizes the enqueued triangles.
+     */
+    private void rasterize() {
+        // Opaque triangles are rendered front to back to reduce overdraw,
+        // transparent triangles back to front.
+        opaqueQueue.sortFrontToBack();
+        transparentQueue.sortBackToFront();
+        if (!rasterizeBands()) {
+            idx3d_Triangle tri;
+            for (int i = 0, n = opaqueQueue.size(); i < n; i++) {
+                tri = opaqueQueue.get(i);
+                rasterizer.loadMaterial(tri.getMaterial());
+                rasterizer.render(tri);
+            }
+            for (int i = 0, n = transparentQueue.size(); i < n; i++) {
+                tri = transparentQueue.get(i);
+                rasterizer.loadMaterial(tri.getMaterial());
+                rasterizer.render(tri);
+            }
+        }
+    }
+
+    /**
+     * Determines which objects of the scene are dynamic.
+     *
+     * @return true if the scene has dynamic objects
+     */
+    private boolean classifyObjects() {
+        Set<idx3d_Node> dynamicNodes = scene.getDynamicNodes();
+        if (dynamicNodes.isEmpty()) {
+            return false;
+        }
+        if (dynamicObjects.length != scene.objects) {
+            dynamicObjects = new boolean[scene.objects];
+        }
+        boolean hasDynamicObjects = false;
+        for (int id = scene.objects - 1; id >= 0; id--) {
+            dynamicObjects[id] = scene.isDynamic(scene.object[id], dynamicNodes);
+            hasDynamicObjects |= dynamicObjects[id];
+        }
+        return hasDynamicObjects;
+    }
 
-        idx3d_Triangle[] tri;
-        tri = getOpaqueQueue();
-        if (tri != null) {
-            for (int i = tri.length - 1; i >= 0; i--) {
-                //rasterizer.loadMaterial(tri[i].parent.material);
-                rasterizer.loadMaterial(tri[i].getMaterial());
-                rasterizer.render(tri[i]);
+    /**
+     * Renders the static layer, unless it is up to date.
+     *
+     * @return true if the static layer can be used
+     */
+    private boolean prepareStaticLayer(@Nonnull idx3d_Camera cam, @Nonnull idx3d_Matrix m, @Nonnull idx3d_Matrix nm) {
+        // The key describes everything that goes into the image of the
+        // static objects: the frame, and the projections of the objects.
+        int len = screen.w * screen.h;
+        int[] key = {screen.w, screen.h, screen.getAntialiasing().ordinal(), useIdBuffer ? 1 : 0,
+                scene.getStaticLayerModificationCount(), scene.environment.bgcolor,
+                cam.screenscale, Float.floatToIntBits(cam.fovfact)};
+        int keyLength = scene.objects * PROJECTION_LENGTH;
+        if (projections.length != keyLength) {
+            projections = new float[keyLength];
+        }
+        for (int id = scene.objects - 1; id >= 0; id--) {
+            idx3d_Object obj = scene.object[id];
+            int offset = id * PROJECTION_LENGTH;
+            if (obj.visible && !dynamicObjects[id]) {
+                obj.getVertexProjectionInto(vertexProjection);
+                obj.getNormalProjectionInto(normalProjection);
+                vertexProjection.transform(m);
+                normalProjection.transform(nm);
+                projections[offset] = 1f;
+                putMatrix(vertexProjection, projections, offset + 1);
+                putMatrix(normalProjection, projections, offset + 13);
+            } else {
+                Arrays.fill(projections, offset, offset + PROJECTION_LENGTH, 0f);
+                projections[offset] = dynamicObjects[id] ? 2f : 0f;
             }
         }
-        tri = getTransparentQueue();
-        if (tri != null) {
-            for (int i = 0; i < tri.length; i++) {
-                //rasterizer.loadMaterial(tri[i].parent.material);
-                rasterizer.loadMaterial(tri[i].getMaterial());
-                rasterizer.render(tri[i]);
+        if (Arrays.equals(key, staticKey)
+                && scene.object == staticObjects
+                && scene.environment.background == staticBackground
+                && Arrays.equals(projections, staticProjections)) {
+            return staticPixels != null;
+        }
+
+        // Remember the key, even if the static layer can not be used,
+        // so that we do not try again with each frame.
+        staticKey = key;
+        staticObjects = scene.object;
+        staticBackground = scene.environment.background;
+        float[] swap = staticProjections;
+        staticProjections = projections;
+        projections = swap;
+
+        clearBuffers();
+        emptyQueues();
+        projectObjects(cam, m, nm, false);
+        if (transparentQueue.size() > 0) {
+            disposeStaticLayer();
+            return false;
+        }
+        rasterize();
+        if (staticPixels == null || staticPixels.length != len) {
+            staticPixels = new int[len];
+            staticZBuffer = new int[len];
+        }
+        System.arraycopy(screen.p, 0, staticPixels, 0, len);
+        System.arraycopy(zBuffer, 0, staticZBuffer, 0, len);
+        if (useIdBuffer) {
+            if (staticIdBuffer == null || staticIdBuffer.length != idBuffer.length) {
+                staticIdBuffer = new int[idBuffer.length];
             }
+            System.arraycopy(idBuffer, 0, staticIdBuffer, 0, idBuffer.length);
+        } else {
+            staticIdBuffer = null;
         }
-        screen.render();
+        return true;
+    }
 
-        // Clean up
-        rasterizer.clearReferences();
+    private void restoreStaticLayer() {
+        int len = screen.w * screen.h;
+        System.arraycopy(staticPixels, 0, screen.p, 0, len);
+        System.arraycopy(staticZBuffer, 0, zBuffer, 0, len);
+        if (useIdBuffer) {
+            System.arraycopy(staticIdBuffer, 0, idBuffer, 0, idBuffer.length);
+        }
+    }
 
+    private void disposeStaticLayer() {
+        staticPixels = null;
+        staticZBuffer = null;
+        staticIdBuffer = null;
     }
 
-    public void useIdBuffer(boolean useIdBuffer) {
-        if (this.useIdBuffer != useIdBuffer) {
-            this.useIdBuffer = useIdBuffer;
-            if (useIdBuffer) {
-                idBuffer = new int[screen.width * screen.height];
-            } else {
-                idBuffer = null;
+    private static void putMatrix(@Nonnull idx3d_Matrix m, @Nonnull float[] a, int offset) {
+        a[offset] = m.m00;
+        a[offset + 1] = m.m01;
+        a[offset + 2] = m.m02;
+        a[offset + 3] = m.m03;
+        a[offset + 4] = m.m10;
+        a[offset + 5] = m.m11;
+        a[offset + 6] = m.m12;
+        a[offset + 7] = m.m13;
+        a[offset + 8] = m.m20;
+        a[offset + 9] = m.m21;
+        a[offset + 10] = m.m22;
+        a[offset + 11] = m.m23;
+    }
+
+    /**
+     * Rasterizes the triangles in parallel in horizontal bands of the
+     * screen. The opaque triangles are rasterized first, followed by the
+     * transparent triangles.
+     *
+     * @return false if the triangles must be rasterized by the rasterizer
+     * of the pipeline
+     */
+    private boolean rasterizeBands() {
+        int h = screen.h;
+        // Bands have an even height, because an antialiased screen
+        // averages pairs of rows.
+        int bands = Math.min(parallelism, h / 2);
+        if (bands < 2 || useIdBuffer) {
+            return false;
+        }
+        int opaqueCount = opaqueQueue.size();
+        int count = opaqueCount + transparentQueue.size();
+        if (renderOrder.length < count) {
+            renderOrder = new idx3d_Triangle[count];
+        }
+        for (int i = 0; i < opaqueCount; i++) {
+            renderOrder[i] = opaqueQueue.get(i);
+        }
+        for (int i = opaqueCount; i < count; i++) {
+            renderOrder[i] = transparentQueue.get(i - opaqueCount);
+        }
+        if (screen.antialias) {
+            // An antialiased wireframe line writes into the next row.
+            for (int i = 0; i < count; i++) {
+                if (renderOrder[i].getMaterial().wireframe) {
+                    Arrays.fill(renderOrder, 0, count, null);
+                    return false;
+                }
             }
         }
+        if (bandRasterizers.length != bands) {
+            bandRasterizers = new idx3d_Rasterizer[bands];
+            bandTriangles = Arrays.copyOf(bandTriangles, bands);
+            bandSizes = new int[bands];
+        }
+        for (int b = 0; b < bands; b++) {
+            if (bandRasterizers[b] == null) {
+                bandRasterizers[b] = rasterizer.createBandRasterizer();
+                if (bandRasterizers[b] == null) {
+                    Arrays.fill(renderOrder, 0, count, null);
+                    return false;
+                }
+            }
+            if (bandTriangles[b] == null) {
+                bandTriangles[b] = new int[Math.max(16, count / bands)];
+            }
+        }
+
+        // Bin the triangles into the bands which they overlap
+        bandHeight = ((h + bands - 1) / bands + 1) & ~1;
+        Arrays.fill(bandSizes, 0);
+        for (int i = 0; i < count; i++) {
+            idx3d_Triangle t = renderOrder[i];
+            int ymin = Math.min(t.p1.y, Math.min(t.p2.y, t.p3.y));
+            int ymax = Math.max(t.p1.y, Math.max(t.p2.y, t.p3.y));
+            if (ymax < 0 || ymin >= h) {
+                continue;
+            }
+            int last = Math.min(h - 1, ymax) / bandHeight;
+            for (int b = Math.max(0, ymin) / bandHeight; b <= last; b++) {
+                int[] indices = bandTriangles[b];
+                if (bandSizes[b] == indices.length) {
+                    bandTriangles[b] = indices = Arrays.copyOf(indices, indices.length * 2);
+                }
+                indices[bandSizes[b]++] = i;
+            }
+        }
+
+        IntStream.range(0, bands).parallel().forEach(this::rasterizeBand);
+        Arrays.fill(renderOrder, 0, count, null);
+        return true;
+    }
+
+    private void rasterizeBand(int band) {
+        idx3d_Rasterizer r = bandRasterizers[band];
+        r.rebuildReferences(this);
+        r.loadLightmap(lightmap);
+        r.setBand(band * bandHeight, (band + 1) * bandHeight);
+        int[] indices = bandTriangles[band];
+        for (int i = 0, n = bandSizes[band]; i < n; i++) {
+            idx3d_Triangle t = renderOrder[indices[i]];
+            r.loadMaterial(t.getMaterial());
+            r.render(t);
+        }
+        r.clearReferences();
     }
-    // P R I V A T E   M E T H O D S
 
     private void performResizing() {
         try {
@@ -225,9 +569,9 @@ public class idx3d_RenderPipeline {
             }
         } catch (OutOfMemoryError e) {
             if (screen.isAntialias()) {
-                // Antialiasing needs huge amounts of memory
-                // We switch it off and try again.
-                screen.setAntialias(false);
+                // Supersampling needs huge amounts of memory
+                // We switch to a filter and try again.
+                screen.setAntialiasing(idx3d_Antialiasing.FXAA);
                 performResizing();
             } else if (requestedWidth > 10 && requestedHeight > 10) {
                 // Big screens needs lots of memory too.
@@ -246,7 +590,7 @@ public class idx3d_RenderPipeline {
     private void performAntialiasChange() {
         antialiasChangeRequested = false;
         try {
-            screen.setAntialias(requestedAntialias);
+            screen.setAntialiasing(requestedAntialiasing);
             // Don't allocate a new zBuffer if we can avoid it.
             // We will only create a new zBuffer, if it is too
             // small, or if it is more than 4 times bigger than
@@ -257,13 +601,14 @@ public class idx3d_RenderPipeline {
                 zBuffer = new int[len];
             }
         } catch (OutOfMemoryError e) {
-            if (!requestedAntialias) {
-                // Rethrow if we can't even render non-antialiased screen.
+            if (!screen.isAntialias()) {
+                // Rethrow if we can't even render a screen without
+                // supersampling.
                 throw e;
             }
 
             zBuffer = null;
-            screen.setAntialias(false);
+            screen.setAntialiasing(idx3d_Antialiasing.FXAA);
             zBuffer = new int[screen.w * screen.h];
         }
     }
@@ -296,15 +641,6 @@ public class idx3d_RenderPipeline {
         }
     }
 
-    @Nullable
-    private idx3d_Triangle[] getOpaqueQueue() {
-        if (opaqueQueue.size() == 0) {
-            return null;
-        }
-        idx3d_Triangle[] tri = opaqueQueue.toArray(new idx3d_Triangle[opaqueQueue.size()]);
-        return sortTriangles(tri, 0, tri.length - 1);
-    }
-
     @Nullable
     public idx3d_Rasterizer getRasterizer() {
         return rasterizer;
@@ -322,6 +658,7 @@ public class idx3d_RenderPipeline {
         if (rasterizer != null) {
             rasterizer.setPipeline(this);
         }
+        bandRasterizers = new idx3d_Rasterizer[0];
 
     }
     // END PATCH Perspective correct rasterizer
@@ -331,47 +668,6 @@ public class idx3d_RenderPipeline {
         return screen;
     }
 
-    @Nullable
-    private idx3d_Triangle[] getTransparentQueue() {
-        if (transparentQueue.size() == 0) {
-            return null;
-        }
-        idx3d_Triangle[] tri = transparentQueue.toArray(new idx3d_Triangle[transparentQueue.size()]);
-        return sortTriangles(tri, 0, tri.length - 1);
-    }
-
-    @Nonnull
-    private idx3d_Triangle[] sortTriangles(@Nonnull idx3d_Triangle[] tri, int L, int R) {
-        float m = (tri[L].dist + tri[R].dist) / 2;
-        int i = L;
-        int j = R;
-        idx3d_Triangle temp;
-
-        do {
-            while (tri[i].dist > m) {
-                i++;
-            }
-            while (tri[j].dist < m) {
-                j--;
-            }
-            if (i <= j) {
-                temp = tri[i];
-                tri[i] = tri[j];
-                tri[j] = temp;
-                i++;
-                j--;
-            }
-        } while (j >= i);
-
-        if (L < j) {
-            sortTriangles(tri, L, j);
-        }
-        if (R > i) {
-            sortTriangles(tri, i, R);
-        }
-        return tri;
-    }
-
     /* Werner Randelshofer. Moved from Scene. */
     @Nonnull
     public java.awt.Dimension size() {
@@ -413,6 +709,8 @@ public class idx3d_RenderPipeline {
             rasterizer.clearReferences();
             rasterizer = null;
         }
+        bandRasterizers = new idx3d_Rasterizer[0];
+        disposeStaticLayer();
         if (screen != null) {
             screen.dispose();
             screen = null;
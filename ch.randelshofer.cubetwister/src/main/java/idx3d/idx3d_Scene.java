@@ -42,8 +42,12 @@ import org.jhotdraw.annotation.Nullable;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseListener;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
 
 /**
  * Represents a scene in three dimensional space.
@@ -97,6 +101,18 @@ public class idx3d_Scene extends idx3d_Group {
     private HashMap<Object,SwipeListener[]> scrapeMap = new HashMap<Object,SwipeListener[]>();
     /* Werner Randelshofer. Added. */
     private boolean isAdjusting;
+    /**
+     * The nodes which are currently moving. The objects below these nodes
+     * are rendered on top of a cached image of the other objects, see
+     * {@link idx3d_RenderPipeline#setLayered}.
+     */
+    @Nonnull
+    private volatile Set<idx3d_Node> dynamicNodes = Collections.emptySet();
+    /**
+     * Incremented when the cached image of the static objects becomes
+     * invalid.
+     */
+    private volatile int staticLayerModificationCount;
 
     // C O N S T R U C T O R S
     public idx3d_Scene() {
@@ -187,11 +203,13 @@ public class idx3d_Scene extends idx3d_Group {
     public void addLight(String key, idx3d_Light l) {
         lightData.put(key, l);
         lightsNeedRebuild = true;
+        invalidateStaticLayer();
     }
 
     public void removeLight(String key) {
         lightData.remove(key);
         lightsNeedRebuild = true;
+        invalidateStaticLayer();
         preparedForRendering = false;
     }
 
@@ -388,6 +406,57 @@ public class idx3d_Scene extends idx3d_Group {
         }
     }
 
+    // L A Y E R S
+
+    /**
+     * Sets the nodes which are currently moving, for example the parts of a
+     * layer which is being twisted.
+     * <p>
+     * A render pipeline in layered mode renders the other objects of the
+     * scene once, and then renders only the objects below the dynamic nodes
+     * for each frame, as long as the projections of the other objects do
+     * not change.
+     *
+     * @param nodes the dynamic nodes, or an empty collection if all nodes
+     *              are static.
+     */
+    public void setDynamicNodes(@Nonnull Collection<? extends idx3d_Node> nodes) {
+        dynamicNodes = nodes.isEmpty()
+                ? Collections.emptySet()
+                : Collections.unmodifiableSet(new HashSet<>(nodes));
+    }
+
+    @Nonnull
+    public Set<idx3d_Node> getDynamicNodes() {
+        return dynamicNodes;
+    }
+
+    /**
+     * Returns true if the object is below a dynamic node.
+     */
+    boolean isDynamic(@Nonnull idx3d_Object obj, @Nonnull Set<idx3d_Node> dynamicNodes) {
+        for (idx3d_Node node = obj; node != null; node = node.parent) {
+            if (dynamicNodes.contains(node)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Invalidates the cached image of the static objects. This method must
+     * be called when a property of the scene changes, which does not affect
+     * the projection of an object, such as a material, a light or the
+     * background.
+     */
+    public void invalidateStaticLayer() {
+        staticLayerModificationCount++;
+    }
+
+    public int getStaticLayerModificationCount() {
+        return staticLayerModificationCount;
+    }
+
     // R E N D E R I N G
     /** Werner Randelshofer. Made public. */
     public boolean isPreparedForRendering() {
@@ -521,6 +590,7 @@ public class idx3d_Scene extends idx3d_Group {
 
     public void setLightmap(idx3d_Lightmap newValue) {
         lightmap = newValue;
+        invalidateStaticLayer();
     }
 
     private void buildLightmap() {
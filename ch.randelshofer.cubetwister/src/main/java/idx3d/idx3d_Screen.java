@@ -39,10 +39,11 @@ import org.jhotdraw.annotation.Nonnull;
 import org.jhotdraw.annotation.Nullable;
 
 import java.awt.Image;
-import java.awt.Toolkit;
 import java.awt.image.ColorModel;
 import java.awt.image.DirectColorModel;
 import java.lang.ref.WeakReference;
+import java.nio.BufferOverflowException;
+import java.nio.IntBuffer;
 
 //import java.lang.ref.WeakReference;
 /**
@@ -69,7 +70,25 @@ public class idx3d_Screen {
     private ColorModel cm = new DirectColorModel(32, 0xFF0000, 0xFF00, 0xFF);
     //		private ColorModel cm=new DirectColorModel(32,0xFF0000,0xFF00,0xFF, 0xFF000000);
     // END PATCH
+    /** True if p holds 2x2 samples per pixel. */
     boolean antialias = false;
+    @Nonnull
+    private idx3d_Antialiasing antialiasing = idx3d_Antialiasing.NONE;
+    /** Copy of the pixels for the FXAA filter. */
+    @Nullable
+    private int[] filterBuffer;
+    /** Luma of the pixels for the FXAA filter. */
+    @Nullable
+    private byte[] lumaBuffer;
+    // FXAA
+    /** Minimal local contrast, relative to the maximal luma, for a pixel to be filtered. */
+    private final static float FXAA_EDGE_THRESHOLD = 1f / 8f;
+    /** Minimal local contrast for a pixel to be filtered. */
+    private final static int FXAA_EDGE_THRESHOLD_MIN = 16;
+    /** Amount of sub-pixel aliasing removal. */
+    private final static float FXAA_SUBPIX = 0.75f;
+    /** Maximal number of steps along an edge. */
+    private final static int FXAA_SEARCH_STEPS = 8;
     // BENCHMARK STUFF
     private long timestamp = 0;
     private long time = 0;
@@ -85,50 +104,122 @@ public class idx3d_Screen {
         pixel = new int[w * h];
         p = pixel;
         producer = new idx3d_ImageProducer(width, height, cm, pixel);
-        
-    // BEGIN PATCH
-        image = producer.getImage();
-    //    image = Toolkit.getDefaultToolkit().createImage(producer);
-    // END PATCH
+        // The image is created lazily, so that a screen can be rendered
+        // without AWT, see getPixels.
     }
 
 
     // P U B L I C   M E T H O D S
     public void render() {
-        if (antialias) {
-            performAntialiasing();
+        render(null);
+    }
+
+    /**
+     * Performs antialiasing.
+     *
+     * @param zBuffer the z-buffer of the screen, the {@link idx3d_Antialiasing#EDGE}
+     *                filter is applied to all pixels if this is null
+     */
+    void render(@Nullable int[] zBuffer) {
+        switch (antialiasing) {
+            case SUPERSAMPLING:
+                performAntialiasing();
+                break;
+            case EDGE:
+                performFXAA(zBuffer);
+                break;
+            case FXAA:
+                performFXAA(null);
+                break;
+            default:
+                break;
         }
     }
 
     @Nullable
     public Image getImage() {
+        if (image == null) {
+            // BEGIN PATCH
+            image = producer.getImage();
+            //    image = Toolkit.getDefaultToolkit().createImage(producer);
+            // END PATCH
+        }
         producer.update();
         performBench();
         return image;
     }
 
     /**
-     * Switches antialiasing on or off.
-     * The current implementation for antialiasing needs huge
-     * amounts of memory. In case if allocation of the memory fails,
-     * we safely revert to non-antialiased mode.
+     * Copies the pixels of the screen into an array, as opaque ARGB values.
+     *
+     * @param dst            the destination array
+     * @param offset         the index of the top left pixel in the array
+     * @param scanlineStride the distance between two rows in the array
+     */
+    public void getPixels(@Nonnull int[] dst, int offset, int scanlineStride) {
+        for (int y = 0, src = 0; y < height; y++, src += width, offset += scanlineStride) {
+            for (int x = 0; x < width; x++) {
+                dst[offset + x] = 0xff000000 | pixel[src + x];
+            }
+        }
+    }
+
+    /**
+     * Puts the pixels of the screen into a buffer, as opaque ARGB values.
+     * The pixels are put row by row, starting at the current position of
+     * the buffer, and the position is advanced by {@code width * height}.
+     *
+     * @param dst the destination buffer
+     */
+    public void getPixels(@Nonnull IntBuffer dst) {
+        if (dst.remaining() < width * height) {
+            throw new BufferOverflowException();
+        }
+        if (dst.hasArray()) {
+            getPixels(dst.array(), dst.arrayOffset() + dst.position(), width);
+            dst.position(dst.position() + width * height);
+        } else {
+            for (int i = 0, n = width * height; i < n; i++) {
+                dst.put(0xff000000 | pixel[i]);
+            }
+        }
+    }
+
+    /**
+     * Switches supersampling on or off.
+     *
+     * @see #setAntialiasing
      */
     public void setAntialias(boolean active) {
-        if (antialias == active) {
+        setAntialiasing(active ? idx3d_Antialiasing.SUPERSAMPLING : idx3d_Antialiasing.NONE);
+    }
+
+    /**
+     * Sets the antialiasing strategy.
+     * Supersampling needs large amounts of memory. In case the allocation
+     * of the memory fails, we revert to the FXAA filter.
+     */
+    public void setAntialiasing(@Nonnull idx3d_Antialiasing newValue) {
+        if (antialiasing == newValue) {
             return;
         }
-        antialias = active;
+        antialiasing = newValue;
+        antialias = newValue == idx3d_Antialiasing.SUPERSAMPLING;
+        if (newValue == idx3d_Antialiasing.NONE || newValue == idx3d_Antialiasing.SUPERSAMPLING) {
+            filterBuffer = null;
+            lumaBuffer = null;
+        }
         if (antialias) {
             try {
                 w = width * 2;
                 h = height * 2;
                 p = (weakP == null) ? null : weakP.get();
-                if (p == null || p.length != w * h * 4) {
+                if (p == null || p.length != w * h) {
                     p = null;
                     if (weakP != null) {
                         weakP.clear();
                     }
-                    p = new int[w * h * 4];
+                    p = new int[w * h];
                     weakP = new WeakReference<int[]>(p);
                 } else {
                     /*
@@ -139,6 +230,7 @@ public class idx3d_Screen {
                     //System.out.println(this+".setAntialias reusing weakPAntialias");
                 }
             } catch (OutOfMemoryError e) {
+                antialiasing = idx3d_Antialiasing.FXAA;
                 antialias = false;
                 w = width;
                 h = height;
@@ -151,10 +243,18 @@ public class idx3d_Screen {
         }
     }
 
+    /**
+     * Returns true if the screen is supersampled.
+     */
     public boolean isAntialias() {
         return antialias;
     }
 
+    @Nonnull
+    public idx3d_Antialiasing getAntialiasing() {
+        return antialiasing;
+    }
+
     @Nullable
     public idx3d_Texture asTexture() {
         return new idx3d_Texture(width, height, pixel);
@@ -174,6 +274,8 @@ public class idx3d_Screen {
             // ones.
             pixel = null;
             p = null;
+            filterBuffer = null;
+            lumaBuffer = null;
             producer.flush();
             producer = null;
             if (image!=null) {
@@ -193,6 +295,7 @@ public class idx3d_Screen {
                 } catch (OutOfMemoryError e) {
                     pixel = null;
                     p = null;
+                    antialiasing = idx3d_Antialiasing.FXAA;
                     antialias = false;
                     w = width;
                     h = height;
@@ -207,7 +310,6 @@ public class idx3d_Screen {
                 p = pixel;
             }
             producer = new idx3d_ImageProducer(width, height, cm, pixel);
-            image = Toolkit.getDefaultToolkit().createImage(producer);
 
         } catch (Error t) {
             System.err.println(this + " encountered:" + t);
@@ -223,6 +325,8 @@ public class idx3d_Screen {
     public void dispose() {
         pixel = null;
         p = null;
+        filterBuffer = null;
+        lumaBuffer = null;
         if (image != null) {
             image.flush();
             image = null;
@@ -311,6 +415,144 @@ public class idx3d_Screen {
         }
     }
 
+    /**
+     * Applies an FXAA-style filter to the pixels.
+     * <p>
+     * A pixel is filtered if the luma of its neighbours has enough
+     * contrast. The filter determines whether the pixel lies on a
+     * horizontal or vertical edge, searches along the edge for its ends,
+     * and blends the pixel with its neighbour across the edge by its
+     * distance from the nearer end. Sub-pixel features are blended by
+     * their contrast to the neighbours.
+     *
+     * @param zBuffer if this is non-null, only pixels at depth edges are
+     *                filtered
+     */
+    private void performFXAA(@Nullable int[] zBuffer) {
+        int n = width * height;
+        if (filterBuffer == null || filterBuffer.length != n) {
+            filterBuffer = null;
+            lumaBuffer = null;
+            filterBuffer = new int[n];
+            lumaBuffer = new byte[n];
+        }
+        int[] src = filterBuffer;
+        byte[] luma = lumaBuffer;
+        System.arraycopy(pixel, 0, src, 0, n);
+        for (int i = 0; i < n; i++) {
+            int c = src[i];
+            luma[i] = (byte) ((((c >>> 16) & 0xff) * 77 + ((c >>> 8) & 0xff) * 150 + (c & 0xff) * 29) >>> 8);
+        }
+
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1, pos = y * width + 1; x < width - 1; x++, pos++) {
+                if (zBuffer != null && !isDepthEdge(zBuffer, pos)) {
+                    continue;
+                }
+                int m = luma[pos] & 0xff;
+                int north = luma[pos - width] & 0xff;
+                int south = luma[pos + width] & 0xff;
+                int west = luma[pos - 1] & 0xff;
+                int east = luma[pos + 1] & 0xff;
+                int max = Math.max(Math.max(m, Math.max(north, south)), Math.max(west, east));
+                int min = Math.min(Math.min(m, Math.min(north, south)), Math.min(west, east));
+                int range = max - min;
+                if (range < Math.max(FXAA_EDGE_THRESHOLD_MIN, (int) (max * FXAA_EDGE_THRESHOLD))) {
+                    continue;
+                }
+                int nw = luma[pos - width - 1] & 0xff;
+                int ne = luma[pos - width + 1] & 0xff;
+                int sw = luma[pos + width - 1] & 0xff;
+                int se = luma[pos + width + 1] & 0xff;
+
+                // Sub-pixel aliasing
+                float average = (2 * (north + south + west + east) + (nw + ne + sw + se)) / 12f;
+                float subpix = Math.min(1f, Math.abs(average - m) / range);
+                subpix = (-2f * subpix + 3f) * subpix * subpix;
+                subpix = subpix * subpix * FXAA_SUBPIX;
+
+                // Direction of the edge
+                int edgeHorizontal = Math.abs(nw + sw - 2 * west) + 2 * Math.abs(north + south - 2 * m) + Math.abs(ne + se - 2 * east);
+                int edgeVertical = Math.abs(nw + ne - 2 * north) + 2 * Math.abs(west + east - 2 * m) + Math.abs(sw + se - 2 * south);
+                boolean horizontal = edgeHorizontal >= edgeVertical;
+                int across = horizontal ? width : 1;
+                int along = horizontal ? 1 : width;
+                int alongPos = horizontal ? x : y;
+                int alongMax = horizontal ? width : height;
+                int luma1 = horizontal ? north : west;
+                int luma2 = horizontal ? south : east;
+                int gradient1 = Math.abs(luma1 - m);
+                int gradient2 = Math.abs(luma2 - m);
+                int pair;
+                float localAverage;
+                if (gradient1 >= gradient2) {
+                    pair = -across;
+                    localAverage = 0.5f * (luma1 + m);
+                } else {
+                    pair = across;
+                    localAverage = 0.5f * (luma2 + m);
+                }
+                float gradientScaled = 0.25f * Math.max(gradient1, gradient2);
+
+                // Search for the ends of the edge
+                int d1 = 0;
+                float end1 = 0f;
+                while (d1 < FXAA_SEARCH_STEPS && alongPos - d1 > 0) {
+                    d1++;
+                    int q = pos - d1 * along;
+                    end1 = 0.5f * ((luma[q] & 0xff) + (luma[q + pair] & 0xff)) - localAverage;
+                    if (Math.abs(end1) >= gradientScaled) {
+                        break;
+                    }
+                }
+                int d2 = 0;
+                float end2 = 0f;
+                while (d2 < FXAA_SEARCH_STEPS && alongPos + d2 < alongMax - 1) {
+                    d2++;
+                    int q = pos + d2 * along;
+                    end2 = 0.5f * ((luma[q] & 0xff) + (luma[q + pair] & 0xff)) - localAverage;
+                    if (Math.abs(end2) >= gradientScaled) {
+                        break;
+                    }
+                }
+                float offset = 0f;
+                if (d1 + d2 > 0) {
+                    float nearestEnd = d1 < d2 ? end1 : end2;
+                    if ((m - localAverage < 0) != (nearestEnd < 0)) {
+                        offset = 0.5f - Math.min(d1, d2) / (float) (d1 + d2);
+                    }
+                }
+                offset = Math.max(offset, subpix);
+                if (offset > 0f) {
+                    pixel[pos] = blend(src[pos], src[pos + pair], (int) (offset * 256));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the depth at the specified position is not a linear
+     * continuation of the depth of its neighbours.
+     */
+    private boolean isDepthEdge(@Nonnull int[] zBuffer, int pos) {
+        int z = zBuffer[pos];
+        int threshold = Math.max(16, z >> 12);
+        return Math.abs(zBuffer[pos - 1] + zBuffer[pos + 1] - 2 * z) > threshold
+                || Math.abs(zBuffer[pos - width] + zBuffer[pos + width] - 2 * z) > threshold;
+    }
+
+    /**
+     * Blends two colors.
+     *
+     * @param weight the weight of color b, from 0 to 256
+     */
+    private static int blend(int a, int b, int weight) {
+        int inverse = 256 - weight;
+        return ((((a & 0xff00ff) * inverse + (b & 0xff00ff) * weight) >>> 8) & 0xff00ff)
+                | ((((a & 0xff00) * inverse + (b & 0xff00) * weight) >>> 8) & 0xff00)
+                | ((((a >>> 24) * inverse + (b >>> 24) * weight) << 16) & 0xff000000);
+    }
+
     // IMAGE OVERLAYING
     public void draw(idx3d_Texture texture, int posx, int posy, int xsize, int ysize) {
         draw(pixel, width, height, texture, posx, posy, xsize, ysize);
@@ -47,7 +47,6 @@ public class idx3d_TextureFactory {
     public final static float deg2rad = pi / 180;
     private static float[][] noiseBuffer;
     private static boolean noiseBufferInitialized = false;
-    static int minx, maxx, miny, maxy;
 
     // C O N S T R U C T O R S
 
@@ -154,7 +154,11 @@ public class idx3d_Triangle {
     public void project(@Nonnull idx3d_Matrix normalProjection) {
         n.transformInto(normalProjection, n2);
         dist = getDist();
+        projectTexture();
+    }
 
+    /** Computes the absolute texture coordinates. */
+    void projectTexture() {
         idx3d_InternalMaterial material;
         idx3d_Texture texture;
         if ((material = getMaterial()) != null
@@ -0,0 +1,224 @@
+// | -----------------------------------------------------------------
+// | idx3d III is (c)1999/2000 by Peter Walser
+// | -----------------------------------------------------------------
+// | idx3d is a 3d engine written in 100% pure Java (1.1 compatible)
+// | and provides a fast and flexible API for software 3d rendering
+// | on the Java platform.
+// |
+// | Feel free to use the idx3d API / classes / source code for
+// | non-commercial purposes (of course on your own risk).
+// | If you intend to use idx3d for commercial purposes, please
+// | contact me with an e-mail [proxima@active.ch].
+// |
+// | Thanx & greetinx go to:
+// | * Wilfred L. Guerin, 	for testing, bug report, and tons 
+// |			of brilliant suggestions
+// | * Sandy McArthur,	for reverse loops
+// | * Dr. Douglas Lyons,	for mentioning idx3d1 in his book
+// | * Hugo Elias,		for maintaining his great page
+// | * the comp.graphics.algorithms people, 
+// | 			for scientific concerns
+// | * Tobias Hill,		for inspiration and awakening my
+// |			interest in java gfx coding
+// | * Kai Krause,		for inspiration and hope
+// | * Incarom & Parisienne,	for keeping me awake during the 
+// |			long coding nights
+// | * Doris Langhard,	for being the sweetest girl on earth
+// | * Etnica, Infinity Project, X-Dream and "Space Night"@BR3
+// | 			for great sound while coding
+// | and all coderz & scenerz out there (keep up the good work, ppl :)
+// |
+// | Peter Walser
+// | proxima@active.ch
+// | http://www2.active.ch/~proxima
+// | "On the eigth day, God started debugging"
+// | -----------------------------------------------------------------
+
+package idx3d;
+
+import org.jhotdraw.annotation.Nonnull;
+
+import java.util.Arrays;
+
+/**
+ * A queue of triangles, which is sorted by depth without allocating memory.
+ * <p>
+ * The queue holds the triangles in the order in which they were added, and
+ * an index buffer with the sorted order. The buffers are reused from frame
+ * to frame. The depth of a triangle is quantized over the depth range of
+ * the queue, and sorted with a radix sort. Triangles with the same
+ * quantized depth keep the order in which they were added.
+ * <p>
+ * The geometry of a scene changes little between frames. If the queue
+ * holds the same triangles as in the previous frame, the sorted order of
+ * the previous frame is repaired with an insertion sort, provided that
+ * only a few triangles have moved.
+ */
+final class idx3d_TriangleQueue {
+    private final static int RADIX_BITS = 8;
+    private final static int RADIX = 1 << RADIX_BITS;
+
+    /** The triangles in the order in which they were added. */
+    @Nonnull
+    private idx3d_Triangle[] triangles = new idx3d_Triangle[64];
+    private int size;
+    /** The triangles of the previous frame. */
+    @Nonnull
+    private idx3d_Triangle[] previousTriangles = new idx3d_Triangle[64];
+    /** The number of triangles of the previous frame, -1 if order does
+     * not hold the sorted order of the previous frame. */
+    private int previousSize = -1;
+    /** The quantized depth of the triangles. */
+    @Nonnull
+    private int[] keys = new int[64];
+    /** The sorted order, as indices into triangles. */
+    @Nonnull
+    private int[] order = new int[64];
+    @Nonnull
+    private int[] scratch = new int[64];
+    @Nonnull
+    private final int[] counts = new int[RADIX];
+
+    void clear() {
+        size = 0;
+    }
+
+    void add(@Nonnull idx3d_Triangle tri) {
+        if (size == triangles.length) {
+            triangles = Arrays.copyOf(triangles, size * 2);
+        }
+        triangles[size++] = tri;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the i-th triangle in sorted order.
+     */
+    @Nonnull
+    idx3d_Triangle get(int i) {
+        return triangles[order[i]];
+    }
+
+    /**
+     * Sorts the triangles from back to front, with the depth quantized to
+     * 16 bits.
+     */
+    void sortBackToFront() {
+        sort(false, 2 * RADIX_BITS);
+    }
+
+    /**
+     * Sorts the triangles from front to back into buckets of similar
+     * depth. Since the order within a bucket does not matter for a
+     * z-buffer, the depth is quantized to 8 bits.
+     */
+    void sortFrontToBack() {
+        sort(true, RADIX_BITS);
+    }
+
+    private void sort(boolean frontToBack, int keyBits) {
+        if (keys.length < size) {
+            int capacity = triangles.length;
+            keys = new int[capacity];
+            order = new int[capacity];
+            scratch = new int[capacity];
+            previousSize = -1;
+        }
+        computeKeys(frontToBack, keyBits);
+        if (!isSameAsPreviousFrame() || !repairOrder()) {
+            radixSort(keyBits);
+        }
+
+        // Remember the triangles for the next frame
+        if (previousTriangles.length < triangles.length) {
+            previousTriangles = new idx3d_Triangle[triangles.length];
+        }
+        System.arraycopy(triangles, 0, previousTriangles, 0, size);
+        if (previousSize > size) {
+            Arrays.fill(previousTriangles, size, previousSize, null);
+        }
+        previousSize = size;
+    }
+
+    private void computeKeys(boolean frontToBack, int keyBits) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            float dist = triangles[i].dist;
+            min = Math.min(min, dist);
+            max = Math.max(max, dist);
+        }
+        int maxKey = (1 << keyBits) - 1;
+        float scale = max > min ? maxKey / (max - min) : 0f;
+        for (int i = 0; i < size; i++) {
+            int key = Math.min(maxKey, (int) ((triangles[i].dist - min) * scale));
+            keys[i] = frontToBack ? key : maxKey - key;
+        }
+    }
+
+    private boolean isSameAsPreviousFrame() {
+        if (previousSize != size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (triangles[i] != previousTriangles[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the order of the previous frame with an insertion sort.
+     * Gives up if too many triangles have moved.
+     *
+     * @return true on success
+     */
+    private boolean repairOrder() {
+        int budget = size;
+        for (int i = 1; i < size; i++) {
+            int index = order[i];
+            int key = keys[index];
+            int j = i - 1;
+            while (j >= 0 && (keys[order[j]] > key || keys[order[j]] == key && order[j] > index)) {
+                order[j + 1] = order[j];
+                j--;
+                if (--budget < 0) {
+                    return false;
+                }
+            }
+            order[j + 1] = index;
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the triangles with a least significant digit radix sort.
+     */
+    private void radixSort(int keyBits) {
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        for (int shift = 0; shift < keyBits; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[(keys[i] >>> shift) & (RADIX - 1)]++;
+            }
+            for (int d = 0, sum = 0; d < RADIX; d++) {
+                int count = counts[d];
+                counts[d] = sum;
+                sum += count;
+            }
+            for (int i = 0; i < size; i++) {
+                int index = order[i];
+                scratch[counts[(keys[index] >>> shift) & (RADIX - 1)]++] = index;
+            }
+            int[] swap = order;
+            order = scratch;
+            scratch = swap;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * @(#)BatchCubeVectorKernel.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.cube;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+import org.jhotdraw.annotation.Nonnull;
+import org.jhotdraw.annotation.Nullable;
+
+/**
+ * Applies moves to the cubes of a {@link BatchCube} with vector shuffles.
+ * <p>
+ * The parts of one kind of a cube are loaded into a single byte vector,
+ * rearranged with the shuffle of the move, and stored back. Kinds of parts
+ * which do not fit into a single vector are composed with the scalar loop
+ * of {@link BatchCube}.
+ * <p>
+ * This class references the {@code jdk.incubator.vector} module. It must
+ * only be loaded if the module is present. It is not compiled by default,
+ * see the {@code vector} profile in {@code pom.xml}.
+ *
+ * @author Werner Randelshofer
+ */
+final class BatchCubeVectorKernel implements BatchCubeKernel {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int CORNERS = 0;
+    private static final int EDGES = 1;
+    private static final int SIDES = 2;
+    private static final int[] MODULOS = {3, 2, 4};
+
+    @Nonnull
+    private final BatchCube batch;
+    @Nonnull
+    private final int[] counts;
+    /**
+     * Whether the parts of a kind fit into a single vector.
+     */
+    @Nonnull
+    private final boolean[] fits;
+    /**
+     * The lanes which hold parts of a kind.
+     */
+    @Nonnull
+    private final VectorMask<Byte>[] masks;
+    /**
+     * Caches the shuffles and orientation vectors of the moves, indexed by
+     * kind of part and move index.
+     */
+    @Nonnull
+    private final Step[][] steps;
+
+    /**
+     * The shuffle and the orientation changes of a move on one kind of parts.
+     */
+    private static class Step {
+        @Nonnull
+        final VectorShuffle<Byte> shuffle;
+        @Nonnull
+        final ByteVector orient;
+
+        Step(@Nonnull int[] txLoc, @Nonnull int[] txOrient) {
+            int[] indices = new int[SPECIES.length()];
+            byte[] orients = new byte[SPECIES.length()];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = i < txLoc.length ? txLoc[i] : i;
+                orients[i] = i < txLoc.length ? (byte) txOrient[i] : 0;
+            }
+            shuffle = VectorShuffle.fromArray(SPECIES, indices, 0);
+            orient = ByteVector.fromArray(SPECIES, orients, 0);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    BatchCubeVectorKernel(@Nonnull BatchCube batch) {
+        this.batch = batch;
+        counts = new int[]{batch.getCornerCount(), batch.getEdgeCount(), batch.getSideCount()};
+        fits = new boolean[3];
+        masks = (VectorMask<Byte>[]) new VectorMask<?>[3];
+        steps = new Step[3][];
+        for (int k = 0; k < 3; k++) {
+            fits[k] = counts[k] > 0 && counts[k] <= SPECIES.length();
+            masks[k] = SPECIES.indexInRange(0, counts[k]);
+            steps[k] = new Step[(3 << batch.getLayerCount()) << 2];
+        }
+    }
+
+    /**
+     * Applies a permutation to a cube of the batch.
+     *
+     * @param cube      the index of the cube in the batch
+     * @param tx        the permutation
+     * @param moveIndex the index of the permutation in the move table,
+     *                  or -1 if the permutation is not in the move table
+     */
+    @Override
+    public void transform(int cube, @Nonnull CubePermutation tx, int moveIndex) {
+        transform(CORNERS, batch.cornerLoc, batch.cornerOrient, cube, tx.cornerLoc, tx.cornerOrient, moveIndex);
+        transform(EDGES, batch.edgeLoc, batch.edgeOrient, cube, tx.edgeLoc, tx.edgeOrient, moveIndex);
+        transform(SIDES, batch.sideLoc, batch.sideOrient, cube, tx.sideLoc, tx.sideOrient, moveIndex);
+    }
+
+    private void transform(int kind, @Nonnull byte[] loc, @Nonnull byte[] orient, int cube,
+                           @Nonnull int[] txLoc, @Nonnull int[] txOrient, int moveIndex) {
+        int count = counts[kind];
+        int offset = cube * count;
+        if (!fits[kind]) {
+            BatchCube.compose(loc, orient, offset, txLoc, txOrient, MODULOS[kind], batch.tmpLoc, batch.tmpOrient);
+            return;
+        }
+
+        Step step = getStep(kind, txLoc, txOrient, moveIndex);
+        VectorMask<Byte> mask = masks[kind];
+        ByteVector.fromArray(SPECIES, loc, offset, mask)
+                .rearrange(step.shuffle)
+                .intoArray(loc, offset, mask);
+        ByteVector o = ByteVector.fromArray(SPECIES, orient, offset, mask)
+                .rearrange(step.shuffle)
+                .add(step.orient);
+        int modulo = MODULOS[kind];
+        if (modulo == 4) {
+            o = o.and((byte) 3);
+        } else {
+            o = o.sub((byte) modulo, o.compare(VectorOperators.GE, (byte) modulo));
+        }
+        o.intoArray(orient, offset, mask);
+    }
+
+    @Nonnull
+    private Step getStep(int kind, @Nonnull int[] txLoc, @Nonnull int[] txOrient, int moveIndex) {
+        if (moveIndex == -1) {
+            return new Step(txLoc, txOrient);
+        }
+        @Nullable Step step = steps[kind][moveIndex];
+        if (step == null) {
+            step = new Step(txLoc, txOrient);
+            steps[kind][moveIndex] = step;
+        }
+        return step;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * @(#)PNGWriterTest.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.io;
+
+import org.jhotdraw.annotation.Nonnull;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * PNGWriterTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class PNGWriterTest {
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testWrite() {
+        return Arrays.asList(
+                dynamicTest("1x1", () -> doTestWrite(1, 1, 0, 1, 9)),
+                dynamicTest("random", () -> doTestWrite(37, 23, 0, 37, 6)),
+                dynamicTest("stride", () -> doTestWrite(16, 9, 5, 20, 1)),
+                dynamicTest("stored", () -> doTestWrite(64, 48, 3, 70, 0))
+        );
+    }
+
+    /**
+     * Writes random pixels and reads them back.
+     */
+    private void doTestWrite(int width, int height, int offset, int scanlineStride, int level) throws Exception {
+        Random r = new Random(width * 31 + height);
+        int[] pixels = new int[offset + height * scanlineStride];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (i % 3 == 0) ? 0x80112233 : r.nextInt();
+        }
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        new PNGWriter(level).write(buf, pixels, offset, scanlineStride, width, height);
+
+        BufferedImage img = ImageIO.read(new ByteArrayInputStream(buf.toByteArray()));
+        assertEquals(width, img.getWidth());
+        assertEquals(height, img.getHeight());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(0xff000000 | pixels[offset + y * scanlineStride + x], img.getRGB(x, y), "x=" + x + " y=" + y);
+            }
+        }
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testIllegalArguments() {
+        return Arrays.asList(
+                dynamicTest("level", () -> assertThrows(IllegalArgumentException.class, () -> new PNGWriter(10))),
+                dynamicTest("size", () -> assertThrows(IllegalArgumentException.class,
+                        () -> new PNGWriter().write(new ByteArrayOutputStream(), new int[0], 0, 0, 0, 0)))
+        );
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * @(#)SpriteSheetThumbnailOutputTest.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik;
+
+import ch.randelshofer.io.PNGWriter;
+import org.jhotdraw.annotation.Nonnull;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * SpriteSheetThumbnailOutputTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class SpriteSheetThumbnailOutputTest {
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testWrite() {
+        return Arrays.asList(
+                dynamicTest("one sheet", () -> doTestWrite(5, 3, 2, false)),
+                dynamicTest("two sheets", () -> doTestWrite(7, 2, 2, false)),
+                dynamicTest("decoded", () -> doTestWrite(3, 2, 2, true))
+        );
+    }
+
+    /**
+     * Writes images of uniform color, and checks the pixels of the sheets
+     * at the positions given by the index file.
+     */
+    private void doTestWrite(int count, int columns, int rows, boolean pngOnly) throws Exception {
+        int w = 4, h = 3;
+        Path dir = Files.createTempDirectory("sprites");
+        try (SpriteSheetThumbnailOutput out = new SpriteSheetThumbnailOutput(dir, "s", columns, rows)) {
+            for (int i = 0; i < count; i++) {
+                int[] pixels = new int[w * h];
+                Arrays.fill(pixels, 0xff000000 | (i * 0x102030));
+                ByteArrayOutputStream png = new ByteArrayOutputStream();
+                new PNGWriter().write(png, pixels, 0, w, w, h);
+                out.write("img" + i, png.toByteArray(), pngOnly ? null : pixels, w, h);
+            }
+        }
+
+        List<String> index = Files.readAllLines(dir.resolve("s.tsv"), StandardCharsets.UTF_8);
+        assertEquals(count, index.size());
+        for (int i = 0; i < count; i++) {
+            String[] fields = index.get(i).split("\t");
+            assertEquals("img" + i, fields[0]);
+            BufferedImage sheet = ImageIO.read(dir.resolve(fields[1]).toFile());
+            int x = Integer.parseInt(fields[2]);
+            int y = Integer.parseInt(fields[3]);
+            assertEquals(0xff000000 | (i * 0x102030), sheet.getRGB(x + w - 1, y + h - 1), "img" + i);
+        }
+        int perSheet = columns * rows;
+        int lastRows = ((count - 1) % perSheet) / columns + 1;
+        String lastSheet = index.get(count - 1).split("\t")[1];
+        assertEquals(lastRows * h, ImageIO.read(dir.resolve(lastSheet).toFile()).getHeight());
+    }
+}
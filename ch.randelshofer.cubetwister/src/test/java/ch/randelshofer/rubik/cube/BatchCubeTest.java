@@ -0,0 +1,97 @@
+/*
+ * @(#)BatchCubeTest.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.cube;
+
+import org.jhotdraw.annotation.Nonnull;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * BatchCubeTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class BatchCubeTest {
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testRandomWalk() {
+        List<DynamicTest> list = new ArrayList<>();
+        for (int layerCount = 2; layerCount <= 7; layerCount++) {
+            int n = layerCount;
+            list.add(dynamicTest(n + "x" + n + " scalar", () -> doTestRandomWalk(n, false)));
+            list.add(dynamicTest(n + "x" + n + " vector", () -> doTestRandomWalk(n, true)));
+        }
+        return list;
+    }
+
+    /**
+     * Applies different random moves to the cubes of a batch and compares
+     * them with cubes to which the same moves have been applied.
+     */
+    private void doTestRandomWalk(int layerCount, boolean useVectors) {
+        int size = 5;
+        BatchCube batch = new BatchCube(layerCount, size, useVectors);
+        Cube[] expected = new Cube[size];
+        for (int c = 0; c < size; c++) {
+            expected[c] = CubeFactory.create(layerCount);
+            assertTrue(batch.isSolved(c));
+        }
+
+        Random r = new Random(layerCount);
+        int[] axes = new int[size];
+        int[] layerMasks = new int[size];
+        int[] angles = new int[size];
+        for (int step = 0; step < 40; step++) {
+            for (int c = 0; c < size; c++) {
+                axes[c] = r.nextInt(3);
+                layerMasks[c] = r.nextInt(1 << layerCount);
+                angles[c] = r.nextInt(5) - 2;
+                expected[c].transform(axes[c], layerMasks[c], angles[c]);
+            }
+            batch.transform(axes, layerMasks, angles);
+        }
+
+        for (int c = 0; c < size; c++) {
+            Cube actual = CubeFactory.create(layerCount);
+            actual.transform(batch.toPermutation(c));
+            assertEquals(expected[c], actual);
+            assertEquals(expected[c].isSolved(), batch.isSolved(c));
+        }
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testPermutation() {
+        List<DynamicTest> list = new ArrayList<>();
+        for (boolean useVectors : new boolean[]{false, true}) {
+            list.add(dynamicTest("vector=" + useVectors, () -> {
+                Cube cube = new RubiksCube();
+                cube.transform(0, 4, 1);
+                cube.transform(1, 4, 1);
+                CubePermutation p = new CubePermutation(cube);
+
+                BatchCube batch = new BatchCube(3, 2, useVectors);
+                batch.setTo(1, p);
+                assertTrue(batch.isSolved(0));
+                assertFalse(batch.isSolved(1));
+                assertEquals(p, batch.toPermutation(1));
+                for (int i = 1; i < 105; i++) {
+                    batch.transform(1, p);
+                }
+                assertEquals(p.power(105), batch.toPermutation(1));
+            }));
+        }
+        return list;
+    }
+}
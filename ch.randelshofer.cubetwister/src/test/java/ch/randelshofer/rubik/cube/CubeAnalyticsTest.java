@@ -0,0 +1,83 @@
+/*
+ * @(#)CubeAnalyticsTest.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.cube;
+
+import ch.randelshofer.rubik.notation.DefaultScriptNotation;
+import ch.randelshofer.rubik.notation.ScriptNotation;
+import ch.randelshofer.rubik.parser.MoveMetrics;
+import ch.randelshofer.rubik.parser.ScriptParser;
+import ch.randelshofer.rubik.parser.ast.Node;
+import org.jhotdraw.annotation.Nonnull;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * CubeAnalyticsTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class CubeAnalyticsTest {
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testAnalyzeScripts() {
+        return Arrays.asList(
+                dynamicTest("3", () -> doTestAnalyzeScripts(3, "R U R' U'", "(R U R' U')3", "[R,U]", "U2 D2 R L B2 D2 F2 B2 U2 F2 R' L'")),
+                dynamicTest("4", () -> doTestAnalyzeScripts(4, "MU2 F2 WR- WF- WR F2 MU2 WR- WF WR", "MR2 WD2 MR2 F2 WD2 F2 MD2")),
+                dynamicTest("6", () -> doTestAnalyzeScripts(6, "U- D- · NR- NL · ND2 WR MD2 M2R- · U D · M2R MD2 WR- ND2 · NR NL-"))
+        );
+    }
+
+    /**
+     * Analyzes the scripts in bulk and compares the results with the
+     * values computed one script at a time.
+     */
+    private void doTestAnalyzeScripts(int layerCount, @Nonnull String... scripts) throws Exception {
+        ScriptNotation notation = new DefaultScriptNotation(layerCount);
+        ScriptParser parser = new ScriptParser(notation);
+        CubeAnalytics.Result actual = new CubeAnalytics(notation).analyzeScripts(Stream.of(scripts));
+
+        assertEquals(scripts.length, actual.size());
+        for (int i = 0; i < scripts.length; i++) {
+            Node ast = parser.parse(scripts[i]);
+            Cube cube = CubeFactory.create(layerCount);
+            ast.applyTo(cube, false);
+            MoveMetrics mm = new MoveMetrics(false);
+            mm.accept(ast);
+
+            assertEquals(Cubes.getOrder(cube), actual.getOrder(i), scripts[i]);
+            assertEquals(Cubes.getVisibleOrder(cube), actual.getVisibleOrder(i), scripts[i]);
+            assertEquals(Cubes.toPermutationString(cube, notation), actual.getPermutation(i), scripts[i]);
+            assertEquals(mm.getBlockTurnCount(), actual.getBlockTurnCount(i), scripts[i]);
+            assertEquals(mm.getLayerTurnCount(), actual.getLayerTurnCount(i), scripts[i]);
+            assertEquals(mm.getFaceTurnCount(), actual.getFaceTurnCount(i), scripts[i]);
+            assertEquals(mm.getQuarterTurnCount(), actual.getQuarterTurnCount(i), scripts[i]);
+            assertEquals(mm.getMoveCount(), actual.getMoveCount(i), scripts[i]);
+        }
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testParseError() {
+        return Arrays.asList(
+                dynamicTest("1", () -> {
+                    CubeAnalytics.Result actual = new CubeAnalytics(new DefaultScriptNotation(3))
+                            .analyzeScripts(Stream.of("R", "[R,", "U"));
+                    assertTrue(actual.hasErrors());
+                    assertTrue(actual.getError(0) == null);
+                    assertTrue(actual.getError(1) != null);
+                    assertTrue(actual.getError(2) == null);
+                    assertEquals(4, actual.getOrder(2));
+                })
+        );
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * @(#)CubePermutationTest.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.cube;
+
+import ch.randelshofer.rubik.notation.DefaultScriptNotation;
+import ch.randelshofer.rubik.parser.ScriptParser;
+import ch.randelshofer.rubik.parser.ast.Node;
+import org.jhotdraw.annotation.Nonnull;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * CubePermutationTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class CubePermutationTest {
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testCompile() {
+        return Arrays.asList(
+                dynamicTest("sequence", () -> doTestCompile(3, "R U R' U'")),
+                dynamicTest("repetition", () -> doTestCompile(3, "(R U R' U')5")),
+                dynamicTest("nested repetition", () -> doTestCompile(3, "((R U)3 F)7 B2")),
+                dynamicTest("repetition 0", () -> doTestCompile(3, "(R U)0 F")),
+                dynamicTest("inversion", () -> doTestCompile(3, "(R U F)' D")),
+                dynamicTest("commutation", () -> doTestCompile(3, "[R, U]")),
+                dynamicTest("conjugation", () -> doTestCompile(3, "<R>U")),
+                dynamicTest("rotation", () -> doTestCompile(3, "<R>'U")),
+                dynamicTest("reflection", () -> doTestCompile(3, "(R U F)*")),
+                dynamicTest("permutation", () -> doTestCompile(3, "(+urf,bru) (ur,ub,ul)")),
+                dynamicTest("4x4", () -> doTestCompile(4, "(MU2 F2 WR- WF- WR F2 MU2 WR- WF WR)3")),
+                dynamicTest("6x6", () -> doTestCompile(6, "U- D- · NR- NL · ND2 WR MD2 M2R- · U D · M2R MD2 WR- ND2 · NR NL-"))
+        );
+    }
+
+    /**
+     * Compares the compiled permutation of a script with the state of a
+     * cube to which the script has been applied move by move.
+     */
+    private void doTestCompile(int layerCount, String script) throws Exception {
+        Node node = new ScriptParser(new DefaultScriptNotation(layerCount)).parse(script);
+        Cube expected = CubeFactory.create(layerCount);
+        node.applyTo(expected, false);
+
+        Cube actual = CubeFactory.create(layerCount);
+        actual.transform(node.compile(layerCount));
+        assertEquals(expected, actual, script);
+
+        Cube inverse = CubeFactory.create(layerCount);
+        node.applyTo(inverse, true);
+        assertEquals(new CubePermutation(inverse), node.compile(layerCount).inverse(), script);
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testPower() {
+        return Arrays.asList(
+                dynamicTest("0", () -> doTestPower("R U R' U'", 0)),
+                dynamicTest("1", () -> doTestPower("R U R' U'", 1)),
+                dynamicTest("13", () -> doTestPower("R U R' U'", 13)),
+                dynamicTest("-13", () -> doTestPower("R U F", -13)),
+                dynamicTest("105", () -> doTestPower("R U F", 105))
+        );
+    }
+
+    /**
+     * Compares the power of a compiled permutation with repeated
+     * application of the script.
+     */
+    private void doTestPower(String script, int exponent) throws Exception {
+        Node node = new ScriptParser(new DefaultScriptNotation(3)).parse(script);
+        Cube expected = new RubiksCube();
+        for (int i = 0; i < Math.abs(exponent); i++) {
+            node.applyTo(expected, exponent < 0);
+        }
+
+        CubePermutation p = node.compile(3).power(exponent);
+        Cube actual = new RubiksCube();
+        p.applyTo(actual);
+        assertEquals(expected, actual);
+        assertEquals(exponent == 0, p.isIdentity());
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testLargeRepeatCount() {
+        return Arrays.asList(
+                dynamicTest("1000000", () -> {
+                    // the order of R U R' U' is 6
+                    Node node = new ScriptParser(new DefaultScriptNotation(3)).parse("(R U R' U')1000000");
+                    CubePermutation p = node.compile(3);
+                    Cube expected = new RubiksCube();
+                    new ScriptParser(new DefaultScriptNotation(3)).parse("(R U R' U')4").applyTo(expected, false);
+                    Cube actual = new RubiksCube();
+                    actual.transform(p);
+                    assertEquals(expected, actual);
+                    assertTrue(node.compile(3).power(6).isIdentity());
+                })
+        );
+    }
+}
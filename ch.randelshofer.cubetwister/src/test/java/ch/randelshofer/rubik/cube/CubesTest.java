@@ -17,6 +17,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestFactory;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.Arrays;
 import java.util.List;
 
@@ -186,6 +187,10 @@ public class CubesTest {
         System.out.println("  expected: " + expected);
         System.out.println("  actual: " + actual);
         assertEquals(expected, actual);
+
+        StringWriter w = new StringWriter();
+        new PermutationStringWriter(notation).writePermutation(cube, w);
+        assertEquals(expected, w.toString());
     }
 
     /**
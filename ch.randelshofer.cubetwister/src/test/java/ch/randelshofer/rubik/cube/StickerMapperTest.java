@@ -0,0 +1,109 @@
+/*
+ * @(#)StickerMapperTest.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.cube;
+
+import ch.randelshofer.rubik.notation.DefaultScriptNotation;
+import ch.randelshofer.rubik.parser.ScriptParser;
+import org.jhotdraw.annotation.Nonnull;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * StickerMapperTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class StickerMapperTest {
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testRoundTrip() {
+        List<DynamicTest> list = new ArrayList<>();
+        for (int layerCount = 2; layerCount <= 7; layerCount++) {
+            int n = layerCount;
+            list.add(dynamicTest(n + "x" + n, () -> doTestRoundTrip(n, "(R U F' L2 D B')3 R2")));
+        }
+        return list;
+    }
+
+    /**
+     * Converts a scrambled cube to stickers and back, and checks that the
+     * stickers of the new cube are the same.
+     */
+    private void doTestRoundTrip(int layerCount, String script) throws Exception {
+        StickerMapper mapper = StickerMapper.getInstance(layerCount);
+        Cube cube = CubeFactory.create(layerCount);
+        int[] solved = mapper.toStickers(cube);
+        for (int i = 0; i < solved.length; i++) {
+            assertEquals(i / (layerCount * layerCount), solved[i], "solved sticker " + i);
+        }
+
+        new ScriptParser(new DefaultScriptNotation(layerCount)).parse(script).applyTo(cube, false);
+        int[] stickers = mapper.toStickers(cube);
+        Cube actual = CubeFactory.create(layerCount);
+        mapper.setToStickers(actual, stickers);
+        assertArrayEquals(stickers, mapper.toStickers(actual));
+
+        byte[] byteStickers = new byte[mapper.getStickerCount()];
+        mapper.writeStickers(cube, byteStickers);
+        for (int i = 0; i < stickers.length; i++) {
+            assertEquals(stickers[i], byteStickers[i]);
+        }
+
+        mapper.setToStickers(actual, solved);
+        assertTrue(actual.isSolved());
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testRubiksCube() {
+        return Arrays.asList(
+                dynamicTest("R", () -> doTestRubiksCube("R")),
+                dynamicTest("superflip", () -> doTestRubiksCube("R L U2 F U' D F2 R2 B2 L U2 F' B' U R2 D F2 U R2 U")),
+                dynamicTest("corners", () -> doTestRubiksCube("(+urf) (-dbl) (ubr,ulb)"))
+        );
+    }
+
+    /**
+     * Compares the stickers with the stickers computed by
+     * {@link StickerCubes#rubiksCubeToStickers}.
+     */
+    private void doTestRubiksCube(String script) throws Exception {
+        RubiksCube cube = new RubiksCube();
+        new ScriptParser(new DefaultScriptNotation(3)).parse(script).applyTo(cube, false);
+        int[][] expected = StickerCubes.rubiksCubeToStickers(cube);
+        assertArrayEquals(expected, StickerCubes.toStickers(cube));
+
+        RubiksCube actual = new RubiksCube();
+        StickerMapper.getInstance(3).setToStickers(actual, StickerMapper.getInstance(3).toStickers(cube));
+        // the orientation of the side parts can not be seen on the stickers
+        assertArrayEquals(cube.getCornerLocations(), actual.getCornerLocations());
+        assertArrayEquals(cube.getCornerOrientations(), actual.getCornerOrientations());
+        assertArrayEquals(cube.getEdgeLocations(), actual.getEdgeLocations());
+        assertArrayEquals(cube.getEdgeOrientations(), actual.getEdgeOrientations());
+        assertArrayEquals(cube.getSideLocations(), actual.getSideLocations());
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testInvalidStickers() {
+        return Arrays.asList(
+                dynamicTest("corner", () -> {
+                    int[] stickers = StickerMapper.getInstance(3).toStickers(new RubiksCube());
+                    stickers[0] = stickers[2 * 9];
+                    assertThrows(IllegalArgumentException.class, () -> StickerMapper.getInstance(3).setToStickers(new RubiksCube(), stickers));
+                })
+        );
+    }
+}
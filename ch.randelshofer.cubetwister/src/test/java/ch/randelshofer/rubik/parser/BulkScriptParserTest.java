@@ -0,0 +1,111 @@
+/*
+ * @(#)BulkScriptParserTest.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.parser;
+
+import ch.randelshofer.io.ParseException;
+import ch.randelshofer.rubik.notation.DefaultScriptNotation;
+import ch.randelshofer.rubik.parser.ast.MacroNode;
+import ch.randelshofer.rubik.parser.ast.Node;
+import org.jhotdraw.annotation.Nonnull;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * BulkScriptParserTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class BulkScriptParserTest {
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testParse() {
+        return Arrays.asList(
+                dynamicTest("empty", () -> doTestParse(new ArrayList<>(), false)),
+                dynamicTest("valid", () -> doTestParse(Arrays.asList("R U R' U'", "(R U)3", "[R, U]", ""), false)),
+                dynamicTest("invalid", () -> doTestParse(Arrays.asList("R U", "R (U", "F)", "<R>U", "R Q"), false)),
+                dynamicTest("macros", () -> doTestParse(Arrays.asList("sexy", "sexy' R", "(sexy)2"), false)),
+                dynamicTest("resolving", () -> doTestParse(Arrays.asList("R U", "R (U", "(sexy)6"), true)),
+                dynamicTest("many", () -> doTestParse(randomScripts(2000), false))
+        );
+    }
+
+    /**
+     * Compares the results of the bulk parser with the results of a single
+     * parser.
+     */
+    private void doTestParse(@Nonnull List<String> scripts, boolean resolving) throws Exception {
+        DefaultScriptNotation notation = new DefaultScriptNotation();
+        List<MacroNode> macros = Arrays.asList(new MacroNode("sexy", "R U R' U'", 0, 0));
+        BulkScriptParser bulk = new BulkScriptParser(notation, macros);
+        bulk.setResolvingMoves(resolving);
+        List<BulkScriptParser.Result> results = bulk.parse(scripts);
+
+        ScriptParser parser = new ScriptParser(notation, macros);
+        assertEquals(scripts.size(), results.size());
+        for (int i = 0; i < scripts.size(); i++) {
+            BulkScriptParser.Result result = results.get(i);
+            assertEquals(i, result.getIndex());
+            assertEquals(scripts.get(i), result.getScript());
+            Node expected;
+            try {
+                expected = parser.parse(scripts.get(i));
+            } catch (ParseException e) {
+                assertNull(result.getNode(), scripts.get(i));
+                assertNull(result.getResolvedMoves(), scripts.get(i));
+                assertNotNull(result.getException(), scripts.get(i));
+                assertEquals(e.getMessage(), result.getException().getMessage(), scripts.get(i));
+                assertEquals(e.getStartPosition(), result.getException().getStartPosition(), scripts.get(i));
+                continue;
+            }
+            assertNull(result.getException(), scripts.get(i));
+            assertNotNull(result.getNode(), scripts.get(i));
+            assertEquals(expected.toString(), result.getNode().toString(), scripts.get(i));
+            assertNotNull(result.getResolvedMoves(), scripts.get(i));
+            assertEquals(expected.getResolvedMoves().toString(), result.getResolvedMoves().toString(), scripts.get(i));
+        }
+    }
+
+    @Nonnull
+    private static List<String> randomScripts(int count) {
+        String[] tokens = {"R", "U'", "F2", "sexy", "(", ")", "[", ",", "]", "'", "2"};
+        Random r = new Random(1);
+        List<String> scripts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder b = new StringBuilder();
+            for (int j = r.nextInt(12); j >= 0; j--) {
+                b.append(tokens[r.nextInt(tokens.length)]).append(' ');
+            }
+            scripts.add(b.toString());
+        }
+        return scripts;
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testParseReader() {
+        return Arrays.asList(
+                dynamicTest("lines", () -> {
+                    BulkScriptParser bulk = new BulkScriptParser(new DefaultScriptNotation());
+                    List<BulkScriptParser.Result> results = bulk.parse(new StringReader("R U\nR (U\n\nF2\n"));
+                    assertEquals(4, results.size());
+                    assertNull(results.get(0).getException());
+                    assertNotNull(results.get(1).getException());
+                    assertEquals(0, results.get(2).getNode().getChildCount());
+                    assertEquals("F2", results.get(3).getScript());
+                })
+        );
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * @(#)IncrementalScriptParserTest.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.parser;
+
+import ch.randelshofer.io.ParseException;
+import ch.randelshofer.rubik.cube.Cube;
+import ch.randelshofer.rubik.cube.CubeFactory;
+import ch.randelshofer.rubik.notation.DefaultScriptNotation;
+import ch.randelshofer.rubik.notation.ScriptNotation;
+import ch.randelshofer.rubik.notation.Symbol;
+import ch.randelshofer.rubik.notation.Syntax;
+import ch.randelshofer.rubik.parser.ast.MoveNode;
+import ch.randelshofer.rubik.parser.ast.Node;
+import ch.randelshofer.rubik.parser.ast.RepetitionNode;
+import org.jhotdraw.annotation.Nonnull;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * IncrementalScriptParserTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class IncrementalScriptParserTest {
+    @Nonnull
+    private static final String[] DEFAULT_FRAGMENTS = {
+            "R", "U", "F'", "L2", "MR", "CU", "r", "R U R' U'", "(R U)", "(R U)'", "(R U)2",
+            "[R, U]", "<R>U", "<R U>(F)", "'", "2", "3", "(", ")", "[", ",", "]", "·",
+            " ", " ", "\n", "/* c */", "// line\n", "/*", "*/", "CRU"
+    };
+    @Nonnull
+    private static final String[] MIXED_FRAGMENTS = {
+            "R", "U", "CU", "R'", "3", "*", "rot", "comm", "conj", "«", "»", "<CU>R",
+            "(R U)", "3 * R", "R rot CU", " ", " ", "\n"
+    };
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testRandomEdits() {
+        DefaultScriptNotation macros = new DefaultScriptNotation();
+        macros.putMacro("CRU", "CR CU");
+
+        DefaultScriptNotation mixed = new DefaultScriptNotation();
+        mixed.addToken(Symbol.ROTATION_OPERATOR, "rot");
+        mixed.addToken(Symbol.COMMUTATION_OPERATOR, "comm");
+        mixed.addToken(Symbol.CONJUGATION_OPERATOR, "conj");
+        mixed.addToken(Symbol.REPETITION_OPERATOR, "*");
+        mixed.addToken(Symbol.REFLECTION_BEGIN, "«");
+        mixed.addToken(Symbol.REFLECTION_END, "»");
+        mixed.putSyntax(Symbol.PERMUTATION, Syntax.PRECIRCUMFIX);
+        mixed.putSyntax(Symbol.COMMUTATION, Syntax.PREINFIX);
+        mixed.putSyntax(Symbol.CONJUGATION, Syntax.PREFIX);
+        mixed.putSyntax(Symbol.ROTATION, Syntax.POSTINFIX);
+        mixed.putSyntax(Symbol.REPETITION, Syntax.SUFFIX);
+        mixed.putSyntax(Symbol.INVERSION, Syntax.SUFFIX);
+        mixed.putSyntax(Symbol.REFLECTION, Syntax.CIRCUMFIX);
+
+        return Arrays.asList(
+                dynamicTest("default", () -> doTestRandomEdits(macros, DEFAULT_FRAGMENTS, 1)),
+                dynamicTest("4x4", () -> doTestRandomEdits(new DefaultScriptNotation(4), DEFAULT_FRAGMENTS, 2)),
+                dynamicTest("mixed", () -> doTestRandomEdits(mixed, MIXED_FRAGMENTS, 3))
+        );
+    }
+
+    /**
+     * Applies random edits to a script, and compares the results of the
+     * incremental parser with the results of a full parse.
+     */
+    private void doTestRandomEdits(@Nonnull ScriptNotation notation, @Nonnull String[] fragments, long seed) throws Exception {
+        Random r = new Random(seed);
+        IncrementalScriptParser instance = new IncrementalScriptParser();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            text.append(fragments[r.nextInt(fragments.length)]).append(' ');
+        }
+        for (int step = 0; step < 1000; step++) {
+            int pos = r.nextInt(text.length() + 1);
+            switch (r.nextInt(3)) {
+            case 0:
+                text.insert(pos, fragments[r.nextInt(fragments.length)]);
+                break;
+            case 1:
+                text.delete(pos, Math.min(text.length(), pos + 1 + r.nextInt(4)));
+                break;
+            default:
+                text.replace(pos, Math.min(text.length(), pos + 1 + r.nextInt(4)), fragments[r.nextInt(fragments.length)]);
+                break;
+            }
+            doParse(notation, instance, text.toString());
+        }
+    }
+
+    private void doParse(@Nonnull ScriptNotation notation, @Nonnull IncrementalScriptParser instance, @Nonnull String script) throws Exception {
+        ScriptParser parser = new ScriptParser(notation);
+        Node expected;
+        try {
+            expected = parser.parse(script);
+        } catch (ParseException e) {
+            try {
+                instance.parse(parser, script);
+            } catch (ParseException e2) {
+                assertEquals(e.getMessage(), e2.getMessage(), script);
+                return;
+            }
+            throw new AssertionError("should fail to parse " + script);
+        }
+        Node actual = instance.parse(parser, script);
+        assertEquals(dump(expected), dump(actual), script);
+
+        MoveMetrics expectedMetrics = new MoveMetrics();
+        expectedMetrics.accept(expected);
+        MoveMetrics actualMetrics = instance.getMetrics();
+        assertEquals(expectedMetrics.toString(), actualMetrics.toString(), script);
+        assertEquals(expectedMetrics.getFaceTurnCount(), actualMetrics.getFaceTurnCount(), script);
+        assertEquals(expectedMetrics.getQuarterTurnCount(), actualMetrics.getQuarterTurnCount(), script);
+        assertEquals(expectedMetrics.getBlockTurnCount(), actualMetrics.getBlockTurnCount(), script);
+        assertEquals(expectedMetrics.getLayerTurnCount(), actualMetrics.getLayerTurnCount(), script);
+
+        Cube expectedCube = CubeFactory.create(notation.getLayerCount());
+        expected.applyTo(expectedCube, true);
+        Cube actualCube = CubeFactory.create(notation.getLayerCount());
+        actualCube.transform(instance.getPermutation().inverse());
+        assertEquals(expectedCube, actualCube, script);
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testReuse() {
+        return Arrays.asList(
+                dynamicTest("append", () -> {
+                    DefaultScriptNotation notation = new DefaultScriptNotation();
+                    IncrementalScriptParser instance = new IncrementalScriptParser();
+                    Node first = instance.parse(new ScriptParser(notation), "R U F (R U)2 L");
+                    String firstDump = dump(first);
+                    Node second = instance.parse(new ScriptParser(notation), "R U F (R U)2 L D");
+                    assertEquals(dump(first.getChildAt(0)), dump(second.getChildAt(0)));
+                    assertEquals(dump(first.getChildAt(2)), dump(second.getChildAt(2)));
+                    assertTrue(instance.getParsedCount() <= 3);
+                    assertEquals(firstDump, dump(first));
+                    assertEquals(5, first.getChildCount());
+                }),
+                dynamicTest("insert", () -> {
+                    DefaultScriptNotation notation = new DefaultScriptNotation();
+                    IncrementalScriptParser instance = new IncrementalScriptParser();
+                    Node first = instance.parse(new ScriptParser(notation), "R U F (R U)2 L");
+                    String firstDump = dump(first);
+                    Node second = instance.parse(new ScriptParser(notation), "R B U F (R U)2 L");
+                    Node repetition = second.getChildAt(4);
+                    Node last = second.getChildAt(5);
+                    assertEquals(8, repetition.getStartPosition());
+                    assertEquals(15, last.getStartPosition());
+                    assertTrue(repetition instanceof RepetitionNode);
+                    assertTrue(last instanceof MoveNode);
+                    assertTrue(instance.getParsedCount() <= 3);
+
+                    // The previously returned syntax tree is not changed.
+                    assertEquals(firstDump, dump(first));
+                    assertEquals(6, first.getChildAt(3).getStartPosition());
+                    assertSame(first, first.getChildAt(4).getParent());
+                }),
+                dynamicTest("notation changes", () -> {
+                    DefaultScriptNotation notation = new DefaultScriptNotation();
+                    IncrementalScriptParser instance = new IncrementalScriptParser();
+                    instance.parse(new ScriptParser(notation), "R U CRU");
+                    notation.putMacro("CRU", "CR CU");
+                    Node node = instance.parse(new ScriptParser(notation), "R U CRU");
+                    assertEquals(3, instance.getParsedCount());
+                    assertEquals(3, node.getChildCount());
+                })
+        );
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testCache() {
+        return Arrays.asList(
+                dynamicTest("restore", () -> doTestCache("R U F (R U)2 L [R, U'] <R>(U F)' (+ur,uf) CRU")),
+                dynamicTest("empty", () -> doTestCache("")),
+                dynamicTest("comments", () -> doTestCache("R /* c */ U // line\n F")),
+                dynamicTest("eviction", this::doTestEviction)
+        );
+    }
+
+    /**
+     * Writes more entries than fit into a cache, and checks that the least
+     * recently used and the expired entries are evicted.
+     */
+    private void doTestEviction() throws Exception {
+        Path dir = Files.createTempDirectory("ParsedScriptCache");
+        try {
+            byte[] data = new byte[100];
+            ParsedScriptCache cache = new ParsedScriptCache(dir, 350, Duration.ofDays(1));
+            cache.put("a", data);
+            cache.put("b", data);
+            cache.put("c", data);
+            Instant now = Instant.now();
+            Files.setLastModifiedTime(dir.resolve("a.ast"), FileTime.from(now.minusSeconds(30)));
+            Files.setLastModifiedTime(dir.resolve("b.ast"), FileTime.from(now.minusSeconds(20)));
+            Files.setLastModifiedTime(dir.resolve("c.ast"), FileTime.from(now.minusSeconds(10)));
+            assertNotNull(cache.get("a"));
+            cache.put("d", data);
+            assertNotNull(cache.get("a"));
+            assertNull(cache.get("b"));
+            assertNotNull(cache.get("c"));
+            assertNotNull(cache.get("d"));
+
+            Files.setLastModifiedTime(dir.resolve("c.ast"), FileTime.from(now.minus(Duration.ofDays(2))));
+            cache.evict();
+            assertNull(cache.get("c"));
+            assertNotNull(cache.get("d"));
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                files.forEach(f -> f.toFile().delete());
+            }
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * Parses a script with a cache, restores it with another parser from
+     * the cache, and then continues to edit it.
+     */
+    private void doTestCache(@Nonnull String script) throws Exception {
+        Path dir = Files.createTempDirectory("ParsedScriptCache");
+        try {
+            DefaultScriptNotation notation = new DefaultScriptNotation();
+            notation.putMacro("CRU", "CR CU");
+            ParsedScriptCache cache = new ParsedScriptCache(dir);
+
+            IncrementalScriptParser first = new IncrementalScriptParser();
+            first.setCache(cache);
+            doParse(notation, first, script);
+            assertNotNull(cache.get(cache.getKey(new ScriptParser(notation), script)));
+
+            IncrementalScriptParser second = new IncrementalScriptParser();
+            second.setCache(cache);
+            doParse(notation, second, script);
+            assertEquals(0, second.getParsedCount());
+            doParse(notation, second, script + " D");
+            doParse(notation, second, "B " + script);
+
+            notation.putMacro("CRU", "CR CU CF");
+            IncrementalScriptParser third = new IncrementalScriptParser();
+            third.setCache(cache);
+            Node node = third.parse(new ScriptParser(notation), script);
+            assertEquals(node.getChildCount(), third.getParsedCount());
+
+            cache.clear();
+            assertNull(cache.get(cache.getKey(new ScriptParser(notation), script)));
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                files.forEach(f -> f.toFile().delete());
+            }
+            Files.delete(dir);
+        }
+    }
+
+    @Nonnull
+    private static String dump(@Nonnull Node node) {
+        StringBuilder b = new StringBuilder();
+        dump(node, b);
+        return b.toString();
+    }
+
+    private static void dump(@Nonnull Node node, @Nonnull StringBuilder b) {
+        b.append(node.getStartPosition()).append("..").append(node.getEndPosition())
+                .append(' ').append(node.getClass().getSimpleName()).append('{');
+        if (node instanceof MoveNode) {
+            MoveNode m = (MoveNode) node;
+            b.append(m.getAxis()).append(':').append(m.getLayerMask()).append(':').append(m.getAngle());
+        } else if (node instanceof RepetitionNode) {
+            b.append(((RepetitionNode) node).getRepeatCount());
+        }
+        List<Node> children = new ArrayList<>(node.getChildren());
+        for (Node child : children) {
+            b.append(' ');
+            dump(child, b);
+        }
+        b.append('}');
+    }
+}
@@ -44,6 +44,8 @@ class MoveMetricsTest {
                 DynamicTest.dynamicTest("43", () -> doAccept(3, "(R)3", 1, 1, 1, 1, 3)),
                 DynamicTest.dynamicTest("44", () -> doAccept(3, "(R)4", 0, 0, 0, 0, 4)),
                 DynamicTest.dynamicTest("51", () -> doAccept(3, "R MR L'", 0, 0, 0, 0, 3)),
+                DynamicTest.dynamicTest("52", () -> doAccept(3, "R' R' R' MR", 1, 1, 1, 1, 4)),
+                DynamicTest.dynamicTest("53", () -> doAccept(3, "SR <SR>SR NR2 (MR R')'", 4, 4, 7, 11, 7)),
                 DynamicTest.dynamicTest("101", () -> doAccept(3, "MR2 MF2 MU2", 3, 3, 6, 12, 3))
         );
     }
@@ -87,4 +89,77 @@ class MoveMetricsTest {
         assertEquals(expectedQtm, qtm);
         assertEquals(expectedCount, count);
     }
-}
\ No newline at end of file
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testAcceptCombinesChildren() {
+        return Arrays.asList(
+                DynamicTest.dynamicTest("repetition", () -> doAcceptCombinesChildren(3, "(R U)5 (R)5 (R L)4 R (R2 U)3 R")),
+                DynamicTest.dynamicTest("nested repetition", () -> doAcceptCombinesChildren(3, "((R U)2 R)3 ((R)2)3 (R (L)3)2")),
+                DynamicTest.dynamicTest("coalesced angle", () -> doAcceptCombinesChildren(3, "(R' R')2 R' MR (SR <SR>SR NR2 (MR R')')2")),
+                DynamicTest.dynamicTest("inversion", () -> doAcceptCombinesChildren(3, "R (R U)' (U R)2' R")),
+                DynamicTest.dynamicTest("commutation", () -> doAcceptCombinesChildren(3, "R [R, U] [R, L]' [R U, R] U")),
+                DynamicTest.dynamicTest("conjugation", () -> doAcceptCombinesChildren(3, "R <R>U <R U>R' <R>(L)' U")),
+                DynamicTest.dynamicTest("reflection", () -> doAcceptCombinesChildren(3, "R (R)* (R MR)* L (R U)2* (L)*")),
+                DynamicTest.dynamicTest("rotation", () -> doAcceptCombinesChildren(3, "R CR (CR R)2 [CR, R] CU (CU)3")),
+                DynamicTest.dynamicTest("permutation", () -> doAcceptCombinesChildren(3, "R (ur,uf) R (R (ur,uf))2")),
+                DynamicTest.dynamicTest("4x4", () -> doAcceptCombinesChildren(4, "R NR (NR R)3* [NR, R]' <NR>(NL)2"))
+        );
+    }
+
+    /**
+     * Compares the metrics of a script with the metrics of its resolved
+     * moves, with and without coalescing.
+     */
+    private void doAcceptCombinesChildren(int layerCount, String script) throws IOException {
+        ScriptParser parser = new ScriptParser(new DefaultScriptNotation(layerCount));
+        Node ast = parser.parse(script);
+        for (boolean coalesce : new boolean[]{true, false}) {
+            MoveMetrics expected = new MoveMetrics(coalesce);
+            for (Node node : ast.resolvedIterable(false)) {
+                expected.accept(node);
+            }
+            MoveMetrics actual = new MoveMetrics(coalesce);
+            actual.accept(ast);
+            assertEquals(expected.toString(), actual.toString(), "coalesce=" + coalesce);
+            assertEquals(expected.getBlockTurnCount(), actual.getBlockTurnCount(), "coalesce=" + coalesce);
+            assertEquals(expected.getFaceTurnCount(), actual.getFaceTurnCount(), "coalesce=" + coalesce);
+            assertEquals(expected.getLayerTurnCount(), actual.getLayerTurnCount(), "coalesce=" + coalesce);
+            assertEquals(expected.getQuarterTurnCount(), actual.getQuarterTurnCount(), "coalesce=" + coalesce);
+        }
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testAcceptLargeRepetition() {
+        return Arrays.asList(
+                DynamicTest.dynamicTest("(R U)1000000", () -> {
+                    Node ast = new ScriptParser(new DefaultScriptNotation()).parse("(R U)1000000");
+                    MoveMetrics instance = new MoveMetrics();
+                    instance.accept(ast);
+                    assertEquals(2000000, instance.getFaceTurnCount());
+                    assertEquals(2000000, instance.getQuarterTurnCount());
+                    assertEquals(2000000, instance.getMoveCount());
+                }),
+                DynamicTest.dynamicTest("R (R U R)999999", () -> {
+                    Node ast = new ScriptParser(new DefaultScriptNotation()).parse("R (R U R)999999");
+                    MoveMetrics instance = new MoveMetrics();
+                    instance.accept(ast);
+                    assertEquals(2 * 999999 + 1, instance.getFaceTurnCount());
+                    assertEquals(3 * 999999 + 1, instance.getMoveCount());
+                }),
+                DynamicTest.dynamicTest("(R L)1000000", () -> {
+                    // All moves are over the same axis, and thus are all held
+                    // in the leading moves of the summary
+                    Node ast = new ScriptParser(new DefaultScriptNotation()).parse("(R L)1000000");
+                    MoveMetrics instance = new MoveMetrics();
+                    instance.accept(ast);
+                    assertEquals(2 * 1000000, instance.getFaceTurnCount());
+                    assertEquals(2 * 1000000, instance.getQuarterTurnCount());
+                    assertEquals(2 * 1000000, instance.getBlockTurnCount());
+                    assertEquals(2 * 1000000, instance.getLayerTurnCount());
+                    assertEquals(2 * 1000000, instance.getMoveCount());
+                })
+        );
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * @(#)MoveSimplifierTest.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.parser;
+
+import ch.randelshofer.rubik.cube.Cube;
+import ch.randelshofer.rubik.cube.CubeFactory;
+import ch.randelshofer.rubik.notation.DefaultScriptNotation;
+import ch.randelshofer.rubik.parser.ast.Node;
+import ch.randelshofer.rubik.parser.ast.PermutationCycleNode;
+import ch.randelshofer.rubik.parser.ast.SequenceNode;
+import org.jhotdraw.annotation.Nonnull;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * MoveSimplifierTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class MoveSimplifierTest {
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testSimplify() {
+        return Arrays.asList(
+                dynamicTest("cancel", () -> doTestSimplify(3, "R R'", "")),
+                dynamicTest("merge", () -> doTestSimplify(3, "R R", "R2")),
+                dynamicTest("merge to inverse", () -> doTestSimplify(3, "R R R", "R'")),
+                dynamicTest("fold same axis", () -> doTestSimplify(3, "R L R'", "L")),
+                dynamicTest("rotation", () -> doTestSimplify(3, "R MR L'", "CR")),
+                dynamicTest("nested cancel", () -> doTestSimplify(3, "R U F F' U' R'", "")),
+                dynamicTest("cancel then merge", () -> doTestSimplify(3, "R U U' R", "R2")),
+                dynamicTest("inversion", () -> doTestSimplify(3, "(R U)(R U)'", "")),
+                dynamicTest("commutator of same axis", () -> doTestSimplify(3, "[R, L]", "")),
+                dynamicTest("no change", () -> doTestSimplify(3, "R U R' U'", "R U R' U'")),
+                dynamicTest("repetition", () -> doTestSimplify(3, "(R2)3 U", "R2 U")),
+                dynamicTest("4x4", () -> doTestSimplify(4, "R NR NR' R'", "")),
+                dynamicTest("permutation", () -> doTestSimplify(3, "R (ur,uf) R'", "R (ur,uf) R'"))
+        );
+    }
+
+    /**
+     * Checks that the simplified script has the same moves as the
+     * expected script, and the same side effect as the script.
+     */
+    private void doTestSimplify(int layerCount, @Nonnull String script, @Nonnull String expected) throws Exception {
+        ScriptParser parser = new ScriptParser(new DefaultScriptNotation(layerCount));
+        Node node = parser.parse(script);
+        SequenceNode actual = MoveSimplifier.simplify(node);
+        Node expectedNode = parser.parse(expected);
+
+        Cube expectedCube = CubeFactory.create(layerCount);
+        expectedNode.applyTo(expectedCube);
+        Cube actualCube = CubeFactory.create(layerCount);
+        actual.applyTo(actualCube);
+        assertEquals(expectedCube, actualCube);
+
+        Cube originalCube = CubeFactory.create(layerCount);
+        node.applyTo(originalCube);
+        assertEquals(originalCube, actualCube);
+
+        assertEquals(expectedNode.toResolvedList(false).size(), actual.getChildCount());
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testRandom() {
+        return Arrays.asList(
+                dynamicTest("3x3", () -> doTestRandom(3, 1)),
+                dynamicTest("4x4", () -> doTestRandom(4, 2)),
+                dynamicTest("5x5", () -> doTestRandom(5, 3))
+        );
+    }
+
+    /**
+     * Simplifies random scripts with many cancelling moves.
+     */
+    private void doTestRandom(int layerCount, long seed) throws Exception {
+        ScriptParser parser = new ScriptParser(new DefaultScriptNotation(layerCount));
+        String[] moves = {"R", "R'", "R2", "L", "L'", "MR", "CR", "U", "U'", "D", "CU'"};
+        Random r = new Random(seed);
+        for (int i = 0; i < 200; i++) {
+            StringBuilder b = new StringBuilder();
+            for (int j = r.nextInt(30); j >= 0; j--) {
+                b.append(moves[r.nextInt(moves.length)]).append(' ');
+            }
+            String script = b.toString();
+            Node node = parser.parse(script);
+            SequenceNode actual = MoveSimplifier.simplify(node);
+
+            Cube expectedCube = CubeFactory.create(layerCount);
+            node.applyTo(expectedCube);
+            Cube actualCube = CubeFactory.create(layerCount);
+            actual.applyTo(actualCube);
+            assertEquals(expectedCube, actualCube, script);
+            assertTrue(actual.getChildCount() <= node.toResolvedList(false).size(), script);
+
+            MoveSimplifier half = new MoveSimplifier();
+            MoveSimplifier otherHalf = new MoveSimplifier();
+            int n = node.getChildCount();
+            for (int k = 0; k < n; k++) {
+                (k < n / 2 ? half : otherHalf).accept(node.getChildAt(k));
+            }
+            SequenceNode combined = half.combine(otherHalf).toSequence();
+            Cube combinedCube = CubeFactory.create(layerCount);
+            combined.applyTo(combinedCube);
+            assertEquals(expectedCube, combinedCube, script);
+            assertEquals(actual.getChildCount(), combined.getChildCount(), script);
+        }
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testNeverLonger() {
+        return Arrays.asList(
+                dynamicTest("4x4 slices", () -> doTestNeverLonger(4, "R2 B2 SU2 (MD MB2 TD MF2 TD- MB2 D MF2 TD-) SU2 B2 R2")),
+                dynamicTest("4x4 random", () -> doTestNeverLongerRandom(4, 4)),
+                dynamicTest("5x5 random", () -> doTestNeverLongerRandom(5, 5)),
+                dynamicTest("6x6 random", () -> doTestNeverLongerRandom(6, 6))
+        );
+    }
+
+    /**
+     * Simplifies random scripts with slice and tier moves, which merge into
+     * layers with many different angles.
+     */
+    private void doTestNeverLongerRandom(int layerCount, long seed) throws Exception {
+        String[] moves = {"R", "R2", "MR", "TR-", "SR2", "NR", "L", "D", "MD", "TD", "TD-", "SU2", "U2", "MB2", "MF2", "B2", "CU"};
+        Random r = new Random(seed);
+        for (int i = 0; i < 500; i++) {
+            StringBuilder b = new StringBuilder();
+            for (int j = r.nextInt(20); j >= 0; j--) {
+                b.append(moves[r.nextInt(moves.length)]).append(' ');
+            }
+            doTestNeverLonger(layerCount, b.toString());
+        }
+    }
+
+    /**
+     * Checks that the simplified script has the same side effect as the
+     * script, and does not have more moves.
+     */
+    private void doTestNeverLonger(int layerCount, @Nonnull String script) throws Exception {
+        Node node = new ScriptParser(new DefaultScriptNotation(layerCount)).parse(script);
+        SequenceNode actual = MoveSimplifier.simplify(node);
+
+        Cube expectedCube = CubeFactory.create(layerCount);
+        node.applyTo(expectedCube);
+        Cube actualCube = CubeFactory.create(layerCount);
+        actual.applyTo(actualCube);
+        assertEquals(expectedCube, actualCube, script);
+        assertTrue(actual.getChildCount() <= node.toResolvedList(false).size(), script);
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testCombineNeverLonger() {
+        return Arrays.asList(
+                dynamicTest("3x3 merged", () -> doTestCombineNeverLonger(3, "R", "R R R R R")),
+                dynamicTest("3x3 cancelled", () -> doTestCombineNeverLonger(3, "R' L", "R R R R R")),
+                dynamicTest("4x4 slices", () -> doTestCombineNeverLonger(4, "R2 B2 SU2 MD MB2 TD MF2", "TD- MB2 D MF2 TD- SU2 B2 R2")),
+                dynamicTest("4x4 random", () -> doTestCombineNeverLongerRandom(4, 7)),
+                dynamicTest("5x5 random", () -> doTestCombineNeverLongerRandom(5, 8)),
+                dynamicTest("6x6 random", () -> doTestCombineNeverLongerRandom(6, 9))
+        );
+    }
+
+    /**
+     * Splits random scripts into random parts, which are simplified
+     * separately and then combined.
+     */
+    private void doTestCombineNeverLongerRandom(int layerCount, long seed) throws Exception {
+        String[] moves = {"R", "R2", "MR", "TR-", "SR2", "NR", "L", "D", "MD", "TD", "TD-", "SU2", "U2", "MB2", "MF2", "B2", "CU"};
+        Random r = new Random(seed);
+        for (int i = 0; i < 500; i++) {
+            String[] parts = new String[1 + r.nextInt(4)];
+            for (int k = 0; k < parts.length; k++) {
+                StringBuilder b = new StringBuilder();
+                for (int j = r.nextInt(8); j >= 0; j--) {
+                    b.append(moves[r.nextInt(moves.length)]).append(' ');
+                }
+                parts[k] = b.toString();
+            }
+            doTestCombineNeverLonger(layerCount, parts);
+        }
+    }
+
+    /**
+     * Checks that the combined simplifiers of the parts of a script have the
+     * same side effect as the script, and do not have more moves.
+     */
+    private void doTestCombineNeverLonger(int layerCount, @Nonnull String... parts) throws Exception {
+        ScriptParser parser = new ScriptParser(new DefaultScriptNotation(layerCount));
+        Cube expectedCube = CubeFactory.create(layerCount);
+        int resolvedSize = 0;
+        MoveSimplifier combined = new MoveSimplifier();
+        for (String part : parts) {
+            Node node = parser.parse(part);
+            node.applyTo(expectedCube);
+            resolvedSize += node.toResolvedList(false).size();
+            MoveSimplifier simplifier = new MoveSimplifier();
+            simplifier.accept(node);
+            combined.combine(simplifier);
+        }
+        SequenceNode actual = combined.toSequence();
+
+        String script = String.join("| ", parts);
+        Cube actualCube = CubeFactory.create(layerCount);
+        actual.applyTo(actualCube);
+        assertEquals(expectedCube, actualCube, script);
+        assertEquals(actual.getChildCount(), combined.size(), script);
+        assertTrue(actual.getChildCount() <= resolvedSize, script);
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testScriptIsNotChanged() {
+        return Arrays.asList(
+                dynamicTest("permutation", () -> {
+                    Node node = new ScriptParser(new DefaultScriptNotation()).parse("R (ur,uf)");
+                    Node permutation = node.getChildAt(1);
+                    SequenceNode actual = MoveSimplifier.simplify(node);
+                    assertSame(node, permutation.getParent());
+                    assertTrue(actual.getChildAt(1) instanceof PermutationCycleNode);
+                    assertNotSame(permutation, actual.getChildAt(1));
+                })
+        );
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * @(#)NodeCodecTest.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.parser;
+
+import ch.randelshofer.rubik.cube.Cube;
+import ch.randelshofer.rubik.cube.CubeFactory;
+import ch.randelshofer.rubik.notation.DefaultScriptNotation;
+import ch.randelshofer.rubik.parser.ast.MacroNode;
+import ch.randelshofer.rubik.parser.ast.MoveNode;
+import ch.randelshofer.rubik.parser.ast.Node;
+import ch.randelshofer.rubik.parser.ast.NodeCodec;
+import ch.randelshofer.rubik.parser.ast.PermutationCycleNode;
+import ch.randelshofer.rubik.parser.ast.PermutationItemNode;
+import ch.randelshofer.rubik.parser.ast.RepetitionNode;
+import org.jhotdraw.annotation.Nonnull;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * NodeCodecTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class NodeCodecTest {
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testReadWrite() {
+        return Arrays.asList(
+                dynamicTest("empty", () -> doTestReadWrite(3, "")),
+                dynamicTest("moves", () -> doTestReadWrite(3, "R U F' L2 MR CU")),
+                dynamicTest("composites", () -> doTestReadWrite(3, "(R U)3' [R, U] <R>U (R U MR)* · (R)0")),
+                dynamicTest("nested", () -> doTestReadWrite(3, "[[R, <U>F], (R U)2'] (((R)2)3)4")),
+                dynamicTest("permutation", () -> doTestReadWrite(3, "(+ubr,urf) (ur,uf)' (-r,u,f)")),
+                dynamicTest("macro", () -> doTestReadWrite(3, "CRU (CRU)2")),
+                dynamicTest("4x4", () -> doTestReadWrite(4, "R NR (R NR)2* [NR, U]'")),
+                dynamicTest("7x7", () -> doTestReadWrite(7, "N3R N2-3R' (N3R)1000"))
+        );
+    }
+
+    /**
+     * Writes and reads the syntax tree of a script, and compares the
+     * trees.
+     */
+    private void doTestReadWrite(int layerCount, @Nonnull String script) throws Exception {
+        DefaultScriptNotation notation = new DefaultScriptNotation(layerCount);
+        notation.putMacro("CRU", "CR CU");
+        Node expected = new ScriptParser(notation).parse(script);
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        NodeCodec.write(new DataOutputStream(buf), expected);
+        byte[] data = buf.toByteArray();
+        Node actual = NodeCodec.read(new DataInputStream(new ByteArrayInputStream(data)));
+
+        assertEquals(dump(expected), dump(actual));
+        Cube expectedCube = CubeFactory.create(layerCount);
+        expected.applyTo(expectedCube);
+        Cube actualCube = CubeFactory.create(layerCount);
+        actual.applyTo(actualCube);
+        assertEquals(expectedCube, actualCube);
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testCorrupt() {
+        return Arrays.asList(
+                dynamicTest("illegal kind", () -> assertThrows(IOException.class,
+                        () -> NodeCodec.read(new DataInputStream(new ByteArrayInputStream(new byte[]{99, 0, 0, 0}))))),
+                dynamicTest("truncated", () -> assertThrows(IOException.class,
+                        () -> NodeCodec.read(new DataInputStream(new ByteArrayInputStream(new byte[]{0, 0, 0, 1})))))
+        );
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testVariableLength() {
+        return Arrays.asList(
+                dynamicTest("values", () -> {
+                    for (int value : new int[]{0, 1, -1, 63, -64, 64, 127, 128, 1 << 20, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+                        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                        DataOutputStream out = new DataOutputStream(buf);
+                        NodeCodec.writeSigned(out, value);
+                        NodeCodec.writeUnsigned(out, value);
+                        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buf.toByteArray()));
+                        assertEquals(value, NodeCodec.readSigned(in));
+                        assertEquals(value, NodeCodec.readUnsigned(in));
+                    }
+                })
+        );
+    }
+
+    @Nonnull
+    private static String dump(@Nonnull Node node) {
+        StringBuilder b = new StringBuilder();
+        dump(node, b);
+        return b.toString();
+    }
+
+    private static void dump(@Nonnull Node node, @Nonnull StringBuilder b) {
+        b.append(node.getStartPosition()).append("..").append(node.getEndPosition())
+                .append(' ').append(node.getClass().getSimpleName()).append('{');
+        if (node instanceof MoveNode) {
+            MoveNode m = (MoveNode) node;
+            b.append(m.getLayerCount()).append(':').append(m.getAxis()).append(':')
+                    .append(m.getLayerMask()).append(':').append(m.getAngle());
+        } else if (node instanceof RepetitionNode) {
+            b.append(((RepetitionNode) node).getRepeatCount());
+        } else if (node instanceof MacroNode) {
+            b.append(((MacroNode) node).getIdentifier()).append('=').append(((MacroNode) node).getScript());
+        } else if (node instanceof PermutationCycleNode) {
+            PermutationCycleNode p = (PermutationCycleNode) node;
+            b.append(p.getType()).append(':').append(p.getSign());
+        } else if (node instanceof PermutationItemNode) {
+            PermutationItemNode p = (PermutationItemNode) node;
+            b.append(p.getLocation()).append(':').append(p.getOrientation());
+        }
+        for (Node child : node.getChildren()) {
+            b.append(' ');
+            dump(child, b);
+        }
+        b.append('}');
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * @(#)NotationTranslatorTest.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.parser;
+
+import ch.randelshofer.rubik.cube.Cube;
+import ch.randelshofer.rubik.cube.CubeFactory;
+import ch.randelshofer.rubik.notation.DefaultScriptNotation;
+import ch.randelshofer.rubik.notation.Move;
+import ch.randelshofer.rubik.notation.ScriptNotation;
+import ch.randelshofer.rubik.notation.Symbol;
+import ch.randelshofer.rubik.notation.Syntax;
+import ch.randelshofer.rubik.parser.ast.InversionNode;
+import ch.randelshofer.rubik.parser.ast.MacroNode;
+import ch.randelshofer.rubik.parser.ast.Node;
+import ch.randelshofer.rubik.parser.ast.SequenceNode;
+import org.jhotdraw.annotation.Nonnull;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * NotationTranslatorTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class NotationTranslatorTest {
+    private final static String[] SCRIPTS = {
+            "",
+            "R U F' L2 MR CU D' B2",
+            "(R U)3' [R, U] <R>U (R U MR)* · (R U)2",
+            "[[R, <U>F], (R U)2'] (((R)2)3)4",
+            "<CR>'(R U) [R U, F]* <R U>(F)'",
+            "(R' U)' (R*)' (R')* ((R)2)' (<R>U)'",
+            "(+ubr,urf) (ur,uf)' (-r,u,f)",
+            "CRU (CRU)2 [CRU, R]"
+    };
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testToString() {
+        return Arrays.asList(
+                dynamicTest("moves", () -> doTestToString(new DefaultScriptNotation(), "R U F' L2 MR CU", "R U F' L2 MR CU")),
+                dynamicTest("composites", () -> doTestToString(new DefaultScriptNotation(), "(R U)3' [R, U] <R>U (R U MR)* ·", "(R U)3' [R, U] <R>U (R U MR)* ·")),
+                dynamicTest("macro", () -> doTestToString(new DefaultScriptNotation(), "CRU", "CR CU")),
+                dynamicTest("mixed", () -> doTestToString(createMixedNotation(), "[R, U] <CU>R (R U)3 <U>'R (R U)*", "R comm U <CU>R (R U)3 R rot U «(R U)»")),
+                dynamicTest("circumfix", () -> doTestToString(createCircumfixNotation(), "[R, U] <CU>R (R U)3 <U>'R R' (R U)*", "[U, R] R<CU> 3 (R U) {U| R} 'R (R U)*")),
+                dynamicTest("sparse", () -> doTestToString(createSparseNotation(), "R' U2 (R U)'", "R' U U (R U)'"))
+        );
+    }
+
+    private void doTestToString(@Nonnull ScriptNotation notation, @Nonnull String script, @Nonnull String expected) throws Exception {
+        Node node = new ScriptParser(createSourceNotation(3)).parse(script);
+        assertEquals(expected, new NotationTranslator(notation).toString(node));
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testTranslate() {
+        List<DynamicTest> tests = new ArrayList<>();
+        for (ScriptNotation notation : Arrays.asList(new DefaultScriptNotation(), createMixedNotation(),
+                createCircumfixNotation(), createSparseNotation())) {
+            for (String script : SCRIPTS) {
+                tests.add(dynamicTest(notation.getName() + ": " + script, () -> doTestTranslate(notation, script)));
+            }
+        }
+        return tests;
+    }
+
+    /**
+     * Translates a script into the notation and back into the default
+     * notation, and compares the effects on a cube.
+     */
+    private void doTestTranslate(@Nonnull ScriptNotation notation, @Nonnull String script) throws Exception {
+        ScriptNotation source = createSourceNotation(3);
+        Node expected = new ScriptParser(source).parse(script);
+        Cube expectedCube = CubeFactory.create(3);
+        expected.applyTo(expectedCube);
+
+        String translated = new NotationTranslator(notation).toString(expected);
+        Node actual = new ScriptParser(notation).parse(translated);
+        Cube actualCube = CubeFactory.create(3);
+        actual.applyTo(actualCube);
+        assertEquals(expectedCube, actualCube, translated);
+
+        String back = new NotationTranslator(source).toString(actual);
+        Cube backCube = CubeFactory.create(3);
+        new ScriptParser(source).parse(back).applyTo(backCube);
+        assertEquals(expectedCube, backCube, back);
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testTranslateList() {
+        return Arrays.asList(
+                dynamicTest("stream", () -> {
+                    ScriptParser parser = new ScriptParser(createSourceNotation(3));
+                    List<Node> nodes = new ArrayList<>();
+                    StringBuilder expected = new StringBuilder();
+                    NotationTranslator instance = new NotationTranslator(createMixedNotation());
+                    for (int i = 0; i < 100; i++) {
+                        Node node = parser.parse(SCRIPTS[i % SCRIPTS.length]);
+                        nodes.add(node);
+                        expected.append(instance.toString(node)).append('\n');
+                    }
+                    ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                    instance.translate(nodes, buf, new byte[]{'\n'});
+                    assertEquals(expected.toString(), buf.toString(StandardCharsets.UTF_8));
+                    assertEquals(Arrays.asList(expected.toString().split("\n", -1)).subList(0, nodes.size()),
+                            instance.translate(nodes));
+                }),
+                dynamicTest("unsupported move", () -> {
+                    List<Node> nodes = Arrays.asList(
+                            new ScriptParser(new DefaultScriptNotation(7)).parse("R"),
+                            new ScriptParser(new DefaultScriptNotation(7)).parse("N4R"));
+                    NotationTranslator instance = new NotationTranslator(new DefaultScriptNotation(3));
+                    assertThrows(IOException.class, () -> instance.translate(nodes));
+                    assertThrows(IOException.class, () -> instance.translate(nodes, new ByteArrayOutputStream(), new byte[0]));
+                })
+        );
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testGetInstance() {
+        return Arrays.asList(
+                dynamicTest("cached", () -> {
+                    DefaultScriptNotation notation = new DefaultScriptNotation();
+                    NotationTranslator instance = NotationTranslator.getInstance(notation);
+                    assertSame(instance, NotationTranslator.getInstance(notation));
+                    notation.putSyntax(Symbol.COMMUTATION, Syntax.POSTCIRCUMFIX);
+                    NotationTranslator changed = NotationTranslator.getInstance(notation);
+                    assertNotSame(instance, changed);
+                    assertEquals("[U, R]", changed.toString(new ScriptParser(createSourceNotation(3)).parse("[R, U]")));
+                }),
+                dynamicTest("retained after garbage collection", () -> {
+                    DefaultScriptNotation notation = new DefaultScriptNotation(6);
+                    WeakReference<NotationTranslator> ref = new WeakReference<>(NotationTranslator.getInstance(notation));
+                    System.gc();
+                    assertNotNull(ref.get());
+                    assertSame(ref.get(), NotationTranslator.getInstance(notation));
+                })
+        );
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testLocalMacros() {
+        return Arrays.asList(
+                dynamicTest("identifier", () -> {
+                    ScriptParser parser = new ScriptParser(createSourceNotation(3));
+                    MacroNode macro = new MacroNode("knurps", "R U");
+                    macro.expand(parser);
+                    InversionNode inversion = new InversionNode();
+                    inversion.add(macro.cloneSubtree());
+                    Node script = parser.parse("F CRU");
+                    script.add(macro);
+                    script.add(inversion);
+
+                    NotationTranslator instance = new NotationTranslator(new DefaultScriptNotation());
+                    assertEquals("F CR CU knurps knurps'", instance.toString(script, Set.of("knurps")));
+                    assertEquals("F CR CU R U (R U)'", instance.toString(script));
+                    assertEquals("F CR CU R U (R U)'", instance.toString(script, Set.of("CRU")));
+                }),
+                dynamicTest("scripts", () -> {
+                    ScriptParser parser = new ScriptParser(createSourceNotation(3));
+                    MacroNode macro = new MacroNode("knurps", "R U");
+                    macro.expand(parser);
+                    InversionNode inversion = new InversionNode();
+                    inversion.add(macro.cloneSubtree());
+                    Node script1 = parser.parse("F");
+                    script1.add(macro);
+                    Node script2 = new SequenceNode();
+                    script2.add(inversion);
+                    List<Node> scripts = Arrays.asList(script1, script2, script1);
+                    List<Set<String>> localMacros = Arrays.asList(Set.of("knurps"), Set.of("knurps"), Set.of());
+
+                    NotationTranslator instance = new NotationTranslator(new DefaultScriptNotation());
+                    assertEquals(Arrays.asList("F knurps", "knurps'", "F R U"), instance.translate(scripts, localMacros));
+                    assertEquals(Arrays.asList("F R U", "(R U)'", "F R U"), instance.translate(scripts));
+                    assertEquals("R U", instance.toString(macro.getChildAt(0), localMacros.get(0)));
+                    assertThrows(IllegalArgumentException.class, () -> instance.translate(scripts, localMacros.subList(0, 1)));
+                })
+        );
+    }
+
+    @Nonnull
+    private static ScriptNotation createSourceNotation(int layerCount) {
+        DefaultScriptNotation notation = new DefaultScriptNotation(layerCount);
+        notation.putMacro("CRU", "CR CU");
+        return notation;
+    }
+
+    @Nonnull
+    private static ScriptNotation createMixedNotation() {
+        DefaultScriptNotation mixed = new DefaultScriptNotation();
+        mixed.setName("mixed");
+        mixed.addToken(Symbol.ROTATION_OPERATOR, "rot");
+        mixed.addToken(Symbol.COMMUTATION_OPERATOR, "comm");
+        mixed.addToken(Symbol.CONJUGATION_OPERATOR, "conj");
+        mixed.addToken(Symbol.REPETITION_OPERATOR, "*");
+        mixed.addToken(Symbol.REFLECTION_BEGIN, "«");
+        mixed.addToken(Symbol.REFLECTION_END, "»");
+        mixed.putSyntax(Symbol.PERMUTATION, Syntax.PRECIRCUMFIX);
+        mixed.putSyntax(Symbol.COMMUTATION, Syntax.PREINFIX);
+        mixed.putSyntax(Symbol.CONJUGATION, Syntax.PREFIX);
+        mixed.putSyntax(Symbol.ROTATION, Syntax.POSTINFIX);
+        mixed.putSyntax(Symbol.REPETITION, Syntax.SUFFIX);
+        mixed.putSyntax(Symbol.INVERSION, Syntax.SUFFIX);
+        mixed.putSyntax(Symbol.REFLECTION, Syntax.CIRCUMFIX);
+        return mixed;
+    }
+
+    @Nonnull
+    private static ScriptNotation createCircumfixNotation() {
+        DefaultScriptNotation circumfix = new DefaultScriptNotation();
+        circumfix.setName("circumfix");
+        circumfix.removeToken(Symbol.ROTATION_BEGIN, "<");
+        circumfix.removeToken(Symbol.ROTATION_END, ">'");
+        circumfix.addToken(Symbol.ROTATION_BEGIN, "{");
+        circumfix.addToken(Symbol.ROTATION_END, "}");
+        circumfix.addToken(Symbol.ROTATION_DELIMITER, "|");
+        circumfix.putSyntax(Symbol.PERMUTATION, Syntax.SUFFIX);
+        circumfix.putSyntax(Symbol.COMMUTATION, Syntax.POSTCIRCUMFIX);
+        circumfix.putSyntax(Symbol.CONJUGATION, Syntax.SUFFIX);
+        circumfix.putSyntax(Symbol.ROTATION, Syntax.PRECIRCUMFIX);
+        circumfix.putSyntax(Symbol.REPETITION, Syntax.PREFIX);
+        circumfix.putSyntax(Symbol.INVERSION, Syntax.PREFIX);
+        return circumfix;
+    }
+
+    /**
+     * Creates a notation which has no tokens for half turns.
+     */
+    @Nonnull
+    private static ScriptNotation createSparseNotation() {
+        DefaultScriptNotation sparse = new DefaultScriptNotation() {
+            @Override
+            public String getMoveToken(@Nonnull Move move) {
+                return Math.abs(move.getAngle()) == 2 ? null : super.getMoveToken(move);
+            }
+        };
+        sparse.setName("sparse");
+        return sparse;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * @(#)ResolvedMovesTest.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package ch.randelshofer.rubik.parser;
+
+import ch.randelshofer.rubik.cube.Cube;
+import ch.randelshofer.rubik.cube.CubeFactory;
+import ch.randelshofer.rubik.notation.DefaultScriptNotation;
+import ch.randelshofer.rubik.parser.ast.MoveNode;
+import ch.randelshofer.rubik.parser.ast.Node;
+import ch.randelshofer.rubik.parser.ast.RepetitionNode;
+import ch.randelshofer.rubik.parser.ast.ResolvedMoves;
+import org.jhotdraw.annotation.Nonnull;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * ResolvedMovesTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class ResolvedMovesTest {
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testResolvedMoves() {
+        return Arrays.asList(
+                dynamicTest("empty", () -> doTestResolvedMoves(3, "")),
+                dynamicTest("moves", () -> doTestResolvedMoves(3, "R U F' L2 MR CU")),
+                dynamicTest("inversion", () -> doTestResolvedMoves(3, "(R U F)' ((R U)' F)'")),
+                dynamicTest("repetition", () -> doTestResolvedMoves(3, "(R U)3 ((R U)2 F)2' (R)0")),
+                dynamicTest("commutation", () -> doTestResolvedMoves(3, "[R, U] [R U, F]' [[R, U], F]")),
+                dynamicTest("conjugation", () -> doTestResolvedMoves(3, "<R>U <R U>(F L)' <<R>U>F")),
+                dynamicTest("reflection", () -> doTestResolvedMoves(3, "(R U MR)* ((R U)*)* (<R>U)*'")),
+                dynamicTest("permutation", () -> doTestResolvedMoves(3, "R (ur,uf) U (+ubr,urf) (R (ur,uf))'")),
+                dynamicTest("nop", () -> doTestResolvedMoves(3, "R · U ·")),
+                dynamicTest("4x4", () -> doTestResolvedMoves(4, "R NR (R NR)2* [NR, U]' <NR>U")),
+                dynamicTest("6x6", () -> doTestResolvedMoves(6, "R N3R (N2R N3R)* [N3R, U]'"))
+        );
+    }
+
+    /**
+     * Compares the resolved moves with the resolved iteration of the
+     * script.
+     */
+    private void doTestResolvedMoves(int layerCount, @Nonnull String script) throws Exception {
+        ScriptParser parser = new ScriptParser(new DefaultScriptNotation(layerCount));
+        Node root = parser.parse(script);
+        ResolvedMoves moves = root.getResolvedMoves();
+        assertNotNull(moves);
+
+        List<Node> expected = new ArrayList<>();
+        root.resolvedIterator(false).forEachRemaining(expected::add);
+        assertEquals(expected.size(), moves.size(), "size");
+        for (int i = 0; i < moves.size(); i++) {
+            Node expectedNode = expected.get(i);
+            Node actualNode = moves.getNode(i);
+            assertEquals(expectedNode.getClass(), actualNode.getClass(), "class " + i);
+            assertEquals(expectedNode.getStartPosition(), actualNode.getStartPosition(), "start " + i);
+            assertEquals(expectedNode.getEndPosition(), actualNode.getEndPosition(), "end " + i);
+            if (expectedNode instanceof MoveNode) {
+                MoveNode e = (MoveNode) expectedNode;
+                MoveNode a = (MoveNode) actualNode;
+                assertEquals(e.getLayerCount() + ":" + e.getAxis() + ":" + e.getLayerMask() + ":" + e.getAngle(),
+                        a.getLayerCount() + ":" + a.getAxis() + ":" + a.getLayerMask() + ":" + a.getAngle(), "move " + i);
+            }
+        }
+
+        for (boolean inverse : new boolean[]{false, true}) {
+            Cube expectedCube = CubeFactory.create(layerCount);
+            for (Node node : root.resolvedIterable(inverse)) {
+                node.applyTo(expectedCube, false);
+            }
+            Cube actualCube = CubeFactory.create(layerCount);
+            moves.applyTo(actualCube, inverse);
+            assertEquals(expectedCube, actualCube, "inverse=" + inverse);
+        }
+
+        MoveMetrics expectedMetrics = new MoveMetrics();
+        for (Node node : root.resolvedIterable(false)) {
+            expectedMetrics.accept(node);
+        }
+        MoveMetrics actualMetrics = new MoveMetrics();
+        actualMetrics.accept(root);
+        assertEquals(expectedMetrics.toString(), actualMetrics.toString());
+        assertEquals(expectedMetrics.getFaceTurnCount(), actualMetrics.getFaceTurnCount());
+        assertEquals(expectedMetrics.getQuarterTurnCount(), actualMetrics.getQuarterTurnCount());
+        assertEquals(expectedMetrics.getBlockTurnCount(), actualMetrics.getBlockTurnCount());
+        assertEquals(expectedMetrics.getLayerTurnCount(), actualMetrics.getLayerTurnCount());
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testCache() {
+        return Arrays.asList(
+                dynamicTest("root is cached", () -> {
+                    Node root = new ScriptParser(new DefaultScriptNotation()).parse("R U (F L)2");
+                    assertSame(root.getResolvedMoves(), root.getResolvedMoves());
+                    Node child = root.getChildAt(2);
+                    assertNotSame(child.getResolvedMoves(), child.getResolvedMoves());
+                }),
+                dynamicTest("move changes", () -> {
+                    Node root = new ScriptParser(new DefaultScriptNotation()).parse("R U (F L)2");
+                    ResolvedMoves before = root.getResolvedMoves();
+                    assertNotNull(before);
+                    MoveNode f = (MoveNode) root.getChildAt(2).getChildAt(0).getChildAt(0);
+                    f.setAngle(2);
+                    ResolvedMoves after = root.getResolvedMoves();
+                    assertNotNull(after);
+                    assertNotSame(before, after);
+                    assertEquals(2, after.getAngle(2));
+                    assertEquals(2, after.getAngle(4));
+                }),
+                dynamicTest("repeat count changes", () -> {
+                    Node root = new ScriptParser(new DefaultScriptNotation()).parse("R U (F L)2");
+                    assertEquals(6, root.getResolvedMoves().size());
+                    ((RepetitionNode) root.getChildAt(2)).setRepeatCount(5);
+                    assertEquals(12, root.getResolvedMoves().size());
+                }),
+                dynamicTest("children change", () -> {
+                    Node root = new ScriptParser(new DefaultScriptNotation()).parse("R U (F L)2");
+                    assertEquals(6, root.getResolvedMoves().size());
+                    root.getChildAt(2).getChildAt(0).add(new MoveNode(3, 0, 1, 1, 0, 0));
+                    assertEquals(8, root.getResolvedMoves().size());
+                    root.remove(0);
+                    assertEquals(7, root.getResolvedMoves().size());
+                    assertEquals(1, root.getResolvedMoves().getAxis(0));
+                })
+        );
+    }
+}
@@ -18,6 +18,7 @@ import ch.randelshofer.rubik.notation.DefaultScriptNotation;
 import ch.randelshofer.rubik.notation.ScriptNotation;
 import ch.randelshofer.rubik.notation.Symbol;
 import ch.randelshofer.rubik.notation.Syntax;
+import ch.randelshofer.rubik.parser.ast.MacroNode;
 import ch.randelshofer.rubik.parser.ast.MoveNode;
 import ch.randelshofer.rubik.parser.ast.Node;
 import ch.randelshofer.rubik.parser.ast.PermutationCycleNode;
@@ -31,6 +32,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.junit.jupiter.api.DynamicTest.dynamicTest;
 
@@ -720,6 +722,97 @@ class ScriptParserTest {
         );
     }
 
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testTokenizerCache() {
+        return Arrays.asList(
+                dynamicTest("notation changes", () -> {
+                    DefaultScriptNotation notation = new DefaultScriptNotation();
+                    doFailure(notation, "knurps", "Statement: Keyword or Number expected. Found \"knurps\".");
+                    notation.putMacro("knurps", "R U");
+                    Node node = new ScriptParser(notation).parse("knurps");
+                    assertEquals(applyTo(new ScriptParser(notation).parse("R U"), new RubiksCube()),
+                            applyTo(node, new RubiksCube()));
+                }),
+                dynamicTest("local macros", () -> {
+                    DefaultScriptNotation notation = new DefaultScriptNotation();
+                    List<MacroNode> macros = List.of(new MacroNode("knurps", "R U", 0, 3));
+                    // the local macro is a keyword, but the notation has no symbol for it
+                    try {
+                        new ScriptParser(notation, macros).parse("knurps");
+                        fail("should fail to parse knurps");
+                    } catch (ParseException e) {
+                        assertEquals("Statement: Illegal token. Found \"knurps\".", e.getMessage());
+                    }
+                    doFailure(notation, "knurps", "Statement: Keyword or Number expected. Found \"knurps\".");
+                })
+        );
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testMacroCache() {
+        return Arrays.asList(
+                dynamicTest("shared body", () -> {
+                    DefaultScriptNotation notation = new DefaultScriptNotation();
+                    notation.putMacro("CRU", "CR CU");
+                    Node node = new ScriptParser(notation).parse("CRU R CRU CRU");
+                    assertEquals(4, node.getChildCount());
+                    Node first = node.getChildAt(0);
+                    Node last = node.getChildAt(3);
+                    assertEquals("0..3 macro{ 0..3 sequence{ 0..3 move{ 0:7:1 } 0..3 move{ 1:7:1 } } }", dump(first));
+                    assertEquals("10..13 macro{ 10..13 sequence{ 10..13 move{ 0:7:1 } 10..13 move{ 1:7:1 } } }", dump(last));
+                    assertNotSame(first.getChildAt(0), last.getChildAt(0));
+                }),
+                dynamicTest("local macro", () -> {
+                    ScriptParser parser = new ScriptParser(new DefaultScriptNotation());
+                    MacroNode macro = new MacroNode("knurps", "R U", 5, 11);
+                    macro.expand(parser);
+                    assertEquals("5..11 macro{ 5..11 sequence{ 5..11 move{ 0:4:1 } 5..11 move{ 1:4:1 } } }", dump(macro));
+                }),
+                dynamicTest("recursion", () -> {
+                    DefaultScriptNotation notation = new DefaultScriptNotation();
+                    notation.putMacro("CRU", "CR CU CRU");
+                    doFailure(notation, "R CRU", "Error in macro \"CRU\":Macro: Illegal Recursion at 2..5");
+                }),
+                dynamicTest("indirect recursion", () -> {
+                    DefaultScriptNotation notation = new DefaultScriptNotation();
+                    notation.putMacro("CRU", "CR CLD");
+                    notation.putMacro("CLD", "CRU CU");
+                    notation.putMacro("CFB", "CR CU");
+                    doFailure(notation, "CLD", "Error in macro \"CLD\":Macro: Illegal Recursion at 0..3");
+                    new ScriptParser(notation).parse("CFB");
+                }),
+                dynamicTest("macros change", () -> {
+                    DefaultScriptNotation notation = new DefaultScriptNotation();
+                    notation.putMacro("CRX", "CR X");
+                    notation.putMacro("X", "CU");
+                    ScriptParser parser = new ScriptParser(notation);
+                    assertEquals("0..3 macro{ 0..3 sequence{ 0..3 move{ 0:7:1 } 0..3 macro{ 0..3 sequence{ 0..3 move{ 1:7:1 } } } } }",
+                            dump(parser.parse("CRX").getChildAt(0)));
+                    notation.putMacro("X", "CF");
+                    assertEquals("0..3 macro{ 0..3 sequence{ 0..3 move{ 0:7:1 } 0..3 macro{ 0..3 sequence{ 0..3 move{ 2:7:1 } } } } }",
+                            dump(parser.parse("CRX").getChildAt(0)));
+                    notation.putMacro("X", "CRX");
+                    try {
+                        parser.parse("CRX");
+                        fail("should fail to parse CRX");
+                    } catch (ParseException e) {
+                        assertEquals("Error in macro \"CRX\":Macro: Illegal Recursion at 0..3", e.getMessage());
+                    }
+                    notation.putMacro("X", "CD");
+                    assertEquals("0..3 macro{ 0..3 sequence{ 0..3 move{ 0:7:1 } 0..3 macro{ 0..3 sequence{ 0..3 move{ 1:7:-1 } } } } }",
+                            dump(parser.parse("CRX").getChildAt(0)));
+                })
+        );
+    }
+
+    @Nonnull
+    private static Cube applyTo(@Nonnull Node node, @Nonnull Cube cube) {
+        node.applyTo(cube, false);
+        return cube;
+    }
+
     public void doFailure(ScriptNotation notation, String script, String expected) throws Exception {
         ScriptParser instance = new ScriptParser(notation);
         try {
@@ -13,6 +13,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.DynamicTest.dynamicTest;
 
 class TokenizerTest {
@@ -114,6 +115,48 @@ class TokenizerTest {
         );
     }
 
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testTokenizerNonAscii() {
+        Tokenizer tt = new Tokenizer();
+        tt.skipWhitespace();
+        tt.addNumbers();
+        tt.addKeyword("R");
+        tt.addKeyword("R²");
+        tt.addKeyword("R’");
+        tt.addKeyword("·");
+        tt.addComment("«", "»");
+
+        return Arrays.asList(
+                dynamicTest("1", () -> doTokenizer(tt, "R²·R’", "0..2:KEY:R², 2..3:KEY:·, 3..5:KEY:R’")),
+                dynamicTest("2", () -> doTokenizer(tt, "R\u00a0R\u2028R²", "0..1:KEY:R, 2..3:KEY:R, 4..6:KEY:R²")),
+                dynamicTest("3", () -> doTokenizer(tt, "R«comment»R³", "0..1:KEY:R, 10..11:KEY:R, 11..12:WORD:³")),
+                dynamicTest("4", () -> {
+                    // keywords added after the first token are recognized
+                    tt.addKeyword("R³");
+                    doTokenizer(tt, "R³ 12", "0..2:KEY:R³, 3..5:NUM:12");
+                })
+        );
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testTokenizerDefinition() {
+        Tokenizer prototype = new Tokenizer();
+        prototype.skipWhitespace();
+        prototype.addNumbers();
+        prototype.addKeyword("tom");
+        prototype.addKeyword("tomato");
+        prototype.addComment("/*", "*/");
+        TokenizerDefinition definition = prototype.getDefinition();
+
+        return Arrays.asList(
+                dynamicTest("1", () -> doTokenizer(new Tokenizer(definition), "tomato /* x */ 12 tom", "0..6:KEY:tomato, 15..17:NUM:12, 18..21:KEY:tom")),
+                dynamicTest("2", () -> doTokenizerSetTo(new Tokenizer(definition), "tom ato", "0..3:KEY:tom, 4..7:WORD:ato")),
+                dynamicTest("3", () -> assertThrows(IllegalStateException.class, () -> new Tokenizer(definition).addKeyword("ato")))
+        );
+    }
+
     private void doTokenizer(@Nonnull Tokenizer instance, String input, String expected) {
         doNextToken(instance, input, expected);
         doPushBack(instance, input, expected);
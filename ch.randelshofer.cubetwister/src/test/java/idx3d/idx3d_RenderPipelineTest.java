@@ -0,0 +1,178 @@
+/*
+ * @(#)idx3d_RenderPipelineTest.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package idx3d;
+
+import org.jhotdraw.annotation.Nonnull;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * idx3d_RenderPipelineTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class idx3d_RenderPipelineTest {
+    private final static int WIDTH = 241;
+    private final static int HEIGHT = 187;
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testBandsRenderSameImage() {
+        return Arrays.asList(
+                dynamicTest("none", () -> doTestBandsRenderSameImage(idx3d_Antialiasing.NONE)),
+                dynamicTest("supersampling", () -> doTestBandsRenderSameImage(idx3d_Antialiasing.SUPERSAMPLING)),
+                dynamicTest("fxaa", () -> doTestBandsRenderSameImage(idx3d_Antialiasing.FXAA)),
+                dynamicTest("edge", () -> doTestBandsRenderSameImage(idx3d_Antialiasing.EDGE))
+        );
+    }
+
+    /**
+     * Renders a scene on the calling thread and in parallel bands, and
+     * checks that the pixels and the z-buffers are identical.
+     */
+    private void doTestBandsRenderSameImage(@Nonnull idx3d_Antialiasing antialiasing) {
+        idx3d_RenderPipeline serial = createPipeline(antialiasing, 1);
+        idx3d_RenderPipeline banded = createPipeline(antialiasing, 8);
+        for (int frame = 0; frame < 8; frame++) {
+            render(serial, frame);
+            render(banded, frame);
+            assertArrayEquals(serial.zBuffer, banded.zBuffer, "z-buffer of frame " + frame);
+            assertArrayEquals(serial.screen.pixel, banded.screen.pixel, "pixels of frame " + frame);
+        }
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testConcurrentPipelinesRenderSameImage() {
+        return Arrays.asList(
+                dynamicTest("none", () -> doTestConcurrentPipelinesRenderSameImage(idx3d_Antialiasing.NONE)),
+                dynamicTest("supersampling", () -> doTestConcurrentPipelinesRenderSameImage(idx3d_Antialiasing.SUPERSAMPLING))
+        );
+    }
+
+    /**
+     * Renders frames on pipelines of their own in parallel, as the offscreen
+     * renderer, the thumbnail renderer and the video exporter do, and checks
+     * that the pixels are identical to the pixels rendered serially.
+     */
+    private void doTestConcurrentPipelinesRenderSameImage(@Nonnull idx3d_Antialiasing antialiasing) throws Exception {
+        int frames = 32;
+        List<int[]> expected = new ArrayList<>();
+        idx3d_RenderPipeline serial = createPipeline(antialiasing, 1);
+        for (int frame = 0; frame < frames; frame++) {
+            render(serial, frame);
+            expected.add(serial.screen.pixel.clone());
+        }
+
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<int[]>> actual = new ArrayList<>();
+            for (int frame = 0; frame < frames; frame++) {
+                int f = frame;
+                actual.add(executor.submit(() -> {
+                    idx3d_RenderPipeline pipeline = createPipeline(antialiasing, 1);
+                    render(pipeline, f);
+                    return pipeline.screen.pixel.clone();
+                }));
+            }
+            for (int frame = 0; frame < frames; frame++) {
+                assertArrayEquals(expected.get(frame), actual.get(frame).get(), "pixels of frame " + frame);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testInstancesRenderSameImage() {
+        return Arrays.asList(
+                dynamicTest("serial", () -> doTestInstancesRenderSameImage(1)),
+                dynamicTest("banded", () -> doTestInstancesRenderSameImage(8))
+        );
+    }
+
+    /**
+     * Renders a scene with objects which are instances of shared meshes,
+     * and the same scene with objects which have been built separately,
+     * and checks that the pixels and the z-buffers are identical.
+     */
+    private void doTestInstancesRenderSameImage(int parallelism) {
+        idx3d_RenderPipeline separate = createPipeline(idx3d_Antialiasing.NONE, parallelism, false);
+        idx3d_RenderPipeline instanced = createPipeline(idx3d_Antialiasing.NONE, parallelism, true);
+        for (int frame = 0; frame < 8; frame++) {
+            render(separate, frame);
+            render(instanced, frame);
+            assertArrayEquals(separate.zBuffer, instanced.zBuffer, "z-buffer of frame " + frame);
+            assertArrayEquals(separate.screen.pixel, instanced.screen.pixel, "pixels of frame " + frame);
+        }
+    }
+
+    static void render(@Nonnull idx3d_RenderPipeline pipeline, int frame) {
+        idx3d_Scene scene = pipeline.getScene();
+        idx3d_Object o = scene.object("o0");
+        o.resetTransform();
+        o.rotate(0.2f * frame, 0.1f * frame, 0f);
+        o.shift(-1.2f, 0f, 0f);
+        pipeline.render(scene.getDefaultCamera());
+    }
+
+    /**
+     * Creates a pipeline with a scene of separately built objects.
+     */
+    @Nonnull
+    static idx3d_RenderPipeline createPipeline(@Nonnull idx3d_Antialiasing antialiasing, int parallelism) {
+        return createPipeline(antialiasing, parallelism, false);
+    }
+
+    /**
+     * Creates a pipeline with a scene of overlapping opaque, transparent
+     * and reflective objects.
+     *
+     * @param instanced whether the objects are instances of a shared sphere
+     *                  and a shared box, or are built separately
+     */
+    @Nonnull
+    static idx3d_RenderPipeline createPipeline(@Nonnull idx3d_Antialiasing antialiasing, int parallelism, boolean instanced) {
+        idx3d_Object sphere = idx3d_ObjectFactory.SPHERE(0.5f, 16);
+        idx3d_Object box = idx3d_ObjectFactory.BOX(0.6f, 0.4f, 0.5f);
+        idx3d_Scene scene = new idx3d_Scene();
+        scene.environment.ambient = 0x333333;
+        scene.addLight("l1", new idx3d_Light(new idx3d_Vector(0.2f, 0.2f, 1f), 0xffffff, 320, 80));
+        scene.addLight("l2", new idx3d_Light(new idx3d_Vector(-1f, -1f, 1f), 0xff8844, 100, 40));
+        for (int i = 0; i < 24; i++) {
+            idx3d_Object o;
+            if (instanced) {
+                o = (i % 2 == 0) ? sphere.createInstance() : box.createInstance();
+            } else {
+                o = (i % 2 == 0) ? idx3d_ObjectFactory.SPHERE(0.5f, 16) : idx3d_ObjectFactory.BOX(0.6f, 0.4f, 0.5f);
+            }
+            idx3d_Material m = new idx3d_Material(0x123456 * (i + 1) & 0xffffff);
+            if (i % 3 == 0) {
+                m.setTransparency(60 + i * 5);
+            }
+            m.setReflectivity(i * 10);
+            o.setMaterial(m);
+            o.rotate(0.3f * i, 0.2f * i, 0.1f * i);
+            o.shift(-1.2f + 0.1f * i, (float) Math.sin(i) * 0.6f, -0.1f * i);
+            scene.addObject("o" + i, o);
+        }
+        idx3d_RenderPipeline pipeline = new idx3d_RenderPipeline(scene, WIDTH, HEIGHT);
+        pipeline.setAntialiasing(antialiasing);
+        pipeline.setParallelism(parallelism);
+        return pipeline;
+    }
+}
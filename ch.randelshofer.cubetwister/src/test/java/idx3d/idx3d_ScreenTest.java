@@ -0,0 +1,139 @@
+/*
+ * @(#)idx3d_ScreenTest.java
+ * CubeTwister. Copyright © 2020 Werner Randelshofer, Switzerland. MIT License.
+ */
+package idx3d;
+
+import org.jhotdraw.annotation.Nonnull;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * idx3d_ScreenTest.
+ *
+ * @author Werner Randelshofer
+ */
+public class idx3d_ScreenTest {
+    private final static int FRAME = 3;
+
+    @Nonnull
+    @TestFactory
+    public List<DynamicTest> testAntialiasing() {
+        return Arrays.asList(
+                dynamicTest("none", this::doTestNone),
+                dynamicTest("supersampling", this::doTestSupersampling),
+                dynamicTest("fxaa", this::doTestFXAA),
+                dynamicTest("edge", this::doTestEdge)
+        );
+    }
+
+    /**
+     * Without antialiasing, the rasterizers write directly into the pixels
+     * of the screen.
+     */
+    private void doTestNone() {
+        idx3d_RenderPipeline pipeline = render(idx3d_Antialiasing.NONE, false);
+        assertSame(pipeline.screen.pixel, pipeline.screen.p);
+        assertEquals(idx3d_Antialiasing.NONE, pipeline.screen.getAntialiasing());
+        int[] expected = pipeline.screen.pixel.clone();
+        idx3d_RenderPipelineTest.render(pipeline, FRAME);
+        assertArrayEquals(expected, pipeline.screen.pixel);
+    }
+
+    /**
+     * Supersampling renders the same image as a screen of twice the size
+     * without antialiasing, downsampled by averaging each 2x2 block.
+     */
+    private void doTestSupersampling() {
+        idx3d_RenderPipeline pipeline = render(idx3d_Antialiasing.SUPERSAMPLING, false);
+        idx3d_RenderPipeline large = idx3d_RenderPipelineTest.createPipeline(idx3d_Antialiasing.NONE, 1);
+        large.resize(pipeline.screen.width * 2, pipeline.screen.height * 2);
+        idx3d_RenderPipelineTest.render(large, FRAME);
+
+        int width = pipeline.screen.width;
+        int height = pipeline.screen.height;
+        int[] p = large.screen.pixel;
+        int w = width * 2;
+        int[] expected = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int nw = p[y * 2 * w + x * 2];
+                int ne = p[y * 2 * w + x * 2 + 1];
+                int sw = p[(y * 2 + 1) * w + x * 2];
+                int se = p[(y * 2 + 1) * w + x * 2 + 1];
+                expected[y * width + x] = (0xff00ff & (((nw & 0xff00ff) + (ne & 0xff00ff) + (sw & 0xff00ff) + (se & 0xff00ff)) >>> 2))
+                        | (0xff00 & (((nw & 0xff00) + (ne & 0xff00) + (sw & 0xff00) + (se & 0xff00)) >>> 2));
+            }
+        }
+        assertArrayEquals(expected, pipeline.screen.pixel);
+    }
+
+    /**
+     * The FXAA filter only changes pixels which differ from one of their
+     * neighbours, and leaves the border of the screen unchanged.
+     */
+    private void doTestFXAA() {
+        int[] none = render(idx3d_Antialiasing.NONE, true).screen.pixel;
+        idx3d_RenderPipeline pipeline = render(idx3d_Antialiasing.FXAA, true);
+        int width = pipeline.screen.width;
+        int height = pipeline.screen.height;
+        int[] fxaa = pipeline.screen.pixel;
+        int changed = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int pos = y * width + x;
+                if (fxaa[pos] == none[pos]) {
+                    continue;
+                }
+                changed++;
+                assertTrue(x > 0 && y > 0 && x < width - 1 && y < height - 1, "border pixel " + x + "," + y);
+                int c = none[pos];
+                assertTrue(none[pos - 1] != c || none[pos + 1] != c || none[pos - width] != c || none[pos + width] != c,
+                        "pixel " + x + "," + y + " has no contrast");
+            }
+        }
+        assertTrue(changed > 0, "no pixel changed");
+    }
+
+    /**
+     * The edge filter changes a subset of the pixels changed by the FXAA
+     * filter, and leaves the texture of the background unchanged.
+     */
+    private void doTestEdge() {
+        int[] none = render(idx3d_Antialiasing.NONE, true).screen.pixel;
+        int[] fxaa = render(idx3d_Antialiasing.FXAA, true).screen.pixel;
+        int[] edge = render(idx3d_Antialiasing.EDGE, true).screen.pixel;
+        int changedByEdge = 0;
+        int changedByFXAA = 0;
+        for (int pos = 0; pos < none.length; pos++) {
+            if (fxaa[pos] != none[pos]) {
+                changedByFXAA++;
+            }
+            if (edge[pos] != none[pos]) {
+                changedByEdge++;
+                assertEquals(fxaa[pos], edge[pos], "pixel " + pos);
+            }
+        }
+        assertTrue(changedByEdge > 0, "no pixel changed");
+        assertTrue(changedByEdge < changedByFXAA, "background changed");
+    }
+
+    @Nonnull
+    private idx3d_RenderPipeline render(@Nonnull idx3d_Antialiasing antialiasing, boolean background) {
+        idx3d_RenderPipeline pipeline = idx3d_RenderPipelineTest.createPipeline(antialiasing, 1);
+        if (background) {
+            pipeline.getScene().environment.setBackground(idx3d_TextureFactory.CHECKERBOARD(64, 64, 3, 0x202020, 0x808080));
+        }
+        idx3d_RenderPipelineTest.render(pipeline, FRAME);
+        return pipeline;
+    }
+}